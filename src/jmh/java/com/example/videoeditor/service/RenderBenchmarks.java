@@ -0,0 +1,110 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.TextSegment;
+import com.example.videoeditor.dto.TimelineState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Export-side hot paths that run in the JVM before ffmpeg is started: building the
+ * command and filter graph of one batch, and producing the text overlays it needs.
+ * Source files do not exist here, so seek planning falls back to plain input seeking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmarks {
+
+    @Param({"100", "400"})
+    public int segmentsPerKind;
+
+    private VideoEditingService service;
+    private RenderWorkerPool renderWorkerPool;
+    private TimelineState timeline;
+    private TextSegment textSegment;
+    private File scratchDir;
+    private double batchStart;
+    private int coldTextCounter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        scratchDir = Files.createTempDirectory("render-bench").toFile();
+
+        FontService fontService = new FontService();
+        ReflectionTestUtils.setField(fontService, "fontDirPath", new File(scratchDir, "fonts").getAbsolutePath());
+        fontService.init();
+
+        TextRasterCache textRasterCache = new TextRasterCache();
+        ReflectionTestUtils.setField(textRasterCache, "cacheDirPath", new File(scratchDir, "text").getAbsolutePath());
+        ReflectionTestUtils.setField(textRasterCache, "maxCacheBytes", Long.MAX_VALUE);
+        textRasterCache.init();
+
+        renderWorkerPool = new RenderWorkerPool();
+        ReflectionTestUtils.setField(renderWorkerPool, "threadsPerProcess", 4);
+        ReflectionTestUtils.setField(renderWorkerPool, "maxParallelBatches", 1);
+        renderWorkerPool.init();
+
+        ProcessScheduler processScheduler = new ProcessScheduler(new ProcessMetrics(new SimpleMeterRegistry()));
+        MediaProbeService mediaProbeService = new MediaProbeService(processScheduler, null, new ObjectMapper());
+        service = new VideoEditingService(null, null, new ObjectMapper(), null, renderWorkerPool, null,
+                new InputSeekPlanner(mediaProbeService), fontService, textRasterCache, new ProgressRegistry(),
+                processScheduler, null, new TimelineComplexityAnalyzer(renderWorkerPool), null, null,
+                new ImageInputCache(processScheduler), null, mediaProbeService, null);
+
+        timeline = SyntheticTimelines.generate(segmentsPerKind, 12, 42);
+        textSegment = timeline.getTextSegments().get(0);
+        // Segments start every two seconds, so the middle of the timeline is fully populated
+        batchStart = segmentsPerKind;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        renderWorkerPool.shutdown();
+        try (Stream<Path> paths = Files.walk(scratchDir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public List<String> buildBatchCommand() throws IOException {
+        return service.buildBatchCommand(timeline, "batch.mp4", 1920, 1080, 30f, 1L, batchStart, batchStart + 8, null, null);
+    }
+
+    @Benchmark
+    public String generateTextPngCached() throws IOException {
+        return service.generateTextPng(textSegment, 1920, 1080, null);
+    }
+
+    @Benchmark
+    public BufferedImage rasterizeText() {
+        // Vary the scale so the JIT cannot hoist anything that depends on the glyph size
+        return service.rasterizeText(textSegment, 1.0 + (coldTextCounter++ & 7) * 0.1, 1920, 1080);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.AudioSegment;
+import com.example.videoeditor.dto.Filter;
+import com.example.videoeditor.dto.ImageSegment;
+import com.example.videoeditor.dto.Keyframe;
+import com.example.videoeditor.dto.TextSegment;
+import com.example.videoeditor.dto.TimelineState;
+import com.example.videoeditor.dto.Transition;
+import com.example.videoeditor.dto.VideoSegment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic timelines for the benchmarks. Segments are spread over several layers
+ * so that every 8-second batch window sees a realistic mix of video, images, text and
+ * audio, each with keyframes, filters and transitions.
+ */
+public final class SyntheticTimelines {
+
+    private static final String[] FILTERS = {"brightness", "contrast", "saturation", "hue", "grayscale", "blur", "vignette"};
+    private static final String[] TRANSITIONS = {"Slide", "Zoom", "Rotate"};
+    private static final String[] DIRECTIONS = {"left", "right", "top", "bottom"};
+    private static final String[] EASINGS = {"linear", "ease-in", "ease-out", "ease-in-out", "hold"};
+    private static final String[] FONTS = {"Arial", "Montserrat Bold", "Roboto", "Times New Roman"};
+
+    private SyntheticTimelines() {
+    }
+
+    /**
+     * A timeline with the given number of segments of each kind, laid out over roughly
+     * {@code segmentsPerKind * 2} seconds.
+     */
+    public static TimelineState generate(int segmentsPerKind, int keyframesPerProperty, long seed) {
+        Random random = new Random(seed);
+        TimelineState timeline = new TimelineState();
+        timeline.setSegments(new ArrayList<>());
+        timeline.setTextSegments(new ArrayList<>());
+        timeline.setCanvasWidth(1920);
+        timeline.setCanvasHeight(1080);
+
+        for (int i = 0; i < segmentsPerKind; i++) {
+            double start = i * 2.0 + random.nextDouble();
+            double length = 3 + random.nextDouble() * 6;
+
+            VideoSegment video = new VideoSegment();
+            video.setId("video-" + i);
+            video.setSourceVideoPath("clip_" + (i % 17) + ".mp4");
+            video.setStartTime(random.nextDouble() * 30);
+            video.setEndTime(video.getStartTime() + length);
+            video.setTimelineStartTime(start);
+            video.setTimelineEndTime(start + length);
+            video.setLayer(i % 4);
+            video.setPositionX(random.nextInt(400) - 200);
+            video.setPositionY(random.nextInt(400) - 200);
+            video.setCropL(i % 5 == 0 ? 10.0 : 0.0);
+            video.setRotation(i % 7 == 0 ? 15.0 : 0.0);
+            video.getKeyframes().put("scale", keyframes(random, keyframesPerProperty, length, 0.5, 2.0));
+            video.getKeyframes().put("positionX", keyframes(random, keyframesPerProperty, length, -300, 300));
+            video.getKeyframes().put("positionY", keyframes(random, keyframesPerProperty, length, -200, 200));
+            timeline.getSegments().add(video);
+
+            ImageSegment image = new ImageSegment();
+            image.setId("image-" + i);
+            image.setImagePath("images/projects/1/image_" + (i % 11) + ".png");
+            image.setTimelineStartTime(start + 0.5);
+            image.setTimelineEndTime(start + 0.5 + length);
+            image.setLayer(4 + i % 3);
+            image.setScale(0.5 + random.nextDouble());
+            image.setWidth(800);
+            image.setHeight(600);
+            image.getKeyframes().put("opacity", keyframes(random, keyframesPerProperty, length, 0, 1));
+            image.getKeyframes().put("positionX", keyframes(random, keyframesPerProperty, length, -300, 300));
+            timeline.getImageSegments().add(image);
+
+            TextSegment text = new TextSegment();
+            text.setId("text-" + i);
+            text.setText("Caption " + i + (i % 3 == 0 ? "\nsecond line" : ""));
+            text.setFontFamily(FONTS[i % FONTS.length]);
+            text.setFontColor(i % 2 == 0 ? "#FFFFFF" : "#FFCC00");
+            text.setBackgroundColor(i % 4 == 0 ? "#000000" : "transparent");
+            text.setBackgroundH(i % 4 == 0 ? 20 : 0);
+            text.setBackgroundW(i % 4 == 0 ? 40 : 0);
+            text.setTextBorderColor(i % 5 == 0 ? "#000000" : "transparent");
+            text.setTextBorderWidth(i % 5 == 0 ? 3 : 0);
+            text.setTimelineStartTime(start);
+            text.setTimelineEndTime(start + length / 2);
+            text.setLayer(7 + i % 2);
+            text.getKeyframes().put("scale", keyframes(random, keyframesPerProperty, length / 2, 0.8, 1.6));
+            timeline.getTextSegments().add(text);
+
+            AudioSegment audio = new AudioSegment();
+            audio.setId("audio-" + i);
+            audio.setAudioPath("audio/projects/1/track_" + (i % 5) + ".mp3");
+            audio.setLayer(-1 - i % 3);
+            audio.setStartTime(0);
+            audio.setEndTime(length);
+            audio.setTimelineStartTime(start);
+            audio.setTimelineEndTime(start + length);
+            audio.getKeyframes().put("volume", keyframes(random, keyframesPerProperty, length, 0, 1.5));
+            timeline.getAudioSegments().add(audio);
+
+            Filter filter = new Filter();
+            filter.setFilterId("filter-" + i);
+            filter.setSegmentId(i % 2 == 0 ? video.getId() : image.getId());
+            filter.setFilterName(FILTERS[i % FILTERS.length]);
+            filter.setFilterValue(String.valueOf(0.5 + random.nextDouble()));
+            timeline.getFilters().add(filter);
+
+            if (i % 2 == 0) {
+                Transition transition = new Transition();
+                transition.setId("transition-" + i);
+                transition.setType(TRANSITIONS[i % TRANSITIONS.length]);
+                transition.setDuration(1.0);
+                transition.setSegmentId(video.getId());
+                transition.setStart(true);
+                transition.setLayer(video.getLayer());
+                transition.setTimelineStartTime(start);
+                transition.getParameters().put("direction", DIRECTIONS[i % DIRECTIONS.length]);
+                timeline.getTransitions().add(transition);
+            }
+        }
+        return timeline;
+    }
+
+    /** Keyframes in random order, as the frontend sometimes sends them. */
+    public static List<Keyframe> keyframes(Random random, int count, double length, double min, double max) {
+        List<Keyframe> keyframes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double time = count > 1 ? length * i / (count - 1) : 0;
+            double value = min + random.nextDouble() * (max - min);
+            keyframes.add(new Keyframe(time, value, EASINGS[random.nextInt(EASINGS.length)]));
+        }
+        Collections.shuffle(keyframes, random);
+        return keyframes;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.Keyframe;
+import com.example.videoeditor.dto.TimelineState;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeline bookkeeping that runs on every edit or export: Jackson round-trips of the
+ * stored timeline JSON, keyframe tracks, and waveform peaks from decoded PCM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimelineBenchmarks {
+
+    @Param({"100", "400"})
+    public int segmentsPerKind;
+
+    @Param({"4", "64"})
+    public int keyframesPerProperty;
+
+    // Configured like Spring Boot's mapper, which ignores unknown properties
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private TimelineState timeline;
+    private String timelineJson;
+    private List<Keyframe> keyframes;
+    private KeyframeTrack track;
+    private byte[] pcm;
+
+    @Setup
+    public void setUp() throws IOException {
+        timeline = SyntheticTimelines.generate(segmentsPerKind, keyframesPerProperty, 42);
+        timelineJson = objectMapper.writeValueAsString(timeline);
+        keyframes = SyntheticTimelines.keyframes(new Random(7), keyframesPerProperty, 60, 0, 2);
+        track = KeyframeTrack.of(keyframes, 1.0);
+
+        // One minute of 44.1 kHz mono 16-bit noise
+        pcm = new byte[44100 * 60 * 2];
+        new Random(3).nextBytes(pcm);
+    }
+
+    @Benchmark
+    public String serializeTimeline() throws IOException {
+        return objectMapper.writeValueAsString(timeline);
+    }
+
+    @Benchmark
+    public TimelineState deserializeTimeline() throws IOException {
+        return objectMapper.readValue(timelineJson, TimelineState.class);
+    }
+
+    @Benchmark
+    public KeyframeTrack buildKeyframeTrack() {
+        return KeyframeTrack.of(keyframes, 1.0);
+    }
+
+    @Benchmark
+    public void sampleKeyframeTrack(Blackhole blackhole) {
+        // One value per frame at 30 fps over the track
+        for (int frame = 0; frame < 60 * 30; frame++) {
+            blackhole.consume(track.valueAt(frame / 30.0));
+        }
+    }
+
+    @Benchmark
+    public void keyframeExpressionsPerBatch(Blackhole blackhole) {
+        // The expression of every 8-second batch window of the track
+        for (double batchStart = 0; batchStart < 60; batchStart += 8) {
+            blackhole.consume(track.toExpression(-batchStart, 8));
+        }
+    }
+
+    @Benchmark
+    public WaveformPyramid buildWaveformPyramid() throws IOException {
+        return WaveformPyramid.fromPcm(new ByteArrayInputStream(pcm), 44100, 44100 / 100);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.videoeditor.service.imageservice;
+
+import com.example.videoeditor.dto.imagedto.DesignDTO;
+import com.example.videoeditor.dto.imagedto.LayerDTO;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Layer preparation in {@link ImageRenderService}: parsing the design JSON and putting
+ * the layers in paint order. The ImageMagick work per layer is not measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageRenderBenchmarks {
+
+    private static final String[] TYPES = {"image", "text", "shape", "background"};
+
+    @Param({"20", "200"})
+    public int layers;
+
+    // Configured like Spring Boot's mapper, which ignores unknown properties
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private String designJson;
+    private DesignDTO design;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(11);
+        List<Map<String, Object>> layerList = new ArrayList<>();
+        for (int i = 0; i < layers; i++) {
+            Map<String, Object> layer = new LinkedHashMap<>();
+            layer.put("id", "layer-" + i);
+            layer.put("type", TYPES[i % TYPES.length]);
+            layer.put("zIndex", random.nextInt(layers));
+            layer.put("x", random.nextDouble() * 1000);
+            layer.put("y", random.nextDouble() * 1000);
+            layer.put("width", 100 + random.nextDouble() * 500);
+            layer.put("height", 100 + random.nextDouble() * 500);
+            layer.put("rotation", i % 3 == 0 ? 12.5 : 0.0);
+            layer.put("opacity", 0.5 + random.nextDouble() / 2);
+            layer.put("text", "Layer " + i);
+            layer.put("fontFamily", "Arial");
+            layer.put("fontSize", 24 + i % 40);
+            layer.put("color", "#336699");
+            layer.put("filters", List.of(Map.of("type", "brightness", "value", 1.1), Map.of("type", "blur", "value", 2.0)));
+            layer.put("shadow", Map.of("offsetX", 4, "offsetY", 4, "blur", 8, "color", "#000000"));
+            layerList.add(layer);
+        }
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("version", "1.0");
+        root.put("canvas", Map.of("width", 1080, "height", 1080, "backgroundColor", "#FFFFFF"));
+        root.put("layers", layerList);
+        designJson = objectMapper.writeValueAsString(root);
+        design = objectMapper.readValue(designJson, DesignDTO.class);
+    }
+
+    @Benchmark
+    public DesignDTO parseDesign() throws IOException {
+        return objectMapper.readValue(designJson, DesignDTO.class);
+    }
+
+    @Benchmark
+    public List<LayerDTO> sortLayers() {
+        return ImageRenderService.sortedLayers(design);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.videoeditor.config;
+
+import com.example.videoeditor.service.ProcessScheduler;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Turns away new media jobs with 429 and a Retry-After estimate while the process
+ * scheduler's queue is full. Only the endpoints that start external processes are
+ * guarded; everything else keeps working under load.
+ */
+@Configuration
+public class ProcessAdmissionConfig implements WebMvcConfigurer {
+
+  private final ProcessScheduler processScheduler;
+
+  @Value("${app.processes.admission-paths:/projects/*/export,/projects/*/upload-video,/projects/*/remove-image-background,"
+      + "/api/aspect-ratio/process/*,/api/compression/compress/*,/api/conversion/convert/*,/api/podcast-clips/generate/*,"
+      + "/api/subtitles/generate/*,/api/subtitles/process/*,/api/filter-jobs/*/process,/api/video-speed/*/export,"
+      + "/api/image-editor/projects/*/export,/api/standalone-images/remove-background}")
+  private List<String> admissionPaths;
+
+  public ProcessAdmissionConfig(ProcessScheduler processScheduler) {
+    this.processScheduler = processScheduler;
+  }
+
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(new HandlerInterceptor() {
+      @Override
+      public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!"POST".equals(request.getMethod()) && !"GET".equals(request.getMethod())) {
+          return true;
+        }
+        if (!processScheduler.isOverloaded()) {
+          return true;
+        }
+        long retryAfter = processScheduler.estimateRetryAfterSeconds();
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Server is busy processing other media, please retry in "
+            + retryAfter + " seconds\"}");
+        return false;
+      }
+    }).addPathPatterns(admissionPaths);
+  }
+}
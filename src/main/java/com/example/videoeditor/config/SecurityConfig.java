@@ -36,7 +36,7 @@ public class SecurityConfig implements WebMvcConfigurer {
     config.setAllowedOriginPatterns(List.of("*")); // Changed from setAllowedOrigins
     config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
     config.setAllowedHeaders(List.of("*"));
-    config.setExposedHeaders(List.of("Authorization"));
+    config.setExposedHeaders(List.of("Authorization", "Retry-After", "X-Waveform-Start", "X-Waveform-Bucket-Seconds"));
     config.setAllowCredentials(false);
     source.registerCorsConfiguration("/**", config);
     return source;
@@ -50,7 +50,7 @@ public class SecurityConfig implements WebMvcConfigurer {
           config.setAllowedOriginPatterns(List.of("*")); // Changed for ngrok
           config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS"));
           config.setAllowedHeaders(List.of("*")); // Allow all headers including ngrok-skip-browser-warning
-          config.setExposedHeaders(List.of("Authorization"));
+          config.setExposedHeaders(List.of("Authorization", "Retry-After", "X-Waveform-Start", "X-Waveform-Bucket-Seconds"));
           config.setAllowCredentials(false);
           return config;
         }))
@@ -60,6 +60,10 @@ public class SecurityConfig implements WebMvcConfigurer {
             .requestMatchers("/auth/**").permitAll() // Google OAuth endpoint
             .requestMatchers("/api/global-elements", "/api/global-elements/**").permitAll()
             .requestMatchers("/projects/{projectId}/waveforms/{filename}").permitAll()
+            // Checked by the controllers: these need a signed URL or a token
+            .requestMatchers("/projects/{projectId}/waveform-json/{filename}").permitAll()
+            .requestMatchers("/projects/{projectId}/waveform-peaks/{filename}").permitAll()
+            .requestMatchers("audio/projects/{projectId}/waveforms/{filename}").permitAll()
             .requestMatchers("/audio/sole_tts/{userId}/{filename}").permitAll()
             .requestMatchers("/developer/**").authenticated()
             .requestMatchers("/videos/upload", "/videos/my-videos", "/videos/merge",
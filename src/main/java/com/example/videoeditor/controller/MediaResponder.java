@@ -0,0 +1,216 @@
+package com.example.videoeditor.controller;
+
+import com.example.videoeditor.repository.ProjectRepository;
+import com.example.videoeditor.security.JwtUtil;
+import com.example.videoeditor.security.MediaUrlSigner;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access checks and file responses shared by the media GET endpoints. Requests carrying a
+ * {@link MediaUrlSigner} signature are authorized from the URL alone; others fall back to
+ * the token, checked against the project owner with a single narrow query. Files are sent
+ * with ETag and Last-Modified validators, so a player revalidating a clip gets a 304, and
+ * large files and single byte ranges go out through Tomcat's sendfile.
+ */
+@Component
+public class MediaResponder {
+
+    /** Query parameter naming the file version a signed URL was issued for. */
+    public static final String VERSION_PARAM = "v";
+
+    // Request attributes Tomcat reads to send a file with sendfile once the handler returns
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    // Smaller files are cheaper to copy than to hand to the connector
+    @Value("${app.media.sendfile-threshold:49152}")
+    private long sendfileThreshold;
+
+    private final MediaUrlSigner mediaUrlSigner;
+    private final ProjectRepository projectRepository;
+    private final JwtUtil jwtUtil;
+
+    public MediaResponder(MediaUrlSigner mediaUrlSigner, ProjectRepository projectRepository, JwtUtil jwtUtil) {
+        this.mediaUrlSigner = mediaUrlSigner;
+        this.projectRepository = projectRepository;
+        this.jwtUtil = jwtUtil;
+    }
+
+    /** Version of a file as used in ETags and signed URLs; changes whenever the file is replaced. */
+    public static String version(File file) {
+        return Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified());
+    }
+
+    public boolean isSigned(HttpServletRequest request) {
+        return request.getParameter(MediaUrlSigner.SIGNATURE_PARAM) != null;
+    }
+
+    /** True when the request carries a valid, unexpired signature for its own path. */
+    public boolean hasValidSignature(HttpServletRequest request) {
+        Long expires;
+        try {
+            String value = request.getParameter(MediaUrlSigner.EXPIRES_PARAM);
+            expires = value != null ? Long.parseLong(value) : null;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return mediaUrlSigner.verify(PATH_HELPER.getPathWithinApplication(request), expires,
+                request.getParameter(MediaUrlSigner.SIGNATURE_PARAM));
+    }
+
+    /**
+     * Checks access to a project's media. Returns null when the request may be served,
+     * otherwise the status to answer with. Without a token the project only has to exist,
+     * as before.
+     */
+    public HttpStatus authorize(Long projectId, String token, HttpServletRequest request) {
+        if (isSigned(request)) {
+            return hasValidSignature(request) ? null : HttpStatus.FORBIDDEN;
+        }
+        String ownerEmail = projectRepository.findOwnerEmailById(projectId).orElse(null);
+        if (ownerEmail == null) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (token != null && !token.isEmpty() && !ownerEmail.equals(jwtUtil.extractEmail(token.substring(7)))) {
+            return HttpStatus.FORBIDDEN;
+        }
+        return null;
+    }
+
+    /** Like {@link #authorize}, for media that was never served without a token. */
+    public HttpStatus authorizeSignedOrToken(Long projectId, String token, HttpServletRequest request) {
+        if (!isSigned(request) && (token == null || token.isEmpty())) {
+            return HttpStatus.UNAUTHORIZED;
+        }
+        return authorize(projectId, token, request);
+    }
+
+    public ResponseEntity<Resource> send(File file, String contentType, String contentDisposition,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return send(file, contentType, contentDisposition, null, request, response);
+    }
+
+    /**
+     * Answers with the file, a 304 when the client's copy is current, or the requested byte
+     * range. Returns null when the response was written here rather than by Spring.
+     *
+     * @param cacheControl caching of the response; by default a signed URL naming the current
+     *                     version is cacheable until it expires and anything else is revalidated
+     */
+    public ResponseEntity<Resource> send(File file, String contentType, String contentDisposition, CacheControl cacheControl,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!file.isFile() || !file.canRead()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        long length = file.length();
+        String eTag = "\"" + version(file) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                (cacheControl != null ? cacheControl : defaultCacheControl(file, request)).getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(eTag, file.lastModified())) {
+            return null;
+        }
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+
+        // A range only applies while the client's If-Range still names this version
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        List<HttpRange> ranges = List.of();
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(eTag))) {
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                return unsatisfiable(length);
+            }
+        }
+        if (length < sendfileThreshold || ranges.size() > 1) {
+            // Spring's resource handling covers small files and multipart ranges
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(contentType))
+                    .body(new FileSystemResource(file));
+        }
+
+        long start = 0;
+        long end = length - 1;
+        if (ranges.size() == 1) {
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                return unsatisfiable(length);
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType);
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return null;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1); // Exclusive
+            return null;
+        }
+        // Without sendfile the channel transfer still skips the intermediate copy buffers
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+        return null;
+    }
+
+    private CacheControl defaultCacheControl(File file, HttpServletRequest request) {
+        // The URL changes with the version, so what it points to never changes while it is valid
+        if (version(file).equals(request.getParameter(VERSION_PARAM)) && hasValidSignature(request)) {
+            long secondsLeft = mediaUrlSigner.secondsLeft(Long.parseLong(request.getParameter(MediaUrlSigner.EXPIRES_PARAM)));
+            return CacheControl.maxAge(secondsLeft, TimeUnit.SECONDS).cachePrivate().immutable();
+        }
+        return CacheControl.noCache().cachePrivate();
+    }
+
+    private static ResponseEntity<Resource> unsatisfiable(long length) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                .body(null);
+    }
+}
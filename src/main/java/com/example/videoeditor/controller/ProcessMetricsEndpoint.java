@@ -0,0 +1,59 @@
+package com.example.videoeditor.controller;
+
+import com.example.videoeditor.service.ProcessMetrics;
+import com.example.videoeditor.service.ProcessScheduler;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/processes}: scheduler load and per-class totals, and with a job key
+ * (e.g. {@code /actuator/processes/export-job:17}) the cost of every process that job ran.
+ * The time series themselves are the {@code media.process.*} meters.
+ */
+@Component
+@Endpoint(id = "processes")
+public class ProcessMetricsEndpoint {
+
+    private final ProcessScheduler processScheduler;
+    private final ProcessMetrics processMetrics;
+
+    public ProcessMetricsEndpoint(ProcessScheduler processScheduler, ProcessMetrics processMetrics) {
+        this.processScheduler = processScheduler;
+        this.processMetrics = processMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> processes() {
+        Map<String, Object> classes = new LinkedHashMap<>();
+        processScheduler.getStats().forEach((processClass, stats) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("launched", stats.getLaunched());
+            entry.put("running", stats.getRunning());
+            entry.put("threadsPerProcess", processScheduler.threadsFor(processClass));
+            entry.put("meanRunSeconds", stats.getMeanRunSeconds());
+            entry.put("totalRunSeconds", stats.getTotalRunSeconds());
+            entry.put("totalWaitSeconds", stats.getTotalWaitSeconds());
+            entry.put("maxWaitSeconds", stats.getMaxWaitSeconds());
+            classes.put(processClass.name(), entry);
+        });
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("capacityUnits", processScheduler.getCapacity());
+        response.put("unitsInUse", processScheduler.getUnitsInUse());
+        response.put("queueDepth", processScheduler.getQueueDepth());
+        response.put("classes", classes);
+        response.put("jobs", processMetrics.getTrackedJobs());
+        return response;
+    }
+
+    @ReadOperation
+    public Map<String, Object> job(@Selector String jobKey) {
+        // A null result is answered with 404 by the actuator
+        return processMetrics.getJobBreakdown(jobKey);
+    }
+}
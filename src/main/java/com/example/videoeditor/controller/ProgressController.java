@@ -0,0 +1,86 @@
+package com.example.videoeditor.controller;
+
+import com.example.videoeditor.entity.User;
+import com.example.videoeditor.repository.UserRepository;
+import com.example.videoeditor.security.JwtUtil;
+import com.example.videoeditor.service.ProgressRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live progress of long-running jobs. {@code jobType} is one of export-job (keyed by export job
+ * id), subtitle, aspect-ratio (keyed by media id) or video-filter (keyed by job id). The older
+ * export type is keyed by project id and follows the project's most recently started export.
+ */
+@RestController
+@RequestMapping("/api/progress")
+public class ProgressController {
+
+    private static final Set<String> JOB_TYPES = Set.of("export-job", "export", "subtitle", "aspect-ratio", "video-filter");
+
+    private final ProgressRegistry progressRegistry;
+    private final JwtUtil jwtUtil;
+    private final UserRepository userRepository;
+
+    public ProgressController(ProgressRegistry progressRegistry, JwtUtil jwtUtil, UserRepository userRepository) {
+        this.progressRegistry = progressRegistry;
+        this.jwtUtil = jwtUtil;
+        this.userRepository = userRepository;
+    }
+
+    @GetMapping("/{jobType}/{id}")
+    public ResponseEntity<?> getProgress(
+            @RequestHeader("Authorization") String token,
+            @PathVariable String jobType,
+            @PathVariable Long id) {
+        String key = authorizedKey(token, jobType, id);
+        return progressRegistry.get(key)
+                .<ResponseEntity<?>>map(snapshot -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("status", snapshot.getStatus());
+                    response.put("progress", snapshot.getProgress());
+                    response.put("message", snapshot.getMessage());
+                    return ResponseEntity.ok(response);
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "No progress recorded for this job")));
+    }
+
+    @GetMapping(value = "/{jobType}/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamProgress(
+            @RequestHeader("Authorization") String token,
+            @PathVariable String jobType,
+            @PathVariable Long id) {
+        User user = getUserFromToken(token);
+        String key = authorizedKey(user, jobType, id);
+        return progressRegistry.subscribe(key, user.getId());
+    }
+
+    private String authorizedKey(String token, String jobType, Long id) {
+        return authorizedKey(getUserFromToken(token), jobType, id);
+    }
+
+    private String authorizedKey(User user, String jobType, Long id) {
+        if (!JOB_TYPES.contains(jobType)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown job type: " + jobType);
+        }
+        String key = ProgressRegistry.key(jobType, id);
+        if (!progressRegistry.isVisibleTo(key, user.getId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not authorized to view this job");
+        }
+        return key;
+    }
+
+    private User getUserFromToken(String token) {
+        String email = jwtUtil.extractEmail(token.substring(7));
+        return userRepository.findByEmail(email)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+    }
+}
@@ -6,12 +6,19 @@ import com.example.videoeditor.entity.User;
 import com.example.videoeditor.repository.ProjectRepository;
 import com.example.videoeditor.repository.UserRepository;
 import com.example.videoeditor.security.JwtUtil;
+import com.example.videoeditor.security.MediaUrlSigner;
+import com.example.videoeditor.service.ExportJobService;
+import com.example.videoeditor.service.MediaIngestService;
+import com.example.videoeditor.service.PreviewFrameService;
+import com.example.videoeditor.service.ProgressRegistry;
 import com.example.videoeditor.service.VideoEditingService;
+import com.example.videoeditor.service.WaveformPyramid;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.FileSystemResource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -26,6 +33,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @RestController
@@ -35,16 +43,34 @@ public class ProjectController {
     private final ProjectRepository projectRepository;
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
+    private final ExportJobService exportJobService;
+    private final ProgressRegistry progressRegistry;
+    private final PreviewFrameService previewFrameService;
+    private final MediaIngestService mediaIngestService;
+    private final MediaResponder mediaResponder;
+    private final MediaUrlSigner mediaUrlSigner;
 
     public ProjectController(
             VideoEditingService videoEditingService,
             ProjectRepository projectRepository,
             JwtUtil jwtUtil,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            ExportJobService exportJobService,
+            ProgressRegistry progressRegistry,
+            PreviewFrameService previewFrameService,
+            MediaIngestService mediaIngestService,
+            MediaResponder mediaResponder,
+            MediaUrlSigner mediaUrlSigner) {
         this.videoEditingService = videoEditingService;
         this.projectRepository = projectRepository;
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
+        this.exportJobService = exportJobService;
+        this.progressRegistry = progressRegistry;
+        this.previewFrameService = previewFrameService;
+        this.mediaIngestService = mediaIngestService;
+        this.mediaResponder = mediaResponder;
+        this.mediaUrlSigner = mediaUrlSigner;
     }
 
     public User getUserFromToken(String token) {
@@ -117,19 +143,140 @@ public class ProjectController {
         return ResponseEntity.ok().build();
     }
 
-    @GetMapping("/{projectId}/export")
-    public ResponseEntity<String> exportProject(
+    @RequestMapping(value = "/{projectId}/export", method = {RequestMethod.GET, RequestMethod.POST})
+    public ResponseEntity<?> exportProject(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @RequestParam String sessionId) throws IOException, InterruptedException {
-        // Export the project using the existing session ID
-        String exportedVideoPath = String.valueOf(videoEditingService.exportProject(sessionId));
+            @RequestParam String sessionId,
+            @RequestParam(defaultValue = "0") int priority) {
+        try {
+            User user = token != null && !token.isEmpty() ? getUserFromToken(token) : null;
+            // Rendering happens on the export workers; the caller polls the returned job
+            ExportJobResponse job = exportJobService.submit(user, projectId, sessionId, priority);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading timeline state: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error submitting export: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{projectId}/export/estimate")
+    public ResponseEntity<?> estimateExport(
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @PathVariable Long projectId,
+            @RequestParam String sessionId) {
+        try {
+            User user = token != null && !token.isEmpty() ? getUserFromToken(token) : null;
+            return ResponseEntity.ok(exportJobService.estimate(user, projectId, sessionId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error estimating export: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{projectId}/preview/frame")
+    public ResponseEntity<?> getPreviewFrame(
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @PathVariable Long projectId,
+            @RequestParam String sessionId,
+            @RequestParam double t,
+            @RequestParam(required = false) Integer width) {
+        try {
+            User user = token != null && !token.isEmpty() ? getUserFromToken(token) : null;
+            byte[] frame = previewFrameService.renderFrame(user, projectId, sessionId, t, width);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_JPEG)
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    .body(frame);
+        } catch (JsonProcessingException e) {
+            // The frame's cache key is a hash of the serialized timeline
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body("Timeline could not be read for the preview frame: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error rendering preview frame: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Preview frame interrupted");
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Error rendering preview frame: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{projectId}/export/jobs")
+    public ResponseEntity<?> getExportJobs(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId) {
+        try {
+            User user = getUserFromToken(token);
+            Project project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!project.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            return ResponseEntity.ok(exportJobService.getJobs(projectId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{projectId}/export/jobs/{jobId}")
+    public ResponseEntity<?> getExportJob(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId,
+            @PathVariable Long jobId) {
+        try {
+            User user = getUserFromToken(token);
+            Project project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!project.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            return ResponseEntity.ok(exportJobService.getJob(projectId, jobId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
 
-        // Create a File object to match the return type of your original method
-        File exportedVideo = new File(exportedVideoPath);
+    @PostMapping("/{projectId}/export/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeExportJob(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId,
+            @PathVariable Long jobId) {
+        try {
+            User user = getUserFromToken(token);
+            Project project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!project.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(exportJobService.resume(projectId, jobId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
 
-        // Return just the filename as in your original implementation
-        return ResponseEntity.ok(exportedVideo.getName());
+    @DeleteMapping("/{projectId}/export/jobs/{jobId}")
+    public ResponseEntity<?> cancelExportJob(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId,
+            @PathVariable Long jobId) {
+        try {
+            User user = getUserFromToken(token);
+            Project project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!project.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            return ResponseEntity.ok(exportJobService.cancel(projectId, jobId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
     }
 
     @GetMapping("/{projectId}/export/progress")
@@ -137,6 +284,16 @@ public class ProjectController {
         @PathVariable Long projectId,
         @RequestParam String sessionId,
         @RequestHeader(value = "Authorization", required = false) String token) {
+        // Running exports are answered from memory (also streamed at /api/progress/export/{projectId}/stream),
+        // where the project key follows its latest export; the database only holds the outcome of the last export
+        Optional<ProgressRegistry.Snapshot> live = progressRegistry.get(ProgressRegistry.key("export", projectId));
+        if (live.isPresent() && !live.get().isTerminal()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "PENDING");
+            response.put("progress", live.get().getProgress());
+            return ResponseEntity.ok(response);
+        }
+
         Project project = projectRepository.findById(projectId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Session not found: " + sessionId));
 
@@ -393,39 +550,22 @@ public class ProjectController {
     public ResponseEntity<Resource> serveVideo(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            // Signed URLs are checked without touching the database
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define video file path
             String videoDirectory = "videos/projects/" + projectId + "/";
             Path videoPath = Paths.get(videoDirectory).resolve(filename).normalize();
-            Resource resource = new UrlResource(videoPath.toUri());
-
-            // Verify file existence
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Set content type
-            String contentType = "video/mp4";
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
+            return mediaResponder.send(videoPath.toFile(), "video/mp4",
+                    "inline; filename=\"" + filename + "\"", request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving video: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -1258,39 +1398,21 @@ public class ProjectController {
     public ResponseEntity<Resource> serveWaveform(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                // Authenticate user if token is provided
-                user = getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define waveform file path
             String waveformDirectory = "audio/projects/" + projectId + "/waveforms/";
             File waveformFile = new File(waveformDirectory, filename);
 
-            // Verify file existence
-            if (!waveformFile.exists() || !waveformFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and set content type
-            Resource resource = new FileSystemResource(waveformFile);
-            String contentType = "image/png"; // Waveforms are PNG files
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            // Waveforms are PNG files
+            return mediaResponder.send(waveformFile, "image/png", null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving waveform: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -1305,38 +1427,20 @@ public class ProjectController {
     public ResponseEntity<Resource> serveWaveformJson(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorizeSignedOrToken(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define waveform JSON file path
             String waveformDirectory = "audio/projects/" + projectId + "/waveforms/";
             File waveformFile = new File(waveformDirectory, filename);
 
-            // Verify file existence
-            if (!waveformFile.exists() || !waveformFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and set content type
-            Resource resource = new FileSystemResource(waveformFile);
-            String contentType = "application/json";
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(waveformFile, "application/json", null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving waveform JSON: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -1347,6 +1451,165 @@ public class ProjectController {
         }
     }
 
+    /**
+     * Peaks of a waveform file for one zoom level and time range, as interleaved signed 8-bit
+     * min/max pairs. Without {@code level} it describes the levels instead, so the client can
+     * pick the one matching its zoom.
+     */
+    @GetMapping("/{projectId}/waveform-peaks/{filename:.+}")
+    public ResponseEntity<?> getWaveformPeaks(
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @PathVariable Long projectId,
+            @PathVariable String filename,
+            @RequestParam(required = false) Integer level,
+            @RequestParam(defaultValue = "0") double start,
+            @RequestParam(required = false) Double end,
+            HttpServletRequest request) {
+        try {
+            // Open to signed URLs; without a signature a token is still required
+            HttpStatus denied = mediaResponder.authorizeSignedOrToken(projectId, token, request);
+            if (denied == HttpStatus.UNAUTHORIZED) {
+                return ResponseEntity.status(denied).body("Authorization required");
+            }
+            if (denied == HttpStatus.NOT_FOUND) {
+                return ResponseEntity.status(denied).body("Project not found with ID: " + projectId);
+            }
+            if (denied != null) {
+                return ResponseEntity.status(denied).body("Not authorized to access this project");
+            }
+            if (!filename.endsWith(".peaks") || filename.contains("/") || filename.contains("\\") || filename.contains("..")) {
+                return ResponseEntity.badRequest().body("Invalid waveform file name");
+            }
+            File waveformFile = new File("audio/projects/" + projectId + "/waveforms/", filename);
+            if (!waveformFile.isFile()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Waveform not found");
+            }
+
+            if (level == null) {
+                WaveformPyramid.Header header = WaveformPyramid.readHeader(waveformFile);
+                List<Map<String, Object>> levels = new ArrayList<>();
+                for (int i = 0; i < header.getLevelCount(); i++) {
+                    Map<String, Object> levelInfo = new HashMap<>();
+                    levelInfo.put("level", i);
+                    levelInfo.put("bucketSeconds", header.getBucketSeconds(i));
+                    levelInfo.put("buckets", header.getBucketCount(i));
+                    levels.add(levelInfo);
+                }
+                Map<String, Object> response = new HashMap<>();
+                response.put("duration", header.getDuration());
+                response.put("levels", levels);
+                return ResponseEntity.ok()
+                        .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                        .body(response);
+            }
+
+            WaveformPyramid.Slice slice = WaveformPyramid.readSlice(waveformFile, level, start,
+                    end != null ? end : Double.MAX_VALUE);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                    .header("X-Waveform-Start", String.valueOf(slice.getStartTime()))
+                    .header("X-Waveform-Bucket-Seconds", String.valueOf(slice.getBucketSeconds()))
+                    .body(slice.getPeaks());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error reading waveform: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Readiness of the project's recent uploads: which ingest steps (probe, filmstrip, audio,
+     * waveform, mezzanine) are done. With {@code path} only that upload is reported.
+     */
+    @GetMapping("/{projectId}/media-status")
+    public ResponseEntity<?> getMediaStatus(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId,
+            @RequestParam(required = false) String path) {
+        try {
+            User user = getUserFromToken(token);
+            Project project = projectRepository.findById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!project.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            List<IngestStatus> statuses = mediaIngestService.getStatuses(projectId);
+            if (path != null) {
+                statuses = statuses.stream()
+                        .filter(status -> status.getPath().equals(path) || status.getPath().endsWith("/" + path))
+                        .collect(Collectors.toList());
+            }
+            return ResponseEntity.ok(statuses);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Signed URLs for the project's media, so the player can load them without a token and
+     * without a database lookup per request. {@code path} is the URL path the media is served
+     * under, e.g. {@code videos/projects/12/clip.mp4}. URLs of files served by
+     * {@link ServeController} also name the file's current version and may be cached until
+     * they expire.
+     */
+    @GetMapping("/{projectId}/media-urls")
+    public ResponseEntity<?> getMediaUrls(
+            @RequestHeader("Authorization") String token,
+            @PathVariable Long projectId,
+            @RequestParam("path") List<String> paths) {
+        try {
+            String email = jwtUtil.extractEmail(token.substring(7));
+            String ownerEmail = projectRepository.findOwnerEmailById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
+            if (!ownerEmail.equals(email)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Not authorized to access this project");
+            }
+            List<String> prefixes = List.of(
+                    "videos/projects/" + projectId + "/",
+                    "audio/projects/" + projectId + "/",
+                    "image/projects/" + projectId + "/",
+                    "projects/" + projectId + "/videos/",
+                    "projects/" + projectId + "/audio/",
+                    "projects/" + projectId + "/images/",
+                    "projects/" + projectId + "/waveforms/",
+                    "projects/" + projectId + "/waveform-json/",
+                    "projects/" + projectId + "/waveform-peaks/",
+                    "elements/");
+            Map<String, String> urls = new LinkedHashMap<>();
+            for (String path : paths) {
+                String canonical = path.startsWith("/") ? path.substring(1) : path;
+                if (canonical.contains("..") || canonical.contains("\\")
+                        || prefixes.stream().noneMatch(canonical::startsWith)) {
+                    return ResponseEntity.badRequest().body("Not a media path of this project: " + path);
+                }
+                String url = mediaUrlSigner.sign(canonical);
+                File file = servedFile(canonical);
+                if (file != null && file.isFile()) {
+                    url += "&" + MediaResponder.VERSION_PARAM + "=" + MediaResponder.version(file);
+                }
+                urls.put(path, url);
+            }
+            return ResponseEntity.ok(urls);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+        }
+    }
+
+    // File behind a ServeController media path, which maps straight onto the working directory
+    private static File servedFile(String path) {
+        if (path.startsWith("videos/") || path.startsWith("audio/")) {
+            return new File(path);
+        }
+        if (path.startsWith("image/")) {
+            return new File("images/" + path.substring("image/".length()));
+        }
+        return null;
+    }
+
     @DeleteMapping("/{projectId}/remove-audio")
     public ResponseEntity<?> removeAudioSegment(
             @RequestHeader("Authorization") String token,
@@ -1617,49 +1880,32 @@ public class ProjectController {
     public ResponseEntity<Resource> serveImage(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                // Authenticate user if token is provided
-                user = getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
             // Check if the file is in the elements directory first (global access)
             String elementsDirectory = "D:/Backend/videoEditor-main/elements/";
-            Path elementsPath = Paths.get(elementsDirectory).resolve(filename).normalize();
-            Resource resource = new UrlResource(elementsPath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                String contentType = determineContentType(filename);
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .body(resource);
+            File elementFile = Paths.get(elementsDirectory).resolve(filename).normalize().toFile();
+            boolean signed = mediaResponder.isSigned(request);
+            if (signed && !mediaResponder.hasValidSignature(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            }
+            if (elementFile.isFile()) {
+                return mediaResponder.send(elementFile, determineContentType(filename), null, request, response);
             }
 
             // If not in elements, check project-specific images (requires ownership)
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            if (!signed) {
+                HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+                if (denied != null) {
+                    return ResponseEntity.status(denied).body(null);
+                }
             }
 
             String projectImageDirectory = "images/projects/" + projectId + "/";
             Path projectImagePath = Paths.get(projectImageDirectory).resolve(filename).normalize();
-            resource = new UrlResource(projectImagePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                String contentType = determineContentType(filename);
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .body(resource);
-            }
-
-            // File not found in either location
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-
+            return mediaResponder.send(projectImagePath.toFile(), determineContentType(filename), null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving image: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -2184,21 +2430,13 @@ public class ProjectController {
     public ResponseEntity<Resource> serveAudio(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                // Authenticate user if token is provided
-                user = getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define possible audio file paths
@@ -2211,18 +2449,7 @@ public class ProjectController {
                 audioFile = new File(extractedAudioDirectory, filename);
             }
 
-            // Verify file existence
-            if (!audioFile.exists() || !audioFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and determine content type
-            Resource resource = new FileSystemResource(audioFile);
-            String contentType = determineAudioContentType(filename);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(audioFile, determineAudioContentType(filename), null, request, response);
 
         } catch (RuntimeException e) {
             System.err.println("Error serving audio: " + e.getMessage());
@@ -1,11 +1,13 @@
 package com.example.videoeditor.controller;
 
-import com.example.videoeditor.entity.Project;
 import com.example.videoeditor.entity.User;
 import com.example.videoeditor.repository.ProjectRepository;
+import com.example.videoeditor.service.FilmstripService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,60 +17,102 @@ import org.springframework.web.bind.annotation.*;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 public class ServeController {
 
     private final ProjectController projectController;
     private final ProjectRepository projectRepository;
+    private final FilmstripService filmstripService;
+    private final MediaResponder mediaResponder;
 
-    public ServeController(ProjectController projectController, ProjectRepository projectRepository) {
+    public ServeController(ProjectController projectController, ProjectRepository projectRepository,
+                           FilmstripService filmstripService, MediaResponder mediaResponder) {
         this.projectController = projectController;
         this.projectRepository = projectRepository;
+        this.filmstripService = filmstripService;
+        this.mediaResponder = mediaResponder;
     }
 
     @GetMapping("videos/projects/{projectId}/{filename:.+}")
     public ResponseEntity<Resource> serveVideo(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            // Signed URLs are checked without touching the database
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define video file path
             String videoDirectory = "videos/projects/" + projectId + "/";
             Path videoPath = Paths.get(videoDirectory).resolve(filename).normalize();
-            Resource resource = new UrlResource(videoPath.toUri());
 
-            // Verify file existence
-            if (!resource.exists() || !resource.isReadable()) {
+            return mediaResponder.send(videoPath.toFile(), "video/mp4",
+                    "inline; filename=\"" + filename + "\"", request, response);
+        } catch (RuntimeException e) {
+            System.err.println("Error serving video: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        } catch (Exception e) {
+            System.err.println("Error serving video: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+    @GetMapping("videos/projects/{projectId}/filmstrips/{videoFileName}/{filename:.+}")
+    public ResponseEntity<Resource> serveFilmstrip(
+            @RequestHeader(value = "Authorization", required = false) String token,
+            @PathVariable Long projectId,
+            @PathVariable String videoFileName,
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        try {
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
+            }
+
+            Path videoDirectory = Paths.get("videos/projects/" + projectId + "/").normalize();
+            Path videoPath = videoDirectory.resolve(videoFileName).normalize();
+            Path filmstripPath = FilmstripService.filmstripDir(videoPath.toFile()).toPath().resolve(filename).normalize();
+            if (!videoPath.startsWith(videoDirectory) || !filmstripPath.startsWith(videoDirectory)) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
             }
 
-            // Set content type
-            String contentType = "video/mp4";
+            File filmstripFile = filmstripPath.toFile();
+            // Videos uploaded before filmstrips existed get theirs on first request, and a replaced
+            // video gets a new one instead of the thumbnails of what was there before
+            if (FilmstripService.INDEX_FILE.equals(filename) && !filmstripService.isCurrent(videoPath.toFile())) {
+                Long ownerId = projectRepository.findById(projectId)
+                        .map(project -> project.getUser().getId())
+                        .orElse(null);
+                if (ownerId != null && filmstripService.requestIfMissing(videoPath.toFile(), ownerId)) {
+                    return ResponseEntity.status(HttpStatus.ACCEPTED).header(HttpHeaders.RETRY_AFTER, "5").body(null);
+                }
+            }
+            if (!filmstripFile.isFile()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
 
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + filename + "\"")
-                    .body(resource);
+            // Sprite names carry a version of the source, so they never change; the index is revisited daily
+            CacheControl cacheControl = filename.endsWith(".json")
+                    ? CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate()
+                    : CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+            String contentType = filename.endsWith(".json") ? "application/json" : "image/jpeg";
+
+            return mediaResponder.send(filmstripFile, contentType, null, cacheControl, request, response);
         } catch (RuntimeException e) {
-            System.err.println("Error serving video: " + e.getMessage());
+            System.err.println("Error serving filmstrip: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         } catch (Exception e) {
-            System.err.println("Error serving video: " + e.getMessage());
+            System.err.println("Error serving filmstrip: " + e.getMessage());
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
@@ -77,27 +121,25 @@ public class ServeController {
     @GetMapping("elements/{filename:.+}")
     public ResponseEntity<Resource> serveElement(
             @RequestHeader(value = "Authorization", required = false) String token,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
+            // Elements are shared by every project, so a token only has to be valid
+            if (mediaResponder.isSigned(request)) {
+                if (!mediaResponder.hasValidSignature(request)) {
+                    return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+                }
+            } else if (token != null && !token.isEmpty()) {
+                projectController.getUserFromToken(token);
             }
 
             // Define elements file path
             String elementsDirectory = "D:/Backend/videoEditor-main/elements/";
             Path elementsPath = Paths.get(elementsDirectory).resolve(filename).normalize();
-            Resource resource = new UrlResource(elementsPath.toUri());
-
-            // Verify file existence
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
 
             String contentType = projectController.determineContentType(filename);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(elementsPath.toFile(), contentType, null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving element: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -112,36 +154,21 @@ public class ServeController {
     public ResponseEntity<Resource> serveImage(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define project-specific image file path
             String projectImageDirectory = "images/projects/" + projectId + "/";
             Path projectImagePath = Paths.get(projectImageDirectory).resolve(filename).normalize();
-            Resource resource = new UrlResource(projectImagePath.toUri());
-
-            // Verify file existence
-            if (!resource.exists() || !resource.isReadable()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
 
             String contentType = projectController.determineContentType(filename);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(projectImagePath.toFile(), contentType, null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving image: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -156,38 +183,21 @@ public class ServeController {
     public ResponseEntity<Resource> serveAudio(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define audio file path
             String baseAudioDirectory = "audio/projects/" + projectId + "/";
             File audioFile = new File(baseAudioDirectory, filename);
 
-            // Verify file existence
-            if (!audioFile.exists() || !audioFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and determine content type
-            Resource resource = new FileSystemResource(audioFile);
             String contentType = projectController.determineAudioContentType(filename);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(audioFile, contentType, null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving audio: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -202,38 +212,21 @@ public class ServeController {
     public ResponseEntity<Resource> serveExtractedAudio(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorize(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define extracted audio file path
             String extractedAudioDirectory = "audio/projects/" + projectId + "/extracted/";
             File audioFile = new File(extractedAudioDirectory, filename);
 
-            // Verify file existence
-            if (!audioFile.exists() || !audioFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and determine content type
-            Resource resource = new FileSystemResource(audioFile);
             String contentType = projectController.determineAudioContentType(filename);
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            return mediaResponder.send(audioFile, contentType, null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving extracted audio: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -248,38 +241,21 @@ public class ServeController {
     public ResponseEntity<Resource> serveWaveform(
             @RequestHeader(value = "Authorization", required = false) String token,
             @PathVariable Long projectId,
-            @PathVariable String filename) {
+            @PathVariable String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) {
         try {
-            User user = null;
-            if (token != null && !token.isEmpty()) {
-                user = projectController.getUserFromToken(token);
-            }
-
-            // Verify project exists
-            Project project = projectRepository.findById(projectId)
-                    .orElseThrow(() -> new RuntimeException("Project not found with ID: " + projectId));
-
-            // If token is provided, verify user has access
-            if (user != null && !project.getUser().getId().equals(user.getId())) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+            HttpStatus denied = mediaResponder.authorizeSignedOrToken(projectId, token, request);
+            if (denied != null) {
+                return ResponseEntity.status(denied).body(null);
             }
 
             // Define waveform file path
             String waveformDirectory = "audio/projects/" + projectId + "/waveforms/";
             File waveformFile = new File(waveformDirectory, filename);
 
-            // Verify file existence
-            if (!waveformFile.exists() || !waveformFile.isFile()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
-            }
-
-            // Create resource and set content type
-            Resource resource = new FileSystemResource(waveformFile);
-            String contentType = "image/png"; // Waveforms are PNG files
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+            // Waveforms are PNG files
+            return mediaResponder.send(waveformFile, "image/png", null, request, response);
         } catch (RuntimeException e) {
             System.err.println("Error serving waveform: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
@@ -290,6 +266,7 @@ public class ServeController {
         }
     }
 
+
     @GetMapping("audio/sole_tts/{userId}/{filename:.+}")
     public ResponseEntity<Resource> serveTTSAudio(
         @RequestHeader(value = "Authorization", required = false) String token,
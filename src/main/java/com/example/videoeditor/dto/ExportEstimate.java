@@ -0,0 +1,51 @@
+package com.example.videoeditor.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ExportEstimate {
+    private double timelineSeconds;
+    private int batchCount;
+    private double totalCostUnits;
+    private double estimatedSeconds;      // Wall-clock time on the render worker pool, concat included
+    private double estimatedCpuSeconds;   // Core-seconds the batch encodes are expected to use
+    private int parallelBatches;
+    private double secondsPerCostUnit;    // Current calibration
+    private long calibrationSamples;      // Batches the calibration has learned from; 0 means the default is used
+    private List<BatchEstimate> batches;
+    private List<SegmentCost> mostExpensiveSegments;
+
+    @Data
+    @Builder
+    public static class BatchEstimate {
+        private int index;
+        private double start;
+        private double end;
+        private int videoInputs;
+        private int imageInputs;
+        private int textInputs;
+        private int audioInputs;
+        private int overlayDepth;         // Most visual layers on screen at the same time
+        private int filterCount;
+        private int keyframedProperties;
+        private long textRasterPixels;    // Text rasterized for overlays first shown in this batch
+        private int transitionCount;
+        private double costUnits;
+        private double estimatedSeconds;
+    }
+
+    @Data
+    @Builder
+    public static class SegmentCost {
+        private String segmentId;
+        private String type;              // video, image or text
+        private double start;
+        private double end;
+        private double costUnits;
+        private List<String> reasons;
+    }
+}
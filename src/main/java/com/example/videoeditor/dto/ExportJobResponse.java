@@ -0,0 +1,27 @@
+package com.example.videoeditor.dto;
+
+import com.example.videoeditor.entity.ExportJob;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ExportJobResponse {
+    private Long id;
+    private Long projectId;
+    private ExportJob.ExportStatus status;
+    private Integer priority;
+    private Double progress;
+    private String outputFileName;
+    private String errorMessage;
+    private boolean reused; // true when an earlier export of the same timeline was returned
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Long queueMillis;
+    private Long renderMillis;
+    private Long estimatedMillis;
+    private Integer resumeCount;
+}
@@ -0,0 +1,33 @@
+package com.example.videoeditor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FilmstripIndex {
+    private String video;
+    private String sourceVersion;         // Hash of the size and modification time of the video it was made from
+    private double duration;
+    private int tileWidth;
+    private int tileHeight;
+    private List<Level> levels;           // Densest first; each level has a quarter of the tiles of the one before
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Level {
+        private int tiles;
+        private double interval;          // Seconds between thumbnails; tile i shows the frame at i * interval
+        private int columns;
+        private int rows;
+        private String sprite;            // File name next to the index, tiles laid out row by row
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.videoeditor.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@Builder
+public class IngestStatus {
+    private String path; // Relative path of the uploaded file
+    private String kind; // VIDEO, AUDIO or IMAGE
+    private boolean ready; // true once every step has finished or was not needed
+    private boolean failed;
+    private Map<String, String> steps; // Step name to PENDING, RUNNING, DONE, SKIPPED or FAILED
+    private String errorMessage;
+}
@@ -0,0 +1,82 @@
+package com.example.videoeditor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "export_jobs", indexes = {
+    @Index(name = "idx_export_jobs_project_hash", columnList = "project_id, timeline_hash")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id", nullable = false)
+    private Project project;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ExportStatus status = ExportStatus.QUEUED;
+
+    @Column(name = "priority", nullable = false)
+    private Integer priority = 0;
+
+    @Column(name = "timeline_hash", length = 64, nullable = false)
+    private String timelineHash;
+
+    @Column(name = "timeline_state", columnDefinition = "TEXT")
+    private String timelineState; // Snapshot of the session timeline at submit time
+
+    @Column(name = "output_path", length = 500)
+    private String outputPath;
+
+    @Column(name = "progress")
+    private Double progress = 0.0;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "submitted_at", nullable = false)
+    private LocalDateTime submittedAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "queue_millis")
+    private Long queueMillis;
+
+    @Column(name = "render_millis")
+    private Long renderMillis;
+
+    @Column(name = "estimated_millis")
+    private Long estimatedMillis; // Predicted render time at submit, used for shortest-job-first ordering
+
+    @Column(name = "resume_count")
+    private Integer resumeCount; // Times the job was requeued after a restart or failure
+
+    public enum ExportStatus {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED,
+        INTERRUPTED // Stopped by a server shutdown; requeued when the export workers start again
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.videoeditor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored copy of an uploaded file's content, named by the SHA-256 of its bytes. Every
+ * upload of the same bytes, through any tool, links to this copy instead of keeping its own.
+ */
+@Entity
+@Table(name = "media_blob", indexes = {
+    @Index(name = "idx_media_blob_sha256", columnList = "sha256", unique = true)
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sha256", length = 64, nullable = false)
+    private String sha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "storage_path", length = 500, nullable = false)
+    private String storagePath; // Relative to the base directory
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
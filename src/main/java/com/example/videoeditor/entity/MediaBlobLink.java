@@ -0,0 +1,44 @@
+package com.example.videoeditor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A path a tool stored an upload at, pointing to the blob holding its content. The links of
+ * a user to a blob are that user's references to it; the blob is dropped with its last link.
+ */
+@Entity
+@Table(name = "media_blob_link", indexes = {
+    @Index(name = "idx_media_blob_link_path_key", columnList = "path_key", unique = true),
+    @Index(name = "idx_media_blob_link_blob_user", columnList = "blob_id, user_id")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlobLink {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "blob_id", nullable = false)
+    private MediaBlob blob;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "path_key", length = 64, nullable = false)
+    private String pathKey; // SHA-256 of the absolute path
+
+    @Column(name = "path", length = 1000, nullable = false)
+    private String path;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
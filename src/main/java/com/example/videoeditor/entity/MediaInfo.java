@@ -0,0 +1,99 @@
+package com.example.videoeditor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * What ffprobe reports about a media file, probed once when the file is uploaded. A row
+ * is valid as long as the file keeps the size and modification time it was probed at.
+ */
+@Entity
+@Table(name = "media_info", indexes = {
+    @Index(name = "idx_media_info_file_key", columnList = "file_key", unique = true),
+    @Index(name = "idx_media_info_content_hash", columnList = "content_hash")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaInfo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "file_key", length = 64, nullable = false)
+    private String fileKey; // SHA-256 of the absolute path
+
+    @Column(name = "path", length = 1000, nullable = false)
+    private String path;
+
+    @Column(name = "file_size", nullable = false)
+    private Long fileSize;
+
+    @Column(name = "last_modified", nullable = false)
+    private Long lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash; // SHA-256 of the bytes when the file came through the blob store
+
+    @Column(name = "format_name", length = 100)
+    private String formatName;
+
+    @Column(name = "duration")
+    private Double duration; // Seconds, null when the container does not report one
+
+    @Column(name = "stream_count", nullable = false)
+    private Integer streamCount;
+
+    @Column(name = "streams", columnDefinition = "TEXT")
+    private String streams; // JSON summary of every stream
+
+    @Column(name = "video_codec", length = 50)
+    private String videoCodec;
+
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "fps")
+    private Double fps; // Average frame rate
+
+    @Column(name = "variable_frame_rate")
+    private Boolean variableFrameRate;
+
+    @Column(name = "rotation")
+    private Integer rotation; // Degrees from the display matrix or rotate tag
+
+    @Column(name = "audio_codec", length = 50)
+    private String audioCodec;
+
+    @Column(name = "audio_channels")
+    private Integer audioChannels;
+
+    @Column(name = "audio_channel_layout", length = 50)
+    private String audioChannelLayout;
+
+    @Column(name = "audio_sample_rate")
+    private Integer audioSampleRate;
+
+    @Lob
+    @Column(name = "keyframes", columnDefinition = "LONGBLOB")
+    private byte[] keyframes; // Keyframe times of the first video stream, packed big-endian doubles
+
+    @Column(name = "probed_at", nullable = false)
+    private LocalDateTime probedAt;
+
+    public boolean hasVideo() {
+        return videoCodec != null;
+    }
+
+    public boolean hasAudio() {
+        return audioCodec != null;
+    }
+}
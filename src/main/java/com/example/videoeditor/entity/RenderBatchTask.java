@@ -0,0 +1,96 @@
+package com.example.videoeditor.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One batch window of an export, queued for a render worker. Workers claim a task by
+ * taking its lease and keep the lease alive while ffmpeg runs; a task whose lease has
+ * expired is claimable again.
+ */
+@Entity
+@Table(name = "render_batch_tasks", indexes = {
+    @Index(name = "idx_render_batch_tasks_job", columnList = "job_key"),
+    @Index(name = "idx_render_batch_tasks_status", columnList = "status, lease_expires_at")
+})
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenderBatchTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_key", length = 100, nullable = false)
+    private String jobKey; // Export job the batch belongs to, e.g. export-job:17
+
+    @Column(name = "batch_index", nullable = false)
+    private Integer batchIndex;
+
+    @Column(name = "batch_start", nullable = false)
+    private Double batchStart;
+
+    @Column(name = "batch_end", nullable = false)
+    private Double batchEnd;
+
+    @Column(name = "project_id", nullable = false)
+    private Long projectId;
+
+    @Column(name = "owner_id")
+    private Long ownerId;
+
+    @Column(name = "canvas_width", nullable = false)
+    private Integer canvasWidth;
+
+    @Column(name = "canvas_height", nullable = false)
+    private Integer canvasHeight;
+
+    @Column(name = "fps")
+    private Float fps;
+
+    @Column(name = "timeline_state", columnDefinition = "LONGTEXT")
+    private String timelineState; // Snapshot of the exported timeline
+
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "output_path", length = 500, nullable = false)
+    private String outputPath; // On storage shared by the API node and the workers
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private TaskStatus status = TaskStatus.PENDING;
+
+    @Column(name = "worker_id", length = 100)
+    private String workerId;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "progress")
+    private Double progress = 0.0; // Fraction of the batch rendered, 0 to 1
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum TaskStatus {
+        PENDING,
+        CLAIMED,
+        COMPLETED,
+        FAILED
+    }
+}
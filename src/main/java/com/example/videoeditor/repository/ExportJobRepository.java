@@ -0,0 +1,17 @@
+package com.example.videoeditor.repository;
+
+import com.example.videoeditor.entity.ExportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ExportJobRepository extends JpaRepository<ExportJob, Long> {
+    List<ExportJob> findByProjectIdOrderBySubmittedAtDesc(Long projectId);
+    List<ExportJob> findByStatusIn(Collection<ExportJob.ExportStatus> statuses);
+    Optional<ExportJob> findFirstByProjectIdAndTimelineHashAndStatusOrderByFinishedAtDesc(Long projectId, String timelineHash, ExportJob.ExportStatus status);
+    Optional<ExportJob> findFirstByProjectIdAndTimelineHashAndStatusIn(Long projectId, String timelineHash, Collection<ExportJob.ExportStatus> statuses);
+}
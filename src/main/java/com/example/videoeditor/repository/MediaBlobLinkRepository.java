@@ -0,0 +1,21 @@
+package com.example.videoeditor.repository;
+
+import com.example.videoeditor.entity.MediaBlob;
+import com.example.videoeditor.entity.MediaBlobLink;
+import com.example.videoeditor.entity.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobLinkRepository extends JpaRepository<MediaBlobLink, Long> {
+    Optional<MediaBlobLink> findByPathKey(String pathKey);
+
+    List<MediaBlobLink> findByPathStartingWith(String pathPrefix);
+
+    long countByBlob(MediaBlob blob);
+
+    long countByBlobAndUser(MediaBlob blob, User user);
+}
@@ -0,0 +1,12 @@
+package com.example.videoeditor.repository;
+
+import com.example.videoeditor.entity.MediaBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, Long> {
+    Optional<MediaBlob> findBySha256(String sha256);
+}
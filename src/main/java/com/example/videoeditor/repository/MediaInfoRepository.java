@@ -0,0 +1,14 @@
+package com.example.videoeditor.repository;
+
+import com.example.videoeditor.entity.MediaInfo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MediaInfoRepository extends JpaRepository<MediaInfo, Long> {
+    Optional<MediaInfo> findByFileKey(String fileKey);
+
+    Optional<MediaInfo> findFirstByContentHash(String contentHash);
+}
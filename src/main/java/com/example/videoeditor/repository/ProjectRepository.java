@@ -3,10 +3,17 @@ package com.example.videoeditor.repository;
 import com.example.videoeditor.entity.Project;
 import com.example.videoeditor.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ProjectRepository extends JpaRepository<Project, Long> {
     List<Project> findByUserOrderByLastModifiedDesc(User user);
     Project findByIdAndUser(Long id, User user);
+
+    // Ownership check for media requests, without loading the timeline state
+    @Query("SELECT p.user.email FROM Project p WHERE p.id = :projectId")
+    Optional<String> findOwnerEmailById(@Param("projectId") Long projectId);
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.example.videoeditor.repository;
+
+import com.example.videoeditor.entity.RenderBatchTask;
+import com.example.videoeditor.entity.RenderBatchTask.TaskStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The claim, heartbeat and completion updates are conditional, so each one is a
+ * compare-and-set that only the current lease holder can win. On a pending task the
+ * lease expiry is the time a retry may start.
+ */
+@Repository
+public interface RenderBatchTaskRepository extends JpaRepository<RenderBatchTask, Long> {
+    List<RenderBatchTask> findByJobKeyOrderByBatchIndex(String jobKey);
+
+    @Query("SELECT t.id FROM RenderBatchTask t WHERE (t.status = :pending AND (t.leaseExpiresAt IS NULL OR t.leaseExpiresAt < :now)) " +
+           "OR (t.status = :claimed AND t.leaseExpiresAt < :now) ORDER BY t.id")
+    List<Long> findClaimable(@Param("pending") TaskStatus pending, @Param("claimed") TaskStatus claimed,
+                             @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RenderBatchTask t SET t.status = :claimed, t.workerId = :workerId, t.leaseExpiresAt = :leaseExpiresAt, " +
+           "t.attempts = t.attempts + 1, t.progress = 0 WHERE t.id = :id " +
+           "AND ((t.status = :pending AND (t.leaseExpiresAt IS NULL OR t.leaseExpiresAt < :now)) " +
+           "OR (t.status = :claimed AND t.leaseExpiresAt < :now))")
+    int claim(@Param("id") Long id, @Param("workerId") String workerId, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+              @Param("now") LocalDateTime now, @Param("pending") TaskStatus pending, @Param("claimed") TaskStatus claimed);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RenderBatchTask t SET t.leaseExpiresAt = :leaseExpiresAt, t.progress = :progress " +
+           "WHERE t.id = :id AND t.workerId = :workerId AND t.status = :claimed")
+    int heartbeat(@Param("id") Long id, @Param("workerId") String workerId, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt,
+                  @Param("progress") double progress, @Param("claimed") TaskStatus claimed);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE RenderBatchTask t SET t.status = :status, t.workerId = NULL, t.leaseExpiresAt = :notBefore, " +
+           "t.errorMessage = :errorMessage, t.completedAt = :completedAt, t.progress = :progress " +
+           "WHERE t.id = :id AND t.workerId = :workerId AND t.status = :claimed")
+    int release(@Param("id") Long id, @Param("workerId") String workerId, @Param("status") TaskStatus status,
+                @Param("notBefore") LocalDateTime notBefore,
+                @Param("errorMessage") String errorMessage, @Param("completedAt") LocalDateTime completedAt,
+                @Param("progress") double progress, @Param("claimed") TaskStatus claimed);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RenderBatchTask t WHERE t.jobKey = :jobKey")
+    int deleteJob(@Param("jobKey") String jobKey);
+}
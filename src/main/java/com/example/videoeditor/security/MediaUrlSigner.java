@@ -0,0 +1,100 @@
+package com.example.videoeditor.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Short-lived HMAC-SHA256 signatures for media URLs. A signed URL proves that its path was
+ * handed out to the project's owner, so serving it needs neither the JWT nor the database.
+ * Expiry times are rounded up to a whole window, so a path signed repeatedly within a window
+ * gets the same URL and browser caches keep hitting.
+ * <p>
+ * The signing key is derived from {@code app.media-url.secret}, or from the JWT secret when
+ * none is configured, with an HMAC over a fixed label. A signature therefore never doubles as
+ * a JWT signature, even when both come from the same secret.
+ */
+@Component
+public class MediaUrlSigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaUrlSigner.class);
+
+    public static final String EXPIRES_PARAM = "exp";
+    public static final String SIGNATURE_PARAM = "sig";
+
+    private static final String KEY_LABEL = "videoeditor media URL signing v1";
+
+    @Value("${app.media-url.secret:}")
+    private String secret;
+
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    @Value("${app.media-url.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private SecretKeySpec signingKey;
+
+    @PostConstruct
+    public void init() {
+        String keyMaterial = secret;
+        if (keyMaterial == null || keyMaterial.isBlank()) {
+            logger.warn("app.media-url.secret is not set; deriving the media URL key from the JWT secret");
+            keyMaterial = jwtSecret;
+        }
+        if (keyMaterial == null || keyMaterial.isBlank()) {
+            throw new IllegalStateException("No secret configured for signing media URLs");
+        }
+        signingKey = new SecretKeySpec(hmac(keyMaterial.getBytes(StandardCharsets.UTF_8), KEY_LABEL), "HmacSHA256");
+    }
+
+    /** The path with its expiry and signature as query parameters. */
+    public String sign(String path) {
+        String canonical = canonical(path);
+        long window = Math.max(60, ttlSeconds);
+        long expires = (System.currentTimeMillis() / 1000 / window + 2) * window;
+        return "/" + canonical + "?" + EXPIRES_PARAM + "=" + expires + "&" + SIGNATURE_PARAM + "=" + signature(canonical, expires);
+    }
+
+    /** True when the signature matches the path and has not expired. */
+    public boolean verify(String path, Long expires, String signature) {
+        if (expires == null || signature == null || expires < System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        byte[] expected = signature(canonical(path), expires).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Seconds until a verified URL expires; caches must not keep it longer. */
+    public long secondsLeft(Long expires) {
+        return expires == null ? 0 : Math.max(0, expires - System.currentTimeMillis() / 1000);
+    }
+
+    private String signature(String path, long expires) {
+        byte[] digest = hmac(signingKey.getEncoded(), path + "\n" + expires);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    private static byte[] hmac(byte[] key, String message) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(message.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private static String canonical(String path) {
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+}
@@ -1,13 +1,11 @@
 package com.example.videoeditor.service;
 
 import com.example.videoeditor.entity.AspectRatioMedia;
+import com.example.videoeditor.entity.MediaInfo;
 import com.example.videoeditor.entity.User;
 import com.example.videoeditor.repository.AspectRatioMediaRepository;
 import com.example.videoeditor.repository.UserRepository;
 import com.example.videoeditor.security.JwtUtil;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -21,8 +19,6 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 @Service
 public class AspectRatioService {
@@ -32,7 +28,11 @@ public class AspectRatioService {
     private final JwtUtil jwtUtil;
     private final AspectRatioMediaRepository aspectRatioMediaRepository;
     private final UserRepository userRepository;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ProgressRegistry progressRegistry;
+    private final ProcessScheduler processScheduler;
+    private final ProcessMetrics processMetrics;
+    private final MediaProbeService mediaProbeService;
+    private final MediaBlobStore mediaBlobStore;
 
     @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
     private String baseDir;
@@ -43,10 +43,18 @@ public class AspectRatioService {
     public AspectRatioService(
             JwtUtil jwtUtil,
             AspectRatioMediaRepository aspectRatioMediaRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            ProgressRegistry progressRegistry,
+            ProcessScheduler processScheduler, ProcessMetrics processMetrics,
+            MediaProbeService mediaProbeService, MediaBlobStore mediaBlobStore) {
         this.jwtUtil = jwtUtil;
         this.aspectRatioMediaRepository = aspectRatioMediaRepository;
         this.userRepository = userRepository;
+        this.progressRegistry = progressRegistry;
+        this.processScheduler = processScheduler;
+    this.processMetrics = processMetrics;
+        this.mediaProbeService = mediaProbeService;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     public AspectRatioMedia uploadMedia(User user, MultipartFile mediaFile) throws IOException {
@@ -66,7 +74,7 @@ public class AspectRatioService {
 
         String originalFileName = mediaFile.getOriginalFilename();
         File inputFile = new File(originalDir, originalFileName);
-        mediaFile.transferTo(inputFile);
+        mediaBlobStore.store(mediaFile, user, inputFile);
         logger.debug("Saved input media to: {}", inputFile.getAbsolutePath());
 
         if (inputFile.length() == 0) {
@@ -352,6 +360,8 @@ public class AspectRatioService {
             throw new IOException("Invalid video duration");
         }
 
+        String progressKey = ProgressRegistry.key("aspect-ratio", mediaId);
+        progressRegistry.start(progressKey, user.getId());
         try {
             renderAspectRatioVideo(inputFile, new File(outputFilePath), media, originalWidth, originalHeight, fps, mediaId, totalDuration);
 
@@ -364,6 +374,7 @@ public class AspectRatioService {
             media.setStatus("SUCCESS");
             media.setProgress(100.0);
             aspectRatioMediaRepository.save(media);
+            progressRegistry.complete(progressKey);
 
             logger.info("Successfully processed aspect ratio for user: {}, mediaId: {}", user.getId(), mediaId);
             return media;
@@ -372,6 +383,7 @@ public class AspectRatioService {
             media.setStatus("FAILED");
             media.setProgress(0.0);
             aspectRatioMediaRepository.save(media);
+            progressRegistry.fail(progressKey, e.getMessage());
             throw e;
         }
     }
@@ -403,122 +415,26 @@ public class AspectRatioService {
     }
 
     private void validateInputFile(File inputFile) throws IOException, InterruptedException {
-        List<String> command = Arrays.asList(
-                ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-                "-i", inputFile.getAbsolutePath(),
-                "-show_streams",
-                "-show_format",
-                "-print_format", "json",
-                "-v", "quiet"
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line);
-            }
-        }
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            logger.error("FFprobe failed to validate input file {}: {}", inputFile.getAbsolutePath(), output.toString());
-            throw new IOException("FFprobe failed to validate input file: " + output.toString());
-        }
-
-        try {
-            Map<String, Object> result = objectMapper.readValue(output.toString(), new TypeReference<Map<String, Object>>() {});
-            List<?> streams = (List<?>) result.getOrDefault("streams", Collections.emptyList());
-            if (streams.isEmpty()) {
-                logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
-                throw new IOException("No streams found in input file");
-            }
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to parse FFprobe output for {}: {}", inputFile.getAbsolutePath(), output.toString());
-            throw new IOException("Failed to parse FFprobe output: " + output.toString());
+        if (mediaProbeService.probe(inputFile).getStreamCount() == 0) {
+            logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
+            throw new IOException("No streams found in input file");
         }
     }
 
     private Map<String, Object> getVideoInfo(File inputFile) throws IOException, InterruptedException {
-        List<String> command = Arrays.asList(
-                ffmpegPath,
-                "-i", inputFile.getAbsolutePath(),
-                "-f", "null",
-                "-"
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
+        MediaInfo mediaInfo = mediaProbeService.probe(inputFile);
+        if (!mediaInfo.hasVideo() || mediaInfo.getFps() == null) {
+            throw new IOException("Could not read video info of " + inputFile.getName());
         }
-
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new IOException("FFmpeg failed to get video info: " + output.toString());
-        }
-
         Map<String, Object> info = new HashMap<>();
-        String outputStr = output.toString();
-        Pattern resolutionPattern = Pattern.compile("Stream.*Video:.* (\\d+)x(\\d+).*?([0-9.]+) fps");
-        Matcher matcher = resolutionPattern.matcher(outputStr);
-        if (matcher.find()) {
-            info.put("width", Integer.parseInt(matcher.group(1)));
-            info.put("height", Integer.parseInt(matcher.group(2)));
-            info.put("fps", Float.parseFloat(matcher.group(3)));
-        } else {
-            throw new IOException("Could not parse video info from FFmpeg output");
-        }
-
+        info.put("width", mediaInfo.getWidth());
+        info.put("height", mediaInfo.getHeight());
+        info.put("fps", mediaInfo.getFps().floatValue());
         return info;
     }
 
     private double getVideoDuration(File videoFile) throws IOException, InterruptedException {
-        List<String> command = Arrays.asList(
-                ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-                "-i", videoFile.getAbsolutePath(),
-                "-show_entries", "format=duration",
-                "-v", "quiet",
-                "-of", "json"
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line);
-                logger.debug("FFprobe output: {}", line);
-            }
-        }
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            logger.error("FFprobe failed to get video duration for {}: {}", videoFile.getAbsolutePath(), output.toString());
-            throw new IOException("FFprobe failed to get video duration: " + output.toString());
-        }
-
-        try {
-            Map<String, Object> result = objectMapper.readValue(output.toString(), new TypeReference<Map<String, Object>>() {});
-            Map<String, Object> format = (Map<String, Object>) result.get("format");
-            if (format == null || !format.containsKey("duration")) {
-                logger.error("No duration found in FFprobe output for {}: {}", videoFile.getAbsolutePath(), output.toString());
-                throw new IOException("No duration found in FFprobe output");
-            }
-            return Double.parseDouble(format.get("duration").toString());
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to parse FFprobe output for {}: {}", videoFile.getAbsolutePath(), output.toString());
-            throw new IOException("Failed to parse FFprobe output: " + output.toString());
-        }
+        return mediaProbeService.duration(videoFile);
     }
 
     private void renderAspectRatioVideo(File inputFile, File outputFile, AspectRatioMedia media, int originalWidth, int originalHeight, float fps, Long mediaId, double totalDuration) throws IOException, InterruptedException {
@@ -617,8 +533,8 @@ public class AspectRatioService {
             .orElseThrow(() -> new RuntimeException("Media not found: " + mediaId));
 
         List<String> updatedCommand = new ArrayList<>(command);
-        updatedCommand.add("-progress");
-        updatedCommand.add("pipe:");
+        // -progress must come before the output path
+        updatedCommand.addAll(updatedCommand.size() - 1, List.of("-progress", "pipe:1"));
 
         ProcessBuilder processBuilder = new ProcessBuilder(updatedCommand);
         processBuilder.redirectErrorStream(true);
@@ -640,32 +556,19 @@ public class AspectRatioService {
         }
 
         logger.debug("Executing FFmpeg command: {}", String.join(" ", updatedCommand));
-        Process process = processBuilder.start();
+        String progressKey = ProgressRegistry.key("aspect-ratio", mediaId);
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, media.getUser().getId(), progressKey);
         StringBuilder output = new StringBuilder();
-        double lastProgress = -1.0;
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 output.append(line).append("\n");
                 logger.debug("FFmpeg: {}", line);
-                if (line.startsWith("out_time_ms=") && !line.equals("out_time_ms=N/A")) {
-                    try {
-                        long outTimeUs = Long.parseLong(line.replace("out_time_ms=", ""));
-                        double currentTime = outTimeUs / 1_000_000.0;
-                        double totalProgress = Math.min(currentTime / totalDuration * 100.0, 100.0);
-
-                        int roundedProgress = (int) Math.round(totalProgress);
-                        if (roundedProgress != (int) lastProgress && roundedProgress >= 0 && roundedProgress <= 100 && roundedProgress % 10 == 0) {
-                            media.setProgress((double) roundedProgress);
-                            media.setStatus("PROCESSING");
-                            aspectRatioMediaRepository.save(media);
-                            logger.info("Progress updated: {}% for mediaId: {}", roundedProgress, mediaId);
-                            lastProgress = roundedProgress;
-                        }
-                    } catch (NumberFormatException e) {
-                        logger.error("Failed to parse out_time_ms: {}", line);
-                    }
+                processMetrics.observe(process, line);
+                double currentTime = ProgressRegistry.parseOutTimeSeconds(line);
+                if (currentTime >= 0) {
+                    progressRegistry.update(progressKey, Math.min(currentTime / totalDuration * 100.0, 100.0));
                 }
             }
         }
@@ -0,0 +1,168 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+
+/**
+ * On-disk cache of rendered export batches, keyed by a hash of everything that
+ * affects the batch. A re-export only renders the windows whose key changed; the
+ * rest are linked back into the export from here. Every batch is stored as soon as
+ * it is rendered, so the cache is also the checkpoint a failed or interrupted export
+ * resumes from. Entries carry the SHA-256 of their content and are checked before
+ * reuse. Least recently used entries are evicted once the cache grows past its size limit.
+ */
+@Service
+public class BatchCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchCacheService.class);
+
+    @Value("${app.render.batch-cache-dir:cache/batches}")
+    private String cacheDirPath;
+
+    @Value("${app.render.batch-cache-max-bytes:21474836480}")
+    private long maxCacheBytes;
+
+    private File cacheDir;
+
+    @PostConstruct
+    public void init() {
+        cacheDir = new File(cacheDirPath);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            logger.error("Failed to create batch cache directory: {}", cacheDir.getAbsolutePath());
+        }
+        // Stores cut short by a crash never reached their final name
+        File[] staged = cacheDir.listFiles((dir, name) -> name.endsWith(".part"));
+        if (staged != null) {
+            for (File file : staged) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Links the cached batch for the key to the target path. Returns false on a miss,
+     * including an entry whose content no longer matches its recorded hash.
+     */
+    public boolean restore(String key, String targetPath) {
+        File cached = cacheFile(key);
+        if (!cached.exists() || cached.length() == 0) {
+            return false;
+        }
+        try {
+            if (!verify(key, cached)) {
+                logger.warn("Cached batch {} is corrupt, discarding it", key);
+                cached.delete();
+                hashFile(key).delete();
+                return false;
+            }
+            Path target = Path.of(targetPath);
+            Files.deleteIfExists(target);
+            try {
+                Files.createLink(target, cached.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(cached.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.setLastModifiedTime(cached.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+            logger.debug("Batch cache hit for {}", key);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to restore cached batch {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    public void store(String key, String renderedPath) {
+        File rendered = new File(renderedPath);
+        if (!rendered.exists() || rendered.length() == 0) {
+            return;
+        }
+        File cached = cacheFile(key);
+        try {
+            Path staging = new File(cacheDir, key + "." + System.nanoTime() + ".part").toPath();
+            try {
+                Files.createLink(staging, rendered.toPath());
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(rendered.toPath(), staging, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // The hash goes in first, so an entry is never visible without it
+            Path hashStaging = new File(cacheDir, key + "." + System.nanoTime() + ".sha256.part").toPath();
+            Files.writeString(hashStaging, sha256(staging));
+            Files.move(hashStaging, hashFile(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(staging, cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to store batch {} in cache: {}", key, e.getMessage());
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    private synchronized void evictIfNeeded() {
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(".mp4"));
+        if (entries == null) {
+            return;
+        }
+        long totalBytes = Arrays.stream(entries).mapToLong(File::length).sum();
+        if (totalBytes <= maxCacheBytes) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalBytes <= maxCacheBytes) {
+                break;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                new File(cacheDir, entry.getName().replaceAll("\\.mp4$", ".sha256")).delete();
+                totalBytes -= length;
+                logger.debug("Evicted cached batch {}", entry.getName());
+            }
+        }
+    }
+
+    private boolean verify(String key, File cached) throws IOException {
+        File hash = hashFile(key);
+        // Entries from before hashes were recorded are trusted as they are
+        return !hash.exists() || Files.readString(hash.toPath()).trim().equals(sha256(cached.toPath()));
+    }
+
+    private static String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private File cacheFile(String key) {
+        return new File(cacheDir, key + ".mp4");
+    }
+
+    private File hashFile(String key) {
+        return new File(cacheDir, key + ".sha256");
+    }
+}
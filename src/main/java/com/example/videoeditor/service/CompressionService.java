@@ -28,6 +28,8 @@ public class CompressionService {
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
     private final CompressedMediaRepository compressedMediaRepository;
+    private final ProcessScheduler processScheduler;
+    private final MediaBlobStore mediaBlobStore;
 
     @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
     private String baseDir;
@@ -41,10 +43,14 @@ public class CompressionService {
     public CompressionService(
             JwtUtil jwtUtil,
             UserRepository userRepository,
-            CompressedMediaRepository compressedMediaRepository) {
+            CompressedMediaRepository compressedMediaRepository,
+            ProcessScheduler processScheduler,
+            MediaBlobStore mediaBlobStore) {
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
         this.compressedMediaRepository = compressedMediaRepository;
+        this.processScheduler = processScheduler;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     public CompressedMedia uploadMedia(User user, MultipartFile mediaFile, String targetSize) throws IOException {
@@ -78,7 +84,7 @@ public class CompressionService {
         // Save input file
         String originalFileName = mediaFile.getOriginalFilename();
         File inputFile = new File(originalDir, originalFileName);
-        mediaFile.transferTo(inputFile);
+        mediaBlobStore.store(mediaFile, user, inputFile);
         logger.debug("Saved input media to: {}", inputFile.getAbsolutePath());
 
         if (inputFile.length() == 0) {
@@ -152,7 +158,7 @@ public class CompressionService {
         logger.debug("Executing command: {}", String.join(" ", command));
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.ENCODE, user.getId());
 
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -0,0 +1,397 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.ExportEstimate;
+import com.example.videoeditor.dto.ExportJobResponse;
+import com.example.videoeditor.dto.TimelineState;
+import com.example.videoeditor.entity.ExportJob;
+import com.example.videoeditor.entity.Project;
+import com.example.videoeditor.entity.User;
+import com.example.videoeditor.repository.ExportJobRepository;
+import com.example.videoeditor.repository.ProjectRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Queue of project exports. Submitting only records the job; a small set of export
+ * workers drains the queue by priority and renders off the request thread. Rendered
+ * batches are checkpointed in the batch cache, so a job stopped by a shutdown, or left
+ * running by a crash, is requeued and resumes from its first missing batch. Within a
+ * priority, shorter predicted renders go first, but only for as long as the wait they
+ * add to a longer job stays below a multiple of that job's own estimate.
+ */
+@Service
+public class ExportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportJobService.class);
+
+    private final ExportJobRepository exportJobRepository;
+    private final ProjectRepository projectRepository;
+    private final VideoEditingService videoEditingService;
+    private final ObjectMapper objectMapper;
+    private final ProgressRegistry progressRegistry;
+    private final TimelineComplexityAnalyzer timelineComplexityAnalyzer;
+    private final RenderBatchQueue renderBatchQueue;
+
+    // 0 on render worker nodes, which only render batches and leave the export queue alone
+    @Value("${app.export.workers:2}")
+    private int workerCount;
+
+    // Restarts a running job survives before it is marked failed
+    @Value("${app.export.max-resumes:2}")
+    private int maxResumes;
+
+    // 0 turns shortest-job-first off and serves each priority in submission order
+    @Value("${app.export.shortest-first-weight:1.0}")
+    private double shortestFirstWeight;
+
+    private final PriorityBlockingQueue<QueuedExport> queue = new PriorityBlockingQueue<>();
+    private final Map<Long, RenderCancellation> runningJobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean stopping;
+    private ExecutorService workers;
+
+    public ExportJobService(
+            ExportJobRepository exportJobRepository,
+            ProjectRepository projectRepository,
+            VideoEditingService videoEditingService,
+            ObjectMapper objectMapper,
+            ProgressRegistry progressRegistry,
+            TimelineComplexityAnalyzer timelineComplexityAnalyzer,
+            RenderBatchQueue renderBatchQueue) {
+        this.exportJobRepository = exportJobRepository;
+        this.projectRepository = projectRepository;
+        this.videoEditingService = videoEditingService;
+        this.objectMapper = objectMapper;
+        this.progressRegistry = progressRegistry;
+        this.timelineComplexityAnalyzer = timelineComplexityAnalyzer;
+        this.renderBatchQueue = renderBatchQueue;
+    }
+
+    @PostConstruct
+    public void startWorkers() {
+        if (workerCount <= 0) {
+            logger.info("Export workers disabled on this node");
+            return;
+        }
+        // Jobs stopped by a shutdown or a crash start over, but their finished batches come from the cache.
+        // Only crashes count against max-resumes, so a job that keeps crashing the server is given up on
+        for (ExportJob job : exportJobRepository.findByStatusIn(
+                EnumSet.of(ExportJob.ExportStatus.RUNNING, ExportJob.ExportStatus.INTERRUPTED))) {
+            renderBatchQueue.deleteJob(ProgressRegistry.key("export-job", job.getId()));
+            int resumes = job.getResumeCount() != null ? job.getResumeCount() : 0;
+            if (job.getStatus() == ExportJob.ExportStatus.INTERRUPTED || resumes < maxResumes) {
+                job.setStatus(ExportJob.ExportStatus.QUEUED);
+                job.setResumeCount(resumes + 1);
+                job.setStartedAt(null);
+                logger.info("Resuming export job {} interrupted by server restart", job.getId());
+            } else {
+                job.setStatus(ExportJob.ExportStatus.FAILED);
+                job.setErrorMessage("Interrupted by server restart");
+                job.setFinishedAt(LocalDateTime.now());
+            }
+            exportJobRepository.save(job);
+        }
+        for (ExportJob job : exportJobRepository.findByStatusIn(EnumSet.of(ExportJob.ExportStatus.QUEUED))) {
+            enqueue(job);
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "export-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::drainQueue);
+        }
+        logger.info("Started {} export workers, {} jobs queued", workerCount, queue.size());
+    }
+
+    /**
+     * Stops the running renders and records their jobs as INTERRUPTED rather than cancelled,
+     * so the next start requeues them.
+     */
+    @PreDestroy
+    public void stopWorkers() {
+        stopping = true;
+        runningJobs.values().forEach(RenderCancellation::cancel);
+        if (workers != null) {
+            workers.shutdownNow();
+            try {
+                // The workers save the interrupted state while the repositories are still open
+                if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                    logger.warn("Export workers did not stop in time; their jobs resume as crashed");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public ExportJobResponse submit(User user, Long projectId, String sessionId, int priority) throws JsonProcessingException {
+        Project project = findProject(user, projectId);
+        TimelineState timelineState = sessionTimeline(projectId, sessionId);
+        String timelineHash = TimelineHashing.hash(timelineState, project.getWidth(), project.getHeight(), project.getFps());
+
+        // An unchanged timeline that was already exported is returned as-is
+        Optional<ExportJob> completed = exportJobRepository.findFirstByProjectIdAndTimelineHashAndStatusOrderByFinishedAtDesc(
+                projectId, timelineHash, ExportJob.ExportStatus.COMPLETED);
+        if (completed.isPresent() && completed.get().getOutputPath() != null && new File(completed.get().getOutputPath()).exists()) {
+            logger.info("Reusing export job {} for project {} (timeline unchanged)", completed.get().getId(), projectId);
+            return mapToResponse(completed.get(), true);
+        }
+
+        Optional<ExportJob> active = exportJobRepository.findFirstByProjectIdAndTimelineHashAndStatusIn(
+                projectId, timelineHash, EnumSet.of(ExportJob.ExportStatus.QUEUED, ExportJob.ExportStatus.RUNNING,
+                        ExportJob.ExportStatus.INTERRUPTED));
+        if (active.isPresent()) {
+            return mapToResponse(active.get(), true);
+        }
+
+        ExportEstimate estimate = timelineComplexityAnalyzer.estimate(timelineState, project.getWidth(), project.getHeight(), project.getFps());
+        ExportJob job = ExportJob.builder()
+                .project(project)
+                .user(project.getUser())
+                .status(ExportJob.ExportStatus.QUEUED)
+                .priority(priority)
+                .timelineHash(timelineHash)
+                .timelineState(objectMapper.writeValueAsString(timelineState))
+                .progress(0.0)
+                .submittedAt(LocalDateTime.now())
+                .estimatedMillis(Math.round(estimate.getEstimatedSeconds() * 1000))
+                .build();
+        ExportJob saved = exportJobRepository.save(job);
+        enqueue(saved);
+        logger.info("Queued export job {} for project {} with priority {}, estimated {} ms",
+                saved.getId(), projectId, priority, saved.getEstimatedMillis());
+        return mapToResponse(saved, false);
+    }
+
+    /** Predicted render time and cost of exporting the session's current timeline, without queueing it. */
+    public ExportEstimate estimate(User user, Long projectId, String sessionId) {
+        Project project = findProject(user, projectId);
+        TimelineState timelineState = sessionTimeline(projectId, sessionId);
+        return timelineComplexityAnalyzer.estimate(timelineState, project.getWidth(), project.getHeight(), project.getFps());
+    }
+
+    public ExportJobResponse getJob(Long projectId, Long jobId) {
+        return mapToResponse(findJob(projectId, jobId), false);
+    }
+
+    public List<ExportJobResponse> getJobs(Long projectId) {
+        return exportJobRepository.findByProjectIdOrderBySubmittedAtDesc(projectId).stream()
+                .map(job -> mapToResponse(job, false))
+                .collect(Collectors.toList());
+    }
+
+    public ExportJobResponse cancel(Long projectId, Long jobId) {
+        ExportJob job = findJob(projectId, jobId);
+        if (job.getStatus() == ExportJob.ExportStatus.QUEUED || job.getStatus() == ExportJob.ExportStatus.INTERRUPTED) {
+            queue.removeIf(queued -> queued.jobId.equals(jobId));
+            job.setStatus(ExportJob.ExportStatus.CANCELLED);
+            job.setFinishedAt(LocalDateTime.now());
+            exportJobRepository.save(job);
+        } else if (job.getStatus() == ExportJob.ExportStatus.RUNNING) {
+            RenderCancellation cancellation = runningJobs.get(jobId);
+            if (cancellation != null) {
+                cancellation.cancel(); // the worker records the CANCELLED status once ffmpeg has exited
+            }
+        }
+        return mapToResponse(job, false);
+    }
+
+    /**
+     * Requeues a failed, cancelled or interrupted job with its original timeline. Batches that
+     * were rendered before it stopped are restored from the cache, so only the missing windows
+     * are rendered.
+     */
+    public ExportJobResponse resume(Long projectId, Long jobId) {
+        ExportJob job = findJob(projectId, jobId);
+        if (job.getStatus() != ExportJob.ExportStatus.FAILED && job.getStatus() != ExportJob.ExportStatus.CANCELLED
+                && job.getStatus() != ExportJob.ExportStatus.INTERRUPTED) {
+            throw new RuntimeException("Export job " + jobId + " is " + job.getStatus() + " and cannot be resumed");
+        }
+        job.setStatus(ExportJob.ExportStatus.QUEUED);
+        job.setResumeCount((job.getResumeCount() != null ? job.getResumeCount() : 0) + 1);
+        job.setErrorMessage(null);
+        job.setStartedAt(null);
+        job.setFinishedAt(null);
+        job.setProgress(0.0);
+        ExportJob saved = exportJobRepository.save(job);
+        enqueue(saved);
+        logger.info("Resuming export job {} for project {}", jobId, projectId);
+        return mapToResponse(saved, false);
+    }
+
+    public File getOutputFile(Long projectId, Long jobId) {
+        ExportJob job = findJob(projectId, jobId);
+        if (job.getStatus() != ExportJob.ExportStatus.COMPLETED || job.getOutputPath() == null) {
+            throw new RuntimeException("Export job " + jobId + " has no output yet");
+        }
+        return new File(job.getOutputPath());
+    }
+
+    private Project findProject(User user, Long projectId) {
+        Project project = projectRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
+        if (user != null && !project.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Not authorized to export this project");
+        }
+        return project;
+    }
+
+    private TimelineState sessionTimeline(Long projectId, String sessionId) {
+        VideoEditingService.EditSession session = videoEditingService.getSession(sessionId);
+        if (!projectId.equals(session.getProjectId())) {
+            throw new RuntimeException("Session does not match project");
+        }
+        return session.getTimelineState();
+    }
+
+    private ExportJob findJob(Long projectId, Long jobId) {
+        return exportJobRepository.findById(jobId)
+                .filter(job -> job.getProject().getId().equals(projectId))
+                .orElseThrow(() -> new RuntimeException("Export job not found: " + jobId));
+    }
+
+    private void enqueue(ExportJob job) {
+        // Jobs queued before estimates existed rank purely by submission time
+        long estimatedMillis = job.getEstimatedMillis() != null ? job.getEstimatedMillis() : 0;
+        long submittedMillis = job.getSubmittedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long rank = submittedMillis + Math.round(shortestFirstWeight * estimatedMillis);
+        queue.add(new QueuedExport(job.getId(), job.getPriority() != null ? job.getPriority() : 0, rank, sequence.incrementAndGet()));
+    }
+
+    private void drainQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                QueuedExport next = queue.take();
+                runJob(next.jobId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Export worker failed to process job", e);
+            }
+        }
+    }
+
+    private void runJob(Long jobId) {
+        ExportJob job = exportJobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != ExportJob.ExportStatus.QUEUED) {
+            return;
+        }
+
+        RenderCancellation cancellation = new RenderCancellation();
+        runningJobs.put(jobId, cancellation);
+        LocalDateTime startedAt = LocalDateTime.now();
+        job.setStatus(ExportJob.ExportStatus.RUNNING);
+        job.setStartedAt(startedAt);
+        job.setQueueMillis(Duration.between(job.getSubmittedAt(), startedAt).toMillis());
+        exportJobRepository.save(job);
+
+        try {
+            TimelineState timelineState = objectMapper.readValue(job.getTimelineState(), TimelineState.class);
+            File output = videoEditingService.exportProject(job.getProject().getId(), jobId, timelineState, cancellation);
+            job.setOutputPath(output.getPath());
+            job.setProgress(100.0);
+            job.setStatus(ExportJob.ExportStatus.COMPLETED);
+            logger.info("Export job {} completed: {}", jobId, output.getPath());
+        } catch (Exception e) {
+            if (stopping) {
+                // Killed by the shutdown, not by the user or the render itself
+                job.setStatus(ExportJob.ExportStatus.INTERRUPTED);
+                logger.info("Export job {} interrupted by shutdown, resumes on the next start", jobId);
+            } else if (e instanceof CancellationException) {
+                job.setStatus(ExportJob.ExportStatus.CANCELLED);
+                logger.info("Export job {} cancelled", jobId);
+            } else {
+                job.setStatus(cancellation.isCancelled() ? ExportJob.ExportStatus.CANCELLED : ExportJob.ExportStatus.FAILED);
+                job.setErrorMessage(truncate(e.getMessage()));
+                logger.error("Export job {} failed", jobId, e);
+            }
+        } finally {
+            runningJobs.remove(jobId);
+            LocalDateTime finishedAt = LocalDateTime.now();
+            if (job.getStatus() != ExportJob.ExportStatus.INTERRUPTED) {
+                job.setFinishedAt(finishedAt);
+            }
+            job.setRenderMillis(Duration.between(startedAt, finishedAt).toMillis());
+            exportJobRepository.save(job);
+        }
+    }
+
+    private String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    private ExportJobResponse mapToResponse(ExportJob job, boolean reused) {
+        return ExportJobResponse.builder()
+                .id(job.getId())
+                .projectId(job.getProject().getId())
+                .status(job.getStatus())
+                .priority(job.getPriority())
+                .progress(job.getStatus() == ExportJob.ExportStatus.RUNNING
+                        ? progressRegistry.get(ProgressRegistry.key("export-job", job.getId()))
+                                .map(ProgressRegistry.Snapshot::getProgress).orElse(job.getProgress())
+                        : job.getProgress())
+                .outputFileName(job.getOutputPath() != null ? new File(job.getOutputPath()).getName() : null)
+                .errorMessage(job.getErrorMessage())
+                .reused(reused)
+                .submittedAt(job.getSubmittedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .queueMillis(job.getQueueMillis())
+                .renderMillis(job.getRenderMillis())
+                .estimatedMillis(job.getEstimatedMillis())
+                .resumeCount(job.getResumeCount())
+                .build();
+    }
+
+    private static class QueuedExport implements Comparable<QueuedExport> {
+        private final Long jobId;
+        private final int priority;
+        private final long rank;
+        private final long sequence;
+
+        private QueuedExport(Long jobId, int priority, long rank, long sequence) {
+            this.jobId = jobId;
+            this.priority = priority;
+            this.rank = rank;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(QueuedExport other) {
+            // Higher priority first, then the earliest submission time pushed back by the estimate
+            int byPriority = Integer.compare(other.priority, priority);
+            if (byPriority != 0) return byPriority;
+            int byRank = Long.compare(rank, other.rank);
+            return byRank != 0 ? byRank : Long.compare(sequence, other.sequence);
+        }
+    }
+}
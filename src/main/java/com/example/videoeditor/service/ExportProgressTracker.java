@@ -0,0 +1,60 @@
+package com.example.videoeditor.service;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Combines the progress of all batches of one export into a single percentage.
+ * Batches may finish in any order, so each batch reports its own completed
+ * fraction and the total is the duration-weighted sum. The listener is only
+ * notified once the total has advanced by at least one step.
+ */
+public class ExportProgressTracker {
+
+    private final double[] batchWeights;
+    private final double[] batchFractions;
+    private final double step;
+    private final DoubleConsumer listener;
+    private double lastReported = -1;
+
+    public ExportProgressTracker(double[] batchDurations, double step, DoubleConsumer listener) {
+        double total = 0.0;
+        for (double duration : batchDurations) {
+            total += duration;
+        }
+        this.batchWeights = new double[batchDurations.length];
+        for (int i = 0; i < batchDurations.length; i++) {
+            batchWeights[i] = total > 0 ? batchDurations[i] / total : 0.0;
+        }
+        this.batchFractions = new double[batchDurations.length];
+        this.step = step > 0 ? step : 1;
+        this.listener = listener;
+    }
+
+    public synchronized void update(int batchIndex, double fraction) {
+        if (batchIndex < 0 || batchIndex >= batchFractions.length) {
+            return;
+        }
+        batchFractions[batchIndex] = Math.max(batchFractions[batchIndex], Math.min(1.0, Math.max(0.0, fraction)));
+        double progress = getProgress();
+        if (progress - lastReported >= step || (progress >= 100.0 && lastReported < 100.0)) {
+            lastReported = progress;
+            listener.accept(progress);
+        }
+    }
+
+    public void complete(int batchIndex) {
+        update(batchIndex, 1.0);
+    }
+
+    public synchronized double getProgress() {
+        double progress = 0.0;
+        for (int i = 0; i < batchFractions.length; i++) {
+            progress += batchWeights[i] * batchFractions[i];
+        }
+        return Math.min(progress * 100.0, 100.0);
+    }
+
+    public int getBatchCount() {
+        return batchFractions.length;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.FilmstripIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thumbnail sprite sheets for the clips of the timeline. After a video is uploaded it is
+ * decoded once in the background into a few sprite sheets of evenly spaced thumbnails,
+ * each level with a quarter of the tiles of the one before, plus an {@code index.json}
+ * describing them. Everything goes to {@code filmstrips/<video file name>/} next to the
+ * video; the index is written last, so its presence means the filmstrip was finished. It
+ * records the version of the video it was made from, and a filmstrip whose version no
+ * longer matches the video is made again.
+ */
+@Service
+public class FilmstripService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilmstripService.class);
+
+    public static final String INDEX_FILE = "index.json";
+    private static final int COLUMNS = 10;
+    // Tiles of each level relative to the one before
+    private static final int LEVEL_STEP = 4;
+
+    @Value("${app.ffmpeg-path:C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffmpeg.exe}")
+    private String ffmpegPath;
+
+    @Value("${app.filmstrip.tile-height:90}")
+    private int tileHeight;
+
+    // Upper bound for the densest level; short clips get fewer tiles
+    @Value("${app.filmstrip.max-tiles:256}")
+    private int maxTiles;
+
+    @Value("${app.filmstrip.tiles-per-second:2}")
+    private double tilesPerSecond;
+
+    @Value("${app.filmstrip.levels:3}")
+    private int levels;
+
+    @Value("${app.filmstrip.workers:1}")
+    private int workerCount;
+
+    private final ProcessScheduler processScheduler;
+    private final ObjectMapper objectMapper;
+    private final MediaProbeService mediaProbeService;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private ExecutorService workers;
+
+    public FilmstripService(ProcessScheduler processScheduler, ObjectMapper objectMapper,
+                            MediaProbeService mediaProbeService) {
+        this.processScheduler = processScheduler;
+        this.objectMapper = objectMapper;
+        this.mediaProbeService = mediaProbeService;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, workerCount), runnable -> {
+            Thread thread = new Thread(runnable, "filmstrip-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    public static File filmstripDir(File videoFile) {
+        return new File(new File(videoFile.getParentFile(), "filmstrips"), videoFile.getName());
+    }
+
+    /** Version of the video's content a filmstrip records; sprite names carry a prefix of it. */
+    public static String sourceVersion(File videoFile) throws IOException {
+        return TimelineHashing.hash(videoFile.length(), videoFile.lastModified());
+    }
+
+    /** Whether the filmstrip of the video is finished and was made from the video as it is now. */
+    public boolean isCurrent(File videoFile) {
+        File indexFile = new File(filmstripDir(videoFile), INDEX_FILE);
+        if (!indexFile.isFile()) {
+            return false;
+        }
+        try {
+            FilmstripIndex index = objectMapper.readValue(indexFile, FilmstripIndex.class);
+            return sourceVersion(videoFile).equals(index.getSourceVersion());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the video's current version in a filmstrip copied from another file with the same
+     * content, so it counts as current for this one. The sprites are left as they are.
+     */
+    public void adopt(File videoFile) throws IOException {
+        File dir = filmstripDir(videoFile);
+        FilmstripIndex index = objectMapper.readValue(new File(dir, INDEX_FILE), FilmstripIndex.class);
+        index.setVideo(videoFile.getName());
+        index.setSourceVersion(sourceVersion(videoFile));
+        writeIndex(dir, index);
+    }
+
+    /**
+     * Queues the filmstrip of the video unless it is current or already queued. Returns true
+     * when the filmstrip is still to come.
+     */
+    public boolean requestIfMissing(File videoFile, Long userId) {
+        if (!videoFile.isFile()) {
+            return false;
+        }
+        if (isCurrent(videoFile)) {
+            return false;
+        }
+        String key = videoFile.getAbsolutePath();
+        if (pending.add(key)) {
+            workers.submit(() -> {
+                try {
+                    generate(videoFile, userId);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.warn("Failed to generate filmstrip for {}: {}", videoFile.getName(), e.getMessage());
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Generates the filmstrip on the calling thread unless it is current or already being
+     * generated. Returns false when there was nothing to do.
+     */
+    public boolean generateIfMissing(File videoFile, Long userId) throws IOException, InterruptedException {
+        if (!videoFile.isFile() || isCurrent(videoFile)) {
+            return false;
+        }
+        String key = videoFile.getAbsolutePath();
+        if (!pending.add(key)) {
+            return false;
+        }
+        try {
+            generate(videoFile, userId);
+            return true;
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    /** Decodes the video once and writes every level's sprite sheet and the index. */
+    public FilmstripIndex generate(File videoFile, Long userId) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        Double probedDuration = mediaProbeService.probe(videoFile).getDuration();
+        double duration = probedDuration != null ? probedDuration : 0;
+        if (duration <= 0) {
+            throw new IOException("Could not read the duration of " + videoFile.getName());
+        }
+        int levelCount = Math.max(1, levels);
+        int smallestLevel = (int) Math.pow(LEVEL_STEP, levelCount - 1);
+        // The densest level is a multiple of the step, so every coarser level picks every 4th tile of the one before
+        int denseTiles = (int) Math.ceil(Math.min(maxTiles, Math.max(1.0, duration * tilesPerSecond)) / smallestLevel) * smallestLevel;
+
+        File dir = filmstripDir(videoFile);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create filmstrip directory: " + dir.getAbsolutePath());
+        }
+        // The source's size and time go into the sprite names, so a sprite URL never changes content
+        String sourceVersion = sourceVersion(videoFile);
+        String version = sourceVersion.substring(0, 12);
+
+        StringBuilder filterComplex = new StringBuilder();
+        filterComplex.append(String.format("[0:v]fps=%.6f,scale=-2:%d,split=%d", denseTiles / duration, tileHeight, levelCount));
+        for (int level = 0; level < levelCount; level++) {
+            filterComplex.append("[s").append(level).append("]");
+        }
+        List<String> outputArguments = new ArrayList<>();
+        List<FilmstripIndex.Level> indexLevels = new ArrayList<>();
+        List<File[]> outputs = new ArrayList<>();
+        for (int level = 0; level < levelCount; level++) {
+            int step = (int) Math.pow(LEVEL_STEP, level);
+            int tiles = denseTiles / step;
+            int columns = Math.min(COLUMNS, tiles);
+            int rows = (int) Math.ceil((double) tiles / columns);
+            filterComplex.append(";[s").append(level).append("]");
+            if (step > 1) {
+                filterComplex.append("select='not(mod(n,").append(step).append("))',");
+            }
+            filterComplex.append("tile=").append(columns).append("x").append(rows).append("[l").append(level).append("]");
+
+            String spriteName = "level" + level + "_" + version + ".jpg";
+            File staging = new File(dir, "staging_" + spriteName);
+            outputs.add(new File[]{staging, new File(dir, spriteName)});
+            outputArguments.addAll(List.of("-map", "[l" + level + "]", "-frames:v", "1", "-q:v", "5", "-y", staging.getAbsolutePath()));
+            indexLevels.add(FilmstripIndex.Level.builder()
+                    .tiles(tiles)
+                    .interval(duration / tiles)
+                    .columns(columns)
+                    .rows(rows)
+                    .sprite(spriteName)
+                    .build());
+        }
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-v", "error", "-i", videoFile.getAbsolutePath(),
+                "-filter_complex", filterComplex.toString()));
+        command.addAll(outputArguments);
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.IMAGE, userId);
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (!process.waitFor(30, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("Filmstrip generation timed out for " + videoFile.getName());
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("ffmpeg exited with code " + process.exitValue() + ": " + output.trim());
+        }
+        for (File[] sprite : outputs) {
+            Files.move(sprite[0].toPath(), sprite[1].toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        int[] spriteSize = readSize(outputs.get(0)[1]);
+        FilmstripIndex index = FilmstripIndex.builder()
+                .video(videoFile.getName())
+                .sourceVersion(sourceVersion)
+                .duration(duration)
+                .tileWidth(spriteSize != null ? spriteSize[0] / indexLevels.get(0).getColumns() : 0)
+                .tileHeight(tileHeight)
+                .levels(indexLevels)
+                .build();
+        writeIndex(dir, index);
+        deleteOtherSprites(dir, index);
+        logger.info("Generated filmstrip for {} ({} tiles) in {} ms", videoFile.getName(), denseTiles,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return index;
+    }
+
+    private void writeIndex(File dir, FilmstripIndex index) throws IOException {
+        File stagingIndex = new File(dir, "staging_" + INDEX_FILE);
+        objectMapper.writeValue(stagingIndex, index);
+        Files.move(stagingIndex.toPath(), new File(dir, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Sprites of an earlier version of the video are no longer referenced by the index
+    private static void deleteOtherSprites(File dir, FilmstripIndex index) {
+        Set<String> current = new HashSet<>();
+        index.getLevels().forEach(level -> current.add(level.getSprite()));
+        File[] sprites = dir.listFiles((parent, name) -> name.startsWith("level") && name.endsWith(".jpg")
+                && !current.contains(name));
+        if (sprites != null) {
+            for (File sprite : sprites) {
+                sprite.delete();
+            }
+        }
+    }
+
+    private static int[] readSize(File image) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(image)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
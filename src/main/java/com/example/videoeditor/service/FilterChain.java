@@ -0,0 +1,68 @@
+package com.example.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A linear chain of filters between input pads and one output pad of a filter_complex
+ * graph. renderBatch builds one chain per segment, runs it through
+ * {@link FilterGraphOptimizer} and only then serializes it to ffmpeg syntax.
+ */
+public class FilterChain {
+
+    private final List<String> inputs;
+    private List<FilterNode> nodes = new ArrayList<>();
+    private String output;
+
+    public FilterChain(String... inputs) {
+        this.inputs = Arrays.asList(inputs);
+    }
+
+    public FilterChain add(FilterNode node) {
+        nodes.add(node);
+        return this;
+    }
+
+    public FilterChain add(String name, String args) {
+        return add(FilterNode.of(name, args));
+    }
+
+    public FilterChain add(String name) {
+        return add(FilterNode.of(name));
+    }
+
+    public FilterChain output(String label) {
+        this.output = label;
+        return this;
+    }
+
+    List<FilterNode> getNodes() {
+        return nodes;
+    }
+
+    void setNodes(List<FilterNode> nodes) {
+        this.nodes = nodes;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void appendTo(StringBuilder filterComplex) {
+        for (String input : inputs) {
+            filterComplex.append("[").append(input).append("]");
+        }
+        if (nodes.isEmpty()) {
+            filterComplex.append("null");
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i > 0) filterComplex.append(",");
+            filterComplex.append(nodes.get(i));
+        }
+        if (output != null) {
+            filterComplex.append("[").append(output).append("]");
+        }
+        filterComplex.append(";");
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rewrites a {@link FilterChain} before it is serialized. The passes run in order:
+ * fold adjacent color adjustments, drop identity nodes, push the RGBA conversion as
+ * late as possible so the chain stays in the decoder's YUV format, and remove pixel
+ * format conversions that do not change anything.
+ */
+public final class FilterGraphOptimizer {
+
+    // Geometric filters commute with per-pixel color changes, so color folding can look through them
+    private static final Set<String> COLOR_TRANSPARENT = new HashSet<>(Arrays.asList("hflip", "vflip"));
+
+    // Filters that work on YUV input and do not need an alpha channel
+    private static final Set<String> YUV_SAFE = new HashSet<>(Arrays.asList(
+            "loop", "trim", "setpts", "hflip", "vflip", "negate", "boxblur", "vignette", "eq", "hue", "lutyuv", "crop", "scale"));
+
+    // Filters that keep whatever pixel format they are given
+    private static final Set<String> FORMAT_PRESERVING = new HashSet<>(Arrays.asList(
+            "loop", "trim", "setpts", "hflip", "vflip", "crop", "pad", "lutrgb", "rotate"));
+
+    private FilterGraphOptimizer() {
+    }
+
+    public static FilterChain optimize(FilterChain chain) {
+        List<FilterNode> nodes = new ArrayList<>(chain.getNodes());
+        nodes = foldColorAdjustments(nodes);
+        nodes = dropIdentities(nodes);
+        nodes = sinkFormatConversions(nodes);
+        nodes = dropRedundantFormats(nodes);
+        chain.setNodes(nodes);
+        return chain;
+    }
+
+    static List<FilterNode> foldColorAdjustments(List<FilterNode> nodes) {
+        List<FilterNode> result = new ArrayList<>();
+        int pendingIndex = -1;
+        for (FilterNode node : nodes) {
+            if (node.getKind() == FilterNode.Kind.COLOR) {
+                if (pendingIndex >= 0) {
+                    result.set(pendingIndex, result.get(pendingIndex).then(node));
+                } else {
+                    pendingIndex = result.size();
+                    result.add(node);
+                }
+                continue;
+            }
+            if (!COLOR_TRANSPARENT.contains(node.getName())) {
+                pendingIndex = -1;
+            }
+            result.add(node);
+        }
+        return result;
+    }
+
+    static List<FilterNode> dropIdentities(List<FilterNode> nodes) {
+        List<FilterNode> result = new ArrayList<>();
+        for (FilterNode node : nodes) {
+            if (!node.isIdentity()) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves each RGBA conversion forward past filters that are happy in YUV. A conversion
+     * that reaches the end of the chain is dropped, since overlay negotiates its own format.
+     */
+    static List<FilterNode> sinkFormatConversions(List<FilterNode> nodes) {
+        List<FilterNode> result = new ArrayList<>(nodes);
+        for (int i = result.size() - 1; i >= 0; i--) {
+            FilterNode node = result.get(i);
+            if (node.getKind() != FilterNode.Kind.FORMAT) {
+                continue;
+            }
+            int j = i;
+            while (j + 1 < result.size() && isYuvSafe(result.get(j + 1))) {
+                result.set(j, result.get(j + 1));
+                j++;
+            }
+            if (j == result.size() - 1) {
+                result.remove(j);
+            } else {
+                result.set(j, node);
+            }
+        }
+        return result;
+    }
+
+    static List<FilterNode> dropRedundantFormats(List<FilterNode> nodes) {
+        List<FilterNode> result = new ArrayList<>();
+        String currentFormat = null;
+        for (FilterNode node : nodes) {
+            if (node.getKind() == FilterNode.Kind.FORMAT) {
+                if (node.getArgs().equals(currentFormat)) {
+                    continue;
+                }
+                currentFormat = node.getArgs();
+            } else if (!FORMAT_PRESERVING.contains(node.getName())) {
+                currentFormat = null;
+            }
+            result.add(node);
+        }
+        return result;
+    }
+
+    private static boolean isYuvSafe(FilterNode node) {
+        return node.getKind() == FilterNode.Kind.COLOR || YUV_SAFE.contains(node.getName());
+    }
+}
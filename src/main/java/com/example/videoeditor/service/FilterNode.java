@@ -0,0 +1,157 @@
+package com.example.videoeditor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One filter in a {@link FilterChain}. Color adjustments are kept symbolic (an affine
+ * gain/offset on RGB plus a saturation factor and hue shift) so that the optimizer can
+ * fold several of them into a single node before they are lowered to ffmpeg syntax.
+ */
+public class FilterNode {
+
+    public enum Kind { COLOR, FORMAT, GENERIC }
+
+    private static final double EPSILON = 1e-6;
+
+    private final Kind kind;
+    private final String name;
+    private final String args;
+
+    // Only meaningful for COLOR nodes: rgb' = rgb * gain + offset, then chroma * saturation, hue + hue
+    private final double gain;
+    private final double offset;
+    private final double saturation;
+    private final double hue;
+
+    private FilterNode(Kind kind, String name, String args, double gain, double offset, double saturation, double hue) {
+        this.kind = kind;
+        this.name = name;
+        this.args = args;
+        this.gain = gain;
+        this.offset = offset;
+        this.saturation = saturation;
+        this.hue = hue;
+    }
+
+    public static FilterNode of(String name, String args) {
+        return new FilterNode(Kind.GENERIC, name, args, 1, 0, 1, 0);
+    }
+
+    public static FilterNode of(String name) {
+        return of(name, "");
+    }
+
+    public static FilterNode format(String pixelFormat) {
+        return new FilterNode(Kind.FORMAT, "format", pixelFormat, 1, 0, 1, 0);
+    }
+
+    public static FilterNode colorAdjust(double gain, double offset, double saturation, double hue) {
+        return new FilterNode(Kind.COLOR, "color", "", gain, offset, saturation, hue);
+    }
+
+    /** CSS-style brightness: every RGB channel multiplied by the factor. */
+    public static FilterNode brightness(double multiplier) {
+        return colorAdjust(Math.max(0, multiplier), 0, 1, 0);
+    }
+
+    /** CSS-style contrast around mid grey. */
+    public static FilterNode contrast(double contrast) {
+        return colorAdjust(contrast, 128 * (1 - contrast), 1, 0);
+    }
+
+    public static FilterNode saturation(double saturation) {
+        return colorAdjust(1, 0, saturation, 0);
+    }
+
+    public static FilterNode hueShift(double degrees) {
+        return colorAdjust(1, 0, 1, degrees);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getArgs() {
+        return args;
+    }
+
+    /**
+     * Composes this color adjustment followed by the next one. Gain/offset on RGB scale
+     * chroma uniformly and commute with saturation and hue rotation, so the result is a
+     * single adjustment of the same form.
+     */
+    FilterNode then(FilterNode next) {
+        return colorAdjust(
+                next.gain * gain,
+                next.gain * offset + next.offset,
+                saturation * next.saturation,
+                hue + next.hue);
+    }
+
+    boolean isIdentity() {
+        if (kind == Kind.COLOR) {
+            return Math.abs(gain - 1) < EPSILON && Math.abs(offset) < EPSILON
+                    && Math.abs(saturation - 1) < EPSILON && Math.abs(hue % 360) < EPSILON;
+        }
+        return false;
+    }
+
+    /**
+     * Lowers a color adjustment to YUV filters: hue alone when luma is untouched,
+     * otherwise eq (which covers gain, offset and saturation in one pass) plus hue.
+     */
+    List<FilterNode> lower() {
+        List<FilterNode> lowered = new ArrayList<>();
+        if (kind != Kind.COLOR) {
+            lowered.add(this);
+            return lowered;
+        }
+        boolean lumaUnchanged = Math.abs(gain - 1) < EPSILON && Math.abs(offset) < EPSILON;
+        double chroma = gain * saturation;
+        boolean hasHue = Math.abs(hue % 360) >= EPSILON;
+
+        if (lumaUnchanged) {
+            StringBuilder hueArgs = new StringBuilder();
+            if (hasHue) {
+                hueArgs.append("h=").append(String.format("%.1f", hue));
+            }
+            if (Math.abs(saturation - 1) >= EPSILON) {
+                if (hueArgs.length() > 0) hueArgs.append(":");
+                hueArgs.append("s=").append(String.format("%.4f", saturation));
+            }
+            lowered.add(of("hue", hueArgs.toString()));
+            return lowered;
+        }
+
+        // eq works on normalized luma: y' = contrast * (y - 0.5) + 0.5 + brightness
+        double eqBrightness = (offset - 127.5 * (1 - gain)) / 255.0;
+        if (gain >= -1000 && gain <= 1000 && eqBrightness >= -1 && eqBrightness <= 1 && chroma >= 0 && chroma <= 3) {
+            lowered.add(of("eq", String.format("contrast=%.6f:brightness=%.6f:saturation=%.6f", gain, eqBrightness, chroma)));
+        } else {
+            String chromaExpr = String.format("'clip((val-128)*%.6f+128,0,255)'", chroma);
+            lowered.add(of("lutyuv", String.format("y='clip(val*%.6f+%.6f,0,255)':u=%s:v=%s", gain, offset, chromaExpr, chromaExpr)));
+        }
+        if (hasHue) {
+            lowered.add(of("hue", "h=" + String.format("%.1f", hue)));
+        }
+        return lowered;
+    }
+
+    @Override
+    public String toString() {
+        if (kind == Kind.COLOR) {
+            StringBuilder sb = new StringBuilder();
+            for (FilterNode node : lower()) {
+                if (sb.length() > 0) sb.append(",");
+                sb.append(node);
+            }
+            return sb.toString();
+        }
+        return args == null || args.isEmpty() ? name : name + "=" + args;
+    }
+}
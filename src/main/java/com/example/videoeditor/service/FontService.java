@@ -0,0 +1,379 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single source of fonts for every text renderer. At startup all TTFs bundled under
+ * /fonts are extracted once to a fixed directory, parsed, and indexed by the display
+ * names the frontend sends as well as by their own family, weight and style. Derived
+ * sizes and glyph advances are kept in memory, so rendering and measuring text never
+ * touches the file system.
+ */
+@Service
+public class FontService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FontService.class);
+
+    private static final String DEFAULT_FONT_FILE = "arial.ttf";
+    private static final String SYSTEM_FALLBACK_FONT = "C:/Windows/Fonts/Arial.ttf";
+    private static final int MAX_DERIVED_FONTS = 2048;
+
+    // Display names used by the editors, mapped to bundled files
+    private static final Map<String, String> FAMILY_ALIASES = new LinkedHashMap<>();
+
+    static {
+        FAMILY_ALIASES.put("Arial", "arial.ttf");
+        FAMILY_ALIASES.put("Times New Roman", "times.ttf");
+        FAMILY_ALIASES.put("Courier New", "cour.ttf");
+        FAMILY_ALIASES.put("Calibri", "calibri.ttf");
+        FAMILY_ALIASES.put("Verdana", "verdana.ttf");
+        FAMILY_ALIASES.put("Georgia", "georgia.ttf");
+        FAMILY_ALIASES.put("Comic Sans MS", "comic.ttf");
+        FAMILY_ALIASES.put("Impact", "impact.ttf");
+        FAMILY_ALIASES.put("Tahoma", "tahoma.ttf");
+
+        // Arial variants
+        FAMILY_ALIASES.put("Arial Bold", "arialbd.ttf");
+        FAMILY_ALIASES.put("Arial Italic", "ariali.ttf");
+        FAMILY_ALIASES.put("Arial Bold Italic", "arialbi.ttf");
+        FAMILY_ALIASES.put("Arial Black", "ariblk.ttf");
+
+        // Georgia variants
+        FAMILY_ALIASES.put("Georgia Bold", "georgiab.ttf");
+        FAMILY_ALIASES.put("Georgia Italic", "georgiai.ttf");
+        FAMILY_ALIASES.put("Georgia Bold Italic", "georgiaz.ttf");
+
+        // Times New Roman variants
+        FAMILY_ALIASES.put("Times New Roman Bold", "timesbd.ttf");
+        FAMILY_ALIASES.put("Times New Roman Italic", "timesi.ttf");
+        FAMILY_ALIASES.put("Times New Roman Bold Italic", "timesbi.ttf");
+
+        // Alumni Sans Pinstripe
+        FAMILY_ALIASES.put("Alumni Sans Pinstripe", "AlumniSansPinstripe-Regular.ttf");
+
+        // Lexend Giga variants
+        FAMILY_ALIASES.put("Lexend Giga", "LexendGiga-Regular.ttf");
+        FAMILY_ALIASES.put("Lexend Giga Black", "LexendGiga-Black.ttf");
+        FAMILY_ALIASES.put("Lexend Giga Bold", "LexendGiga-Bold.ttf");
+
+        // Montserrat Alternates variants
+        FAMILY_ALIASES.put("Montserrat Alternates", "MontserratAlternates-ExtraLight.ttf");
+        FAMILY_ALIASES.put("Montserrat Alternates Black", "MontserratAlternates-Black.ttf");
+        FAMILY_ALIASES.put("Montserrat Alternates Medium Italic", "MontserratAlternates-MediumItalic.ttf");
+
+        // Noto Sans Mono variants
+        FAMILY_ALIASES.put("Noto Sans Mono", "NotoSansMono-Regular.ttf");
+        FAMILY_ALIASES.put("Noto Sans Mono Bold", "NotoSansMono-Bold.ttf");
+
+        // Poiret One
+        FAMILY_ALIASES.put("Poiret One", "PoiretOne-Regular.ttf");
+
+        // Arimo variants
+        FAMILY_ALIASES.put("Arimo", "Arimo-Regular.ttf");
+        FAMILY_ALIASES.put("Arimo Bold", "Arimo-Bold.ttf");
+        FAMILY_ALIASES.put("Arimo Bold Italic", "Arimo-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Arimo Italic", "Arimo-Italic.ttf");
+
+        // Carlito variants
+        FAMILY_ALIASES.put("Carlito", "Carlito-Regular.ttf");
+        FAMILY_ALIASES.put("Carlito Bold", "Carlito-Bold.ttf");
+        FAMILY_ALIASES.put("Carlito Bold Italic", "Carlito-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Carlito Italic", "Carlito-Italic.ttf");
+
+        // Comic Neue variants
+        FAMILY_ALIASES.put("Comic Neue", "ComicNeue-Regular.ttf");
+        FAMILY_ALIASES.put("Comic Neue Bold", "ComicNeue-Bold.ttf");
+        FAMILY_ALIASES.put("Comic Neue Bold Italic", "ComicNeue-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Comic Neue Italic", "ComicNeue-Italic.ttf");
+
+        // Courier Prime variants
+        FAMILY_ALIASES.put("Courier Prime", "CourierPrime-Regular.ttf");
+        FAMILY_ALIASES.put("Courier Prime Bold", "CourierPrime-Bold.ttf");
+        FAMILY_ALIASES.put("Courier Prime Bold Italic", "CourierPrime-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Courier Prime Italic", "CourierPrime-Italic.ttf");
+
+        // Gelasio variants
+        FAMILY_ALIASES.put("Gelasio", "Gelasio-Regular.ttf");
+        FAMILY_ALIASES.put("Gelasio Bold", "Gelasio-Bold.ttf");
+        FAMILY_ALIASES.put("Gelasio Bold Italic", "Gelasio-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Gelasio Italic", "Gelasio-Italic.ttf");
+
+        // Tinos variants
+        FAMILY_ALIASES.put("Tinos", "Tinos-Regular.ttf");
+        FAMILY_ALIASES.put("Tinos Bold", "Tinos-Bold.ttf");
+        FAMILY_ALIASES.put("Tinos Bold Italic", "Tinos-BoldItalic.ttf");
+        FAMILY_ALIASES.put("Tinos Italic", "Tinos-Italic.ttf");
+
+        // Amatic SC variants
+        FAMILY_ALIASES.put("Amatic SC", "AmaticSC-Regular.ttf");
+        FAMILY_ALIASES.put("Amatic SC Bold", "AmaticSC-Bold.ttf");
+
+        // Barriecito
+        FAMILY_ALIASES.put("Barriecito", "Barriecito-Regular.ttf");
+
+        // Barrio
+        FAMILY_ALIASES.put("Barrio", "Barrio-Regular.ttf");
+
+        // Birthstone
+        FAMILY_ALIASES.put("Birthstone", "Birthstone-Regular.ttf");
+
+        // Bungee Hairline
+        FAMILY_ALIASES.put("Bungee Hairline", "BungeeHairline-Regular.ttf");
+
+        // Butcherman
+        FAMILY_ALIASES.put("Butcherman", "Butcherman-Regular.ttf");
+
+        // Doto variants
+        FAMILY_ALIASES.put("Doto Black", "Doto-Black.ttf");
+        FAMILY_ALIASES.put("Doto ExtraBold", "Doto-ExtraBold.ttf");
+        FAMILY_ALIASES.put("Doto Rounded Bold", "Doto_Rounded-Bold.ttf");
+
+        // Fascinate Inline
+        FAMILY_ALIASES.put("Fascinate Inline", "FascinateInline-Regular.ttf");
+
+        // Freckle Face
+        FAMILY_ALIASES.put("Freckle Face", "FreckleFace-Regular.ttf");
+
+        // Fredericka the Great
+        FAMILY_ALIASES.put("Fredericka the Great", "FrederickatheGreat-Regular.ttf");
+
+        // Imperial Script
+        FAMILY_ALIASES.put("Imperial Script", "ImperialScript-Regular.ttf");
+
+        // Kings
+        FAMILY_ALIASES.put("Kings", "Kings-Regular.ttf");
+
+        // Kirang Haerang
+        FAMILY_ALIASES.put("Kirang Haerang", "KirangHaerang-Regular.ttf");
+
+        // Lavishly Yours
+        FAMILY_ALIASES.put("Lavishly Yours", "LavishlyYours-Regular.ttf");
+
+        // Mountains of Christmas variants
+        FAMILY_ALIASES.put("Mountains of Christmas", "MountainsofChristmas-Regular.ttf");
+        FAMILY_ALIASES.put("Mountains of Christmas Bold", "MountainsofChristmas-Bold.ttf");
+
+        // Rampart One
+        FAMILY_ALIASES.put("Rampart One", "RampartOne-Regular.ttf");
+
+        // Rubik Wet Paint
+        FAMILY_ALIASES.put("Rubik Wet Paint", "RubikWetPaint-Regular.ttf");
+
+        // Tangerine variants
+        FAMILY_ALIASES.put("Tangerine", "Tangerine-Regular.ttf");
+        FAMILY_ALIASES.put("Tangerine Bold", "Tangerine-Bold.ttf");
+
+        // Yesteryear
+        FAMILY_ALIASES.put("Yesteryear", "Yesteryear-Regular.ttf");
+    }
+
+    @Value("${app.fonts.dir:${java.io.tmpdir}/scenith-fonts}")
+    private String fontDirPath;
+
+    private final Map<String, File> filesByName = new HashMap<>();
+    private final Map<String, Font> baseFontsByPath = new HashMap<>();
+    private final Map<String, String> pathsByAlias = new HashMap<>();
+    private final Map<String, String> pathsByFontName = new HashMap<>();
+    private final Map<String, String> pathsByStyle = new HashMap<>();
+    private final Map<String, Font> derivedFonts = new ConcurrentHashMap<>();
+    private final Map<Font, GlyphAdvances> advances = new ConcurrentHashMap<>();
+    private final Graphics2D measureGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    private String defaultFontPath = SYSTEM_FALLBACK_FONT;
+
+    @PostConstruct
+    public void init() {
+        File fontDir = new File(fontDirPath);
+        if (!fontDir.exists() && !fontDir.mkdirs()) {
+            logger.error("Failed to create font directory: {}", fontDir.getAbsolutePath());
+            return;
+        }
+
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath:/fonts/*.ttf");
+            for (Resource resource : resources) {
+                String fileName = resource.getFilename();
+                if (fileName == null) {
+                    continue;
+                }
+                File target = new File(fontDir, fileName);
+                if (!target.exists() || target.length() != resource.contentLength()) {
+                    try (InputStream in = resource.getInputStream()) {
+                        Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                indexFont(target);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to extract bundled fonts: {}", e.getMessage());
+        }
+
+        File defaultFile = filesByName.get(DEFAULT_FONT_FILE.toLowerCase(Locale.ROOT));
+        if (defaultFile != null) {
+            defaultFontPath = defaultFile.getAbsolutePath();
+        }
+        FAMILY_ALIASES.forEach((alias, fileName) -> {
+            File file = filesByName.get(fileName.toLowerCase(Locale.ROOT));
+            pathsByAlias.put(alias.toLowerCase(Locale.ROOT), file != null ? file.getAbsolutePath() : defaultFontPath);
+        });
+        logger.info("Indexed {} fonts from {}", baseFontsByPath.size(), fontDir.getAbsolutePath());
+    }
+
+    private void indexFont(File file) {
+        try {
+            Font font = Font.createFont(Font.TRUETYPE_FONT, file);
+            String path = file.getAbsolutePath();
+            String fontName = font.getFontName(Locale.ROOT);
+            filesByName.put(file.getName().toLowerCase(Locale.ROOT), file);
+            baseFontsByPath.put(path, font);
+            pathsByFontName.putIfAbsent(fontName.toLowerCase(Locale.ROOT), path);
+            pathsByStyle.putIfAbsent(styleKey(font.getFamily(Locale.ROOT), isBold(fontName), isItalic(fontName)), path);
+        } catch (Exception e) {
+            logger.warn("Skipping unreadable font {}: {}", file.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Resolves a display name such as "Arimo Bold Italic" to an extracted font file,
+     * falling back to Arial.
+     */
+    public String getFontPath(String fontFamily) {
+        if (fontFamily == null || fontFamily.trim().isEmpty()) {
+            return defaultFontPath;
+        }
+        String key = fontFamily.trim().toLowerCase(Locale.ROOT);
+        String path = pathsByAlias.get(key);
+        if (path == null) {
+            path = pathsByFontName.get(key);
+        }
+        if (path == null) {
+            logger.debug("Font family '{}' not found, using default", fontFamily);
+            return defaultFontPath;
+        }
+        return path;
+    }
+
+    /**
+     * Resolves a family plus CSS-style weight ("bold") and style ("italic").
+     */
+    public String getFontPath(String fontFamily, String fontWeight, String fontStyle) {
+        boolean bold = "bold".equalsIgnoreCase(fontWeight);
+        boolean italic = "italic".equalsIgnoreCase(fontStyle);
+        if (fontFamily == null || (!bold && !italic)) {
+            return getFontPath(fontFamily);
+        }
+        String name = fontFamily.trim() + (bold ? " Bold" : "") + (italic ? " Italic" : "");
+        String key = name.toLowerCase(Locale.ROOT);
+        String path = pathsByAlias.get(key);
+        if (path == null) {
+            path = pathsByFontName.get(key);
+        }
+        if (path == null) {
+            path = pathsByStyle.get(styleKey(fontFamily.trim(), bold, italic));
+        }
+        return path != null ? path : getFontPath(fontFamily);
+    }
+
+    /**
+     * Returns the font for a display name at the given point size, or null if no font could be loaded.
+     */
+    public Font getFont(String fontFamily, float size) {
+        String path = getFontPath(fontFamily);
+        String cacheKey = path + "|" + size;
+        Font font = derivedFonts.get(cacheKey);
+        if (font != null) {
+            return font;
+        }
+        Font base = baseFontsByPath.get(path);
+        if (base == null) {
+            return null;
+        }
+        if (derivedFonts.size() > MAX_DERIVED_FONTS) {
+            derivedFonts.clear();
+            advances.clear();
+        }
+        font = base.deriveFont(size);
+        derivedFonts.put(cacheKey, font);
+        return font;
+    }
+
+    public FontMetrics getMetrics(Font font) {
+        return glyphAdvances(font).metrics;
+    }
+
+    /**
+     * Width of a line drawn glyph by glyph with the given spacing between glyphs.
+     */
+    public int textWidth(Font font, String text, int letterSpacing) {
+        GlyphAdvances glyphs = glyphAdvances(font);
+        int width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += glyphs.charWidth(text.charAt(i));
+            if (i < text.length() - 1) {
+                width += letterSpacing;
+            }
+        }
+        return width;
+    }
+
+    private GlyphAdvances glyphAdvances(Font font) {
+        GlyphAdvances glyphs = advances.get(font);
+        if (glyphs == null) {
+            FontMetrics metrics;
+            synchronized (measureGraphics) {
+                metrics = measureGraphics.getFontMetrics(font);
+            }
+            glyphs = new GlyphAdvances(metrics);
+            advances.put(font, glyphs);
+        }
+        return glyphs;
+    }
+
+    private static String styleKey(String family, boolean bold, boolean italic) {
+        return family.toLowerCase(Locale.ROOT) + "|" + (bold ? "b" : "") + (italic ? "i" : "");
+    }
+
+    private static boolean isBold(String fontName) {
+        return fontName.contains("Bold") || fontName.contains("Black");
+    }
+
+    private static boolean isItalic(String fontName) {
+        return fontName.contains("Italic") || fontName.contains("Oblique");
+    }
+
+    private static class GlyphAdvances {
+        private final FontMetrics metrics;
+        private final int[] latin = new int[256];
+
+        GlyphAdvances(FontMetrics metrics) {
+            this.metrics = metrics;
+            for (char c = 0; c < latin.length; c++) {
+                latin[c] = metrics.charWidth(c);
+            }
+        }
+
+        int charWidth(char c) {
+            return c < latin.length ? latin[c] : metrics.charWidth(c);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk cache of image segment inputs scaled down to the largest size they are shown at,
+ * and optionally cropped. A 6000px photo shown at a fifth of its size enters the batch
+ * graph as a 1200px PNG, decoded once and looped in the graph, instead of being decoded
+ * at full resolution for every frame. Entries are keyed by the source file, the target
+ * size and the crop rectangle, and shared by every batch and export that needs them.
+ * A render pins the entries its command refers to until it closes its {@link Pins}, so
+ * eviction never deletes an input while the command waits to run or is running.
+ */
+@Component
+public class ImageInputCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageInputCache.class);
+
+    private static final int LOCK_STRIPES = 64;
+    // Part of every key; bump when the prepared images change for the same inputs
+    private static final String PREPARE_VERSION = "1";
+    // Below this saving a pass through the cache is not worth it
+    private static final double MIN_PIXEL_SAVING = 0.25;
+    // Scale factors are rounded up to this step, so small keyframe edits reuse the entry
+    private static final double FACTOR_STEP = 1.0 / 64;
+
+    @Value("${app.ffmpeg-path:C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffmpeg.exe}")
+    private String ffmpegPath;
+
+    @Value("${app.render.image-cache-dir:cache/images}")
+    private String cacheDirPath;
+
+    @Value("${app.render.image-cache-max-bytes:2147483648}")
+    private long maxCacheBytes;
+
+    private final ProcessScheduler processScheduler;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Entry file name to the number of open Pins holding it; guarded by this
+    private final Map<String, Integer> pinCounts = new HashMap<>();
+    private File cacheDir;
+
+    public ImageInputCache(ProcessScheduler processScheduler) {
+        this.processScheduler = processScheduler;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /** The entries one render uses. Closing it makes them evictable again. */
+    public final class Pins implements AutoCloseable {
+        private final Set<String> names = new HashSet<>();
+        private boolean closed;
+
+        private Pins() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (ImageInputCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (String name : names) {
+                    pinCounts.computeIfPresent(name, (ignored, count) -> count > 1 ? count - 1 : null);
+                }
+                names.clear();
+            }
+        }
+    }
+
+    public Pins pin() {
+        return new Pins();
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheDir = new File(cacheDirPath);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            logger.error("Failed to create image input cache directory: {}", cacheDir.getAbsolutePath());
+        }
+        // Renders cut short by a crash never reached their final name
+        File[] staged = cacheDir.listFiles((dir, name) -> name.startsWith("staging_"));
+        if (staged != null) {
+            for (File file : staged) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * An image ready to be used as a single-frame input. Scaling the prepared image by
+     * {@code scaleCompensation} gives it the size the original (after the crop) would have
+     * had, to within a pixel, so the graph's scale expressions stay the same.
+     */
+    public static class PreparedImage {
+        private final String path;
+        private final double scaleCompensation;
+        private final boolean cropped;
+
+        PreparedImage(String path, double scaleCompensation, boolean cropped) {
+            this.path = path;
+            this.scaleCompensation = scaleCompensation;
+            this.cropped = cropped;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public double getScaleCompensation() {
+            return scaleCompensation;
+        }
+
+        /** Whether the crop was applied here, leaving only the transparent padding to the graph. */
+        public boolean isCropped() {
+            return cropped;
+        }
+    }
+
+    /**
+     * Returns the image scaled to {@code maxDisplayScale} of its native size (never up) and
+     * cropped by the given percentages. The original file comes back unchanged when its size
+     * cannot be read or preparing it would not save much. A prepared entry stays pinned
+     * until {@code pins} is closed; with null pins it may be evicted at any time.
+     */
+    public PreparedImage prepare(String sourcePath, double maxDisplayScale, double cropL, double cropR, double cropT, double cropB,
+                                 Pins pins) throws IOException {
+        File source = new File(sourcePath);
+        int[] size = source.exists() ? readSize(source) : null;
+        if (size == null) {
+            return new PreparedImage(sourcePath, 1.0, false);
+        }
+        boolean crop = cropL > 0 || cropR > 0 || cropT > 0 || cropB > 0;
+        double factor = Math.min(1.0, Math.ceil(Math.max(maxDisplayScale, FACTOR_STEP) / FACTOR_STEP) * FACTOR_STEP);
+        if (!crop && factor * factor > 1 - MIN_PIXEL_SAVING) {
+            return new PreparedImage(sourcePath, 1.0, false);
+        }
+
+        String key = TimelineHashing.hash(PREPARE_VERSION, source.getAbsolutePath(), source.length(), source.lastModified(),
+                factor, cropL, cropR, cropT, cropB);
+        File cached = new File(cacheDir, "image_" + key + ".png");
+        // Pinned before the lookup: an entry evicted before this point is simply prepared again
+        if (pins != null) {
+            synchronized (this) {
+                if (pins.closed) {
+                    throw new IllegalStateException("Image input pins already closed");
+                }
+                if (pins.names.add(cached.getName())) {
+                    pinCounts.merge(cached.getName(), 1, Integer::sum);
+                }
+            }
+        }
+        synchronized (locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)]) {
+            if (cached.exists() && cached.length() > 0) {
+                cached.setLastModified(System.currentTimeMillis());
+            } else {
+                // Relative to the decoded frame, so the crop matches the one the graph would apply
+                String filter = (crop ? String.format("crop=iw*(1-%.6f-%.6f):ih*(1-%.6f-%.6f):iw*%.6f:ih*%.6f,",
+                        cropL / 100.0, cropR / 100.0, cropT / 100.0, cropB / 100.0, cropL / 100.0, cropT / 100.0) : "")
+                        + String.format("scale=w='max(1,round(iw*%.6f))':h='max(1,round(ih*%.6f))':flags=lanczos", factor, factor);
+                render(source, filter, cached);
+                logger.debug("Prepared {} ({}x{}) at {} of its size", source.getName(), size[0], size[1], factor);
+            }
+        }
+        evictIfNeeded(cached);
+        return new PreparedImage(cached.getAbsolutePath(), 1.0 / factor, crop);
+    }
+
+    private void render(File source, String filter, File target) throws IOException {
+        File staging = new File(cacheDir, "staging_" + System.nanoTime() + "_" + target.getName());
+        ProcessBuilder builder = new ProcessBuilder(
+                ffmpegPath, "-v", "error",
+                "-i", source.getAbsolutePath(),
+                "-frames:v", "1",
+                "-vf", filter,
+                "-y", staging.getAbsolutePath()
+        );
+        builder.redirectErrorStream(true);
+        try {
+            Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.IMAGE, null);
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(2, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out preparing image " + source.getAbsolutePath());
+            }
+            if (process.exitValue() != 0 || !staging.exists()) {
+                throw new IOException("Failed to prepare image " + source.getAbsolutePath() + ": " + output.trim());
+            }
+            Files.move(staging.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while preparing image " + source.getAbsolutePath(), e);
+        } finally {
+            Files.deleteIfExists(staging.toPath());
+        }
+    }
+
+    // Reads only the header; null for formats ImageIO does not know
+    private static int[] readSize(File file) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private synchronized void evictIfNeeded(File justWritten) {
+        File[] entries = cacheDir.listFiles((dir, name) -> name.startsWith("image_") && name.endsWith(".png"));
+        if (entries == null) {
+            return;
+        }
+        long totalBytes = Arrays.stream(entries).mapToLong(File::length).sum();
+        if (totalBytes <= maxCacheBytes) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalBytes <= maxCacheBytes) {
+                break;
+            }
+            if (entry.equals(justWritten) || pinCounts.containsKey(entry.getName())) {
+                continue;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.videoeditor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Plans input-side seeks for batch renders. Instead of decoding a source from
+ * time zero and trimming, each input is opened with {@code -ss}/{@code -t} at the
+ * keyframe preceding the wanted range, and the trim offsets are rewritten
+ * relative to that seek point. Keyframe times come from the index
+ * {@link MediaProbeService} stores with each file's metadata.
+ */
+@Component
+public class InputSeekPlanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(InputSeekPlanner.class);
+
+    // Extra input duration so the last frame of the range is always demuxed
+    private static final double INPUT_PADDING_SECONDS = 0.5;
+
+    private final MediaProbeService mediaProbeService;
+
+    public InputSeekPlanner(MediaProbeService mediaProbeService) {
+        this.mediaProbeService = mediaProbeService;
+    }
+
+    public static class SeekPlan {
+        private final double seekTime;
+        private final double inputDuration;
+        private final double trimStart;
+        private final double trimEnd;
+
+        SeekPlan(double seekTime, double inputDuration, double trimStart, double trimEnd) {
+            this.seekTime = seekTime;
+            this.inputDuration = inputDuration;
+            this.trimStart = trimStart;
+            this.trimEnd = trimEnd;
+        }
+
+        public double getSeekTime() {
+            return seekTime;
+        }
+
+        public double getInputDuration() {
+            return inputDuration;
+        }
+
+        /** Start of the wanted range, relative to the seek point. */
+        public double getTrimStart() {
+            return trimStart;
+        }
+
+        /** End of the wanted range, relative to the seek point. */
+        public double getTrimEnd() {
+            return trimEnd;
+        }
+
+        /** Arguments to place directly before the matching {@code -i}. */
+        public List<String> inputArguments() {
+            List<String> args = new ArrayList<>();
+            if (seekTime > 0) {
+                args.add("-ss");
+                args.add(String.format("%.6f", seekTime));
+            }
+            args.add("-t");
+            args.add(String.format("%.6f", inputDuration));
+            return args;
+        }
+    }
+
+    /**
+     * Plans a video input: seeks to the last keyframe at or before sourceStart.
+     */
+    public SeekPlan planVideo(String sourcePath, double sourceStart, double sourceEnd) {
+        return plan(sourceStart, sourceEnd, keyframeTimes(sourcePath));
+    }
+
+    /**
+     * Plans an audio input. Every audio frame is a sync point, so the seek lands on sourceStart.
+     */
+    public SeekPlan planAudio(double sourceStart, double sourceEnd) {
+        return plan(sourceStart, sourceEnd, null);
+    }
+
+    static SeekPlan plan(double sourceStart, double sourceEnd, double[] keyframes) {
+        double start = Math.max(0.0, sourceStart);
+        double seek = start;
+        if (keyframes != null && keyframes.length > 0) {
+            int idx = Arrays.binarySearch(keyframes, start);
+            if (idx < 0) {
+                idx = -idx - 2;
+            }
+            seek = idx >= 0 ? keyframes[idx] : 0.0;
+        }
+        double trimStart = start - seek;
+        double trimEnd = Math.max(trimStart, sourceEnd - seek);
+        return new SeekPlan(seek, trimEnd + INPUT_PADDING_SECONDS, trimStart, trimEnd);
+    }
+
+    /**
+     * Returns the sorted keyframe timestamps of the first video stream, or null if
+     * the file cannot be indexed (the seek then falls back to ffmpeg's own keyframe lookup).
+     */
+    public double[] keyframeTimes(String sourcePath) {
+        try {
+            double[] keyframes = MediaProbeService.keyframeTimes(mediaProbeService.probe(new File(sourcePath)));
+            return keyframes.length > 0 ? keyframes : null;
+        } catch (IOException e) {
+            logger.debug("Keyframe index unavailable for {}: {}", sourcePath, e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
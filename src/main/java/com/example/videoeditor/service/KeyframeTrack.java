@@ -0,0 +1,237 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.Keyframe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The keyframes of one animated property, sorted once into primitive arrays. Values
+ * are looked up by binary search, and {@link #toExpression} compiles the track to an
+ * ffmpeg expression that only contains the intervals overlapping a render window.
+ * <p>
+ * The easing of an interval is taken from the keyframe that starts it, so a "hold"
+ * keyframe keeps its value until the next keyframe is reached.
+ */
+public final class KeyframeTrack {
+
+    public enum Easing {
+        LINEAR, EASE_IN, EASE_OUT, EASE_IN_OUT, HOLD;
+
+        static Easing parse(String type) {
+            if (type == null) {
+                return LINEAR;
+            }
+            switch (type.trim().toLowerCase(Locale.ROOT).replace("_", "-")) {
+                case "ease-in":
+                case "easein":
+                    return EASE_IN;
+                case "ease-out":
+                case "easeout":
+                    return EASE_OUT;
+                case "ease-in-out":
+                case "easeinout":
+                case "ease":
+                    return EASE_IN_OUT;
+                case "hold":
+                case "step":
+                case "constant":
+                    return HOLD;
+                default:
+                    return LINEAR;
+            }
+        }
+
+        double apply(double p) {
+            switch (this) {
+                case EASE_IN:
+                    return p * p;
+                case EASE_OUT:
+                    return p * (2 - p);
+                case EASE_IN_OUT:
+                    return p * p * (3 - 2 * p);
+                case HOLD:
+                    return p >= 1 ? 1 : 0;
+                default:
+                    return p;
+            }
+        }
+
+        /** Same curve as {@link #apply}, over an expression that is already clipped to [0,1]. */
+        String expression(String p) {
+            switch (this) {
+                case EASE_IN:
+                    return p + "*" + p;
+                case EASE_OUT:
+                    return p + "*(2-" + p + ")";
+                case EASE_IN_OUT:
+                    return p + "*" + p + "*(3-2*" + p + ")";
+                default:
+                    return p;
+            }
+        }
+    }
+
+    private static final double EPSILON = 1e-6;
+
+    private final double[] times;
+    private final double[] values;
+    private final Easing[] easings;
+    private final double fallback;
+
+    private KeyframeTrack(double[] times, double[] values, Easing[] easings, double fallback) {
+        this.times = times;
+        this.values = values;
+        this.easings = easings;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Builds a track from the keyframes of one property. The list is copied, never sorted
+     * in place; keyframes without a numeric value are ignored, and when two share a time
+     * the later one in the list wins. The fallback is used when no keyframes remain.
+     */
+    public static KeyframeTrack of(List<Keyframe> keyframes, double fallback) {
+        List<Keyframe> sorted = new ArrayList<>();
+        if (keyframes != null) {
+            for (Keyframe keyframe : keyframes) {
+                if (keyframe != null && keyframe.getValue() instanceof Number) {
+                    sorted.add(keyframe);
+                }
+            }
+        }
+        sorted.sort(Comparator.comparingDouble(Keyframe::getTime));
+
+        double[] times = new double[sorted.size()];
+        double[] values = new double[sorted.size()];
+        Easing[] easings = new Easing[sorted.size()];
+        int count = 0;
+        for (Keyframe keyframe : sorted) {
+            if (count > 0 && keyframe.getTime() - times[count - 1] < EPSILON) {
+                count--;
+            }
+            times[count] = keyframe.getTime();
+            values[count] = ((Number) keyframe.getValue()).doubleValue();
+            easings[count] = Easing.parse(keyframe.getInterpolationType());
+            count++;
+        }
+        return new KeyframeTrack(Arrays.copyOf(times, count), Arrays.copyOf(values, count),
+                Arrays.copyOf(easings, count), fallback);
+    }
+
+    /** Returns a copy of this track with every value (and the fallback) multiplied by the factor. */
+    public KeyframeTrack scaled(double factor) {
+        double[] scaledValues = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            scaledValues[i] = values[i] * factor;
+        }
+        return new KeyframeTrack(times, scaledValues, easings, fallback * factor);
+    }
+
+    public boolean isAnimated() {
+        return times.length > 0;
+    }
+
+    /** Largest value the property takes, or the fallback when it is not animated. */
+    public double maxValue() {
+        if (values.length == 0) {
+            return fallback;
+        }
+        return Arrays.stream(values).max().getAsDouble();
+    }
+
+    /**
+     * Value at a time relative to the segment start. Before the first keyframe the
+     * property holds the first value, after the last it holds the last one.
+     */
+    public double valueAt(double time) {
+        int n = times.length;
+        if (n == 0) {
+            return fallback;
+        }
+        if (time <= times[0]) {
+            return values[0];
+        }
+        if (time >= times[n - 1]) {
+            return values[n - 1];
+        }
+        int idx = Arrays.binarySearch(times, time);
+        if (idx >= 0) {
+            return values[idx];
+        }
+        int i = -idx - 2;
+        double progress = (time - times[i]) / (times[i + 1] - times[i]);
+        return values[i] + (values[i + 1] - values[i]) * easings[i].apply(progress);
+    }
+
+    /**
+     * Compiles the track to an expression of {@code t} for a window of the given duration.
+     * {@code offset} is where the segment starts in window time (negative when the
+     * segment began before the window). Intervals entirely outside the window are left
+     * out, and a property that is constant over the window becomes a plain number.
+     */
+    public String toExpression(double offset, double windowDuration) {
+        String expr = number(valueAt(-offset));
+        int n = times.length;
+        if (n < 2) {
+            return expr;
+        }
+        // First interval whose end lies inside the window
+        int first = upperBound(-offset) - 1;
+        if (first < 0) {
+            first = 0;
+        }
+        for (int i = first; i < n - 1; i++) {
+            double start = times[i] + offset;
+            double end = times[i + 1] + offset;
+            if (start >= windowDuration) {
+                break;
+            }
+            if (end <= 0) {
+                continue;
+            }
+            double from = values[i];
+            double to = values[i + 1];
+            if (Math.abs(to - from) < EPSILON) {
+                // The expression built so far already settles on this value
+                continue;
+            }
+            if (easings[i] == Easing.HOLD) {
+                if (end < windowDuration) {
+                    expr = "if(lt(t," + number(end) + ")," + expr + "," + number(to) + ")";
+                }
+                continue;
+            }
+            String progress = "clip((t" + signed(-start) + ")/" + number(end - start) + ",0,1)";
+            String curve = "lerp(" + number(from) + "," + number(to) + "," + easings[i].expression(progress) + ")";
+            expr = start <= 0 ? curve : "if(lt(t," + number(start) + ")," + expr + "," + curve + ")";
+        }
+        return expr;
+    }
+
+    /** Index of the first keyframe strictly after the time. */
+    private int upperBound(double time) {
+        int lo = 0;
+        int hi = times.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static String number(double value) {
+        return String.format("%.6f", value);
+    }
+
+    private static String signed(double value) {
+        return value < 0 ? "-" + number(-value) : "+" + number(Math.abs(value));
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.entity.MediaBlob;
+import com.example.videoeditor.entity.MediaBlobLink;
+import com.example.videoeditor.entity.User;
+import com.example.videoeditor.repository.MediaBlobLinkRepository;
+import com.example.videoeditor.repository.MediaBlobRepository;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store behind every upload. An upload is hashed with SHA-256 while it
+ * streams to disk; its bytes are kept once under {@code blobs/objects}, and the path the tool
+ * asked for becomes a hard link to that copy (a plain copy where links are not possible), so
+ * the rest of the code keeps working with ordinary paths. Each such path is a reference of
+ * its owner; the blob goes away with its last reference. A link shares its modification time
+ * with every other link of the content, so nothing here ever changes it; a path that replaces
+ * earlier content gets a copy of its own instead, which is newer than anything derived from
+ * what was there before.
+ * <p>
+ * Artifacts derived from the content (extracted audio, waveforms, filmstrips, mezzanines,
+ * transcripts, probe results) are kept next to the blob under {@code blobs/derived/<sha>}, so
+ * a tool that sees content another tool already processed links the result instead of
+ * producing it again.
+ */
+@Service
+public class MediaBlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaBlobStore.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
+    private String baseDir;
+
+    @Value("${app.blob-store.dir:blobs}")
+    private String blobDir;
+
+    private final MediaBlobRepository mediaBlobRepository;
+    private final MediaBlobLinkRepository mediaBlobLinkRepository;
+    private final MediaProbeService mediaProbeService;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public MediaBlobStore(MediaBlobRepository mediaBlobRepository, MediaBlobLinkRepository mediaBlobLinkRepository,
+                          MediaProbeService mediaProbeService) {
+        this.mediaBlobRepository = mediaBlobRepository;
+        this.mediaBlobLinkRepository = mediaBlobLinkRepository;
+        this.mediaProbeService = mediaProbeService;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Stores an upload at {@code target} for {@code owner}, in place of
+     * {@link MultipartFile#transferTo(File)}, and probes it. Returns the SHA-256 of its content.
+     */
+    public String store(MultipartFile upload, User owner, File target) throws IOException {
+        File stagingDir = new File(root(), "staging");
+        if (!stagingDir.exists() && !stagingDir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + stagingDir.getAbsolutePath());
+        }
+        File staging = new File(stagingDir, UUID.randomUUID() + ".part");
+        try {
+            MessageDigest digest = TimelineHashing.newDigest();
+            try (InputStream in = new DigestInputStream(upload.getInputStream(), digest)) {
+                Files.copy(in, staging.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            File absoluteTarget = target.getAbsoluteFile();
+            boolean replacing = absoluteTarget.exists();
+            MediaBlob replaced;
+            synchronized (lockFor(sha256)) {
+                MediaBlob blob = mediaBlobRepository.findBySha256(sha256).orElse(null);
+                File blobFile = blobFile(sha256);
+                if (blob != null && blobFile.isFile() && blobFile.length() == staging.length()) {
+                    logger.info("Upload {} matches blob {}, {} bytes not stored again", absoluteTarget.getName(),
+                            sha256, staging.length());
+                } else {
+                    createParent(blobFile);
+                    Files.move(staging.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    if (blob == null) {
+                        blob = saveBlob(sha256, blobFile);
+                    }
+                }
+                replaced = link(blob, blobFile, owner, absoluteTarget, replacing);
+            }
+            if (replaced != null) {
+                deleteIfUnreferenced(replaced);
+            }
+            mediaProbeService.ingest(absoluteTarget, sha256);
+            return sha256;
+        } finally {
+            Files.deleteIfExists(staging.toPath());
+        }
+    }
+
+    /** SHA-256 of a file stored through {@link #store}, or null for any other file. */
+    public String contentHash(File file) {
+        return mediaBlobLinkRepository.findByPathKey(pathKey(file))
+                .map(link -> link.getBlob().getSha256())
+                .orElse(null);
+    }
+
+    /** How many paths of the owner currently reference the content of this file. */
+    public long referenceCount(File file, User owner) {
+        return mediaBlobLinkRepository.findByPathKey(pathKey(file))
+                .map(link -> mediaBlobLinkRepository.countByBlobAndUser(link.getBlob(), owner))
+                .orElse(0L);
+    }
+
+    /** The artifact {@code name} kept for the content of {@code source}, or null when there is none. */
+    public File findDerived(File source, String name) {
+        String sha256 = contentHash(source);
+        if (sha256 == null) {
+            return null;
+        }
+        File derived = derivedFile(sha256, name);
+        return derived.exists() ? derived : null;
+    }
+
+    /**
+     * Whether {@code artifact} is a link to the artifact {@code name} kept for the current content
+     * of {@code source}. Restored links keep the modification time of the kept artifact, so one
+     * can be older than the source and still be up to date.
+     */
+    public boolean isDerived(File source, String name, File artifact) {
+        File derived = findDerived(source, name);
+        if (derived == null || !artifact.exists()) {
+            return false;
+        }
+        try {
+            return Files.isSameFile(derived.toPath(), artifact.toPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Links the artifact {@code name} kept for the content of {@code source} to {@code target},
+     * a file or a directory. Returns false when there is no such artifact.
+     */
+    public boolean restoreDerived(File source, String name, File target) {
+        File derived = findDerived(source, name);
+        if (derived == null) {
+            return false;
+        }
+        try {
+            createParent(target);
+            linkAtomically(derived.toPath(), target.toPath());
+            logger.debug("Reused {} of {} for {}", name, source.getName(), target.getAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            logger.warn("Failed to reuse {} of {}: {}", name, source.getName(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Keeps {@code artifact}, a file or a directory produced from {@code source}, as the
+     * artifact {@code name} of its content. Does nothing for files not stored here.
+     */
+    public void publishDerived(File source, String name, File artifact) {
+        String sha256 = contentHash(source);
+        if (sha256 == null || !artifact.exists()) {
+            return;
+        }
+        File derived = derivedFile(sha256, name);
+        if (derived.exists()) {
+            return;
+        }
+        try {
+            createParent(derived);
+            linkAtomically(artifact.toPath(), derived.toPath());
+        } catch (IOException e) {
+            logger.warn("Failed to keep {} of {}: {}", name, source.getName(), e.getMessage());
+        }
+    }
+
+    /** Like {@link #publishDerived(File, String, File)} for an artifact held in memory. */
+    public void publishDerived(File source, String name, byte[] content) {
+        String sha256 = contentHash(source);
+        if (sha256 == null) {
+            return;
+        }
+        File derived = derivedFile(sha256, name);
+        try {
+            createParent(derived);
+            File staging = new File(derived.getParentFile(), "staging_" + System.nanoTime() + "_" + name);
+            Files.write(staging.toPath(), content);
+            Files.move(staging.toPath(), derived.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to keep {} of {}: {}", name, source.getName(), e.getMessage());
+        }
+    }
+
+    /** Drops the reference held by a stored path, before the path itself is deleted. */
+    public void release(File file) {
+        mediaBlobLinkRepository.findByPathKey(pathKey(file)).ifPresent(this::unlink);
+    }
+
+    /** Drops the references of every stored path under a directory that is about to be deleted. */
+    public void releaseUnder(File directory) {
+        String prefix = directory.getAbsolutePath() + File.separator;
+        for (MediaBlobLink link : mediaBlobLinkRepository.findByPathStartingWith(prefix)) {
+            unlink(link);
+        }
+    }
+
+    /**
+     * Points {@code target} at the blob, with a copy when it replaces earlier content. Returns the
+     * blob the path referenced before, if it was another one; it is collected outside this blob's lock.
+     */
+    private MediaBlob link(MediaBlob blob, File blobFile, User owner, File target, boolean replacing) throws IOException {
+        MediaBlobLink link = mediaBlobLinkRepository.findByPathKey(pathKey(target)).orElse(null);
+        createParent(target);
+        if (replacing) {
+            copyAtomically(blobFile.toPath(), target.toPath());
+        } else {
+            linkAtomically(blobFile.toPath(), target.toPath());
+        }
+        MediaBlob previous = null;
+        if (link == null) {
+            link = MediaBlobLink.builder()
+                    .pathKey(pathKey(target))
+                    .path(target.getPath())
+                    .build();
+        } else if (!link.getBlob().getId().equals(blob.getId())) {
+            previous = link.getBlob();
+        }
+        link.setBlob(blob);
+        link.setUser(owner);
+        link.setCreatedAt(LocalDateTime.now());
+        mediaBlobLinkRepository.save(link);
+        return previous;
+    }
+
+    private void unlink(MediaBlobLink link) {
+        mediaBlobLinkRepository.delete(link);
+        deleteIfUnreferenced(link.getBlob());
+    }
+
+    private void deleteIfUnreferenced(MediaBlob blob) {
+        synchronized (lockFor(blob.getSha256())) {
+            if (mediaBlobLinkRepository.countByBlob(blob) > 0) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(blobFile(blob.getSha256()).toPath());
+                FileUtils.deleteDirectory(new File(new File(root(), "derived"), blob.getSha256()));
+            } catch (IOException e) {
+                logger.warn("Failed to delete blob {}: {}", blob.getSha256(), e.getMessage());
+            }
+            mediaBlobRepository.delete(blob);
+            logger.debug("Deleted blob {} with its last reference", blob.getSha256());
+        }
+    }
+
+    private MediaBlob saveBlob(String sha256, File blobFile) {
+        MediaBlob blob = MediaBlob.builder()
+                .sha256(sha256)
+                .size(blobFile.length())
+                .storagePath(blobDir + "/objects/" + sha256.substring(0, 2) + "/" + sha256)
+                .createdAt(LocalDateTime.now())
+                .build();
+        try {
+            return mediaBlobRepository.save(blob);
+        } catch (DataIntegrityViolationException e) {
+            // Another node stored the same content first
+            return mediaBlobRepository.findBySha256(sha256).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Hard-links {@code source} (each file of it, for a directory) under a staging name and
+     * renames the result to {@code target}, so {@code target} never exists half-written.
+     * Falls back to copying where the file system cannot link.
+     */
+    private static void linkAtomically(Path source, Path target) throws IOException {
+        Path staging = target.resolveSibling("staging_" + System.nanoTime() + "_" + target.getFileName());
+        try {
+            if (Files.isDirectory(source)) {
+                Files.createDirectories(staging);
+                try (Stream<Path> files = Files.list(source)) {
+                    for (Path file : (Iterable<Path>) files::iterator) {
+                        if (Files.isRegularFile(file)) {
+                            linkOrCopy(file, staging.resolve(file.getFileName().toString()));
+                        }
+                    }
+                }
+                if (Files.exists(target)) {
+                    FileUtils.deleteDirectory(target.toFile());
+                }
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                linkOrCopy(source, staging);
+                Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } finally {
+            if (Files.isDirectory(staging)) {
+                FileUtils.deleteDirectory(staging.toFile());
+            } else {
+                Files.deleteIfExists(staging);
+            }
+        }
+    }
+
+    // The copy gets the current time as its modification time, which the blob keeps to itself
+    private static void copyAtomically(Path source, Path target) throws IOException {
+        Path staging = target.resolveSibling("staging_" + System.nanoTime() + "_" + target.getFileName());
+        try {
+            Files.copy(source, staging, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(staging, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    private static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Another volume, or a file system without hard links
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private File blobFile(String sha256) {
+        return new File(new File(new File(root(), "objects"), sha256.substring(0, 2)), sha256);
+    }
+
+    private File derivedFile(String sha256, String name) {
+        return new File(new File(new File(root(), "derived"), sha256), name);
+    }
+
+    private File root() {
+        return new File(baseDir, blobDir);
+    }
+
+    private static void createParent(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir.getAbsolutePath());
+        }
+    }
+
+    private static String pathKey(File file) {
+        try {
+            return TimelineHashing.hash(file.getAbsolutePath());
+        } catch (IOException e) {
+            // Hashing a string cannot fail to serialize
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+}
@@ -35,6 +35,8 @@ public class MediaConversionService {
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
     private final ConvertedMediaRepository convertedMediaRepository;
+    private final ProcessScheduler processScheduler;
+    private final MediaBlobStore mediaBlobStore;
 
     @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
     private String baseDir;
@@ -51,10 +53,14 @@ public class MediaConversionService {
     public MediaConversionService(
             JwtUtil jwtUtil,
             UserRepository userRepository,
-            ConvertedMediaRepository convertedMediaRepository) {
+            ConvertedMediaRepository convertedMediaRepository,
+            ProcessScheduler processScheduler,
+            MediaBlobStore mediaBlobStore) {
         this.jwtUtil = jwtUtil;
         this.userRepository = userRepository;
         this.convertedMediaRepository = convertedMediaRepository;
+        this.processScheduler = processScheduler;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     public ConvertedMedia uploadMedia(User user, MultipartFile mediaFile, String targetFormat) throws IOException {
@@ -72,7 +78,7 @@ public class MediaConversionService {
 
         String originalFileName = mediaFile.getOriginalFilename();
         File inputFile = new File(originalDir, originalFileName);
-        mediaFile.transferTo(inputFile);
+        mediaBlobStore.store(mediaFile, user, inputFile);
         logger.debug("Saved input media to: {}", inputFile.getAbsolutePath());
 
         if (inputFile.length() == 0) {
@@ -275,7 +281,7 @@ public class MediaConversionService {
         // Set working directory to help with any relative path issues
         pb.directory(scriptFile.getParentFile());
 
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.ENCODE, null);
 
         StringBuilder output = new StringBuilder();
         StringBuilder errorOutput = new StringBuilder();
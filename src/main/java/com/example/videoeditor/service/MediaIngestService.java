@@ -0,0 +1,515 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.IngestStatus;
+import com.example.videoeditor.entity.MediaInfo;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares project media right after upload, so the first use of a file finds everything
+ * ready instead of doing the work on the request path. Each upload runs as a small graph
+ * of steps on a bounded pool: the probe first, then for videos the filmstrip, the audio
+ * extraction (followed by its waveform) and the mezzanine copy in parallel; for audio the
+ * waveform. Every step is idempotent and runs at most once at a time per output: a request
+ * that needs an artifact the pipeline is producing waits for that run instead of starting
+ * its own, and whoever comes later reuses the result.
+ */
+@Service
+public class MediaIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaIngestService.class);
+
+    // Rate the audio is decoded at for waveform peaks
+    private static final int WAVEFORM_SAMPLE_RATE = 44100;
+    // Delivery codecs that get a mezzanine copy when they need one; codecs that may carry alpha are left alone
+    private static final Set<String> NORMALIZED_CODECS = Set.of("h264", "hevc", "mpeg4", "mpeg2video", "av1");
+    // Names the artifacts are kept under in the blob store, per uploaded content
+    private static final String AUDIO_ARTIFACT = "audio.mp3";
+    private static final String AUDIO_WAVEFORM_ARTIFACT = "audio.peaks";
+    private static final String WAVEFORM_ARTIFACT = "waveform.peaks";
+    private static final String FILMSTRIP_ARTIFACT = "filmstrip";
+    private static final String MEZZANINE_ARTIFACT = "mezzanine.mp4";
+
+    public enum Kind { VIDEO, AUDIO, IMAGE }
+
+    public enum StepState { PENDING, RUNNING, DONE, SKIPPED, FAILED }
+
+    @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
+    private String baseDir;
+
+    @Value("${app.ffmpeg-path:C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffmpeg.exe}")
+    private String ffmpegPath;
+
+    @Value("${app.ingest.workers:2}")
+    private int workerCount;
+
+    @Value("${app.ingest.status-entries:1024}")
+    private int statusEntries;
+
+    @Value("${app.ingest.mezzanine.enabled:true}")
+    private boolean mezzanineEnabled;
+
+    // Sources with a longer gap between keyframes get a mezzanine copy, so batch seeks stay short
+    @Value("${app.ingest.mezzanine.max-keyframe-interval:4}")
+    private double maxKeyframeInterval;
+
+    private final ProcessScheduler processScheduler;
+    private final MediaProbeService mediaProbeService;
+    private final FilmstripService filmstripService;
+    private final MediaBlobStore mediaBlobStore;
+    // Output path to the run producing it; callers asking for the same output wait for that run
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private ExecutorService workers;
+
+    private final Map<String, Asset> assets = Collections.synchronizedMap(
+            new LinkedHashMap<String, Asset>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Asset> eldest) {
+                    return size() > statusEntries;
+                }
+            });
+
+    public MediaIngestService(ProcessScheduler processScheduler, MediaProbeService mediaProbeService,
+                              FilmstripService filmstripService, MediaBlobStore mediaBlobStore) {
+        this.processScheduler = processScheduler;
+        this.mediaProbeService = mediaProbeService;
+        this.filmstripService = filmstripService;
+        this.mediaBlobStore = mediaBlobStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, workerCount), runnable -> {
+            Thread thread = new Thread(runnable, "ingest-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /** Relative path the audio track of a project video is extracted to. */
+    public static String extractedAudioPath(Long projectId, String videoFileName) {
+        int dot = videoFileName.lastIndexOf('.');
+        String baseFileName = dot > 0 ? videoFileName.substring(0, dot) : videoFileName;
+        return "audio/projects/" + projectId + "/extracted/extracted_" + baseFileName.replaceAll("[^a-zA-Z0-9.]", "_") + ".mp3";
+    }
+
+    /** Relative path of the waveform peaks of an audio file of the project. */
+    public static String waveformPath(Long projectId, String audioPath) {
+        String audioFileName = new File(audioPath).getName();
+        return "audio/projects/" + projectId + "/waveforms/waveform_" + audioFileName.replaceAll("[^a-zA-Z0-9.]", "_") + ".peaks";
+    }
+
+    /** Where the mezzanine copy of a video goes; it exists only for sources that needed one. */
+    public static File mezzanineFile(File videoFile) {
+        return new File(new File(videoFile.getParentFile(), "mezzanine"), videoFile.getName() + ".mp4");
+    }
+
+    public void submitVideo(Long userId, Long projectId, String videoPath) {
+        Asset asset = register(videoPath, Kind.VIDEO, "probe", "filmstrip", "audio", "waveform", "mezzanine");
+        File videoFile = new File(baseDir, videoPath);
+        CompletableFuture<Boolean> probe = step(asset, "probe", () -> mediaProbeService.probe(videoFile) != null, List.of());
+        step(asset, "filmstrip", () -> ensureFilmstrip(videoFile, userId), List.of(probe));
+        CompletableFuture<Boolean> audio = step(asset, "audio", () -> ensureExtractedAudio(videoPath, projectId, userId) != null, List.of(probe));
+        step(asset, "waveform", () -> ensureExtractedWaveformPeaks(videoPath, projectId, userId) != null, List.of(audio));
+        step(asset, "mezzanine", () -> ensureMezzanine(videoFile, userId), List.of(probe));
+    }
+
+    public void submitAudio(Long userId, Long projectId, String audioPath) {
+        Asset asset = register(audioPath, Kind.AUDIO, "probe", "waveform");
+        File audioFile = new File(baseDir, audioPath);
+        CompletableFuture<Boolean> probe = step(asset, "probe", () -> mediaProbeService.probe(audioFile) != null, List.of());
+        step(asset, "waveform", () -> ensureWaveformPeaks(audioPath, projectId, userId) != null, List.of(probe));
+    }
+
+    public void submitImage(Long userId, Long projectId, String imagePath) {
+        Asset asset = register(imagePath, Kind.IMAGE, "probe");
+        File imageFile = new File(baseDir, imagePath);
+        step(asset, "probe", () -> mediaProbeService.probe(imageFile) != null, List.of());
+    }
+
+    /** Readiness of the project's recent uploads, oldest first. */
+    public List<IngestStatus> getStatuses(Long projectId) {
+        String prefix = "/projects/" + projectId + "/";
+        List<IngestStatus> statuses = new ArrayList<>();
+        synchronized (assets) {
+            for (Asset asset : assets.values()) {
+                if (asset.path.contains(prefix)) {
+                    statuses.add(asset.toStatus());
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Extracts the audio track of a project video to {@link #extractedAudioPath}, or reuses
+     * an extraction newer than the video. Returns the relative audio path, or null when the
+     * video has no audio.
+     */
+    public String ensureExtractedAudio(String videoPath, Long projectId, Long userId) throws IOException, InterruptedException {
+        File videoFile = new File(baseDir, videoPath);
+        String audioPath = extractedAudioPath(projectId, videoFile.getName());
+        File audioFile = new File(baseDir, audioPath);
+        return singleFlight(audioFile, () -> {
+            if (isFresh(audioFile, videoFile, videoFile, AUDIO_ARTIFACT)) {
+                return audioPath;
+            }
+            MediaInfo info = mediaProbeService.probe(videoFile);
+            if (!info.hasAudio()) {
+                return null;
+            }
+            if (mediaBlobStore.restoreDerived(videoFile, AUDIO_ARTIFACT, audioFile)) {
+                return audioPath;
+            }
+            File staging = staging(audioFile);
+            run(List.of(ffmpegPath, "-v", "error", "-i", videoFile.getAbsolutePath(), "-vn", "-acodec", "mp3",
+                    "-y", staging.getAbsolutePath()), ProcessScheduler.ProcessClass.ENCODE, userId, staging, audioFile,
+                    "extract audio from " + videoPath);
+            mediaBlobStore.publishDerived(videoFile, AUDIO_ARTIFACT, audioFile);
+            return audioPath;
+        });
+    }
+
+    /**
+     * Decodes the audio once, reading the PCM straight from ffmpeg's stdout, into a
+     * {@link WaveformPyramid} saved at {@link #waveformPath}, or reuses peaks newer than the
+     * audio. Returns the relative path, or null when the audio has no samples.
+     */
+    public String ensureWaveformPeaks(String audioPath, Long projectId, Long userId) throws IOException, InterruptedException {
+        return ensureWaveformPeaks(audioPath, projectId, userId, new File(baseDir, audioPath), WAVEFORM_ARTIFACT);
+    }
+
+    /** {@link #ensureWaveformPeaks} of the audio extracted from a project video. */
+    public String ensureExtractedWaveformPeaks(String videoPath, Long projectId, Long userId) throws IOException, InterruptedException {
+        File videoFile = new File(baseDir, videoPath);
+        return ensureWaveformPeaks(extractedAudioPath(projectId, videoFile.getName()), projectId, userId,
+                videoFile, AUDIO_WAVEFORM_ARTIFACT);
+    }
+
+    // The peaks are kept in the blob store as the artifact of the uploaded file they come from
+    private String ensureWaveformPeaks(String audioPath, Long projectId, Long userId, File upload, String artifact)
+            throws IOException, InterruptedException {
+        File audioFile = new File(baseDir, audioPath);
+        if (!audioFile.exists()) {
+            throw new IOException("Audio file not found: " + audioFile.getAbsolutePath());
+        }
+        if (audioFile.length() == 0) {
+            return null;
+        }
+        String waveformPath = waveformPath(projectId, audioPath);
+        File waveformFile = new File(baseDir, waveformPath);
+        return singleFlight(waveformFile, () -> {
+            if (isFresh(waveformFile, audioFile, upload, artifact)) {
+                return waveformPath;
+            }
+            if (mediaBlobStore.restoreDerived(upload, artifact, waveformFile)) {
+                return waveformPath;
+            }
+            ProcessBuilder builder = new ProcessBuilder(
+                    ffmpegPath, "-v", "error",
+                    "-i", audioFile.getAbsolutePath(),
+                    "-vn",
+                    "-f", "s16le", // 16-bit PCM
+                    "-ac", "1", // Mono
+                    "-ar", String.valueOf(WAVEFORM_SAMPLE_RATE),
+                    "pipe:1"
+            );
+            Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.IMAGE, userId);
+            WaveformPyramid pyramid;
+            try (InputStream pcm = process.getInputStream()) {
+                pyramid = WaveformPyramid.fromPcm(pcm, WAVEFORM_SAMPLE_RATE, WAVEFORM_SAMPLE_RATE / 100); // ~100 peaks per second at level 0
+            } catch (IOException e) {
+                process.destroyForcibly();
+                throw new IOException("Failed to read PCM data for waveform: " + audioPath, e);
+            }
+            // Errors only with -v error, so stderr stays far below the pipe buffer while stdout is drained
+            String errors = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(10, TimeUnit.MINUTES)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out generating waveform for: " + audioPath);
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("Failed to generate PCM data for waveform: " + audioPath + ": " + errors.trim());
+            }
+            if (pyramid.getSampleCount() == 0) {
+                return null;
+            }
+            File staging = staging(waveformFile);
+            pyramid.write(staging);
+            Files.move(staging.toPath(), waveformFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            mediaBlobStore.publishDerived(upload, artifact, waveformFile);
+            logger.debug("Generated {} waveform levels for {}", pyramid.getLevelCount(), audioPath);
+            return waveformPath;
+        });
+    }
+
+    /**
+     * Writes a constant-frame-rate H.264 copy with a one-second GOP next to a video that is
+     * variable frame rate or has sparse keyframes. Batch renders read the copy instead of the
+     * upload. Returns false when the source is fine as it is.
+     */
+    public boolean ensureMezzanine(File videoFile, Long userId) throws IOException, InterruptedException {
+        if (!mezzanineEnabled) {
+            return false;
+        }
+        MediaInfo info = mediaProbeService.probe(videoFile);
+        if (!needsMezzanine(info)) {
+            return false;
+        }
+        File mezzanine = mezzanineFile(videoFile);
+        return singleFlight(mezzanine, () -> {
+            if (isFresh(mezzanine, videoFile, videoFile, MEZZANINE_ARTIFACT)) {
+                return true;
+            }
+            if (mediaBlobStore.restoreDerived(videoFile, MEZZANINE_ARTIFACT, mezzanine)) {
+                mediaProbeService.ingest(mezzanine);
+                return true;
+            }
+            double fps = info.getFps();
+            File staging = staging(mezzanine);
+            run(List.of(ffmpegPath, "-v", "error", "-i", videoFile.getAbsolutePath(),
+                    "-map", "0:v:0", "-an", "-sn",
+                    "-c:v", "libx264", "-preset", "veryfast", "-crf", "16", "-pix_fmt", "yuv420p",
+                    "-fps_mode", "cfr", "-r", String.format("%.6f", fps),
+                    "-g", String.valueOf(Math.max(1, Math.round(fps))),
+                    "-movflags", "+faststart",
+                    "-y", staging.getAbsolutePath()), ProcessScheduler.ProcessClass.ENCODE, userId, staging, mezzanine,
+                    "normalize " + videoFile.getName());
+            mediaBlobStore.publishDerived(videoFile, MEZZANINE_ARTIFACT, mezzanine);
+            mediaProbeService.ingest(mezzanine);
+            return true;
+        });
+    }
+
+    /** Whether the mezzanine copy next to a video was made from its current content. */
+    public boolean hasCurrentMezzanine(File videoFile) {
+        return isFresh(mezzanineFile(videoFile), videoFile, videoFile, MEZZANINE_ARTIFACT);
+    }
+
+    // Filmstrips are directories, which the blob store links file by file
+    private boolean ensureFilmstrip(File videoFile, Long userId) throws IOException, InterruptedException {
+        File dir = FilmstripService.filmstripDir(videoFile);
+        if (filmstripService.isCurrent(videoFile)) {
+            return true;
+        }
+        if (mediaBlobStore.restoreDerived(videoFile, FILMSTRIP_ARTIFACT, dir)) {
+            // Kept for the same content, but stamped with the version of the file it was made from
+            filmstripService.adopt(videoFile);
+            return true;
+        }
+        boolean generated = filmstripService.generateIfMissing(videoFile, userId);
+        if (generated) {
+            mediaBlobStore.publishDerived(videoFile, FILMSTRIP_ARTIFACT, dir);
+        }
+        return generated;
+    }
+
+    private boolean needsMezzanine(MediaInfo info) {
+        if (!info.hasVideo() || info.getFps() == null || info.getDuration() == null
+                || !NORMALIZED_CODECS.contains(info.getVideoCodec())) {
+            return false;
+        }
+        if (Boolean.TRUE.equals(info.getVariableFrameRate())) {
+            return true;
+        }
+        double[] keyframes = MediaProbeService.keyframeTimes(info);
+        double previous = 0;
+        for (double keyframe : keyframes) {
+            if (keyframe - previous > maxKeyframeInterval) {
+                return true;
+            }
+            previous = keyframe;
+        }
+        return keyframes.length > 0 && info.getDuration() - previous > maxKeyframeInterval;
+    }
+
+    private void run(List<String> command, ProcessScheduler.ProcessClass processClass, Long userId,
+                     File staging, File target, String what) throws IOException, InterruptedException {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        try {
+            Process process = processScheduler.start(builder, processClass, userId);
+            String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            if (!process.waitFor(2, TimeUnit.HOURS)) {
+                process.destroyForcibly();
+                throw new IOException("Timed out trying to " + what);
+            }
+            if (process.exitValue() != 0 || !staging.exists()) {
+                throw new IOException("Failed to " + what + ": " + output.trim());
+            }
+            Files.move(staging.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(staging.toPath());
+        }
+    }
+
+    // Artifacts are written under a staging name and renamed, so an existing file is always complete.
+    // One restored from the blob store keeps the kept artifact's time and is matched by content instead
+    private boolean isFresh(File artifact, File source, File upload, String name) {
+        if (!artifact.isFile() || artifact.length() == 0) {
+            return false;
+        }
+        return artifact.lastModified() >= source.lastModified() || mediaBlobStore.isDerived(upload, name, artifact);
+    }
+
+    private static File staging(File target) throws IOException {
+        File dir = target.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create directory: " + dir.getAbsolutePath());
+        }
+        return new File(dir, "staging_" + System.nanoTime() + "_" + target.getName());
+    }
+
+    @FunctionalInterface
+    private interface Producer<T> {
+        T produce() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Runs the producer of an output unless a run for the same output is already in flight,
+     * in which case it waits for that run's result. No lock is held while the producer runs,
+     * so work on other outputs is never held up behind it.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(File output, Producer<T> producer) throws IOException, InterruptedException {
+        String key = output.getAbsolutePath();
+        CompletableFuture<Object> run = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, run);
+        if (existing != null) {
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException("Failed to produce " + output.getName(), cause);
+            }
+        }
+        try {
+            T result = producer.produce();
+            run.complete(result);
+            return result;
+        } catch (Throwable e) {
+            run.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, run);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        /** Runs the step; false when there was nothing to do. */
+        boolean run() throws Exception;
+    }
+
+    private Asset register(String path, Kind kind, String... steps) {
+        Asset asset = new Asset(path, kind, steps);
+        assets.put(path, asset);
+        return asset;
+    }
+
+    /**
+     * Schedules a step once all its dependencies are done. A step whose dependency failed or
+     * had nothing to do is skipped, e.g. the waveform of a video without audio.
+     */
+    private CompletableFuture<Boolean> step(Asset asset, String name, Step action, List<CompletableFuture<Boolean>> after) {
+        return CompletableFuture.allOf(after.toArray(new CompletableFuture<?>[0])).thenApplyAsync(ignored -> {
+            for (CompletableFuture<Boolean> dependency : after) {
+                if (!dependency.join()) {
+                    asset.set(name, StepState.SKIPPED);
+                    return false;
+                }
+            }
+            asset.set(name, StepState.RUNNING);
+            try {
+                boolean ran = action.run();
+                asset.set(name, ran ? StepState.DONE : StepState.SKIPPED);
+                return ran;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                asset.fail(name, "Interrupted");
+                return false;
+            } catch (Exception e) {
+                logger.warn("Ingest step {} failed for {}: {}", name, asset.path, e.getMessage());
+                asset.fail(name, e.getMessage());
+                return false;
+            }
+        }, workers);
+    }
+
+    private static class Asset {
+        private final String path;
+        private final Kind kind;
+        private final Map<String, StepState> steps = new LinkedHashMap<>();
+        private String errorMessage;
+
+        Asset(String path, Kind kind, String... stepNames) {
+            this.path = path;
+            this.kind = kind;
+            for (String stepName : stepNames) {
+                steps.put(stepName, StepState.PENDING);
+            }
+        }
+
+        synchronized void set(String step, StepState state) {
+            steps.put(step, state);
+        }
+
+        synchronized void fail(String step, String message) {
+            steps.put(step, StepState.FAILED);
+            errorMessage = step + ": " + message;
+        }
+
+        synchronized IngestStatus toStatus() {
+            Map<String, String> states = new LinkedHashMap<>();
+            boolean ready = true;
+            boolean failed = false;
+            for (Map.Entry<String, StepState> entry : steps.entrySet()) {
+                states.put(entry.getKey(), entry.getValue().name());
+                ready &= entry.getValue() == StepState.DONE || entry.getValue() == StepState.SKIPPED;
+                failed |= entry.getValue() == StepState.FAILED;
+            }
+            return IngestStatus.builder()
+                    .path(path)
+                    .kind(kind.name())
+                    .ready(ready)
+                    .failed(failed)
+                    .steps(states)
+                    .errorMessage(errorMessage)
+                    .build();
+        }
+    }
+}
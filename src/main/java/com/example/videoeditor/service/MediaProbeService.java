@@ -0,0 +1,363 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.entity.MediaInfo;
+import com.example.videoeditor.repository.MediaInfoRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single source of media metadata. A file is probed with ffprobe once, normally right
+ * after upload, and the result is persisted as a {@link MediaInfo} row: duration, streams,
+ * codecs, resolution, frame rate, rotation, audio layout and the keyframe index used for
+ * input seeks. Later lookups come from an in-memory LRU in front of the table, so asking
+ * for a duration or a keyframe index no longer starts a process.
+ */
+@Service
+public class MediaProbeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaProbeService.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${app.ffmpeg-path:C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffmpeg.exe}")
+    private String ffmpegPath;
+
+    @Value("${app.media-probe.cache-size:1024}")
+    private int cacheSize;
+
+    private final ProcessScheduler processScheduler;
+    private final MediaInfoRepository mediaInfoRepository;
+    private final ObjectMapper objectMapper;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final Map<String, MediaInfo> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, MediaInfo>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MediaInfo> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+
+    public MediaProbeService(ProcessScheduler processScheduler, MediaInfoRepository mediaInfoRepository,
+                             ObjectMapper objectMapper) {
+        this.processScheduler = processScheduler;
+        this.mediaInfoRepository = mediaInfoRepository;
+        this.objectMapper = objectMapper;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Probes a newly stored upload so later requests find its metadata. Failures are logged
+     * and leave the probe to the first use of the file.
+     */
+    public MediaInfo ingest(File file) {
+        return ingest(file, null);
+    }
+
+    /**
+     * Like {@link #ingest(File)} for a file whose content hash is known. When a file with the
+     * same content was probed before, its metadata is copied instead of probing again.
+     */
+    public MediaInfo ingest(File file, String contentHash) {
+        try {
+            return probe(file, contentHash);
+        } catch (IOException e) {
+            logger.warn("Failed to probe {} at ingest: {}", file.getAbsolutePath(), e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * The metadata of the file, from memory, the table, or a fresh probe when the file is
+     * new or has changed since it was probed.
+     *
+     * @throws IOException if the file is missing or ffprobe cannot read it
+     */
+    public MediaInfo probe(File file) throws IOException, InterruptedException {
+        return probe(file, null);
+    }
+
+    private MediaInfo probe(File file, String contentHash) throws IOException, InterruptedException {
+        File absolute = file.getAbsoluteFile();
+        if (!absolute.isFile()) {
+            throw new IOException("Media file not found: " + absolute.getPath());
+        }
+        String fileKey = TimelineHashing.hash(absolute.getPath());
+        MediaInfo cached = cache.get(fileKey);
+        if (isCurrent(cached, absolute)) {
+            return cached;
+        }
+        synchronized (locks[Math.floorMod(fileKey.hashCode(), LOCK_STRIPES)]) {
+            cached = cache.get(fileKey);
+            if (isCurrent(cached, absolute)) {
+                return cached;
+            }
+            MediaInfo stored = mediaInfoRepository.findByFileKey(fileKey).orElse(null);
+            if (isCurrent(stored, absolute)) {
+                cache.put(fileKey, stored);
+                return stored;
+            }
+            MediaInfo sameContent = contentHash != null
+                    ? mediaInfoRepository.findFirstByContentHash(contentHash).orElse(null) : null;
+            MediaInfo probed = sameContent != null ? copyFor(sameContent, absolute, fileKey) : runProbe(absolute, fileKey);
+            probed.setContentHash(contentHash);
+            if (stored != null) {
+                probed.setId(stored.getId());
+            }
+            try {
+                probed = mediaInfoRepository.save(probed);
+            } catch (DataIntegrityViolationException e) {
+                // Another node stored the same file first; its row is as good as ours
+                probed = mediaInfoRepository.findByFileKey(fileKey).orElse(probed);
+            }
+            cache.put(fileKey, probed);
+            return probed;
+        }
+    }
+
+    /** Duration in seconds. */
+    public double duration(File file) throws IOException, InterruptedException {
+        MediaInfo info = probe(file);
+        if (info.getDuration() == null) {
+            throw new IOException("No duration found for " + file.getAbsolutePath());
+        }
+        return info.getDuration();
+    }
+
+    /** Sorted keyframe times of the first video stream; empty when it has none or no video. */
+    public static double[] keyframeTimes(MediaInfo info) {
+        if (info.getKeyframes() == null) {
+            return new double[0];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(info.getKeyframes());
+        double[] times = new double[buffer.remaining() / Double.BYTES];
+        buffer.asDoubleBuffer().get(times);
+        return times;
+    }
+
+    private static MediaInfo copyFor(MediaInfo source, File file, String fileKey) {
+        return MediaInfo.builder()
+                .fileKey(fileKey)
+                .path(file.getPath())
+                .fileSize(file.length())
+                .lastModified(file.lastModified())
+                .formatName(source.getFormatName())
+                .duration(source.getDuration())
+                .streamCount(source.getStreamCount())
+                .streams(source.getStreams())
+                .videoCodec(source.getVideoCodec())
+                .width(source.getWidth())
+                .height(source.getHeight())
+                .fps(source.getFps())
+                .variableFrameRate(source.getVariableFrameRate())
+                .rotation(source.getRotation())
+                .audioCodec(source.getAudioCodec())
+                .audioChannels(source.getAudioChannels())
+                .audioChannelLayout(source.getAudioChannelLayout())
+                .audioSampleRate(source.getAudioSampleRate())
+                .keyframes(source.getKeyframes())
+                .probedAt(source.getProbedAt())
+                .build();
+    }
+
+    private static boolean isCurrent(MediaInfo info, File file) {
+        return info != null && info.getFileSize() == file.length() && info.getLastModified() == file.lastModified();
+    }
+
+    private MediaInfo runProbe(File file, String fileKey) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder(
+                ffprobePath(),
+                "-v", "error",
+                "-show_format",
+                "-show_streams",
+                "-of", "json",
+                file.getAbsolutePath()
+        );
+        builder.redirectErrorStream(true);
+        Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.PROBE, null);
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (!process.waitFor(2, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            throw new IOException("ffprobe timed out for " + file.getAbsolutePath());
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("ffprobe failed for " + file.getAbsolutePath() + ": " + output.trim());
+        }
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(output);
+        } catch (IOException e) {
+            throw new IOException("Failed to parse ffprobe output for " + file.getAbsolutePath() + ": " + output.trim(), e);
+        }
+
+        MediaInfo info = MediaInfo.builder()
+                .fileKey(fileKey)
+                .path(file.getPath())
+                .fileSize(file.length())
+                .lastModified(file.lastModified())
+                .probedAt(LocalDateTime.now())
+                .build();
+        JsonNode format = root.path("format");
+        info.setFormatName(textOrNull(format, "format_name"));
+        info.setDuration(doubleOrNull(format, "duration"));
+
+        List<Map<String, Object>> streams = new ArrayList<>();
+        for (JsonNode stream : root.path("streams")) {
+            String type = stream.path("codec_type").asText();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("index", stream.path("index").asInt());
+            summary.put("type", type);
+            summary.put("codec", textOrNull(stream, "codec_name"));
+            if ("video".equals(type)) {
+                summary.put("width", stream.path("width").asInt());
+                summary.put("height", stream.path("height").asInt());
+                summary.put("frameRate", textOrNull(stream, "avg_frame_rate"));
+                // Cover art is a single-frame video stream; it must not hide the real one
+                boolean attachedPicture = stream.path("disposition").path("attached_pic").asInt() == 1;
+                if (info.getVideoCodec() == null && !attachedPicture) {
+                    readVideoStream(stream, info);
+                }
+            } else if ("audio".equals(type)) {
+                summary.put("channels", stream.path("channels").asInt());
+                summary.put("sampleRate", stream.path("sample_rate").asInt());
+                if (info.getAudioCodec() == null) {
+                    info.setAudioCodec(textOrNull(stream, "codec_name"));
+                    info.setAudioChannels(stream.path("channels").asInt());
+                    info.setAudioChannelLayout(textOrNull(stream, "channel_layout"));
+                    info.setAudioSampleRate(stream.path("sample_rate").asInt());
+                }
+            }
+            streams.add(summary);
+        }
+        info.setStreamCount(streams.size());
+        info.setStreams(objectMapper.writeValueAsString(streams));
+        if (info.hasVideo()) {
+            info.setKeyframes(pack(probeKeyframes(file)));
+        }
+        logger.debug("Probed {} in {} ms", file.getAbsolutePath(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return info;
+    }
+
+    private static void readVideoStream(JsonNode stream, MediaInfo info) {
+        info.setVideoCodec(textOrNull(stream, "codec_name"));
+        info.setWidth(stream.path("width").asInt());
+        info.setHeight(stream.path("height").asInt());
+        double averageRate = parseRate(stream.path("avg_frame_rate").asText());
+        double baseRate = parseRate(stream.path("r_frame_rate").asText());
+        info.setFps(averageRate > 0 ? averageRate : baseRate > 0 ? baseRate : null);
+        // ffprobe's usual hint: a constant-rate stream has the same average and base rate
+        info.setVariableFrameRate(averageRate > 0 && baseRate > 0 && Math.abs(averageRate - baseRate) > 0.01);
+        int rotation = stream.path("tags").path("rotate").asInt(0);
+        for (JsonNode sideData : stream.path("side_data_list")) {
+            if (sideData.has("rotation")) {
+                rotation = sideData.path("rotation").asInt();
+            }
+        }
+        info.setRotation(Math.floorMod(rotation, 360));
+    }
+
+    private double[] probeKeyframes(File file) throws IOException, InterruptedException {
+        // Packet flags are read from the container without decoding, so this is cheap even for long files
+        ProcessBuilder builder = new ProcessBuilder(
+                ffprobePath(),
+                "-v", "error",
+                "-select_streams", "v:0",
+                "-show_entries", "packet=pts_time,flags",
+                "-of", "csv=p=0",
+                file.getAbsolutePath()
+        );
+        builder.redirectErrorStream(true);
+        Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.PROBE, null);
+        List<Double> times = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(",");
+                if (parts.length < 2 || !parts[1].startsWith("K")) {
+                    continue;
+                }
+                try {
+                    times.add(Double.parseDouble(parts[0]));
+                } catch (NumberFormatException ignored) {
+                    // pts_time is N/A for some packets
+                }
+            }
+        }
+        if (!process.waitFor(2, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            logger.warn("Keyframe probe timed out for {}", file.getAbsolutePath());
+            return new double[0];
+        }
+        if (process.exitValue() != 0) {
+            logger.warn("Keyframe probe failed for {} with exit code {}", file.getAbsolutePath(), process.exitValue());
+            return new double[0];
+        }
+        return times.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+    }
+
+    private static byte[] pack(double[] times) {
+        ByteBuffer buffer = ByteBuffer.allocate(times.length * Double.BYTES);
+        buffer.asDoubleBuffer().put(times);
+        return buffer.array();
+    }
+
+    private String ffprobePath() {
+        return ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe");
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && !value.isNull() ? value.asText() : null;
+    }
+
+    private static Double doubleOrNull(JsonNode node, String field) {
+        String value = textOrNull(node, field);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // ffprobe writes rates as fractions, e.g. 30000/1001; 0/0 when unknown
+    private static double parseRate(String rate) {
+        try {
+            int slash = rate.indexOf('/');
+            if (slash < 0) {
+                return Double.parseDouble(rate);
+            }
+            double denominator = Double.parseDouble(rate.substring(slash + 1));
+            return denominator != 0 ? Double.parseDouble(rate.substring(0, slash)) / denominator : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.util.zip.ZipOutputStream;
 public class PodcastClipService {
 
     private static final Logger logger = LoggerFactory.getLogger(PodcastClipService.class);
+    // Name of the transcription segments in the blob store
+    private static final String TRANSCRIPT_ARTIFACT = "podcast-transcript.json";
 
     private final JwtUtil jwtUtil;
     private final PodcastClipMediaRepository podcastClipMediaRepository;
@@ -39,6 +41,9 @@ public class PodcastClipService {
     private final ObjectMapper objectMapper;
     private final ResourceLoader resourceLoader;
     private final SubtitleService subtitleService;
+    private final ProcessScheduler processScheduler;
+    private final MediaProbeService mediaProbeService;
+    private final MediaBlobStore mediaBlobStore;
 
     @Value("${app.base-dir:D:\\Backend\\videoEditor-main}")
     private String baseDir;
@@ -62,13 +67,17 @@ public class PodcastClipService {
         JwtUtil jwtUtil,
         PodcastClipMediaRepository podcastClipMediaRepository,
         UserRepository userRepository,
-        ObjectMapper objectMapper, ResourceLoader resourceLoader, SubtitleService subtitleService) {
+        ObjectMapper objectMapper, ResourceLoader resourceLoader, SubtitleService subtitleService,
+        ProcessScheduler processScheduler, MediaProbeService mediaProbeService, MediaBlobStore mediaBlobStore) {
         this.jwtUtil = jwtUtil;
         this.podcastClipMediaRepository = podcastClipMediaRepository;
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
         this.resourceLoader = resourceLoader;
       this.subtitleService = subtitleService;
+        this.processScheduler = processScheduler;
+        this.mediaProbeService = mediaProbeService;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     public PodcastClipMedia uploadMedia(User user, MultipartFile mediaFile, String youtubeUrl) throws IOException {
@@ -97,7 +106,7 @@ public class PodcastClipService {
         } else if (mediaFile != null && !mediaFile.isEmpty()) {
             String originalFileName = mediaFile.getOriginalFilename();
             File inputFile = new File(originalDir, originalFileName);
-            mediaFile.transferTo(inputFile);
+            mediaBlobStore.store(mediaFile, user, inputFile);
             logger.debug("Saved input media to: {}", inputFile.getAbsolutePath());
 
             if (inputFile.length() == 0) {
@@ -304,7 +313,7 @@ public class PodcastClipService {
 
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PROBE, null);
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
@@ -321,45 +330,20 @@ public class PodcastClipService {
     }
 
     private void validateInputFile(File inputFile) throws IOException, InterruptedException {
-        List<String> command = Arrays.asList(
-            ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-            "-i", inputFile.getAbsolutePath(),
-            "-show_streams",
-            "-show_format",
-            "-print_format", "json",
-            "-v", "quiet"
-        );
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line);
-            }
-        }
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            logger.error("FFprobe failed to validate input file {}: {}", inputFile.getAbsolutePath(), output);
-            throw new IOException("FFprobe failed to validate input file: " + output);
-        }
-
-        try {
-            Map<String, Object> result = objectMapper.readValue(output.toString(), new TypeReference<Map<String, Object>>() {});
-            List<?> streams = (List<?>) result.getOrDefault("streams", Collections.emptyList());
-            if (streams.isEmpty()) {
-                logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
-                throw new IOException("No streams found in input file");
-            }
-        } catch (JsonProcessingException e) {
-            logger.error("Failed to parse FFprobe output for {}: {}", inputFile.getAbsolutePath(), output);
-            throw new IOException("Failed to parse FFprobe output: " + output);
+        if (mediaProbeService.probe(inputFile).getStreamCount() == 0) {
+            logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
+            throw new IOException("No streams found in input file");
         }
     }
 
     private List<Map<String, Object>> transcribeAudio(File inputFile, Long mediaId) throws IOException, InterruptedException {
+        // Segments are kept with the uploaded content, so the same file is transcribed once
+        File cachedSegments = mediaBlobStore.findDerived(inputFile, TRANSCRIPT_ARTIFACT);
+        if (cachedSegments != null) {
+            logger.debug("Reusing transcription of {} for mediaId {}", inputFile.getName(), mediaId);
+            return objectMapper.readValue(cachedSegments, new TypeReference<List<Map<String, Object>>>() {});
+        }
+
         String audioPath = inputFile.getAbsolutePath().replace(".mp4", ".mp3");
         List<String> extractAudioCommand = Arrays.asList(
             ffmpegPath,
@@ -371,7 +355,7 @@ public class PodcastClipService {
 
         ProcessBuilder pb = new ProcessBuilder(extractAudioCommand);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.ENCODE, null);
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
@@ -394,7 +378,7 @@ public class PodcastClipService {
 
         pb = new ProcessBuilder(whisperCommand);
         pb.redirectErrorStream(true);
-        process = pb.start();
+        process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PYTHON, null);
         output = new StringBuilder();
         StringBuilder jsonOutput = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -427,7 +411,9 @@ public class PodcastClipService {
         }
 
         try {
-            return objectMapper.readValue(jsonOutput.toString(), new TypeReference<List<Map<String, Object>>>() {});
+            List<Map<String, Object>> segments = objectMapper.readValue(jsonOutput.toString(), new TypeReference<List<Map<String, Object>>>() {});
+            mediaBlobStore.publishDerived(inputFile, TRANSCRIPT_ARTIFACT, objectMapper.writeValueAsBytes(segments));
+            return segments;
         } catch (JsonProcessingException e) {
             logger.error("Failed to parse Whisper JSON output for mediaId {}: {}", mediaId, jsonOutput);
             throw new IOException("Failed to parse Whisper JSON output: " + jsonOutput, e);
@@ -776,7 +762,7 @@ public class PodcastClipService {
         ProcessBuilder processBuilder = new ProcessBuilder(command);
         processBuilder.redirectErrorStream(true);
 
-        Process process = processBuilder.start();
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, null);
         StringBuilder output = new StringBuilder();
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
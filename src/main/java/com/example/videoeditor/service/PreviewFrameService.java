@@ -0,0 +1,214 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.TimelineState;
+import com.example.videoeditor.entity.Project;
+import com.example.videoeditor.entity.User;
+import com.example.videoeditor.repository.ProjectRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders single frames of an editing session's timeline for scrubbing, without an export.
+ * A frame goes through the same graph as an export batch, for a window one frame long, and
+ * comes back as a downscaled JPEG. Frames are cached in memory under the batch cache key of
+ * the segments on screen, so edits elsewhere on the timeline keep them valid, and concurrent
+ * requests for the same frame share one ffmpeg run.
+ */
+@Service
+public class PreviewFrameService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreviewFrameService.class);
+    private static final int MIN_WIDTH = 64;
+
+    private final VideoEditingService videoEditingService;
+    private final ProjectRepository projectRepository;
+    private final ProcessScheduler processScheduler;
+    private final TextRasterCache textRasterCache;
+    private final ImageInputCache imageInputCache;
+
+    @Value("${app.preview.default-width:640}")
+    private int defaultWidth;
+
+    @Value("${app.preview.frame-cache-max-bytes:67108864}")
+    private long maxCacheBytes;
+
+    @Value("${app.preview.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    private final Map<String, byte[]> frameCache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    // Reads ffmpeg's stdout while the request thread waits for the process with a timeout
+    private ExecutorService drainers;
+
+    public PreviewFrameService(VideoEditingService videoEditingService, ProjectRepository projectRepository,
+                               ProcessScheduler processScheduler, TextRasterCache textRasterCache,
+                               ImageInputCache imageInputCache) {
+        this.videoEditingService = videoEditingService;
+        this.projectRepository = projectRepository;
+        this.processScheduler = processScheduler;
+        this.textRasterCache = textRasterCache;
+        this.imageInputCache = imageInputCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        drainers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "preview-drain-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (drainers != null) {
+            drainers.shutdownNow();
+        }
+    }
+
+    /**
+     * The JPEG of the session's timeline at the given time, snapped to the frame it falls in.
+     * Width defaults to {@code app.preview.default-width} and never exceeds the canvas.
+     */
+    public byte[] renderFrame(User user, Long projectId, String sessionId, double time, Integer width)
+            throws IOException, InterruptedException {
+        Project project = projectRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
+        if (user != null && !project.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Not authorized to preview this project");
+        }
+        VideoEditingService.EditSession session = videoEditingService.getSession(sessionId);
+        if (!projectId.equals(session.getProjectId())) {
+            throw new RuntimeException("Session does not match project");
+        }
+        if (time < 0 || Double.isNaN(time)) {
+            throw new IllegalArgumentException("Frame time must not be negative");
+        }
+
+        TimelineState timelineState = session.getTimelineState();
+        int canvasWidth = timelineState.getCanvasWidth() != null ? timelineState.getCanvasWidth() : project.getWidth();
+        int canvasHeight = timelineState.getCanvasHeight() != null ? timelineState.getCanvasHeight() : project.getHeight();
+        Float fps = project.getFps();
+        float frameRate = fps != null ? fps : 30;
+        double frameTime = Math.floor(time * frameRate + 1e-6) / frameRate;
+        int previewWidth = Math.max(MIN_WIDTH, Math.min(canvasWidth, width != null ? width : defaultWidth)) / 2 * 2;
+
+        String key = videoEditingService.frameCacheKey(timelineState, canvasWidth, canvasHeight, fps, projectId,
+                frameTime, previewWidth);
+        byte[] cached = cachedFrame(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<byte[]> render = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, render);
+        if (existing != null) {
+            return await(existing);
+        }
+        try (TextRasterCache.Pins textPins = textRasterCache.pin(); ImageInputCache.Pins imagePins = imageInputCache.pin()) {
+            List<String> command = videoEditingService.buildFrameCommand(timelineState, canvasWidth, canvasHeight, fps,
+                    projectId, frameTime, previewWidth, textPins, imagePins);
+            byte[] frame = runFfmpeg(command, user != null ? user.getId() : null, projectId);
+            cacheFrame(key, frame);
+            render.complete(frame);
+            return frame;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, render);
+        }
+    }
+
+    private byte[] runFfmpeg(List<String> command, Long userId, Long projectId) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        Process process = processScheduler.start(builder, ProcessScheduler.ProcessClass.IMAGE, userId,
+                ProgressRegistry.key("preview", projectId));
+        // stdout is drained on its own thread so the timeout covers the whole run; errors only with
+        // -v error, so stderr stays far below the pipe buffer until the process has exited
+        CompletableFuture<byte[]> stdout = CompletableFuture.supplyAsync(() -> {
+            try {
+                return process.getInputStream().readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, drainers);
+        byte[] frame;
+        try {
+            if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IOException("Preview frame timed out");
+            }
+            // Exited, so the pipe is at its end; bounded in case a child process still holds it open
+            frame = stdout.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read preview frame", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Preview frame timed out");
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+        String errors = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (process.exitValue() != 0 || frame.length == 0) {
+            throw new IOException("Preview frame failed with exit code " + process.exitValue() + ": " + errors.trim());
+        }
+        logger.debug("Rendered preview frame of project {} in {} ms", projectId,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        return frame;
+    }
+
+    private byte[] await(CompletableFuture<byte[]> render) throws IOException, InterruptedException {
+        try {
+            return render.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException("Preview frame failed", cause);
+        } catch (TimeoutException e) {
+            throw new IOException("Preview frame timed out");
+        }
+    }
+
+    private synchronized byte[] cachedFrame(String key) {
+        return frameCache.get(key);
+    }
+
+    private synchronized void cacheFrame(String key, byte[] frame) {
+        byte[] previous = frameCache.put(key, frame);
+        cachedBytes += frame.length - (previous != null ? previous.length : 0);
+        Iterator<byte[]> eldest = frameCache.values().iterator();
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            byte[] evicted = eldest.next();
+            if (evicted == frame) {
+                break;
+            }
+            cachedBytes -= evicted.length;
+            eldest.remove();
+        }
+    }
+}
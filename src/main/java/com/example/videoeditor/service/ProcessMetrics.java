@@ -0,0 +1,442 @@
+package com.example.videoeditor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records what every external process cost: wall and CPU time, peak resident memory,
+ * the speed ffmpeg reported, bytes read and written and the exit code. Each run is
+ * published as Micrometer meters tagged with its process class and the service that
+ * launched it, and runs that belong to a job (an export, for instance) are also summed
+ * per job so a single render can be broken down afterwards.
+ * <p>
+ * CPU time and memory come from ffmpeg's {@code -benchmark} report when the process
+ * prints one, and otherwise from sampling the process tree while it runs.
+ */
+@Component
+public class ProcessMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessMetrics.class);
+
+    private static final int MAX_TRACKED_JOBS = 200;
+    private static final int MAX_RUNS_PER_JOB = 500;
+
+    private static final Pattern FPS = Pattern.compile("(?:^|\\s)fps=\\s*([0-9.]+)");
+    private static final Pattern SPEED = Pattern.compile("(?:^|\\s)speed=\\s*([0-9.]+)x");
+    private static final Pattern BENCH_TIMES = Pattern.compile("bench: utime=([0-9.]+)s stime=([0-9.]+)s");
+    private static final Pattern BENCH_MAXRSS = Pattern.compile("bench: maxrss=([0-9]+)\\s*(KiB|kB)");
+
+    @Value("${app.processes.sample-interval-ms:1000}")
+    private long sampleIntervalMillis;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Process, ProcessRun> liveRuns = new ConcurrentHashMap<>();
+    private final Map<String, JobBreakdown> jobs = Collections.synchronizedMap(
+            new LinkedHashMap<String, JobBreakdown>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JobBreakdown> eldest) {
+                    return size() > MAX_TRACKED_JOBS;
+                }
+            });
+
+    private ScheduledExecutorService sampler;
+
+    public ProcessMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "process-metrics-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleWithFixedDelay(this::sampleLiveRuns, sampleIntervalMillis, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sampler.shutdownNow();
+    }
+
+    /** One process from launch to exit. Filled in by the sampler and by {@link #observe}. */
+    static class ProcessRun {
+        private final ProcessScheduler.ProcessClass processClass;
+        private final String service;
+        private final String jobKey;
+        private final Long userId;
+        private final List<String> command;
+        private final long waitNanos;
+        private final long inputBytes;
+        private final long startedAt = System.nanoTime();
+
+        private volatile Process process;
+        private final Map<Long, Long> cpuNanosByPid = new ConcurrentHashMap<>();
+        private volatile long sampledPeakRssBytes;
+        private volatile double benchCpuSeconds = -1;
+        private volatile long benchPeakRssBytes = -1;
+        private volatile double fps = -1;
+        private volatile double speed = -1;
+        private volatile long wallNanos;
+        private volatile boolean recorded;
+
+        private ProcessRun(ProcessScheduler.ProcessClass processClass, String service, String jobKey, Long userId,
+                           List<String> command, long waitNanos) {
+            this.processClass = processClass;
+            this.service = service;
+            this.jobKey = jobKey;
+            this.userId = userId;
+            this.command = command;
+            this.waitNanos = waitNanos;
+            this.inputBytes = inputBytes(command);
+        }
+
+        private void observe(String line) {
+            if (line.startsWith("bench:")) {
+                Matcher times = BENCH_TIMES.matcher(line);
+                if (times.find()) {
+                    benchCpuSeconds = Double.parseDouble(times.group(1)) + Double.parseDouble(times.group(2));
+                }
+                Matcher maxRss = BENCH_MAXRSS.matcher(line);
+                if (maxRss.find()) {
+                    benchPeakRssBytes = Long.parseLong(maxRss.group(1)) * 1024;
+                }
+                return;
+            }
+            if (!line.contains("fps=") && !line.contains("speed=")) {
+                return;
+            }
+            Matcher fpsMatcher = FPS.matcher(line);
+            if (fpsMatcher.find()) {
+                fps = parseOrKeep(fpsMatcher.group(1), fps);
+            }
+            Matcher speedMatcher = SPEED.matcher(line);
+            if (speedMatcher.find()) {
+                speed = parseOrKeep(speedMatcher.group(1), speed);
+            }
+        }
+
+        private double cpuSeconds() {
+            if (benchCpuSeconds >= 0) {
+                return benchCpuSeconds;
+            }
+            return cpuNanosByPid.values().stream().mapToLong(Long::longValue).sum() / 1e9;
+        }
+
+        private long peakRssBytes() {
+            return benchPeakRssBytes >= 0 ? benchPeakRssBytes : sampledPeakRssBytes;
+        }
+    }
+
+    /** Sums of the runs that belonged to one job, plus the runs themselves. */
+    public static class JobBreakdown {
+        private final String jobKey;
+        private final List<Map<String, Object>> runs = new ArrayList<>();
+        private int processes;
+        private int failures;
+        private double wallSeconds;
+        private double cpuSeconds;
+        private double waitSeconds;
+        private long peakRssBytes;
+        private long inputBytes;
+        private long outputBytes;
+
+        private JobBreakdown(String jobKey) {
+            this.jobKey = jobKey;
+        }
+
+        private synchronized void add(Map<String, Object> run, boolean failed, double wall, double cpu, double wait,
+                                      long peakRss, long in, long out) {
+            processes++;
+            if (failed) {
+                failures++;
+            }
+            wallSeconds += wall;
+            cpuSeconds += cpu;
+            waitSeconds += wait;
+            peakRssBytes = Math.max(peakRssBytes, peakRss);
+            inputBytes += in;
+            outputBytes += out;
+            if (runs.size() < MAX_RUNS_PER_JOB) {
+                runs.add(run);
+            }
+        }
+
+        public synchronized Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("job", jobKey);
+            map.put("processes", processes);
+            map.put("failures", failures);
+            map.put("wallSeconds", wallSeconds);
+            map.put("cpuSeconds", cpuSeconds);
+            map.put("queueWaitSeconds", waitSeconds);
+            map.put("peakRssBytes", peakRssBytes);
+            map.put("inputBytes", inputBytes);
+            map.put("outputBytes", outputBytes);
+            map.put("runs", new ArrayList<>(runs));
+            return map;
+        }
+    }
+
+    ProcessRun begin(ProcessScheduler.ProcessClass processClass, String service, String jobKey, Long userId,
+                     List<String> command, long waitNanos) {
+        return new ProcessRun(processClass, service, jobKey, userId, new ArrayList<>(command), waitNanos);
+    }
+
+    void attach(ProcessRun run, Process process) {
+        run.process = process;
+        liveRuns.put(process, run);
+    }
+
+    /**
+     * Feeds one line of a process's output to its run, picking up {@code fps=}, {@code speed=}
+     * and ffmpeg's {@code bench:} report. Lines of unknown processes are ignored.
+     */
+    public void observe(Process process, String line) {
+        ProcessRun run = liveRuns.get(process);
+        if (run != null && line != null) {
+            run.observe(line);
+        }
+    }
+
+    /**
+     * Called when the process has exited. Recording waits one sample interval because the
+     * caller is usually still draining output (including the benchmark report) from the pipe.
+     */
+    void finish(ProcessRun run) {
+        run.wallNanos = System.nanoTime() - run.startedAt;
+        try {
+            sampler.schedule(() -> record(run), sampleIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            record(run);
+        }
+    }
+
+    /** Queue depth and CPU units in use, as gauges next to the per-process meters. */
+    void bindScheduler(ProcessScheduler scheduler) {
+        Gauge.builder("media.process.queue.depth", scheduler, ProcessScheduler::getQueueDepth)
+                .description("Processes waiting for CPU units")
+                .register(meterRegistry);
+        Gauge.builder("media.process.units.in.use", scheduler, ProcessScheduler::getUnitsInUse)
+                .description("CPU units held by running processes")
+                .register(meterRegistry);
+        Gauge.builder("media.process.units.capacity", scheduler, ProcessScheduler::getCapacity)
+                .description("CPU units available to external processes")
+                .register(meterRegistry);
+    }
+
+    public Map<String, Object> getJobBreakdown(String jobKey) {
+        JobBreakdown breakdown = jobs.get(jobKey);
+        return breakdown != null ? breakdown.toMap() : null;
+    }
+
+    public List<String> getTrackedJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.keySet());
+        }
+    }
+
+    private void record(ProcessRun run) {
+        if (run.recorded) {
+            return;
+        }
+        run.recorded = true;
+        Process process = run.process;
+        liveRuns.remove(process);
+
+        int exitCode = process.isAlive() ? -1 : process.exitValue();
+        boolean failed = exitCode != 0;
+        double wallSeconds = run.wallNanos / 1e9;
+        double cpuSeconds = run.cpuSeconds();
+        long peakRss = run.peakRssBytes();
+        long outputBytes = outputBytes(run.command);
+        Tags tags = Tags.of(
+                "class", run.processClass.name(),
+                "service", run.service,
+                "outcome", failed ? "failure" : "success");
+
+        Timer.builder("media.process.duration")
+                .description("Wall time of external processes")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(run.wallNanos, TimeUnit.NANOSECONDS);
+        Timer.builder("media.process.queue.wait")
+                .description("Time spent waiting for CPU units before launch")
+                .tags(tags)
+                .register(meterRegistry)
+                .record(run.waitNanos, TimeUnit.NANOSECONDS);
+        if (cpuSeconds > 0) {
+            Timer.builder("media.process.cpu")
+                    .description("User plus system CPU time of external processes")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos((long) (cpuSeconds * 1e9)));
+        }
+        if (peakRss > 0) {
+            summary("media.process.peak.rss", "bytes", "Peak resident memory", tags).record(peakRss);
+        }
+        if (run.speed >= 0) {
+            summary("media.process.speed", null, "Encode speed as a multiple of real time", tags).record(run.speed);
+        }
+        if (run.fps >= 0) {
+            summary("media.process.fps", null, "Frames encoded per second", tags).record(run.fps);
+        }
+        if (run.inputBytes > 0) {
+            summary("media.process.input.size", "bytes", "Bytes of input files", tags).record(run.inputBytes);
+        }
+        if (outputBytes > 0) {
+            summary("media.process.output.size", "bytes", "Bytes of the output file", tags).record(outputBytes);
+        }
+        Counter.builder("media.process.exits")
+                .description("Exited processes by exit code")
+                .tags(tags.and("exit.code", String.valueOf(exitCode)))
+                .register(meterRegistry)
+                .increment();
+
+        if (run.jobKey != null) {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("class", run.processClass.name());
+            summary.put("service", run.service);
+            summary.put("userId", run.userId);
+            summary.put("exitCode", exitCode);
+            summary.put("wallSeconds", wallSeconds);
+            summary.put("cpuSeconds", cpuSeconds);
+            summary.put("queueWaitSeconds", run.waitNanos / 1e9);
+            summary.put("peakRssBytes", peakRss);
+            summary.put("fps", run.fps >= 0 ? run.fps : null);
+            summary.put("speed", run.speed >= 0 ? run.speed : null);
+            summary.put("inputBytes", run.inputBytes);
+            summary.put("outputBytes", outputBytes);
+            jobs.computeIfAbsent(run.jobKey, JobBreakdown::new)
+                    .add(summary, failed, wallSeconds, cpuSeconds, run.waitNanos / 1e9, peakRss, run.inputBytes, outputBytes);
+        }
+        logger.debug("{} process from {} exited with {} after {}s wall, {}s CPU, {} bytes peak RSS",
+                run.processClass, run.service, exitCode, String.format("%.2f", wallSeconds), String.format("%.2f", cpuSeconds), peakRss);
+    }
+
+    private DistributionSummary summary(String name, String baseUnit, String description, Tags tags) {
+        DistributionSummary.Builder builder = DistributionSummary.builder(name)
+                .description(description)
+                .tags(tags);
+        if (baseUnit != null) {
+            builder.baseUnit(baseUnit);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    /** CPU time of the process and its children, and resident memory where /proc exists. */
+    private void sampleLiveRuns() {
+        for (ProcessRun run : liveRuns.values()) {
+            Process process = run.process;
+            if (process == null || !process.isAlive()) {
+                continue;
+            }
+            try {
+                long rss = sample(run, process.toHandle())
+                        + process.descendants().mapToLong(child -> sample(run, child)).sum();
+                if (rss > run.sampledPeakRssBytes) {
+                    run.sampledPeakRssBytes = rss;
+                }
+            } catch (RuntimeException e) {
+                logger.debug("Could not sample process {}: {}", process.pid(), e.getMessage());
+            }
+        }
+    }
+
+    private long sample(ProcessRun run, ProcessHandle handle) {
+        handle.info().totalCpuDuration()
+                .ifPresent(cpu -> run.cpuNanosByPid.merge(handle.pid(), cpu.toNanos(), Math::max));
+        return residentBytes(handle.pid());
+    }
+
+    private static long residentBytes(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        if (!Files.isReadable(status)) {
+            return 0;
+        }
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // The process exited between the check and the read
+        }
+        return 0;
+    }
+
+    /** Sizes of the files after each {@code -i}, or of the file arguments for scripts and tools. */
+    private static long inputBytes(List<String> command) {
+        long total = 0;
+        boolean hasInputFlag = command.contains("-i");
+        for (int i = 1; i < command.size() - 1; i++) {
+            String argument = command.get(i);
+            if (hasInputFlag) {
+                if ("-i".equals(argument)) {
+                    total += fileSize(command.get(i + 1));
+                }
+            } else if (!argument.startsWith("-") && !argument.endsWith(".py")) {
+                total += fileSize(argument);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Size of the last argument, which is the output for ffmpeg and the media scripts. Options
+     * added to a built command, such as {@code -progress}, go in before the output.
+     */
+    private static long outputBytes(List<String> command) {
+        if (command.size() < 2) {
+            return 0;
+        }
+        return fileSize(command.get(command.size() - 1));
+    }
+
+    private static long fileSize(String path) {
+        if (path == null || path.isEmpty() || path.contains("://") || path.startsWith("pipe:")) {
+            return 0;
+        }
+        File file = new File(path);
+        return file.isFile() ? file.length() : 0;
+    }
+
+    private static double parseOrKeep(String value, double previous) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return previous;
+        }
+    }
+}
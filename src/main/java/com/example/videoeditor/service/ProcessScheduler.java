@@ -0,0 +1,450 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single gate for every external process (ffmpeg, ffprobe, ImageMagick, Python). The
+ * machine is modelled as a number of CPU units; a process holds as many units as threads
+ * it is allowed to use, and waits in a per-user queue until they are free. When several
+ * users are waiting, the one with the fewest units running goes first, so one user's
+ * burst of uploads cannot starve everyone else.
+ * <p>
+ * Probes (ffprobe, identify, downloads) are short or mostly I/O, so they skip the CPU units
+ * and are only capped in number.
+ */
+@Component
+public class ProcessScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessScheduler.class);
+
+    private static final Long SYSTEM_USER = -1L;
+
+    public enum ProcessClass { PROBE, ENCODE, IMAGE, PYTHON }
+
+    @Value("${app.processes.cpu-units:0}")
+    private int configuredUnits;
+
+    @Value("${app.processes.encode-threads:4}")
+    private int encodeThreads;
+
+    @Value("${app.processes.image-threads:2}")
+    private int imageThreads;
+
+    @Value("${app.processes.python-threads:4}")
+    private int pythonThreads;
+
+    @Value("${app.processes.max-probes:0}")
+    private int maxProbes;
+
+    @Value("${app.processes.max-queue-depth:32}")
+    private int maxQueueDepth;
+
+    private int capacity;
+    private int availableUnits;
+    private Semaphore probePermits;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Insertion order doubles as the tie-break between users with equal running units
+    private final Map<Long, ArrayDeque<Ticket>> waiting = new LinkedHashMap<>();
+    private final Map<Long, Integer> runningUnitsByUser = new HashMap<>();
+    private int queuedTickets;
+    private final AtomicLong ticketSequence = new AtomicLong();
+
+    private final Map<ProcessClass, ClassStats> stats = new EnumMap<>(ProcessClass.class);
+
+    private final ProcessMetrics processMetrics;
+
+    public ProcessScheduler(ProcessMetrics processMetrics) {
+        this.processMetrics = processMetrics;
+    }
+
+    private static class Ticket {
+        private final long sequence;
+        private final int units;
+        private final Condition granted;
+        private boolean admitted;
+
+        private Ticket(long sequence, int units, Condition granted) {
+            this.sequence = sequence;
+            this.units = units;
+            this.granted = granted;
+        }
+    }
+
+    /** Launch counts and accumulated queue wait and run time for one process class. */
+    public static class ClassStats {
+        private final AtomicLong launched = new AtomicLong();
+        private final AtomicLong running = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+        private final AtomicLong runNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+
+        public long getLaunched() {
+            return launched.get();
+        }
+
+        public long getRunning() {
+            return running.get();
+        }
+
+        public double getTotalWaitSeconds() {
+            return waitNanos.get() / 1e9;
+        }
+
+        public double getTotalRunSeconds() {
+            return runNanos.get() / 1e9;
+        }
+
+        public double getMaxWaitSeconds() {
+            return maxWaitNanos.get() / 1e9;
+        }
+
+        public double getMeanRunSeconds() {
+            long finished = launched.get() - running.get();
+            return finished > 0 ? runNanos.get() / 1e9 / finished : 0.0;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        capacity = configuredUnits > 0 ? configuredUnits : cores;
+        availableUnits = capacity;
+        probePermits = new Semaphore(maxProbes > 0 ? maxProbes : Math.max(2, cores * 2), true);
+        for (ProcessClass processClass : ProcessClass.values()) {
+            stats.put(processClass, new ClassStats());
+        }
+        processMetrics.bindScheduler(this);
+        logger.info("Process scheduler started with {} CPU units (encode={}, image={}, python={} threads per process)",
+                capacity, threadsFor(ProcessClass.ENCODE), threadsFor(ProcessClass.IMAGE), threadsFor(ProcessClass.PYTHON));
+    }
+
+    /**
+     * Waits for a slot, then starts the process. The slot is released when the process
+     * exits. Encoder commands without an explicit {@code -threads} get the class allotment
+     * added; an interrupt while waiting surfaces as an {@link InterruptedIOException}.
+     */
+    public Process start(ProcessBuilder builder, ProcessClass processClass, Long userId) throws IOException {
+        return start(builder, processClass, userId, null);
+    }
+
+    /**
+     * Same as {@link #start(ProcessBuilder, ProcessClass, Long)}, with the run also counted
+     * towards the given job in {@link ProcessMetrics} (for example {@code export-job:17}).
+     */
+    public Process start(ProcessBuilder builder, ProcessClass processClass, Long userId, String jobKey) throws IOException {
+        Long user = userId != null ? userId : SYSTEM_USER;
+        String service = callingService();
+        int units = applyThreadAllotment(builder, processClass);
+        if (processClass == ProcessClass.ENCODE) {
+            requestBenchmark(builder);
+        }
+        long queuedAt = System.nanoTime();
+        try {
+            if (processClass == ProcessClass.PROBE) {
+                probePermits.acquire();
+            } else {
+                acquire(user, units);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a " + processClass + " slot");
+        }
+
+        long startedAt = System.nanoTime();
+        ClassStats classStats = stats.get(processClass);
+        long waited = startedAt - queuedAt;
+        classStats.waitNanos.addAndGet(waited);
+        classStats.maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (waited > 1_000_000_000L) {
+            logger.info("{} process for user {} waited {} ms for {} CPU units", processClass, user, waited / 1_000_000, units);
+        }
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            release(processClass, user, units);
+            throw e;
+        }
+        ProcessMetrics.ProcessRun run = processMetrics.begin(processClass, service, jobKey, userId, builder.command(), waited);
+        processMetrics.attach(run, process);
+        classStats.launched.incrementAndGet();
+        classStats.running.incrementAndGet();
+        process.onExit().whenComplete((exited, error) -> {
+            classStats.running.decrementAndGet();
+            classStats.runNanos.addAndGet(System.nanoTime() - startedAt);
+            release(processClass, user, units);
+            processMetrics.finish(run);
+        });
+        return process;
+    }
+
+    public int threadsFor(ProcessClass processClass) {
+        switch (processClass) {
+            case ENCODE:
+                return clampUnits(encodeThreads);
+            case IMAGE:
+                return clampUnits(imageThreads);
+            case PYTHON:
+                return clampUnits(pythonThreads);
+            default:
+                return 1;
+        }
+    }
+
+    /** True when so many processes are already waiting that new jobs should be turned away. */
+    public boolean isOverloaded() {
+        lock.lock();
+        try {
+            return queuedTickets >= maxQueueDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rough seconds until a newly admitted job would start: the queue drained at the mean
+     * encode run time, spread over the units that can run in parallel.
+     */
+    public long estimateRetryAfterSeconds() {
+        int queued;
+        lock.lock();
+        try {
+            queued = queuedTickets;
+        } finally {
+            lock.unlock();
+        }
+        double meanRun = stats.get(ProcessClass.ENCODE).getMeanRunSeconds();
+        double parallel = Math.max(1.0, (double) capacity / threadsFor(ProcessClass.ENCODE));
+        long seconds = Math.round(Math.max(meanRun, 5.0) * queued / parallel);
+        return Math.max(1, Math.min(300, seconds));
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queuedTickets;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getUnitsInUse() {
+        lock.lock();
+        try {
+            return capacity - availableUnits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<ProcessClass, ClassStats> getStats() {
+        return stats;
+    }
+
+    private void acquire(Long user, int units) throws InterruptedException {
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(ticketSequence.incrementAndGet(), units, lock.newCondition());
+            waiting.computeIfAbsent(user, u -> new ArrayDeque<>()).addLast(ticket);
+            queuedTickets++;
+            dispatch();
+            try {
+                while (!ticket.admitted) {
+                    ticket.granted.await();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.admitted) {
+                    // Granted just as we were interrupted; hand the units back
+                    releaseUnits(user, units);
+                } else {
+                    removeWaiting(user, ticket);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(ProcessClass processClass, Long user, int units) {
+        if (processClass == ProcessClass.PROBE) {
+            probePermits.release();
+            return;
+        }
+        lock.lock();
+        try {
+            releaseUnits(user, units);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseUnits(Long user, int units) {
+        availableUnits += units;
+        runningUnitsByUser.merge(user, -units, Integer::sum);
+        if (runningUnitsByUser.get(user) <= 0) {
+            runningUnitsByUser.remove(user);
+        }
+        dispatch();
+    }
+
+    /**
+     * Admits waiting tickets while units are free, always serving the waiting user with the
+     * fewest units running. If that user's next process does not fit yet, nobody else jumps
+     * ahead, so large processes are not starved by a stream of small ones.
+     */
+    private void dispatch() {
+        while (!waiting.isEmpty()) {
+            Long next = null;
+            int fewestUnits = Integer.MAX_VALUE;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<Long, ArrayDeque<Ticket>> entry : waiting.entrySet()) {
+                int running = runningUnitsByUser.getOrDefault(entry.getKey(), 0);
+                long sequence = entry.getValue().peekFirst().sequence;
+                if (running < fewestUnits || (running == fewestUnits && sequence < oldest)) {
+                    next = entry.getKey();
+                    fewestUnits = running;
+                    oldest = sequence;
+                }
+            }
+            ArrayDeque<Ticket> queue = waiting.get(next);
+            Ticket ticket = queue.peekFirst();
+            if (ticket.units > availableUnits) {
+                return;
+            }
+            queue.pollFirst();
+            if (queue.isEmpty()) {
+                waiting.remove(next);
+            }
+            queuedTickets--;
+            availableUnits -= ticket.units;
+            runningUnitsByUser.merge(next, ticket.units, Integer::sum);
+            ticket.admitted = true;
+            ticket.granted.signal();
+        }
+    }
+
+    private void removeWaiting(Long user, Ticket ticket) {
+        ArrayDeque<Ticket> queue = waiting.get(user);
+        if (queue == null) {
+            return;
+        }
+        Iterator<Ticket> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == ticket) {
+                iterator.remove();
+                queuedTickets--;
+                break;
+            }
+        }
+        if (queue.isEmpty()) {
+            waiting.remove(user);
+        }
+        // The removed ticket may have been holding back smaller ones
+        dispatch();
+    }
+
+    /**
+     * Makes the process respect its thread budget and returns the CPU units it will hold.
+     * An explicit {@code -threads} already on an ffmpeg command wins and sets the units.
+     */
+    private int applyThreadAllotment(ProcessBuilder builder, ProcessClass processClass) {
+        // Copy, since callers often hand ProcessBuilder a fixed-size list
+        List<String> command = new ArrayList<>(builder.command());
+        if (processClass == ProcessClass.PROBE || command.isEmpty()) {
+            return 0;
+        }
+        builder.command(command);
+        int threads = threadsFor(processClass);
+        String executable = command.get(0).toLowerCase();
+        switch (processClass) {
+            case ENCODE:
+                int existing = command.indexOf("-threads");
+                if (existing >= 0 && existing + 1 < command.size()) {
+                    try {
+                        return clampUnits(Integer.parseInt(command.get(existing + 1)));
+                    } catch (NumberFormatException e) {
+                        return threads;
+                    }
+                }
+                int lastInput = command.lastIndexOf("-i");
+                if (executable.contains("ffmpeg") && lastInput >= 0 && lastInput + 2 <= command.size()) {
+                    // Anything after the last input belongs to the output, so this limits the encoder
+                    command.addAll(lastInput + 2, List.of("-threads", String.valueOf(threads)));
+                }
+                break;
+            case IMAGE:
+                if (executable.contains("magick") && !command.contains("-limit")) {
+                    command.addAll(1, List.of("-limit", "thread", String.valueOf(threads)));
+                }
+                break;
+            case PYTHON:
+                Map<String, String> environment = builder.environment();
+                environment.putIfAbsent("OMP_NUM_THREADS", String.valueOf(threads));
+                environment.putIfAbsent("MKL_NUM_THREADS", String.valueOf(threads));
+                environment.putIfAbsent("OPENBLAS_NUM_THREADS", String.valueOf(threads));
+                break;
+            default:
+                break;
+        }
+        return threads;
+    }
+
+    /**
+     * Asks ffmpeg for its end-of-run report of CPU time and peak memory. It is printed at
+     * info level, so commands that lower the log level simply fall back to sampling.
+     */
+    private void requestBenchmark(ProcessBuilder builder) {
+        List<String> command = builder.command();
+        if (!command.isEmpty() && command.get(0).toLowerCase().contains("ffmpeg") && !command.contains("-benchmark")) {
+            List<String> updated = new ArrayList<>(command);
+            updated.add(1, "-benchmark");
+            builder.command(updated);
+        }
+    }
+
+    /** Simple name of the class that asked for the process, used to tag its metrics. */
+    private static String callingService() {
+        return StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE)
+                .walk(frames -> frames
+                        .map(StackWalker.StackFrame::getDeclaringClass)
+                        .filter(type -> type != ProcessScheduler.class)
+                        .findFirst())
+                .map(type -> {
+                    // Nested, anonymous and proxy classes are reported as their outer class
+                    String name = type.getName().substring(type.getName().lastIndexOf('.') + 1);
+                    int nested = name.indexOf('$');
+                    return nested > 0 ? name.substring(0, nested) : name;
+                })
+                .orElse("unknown");
+    }
+
+    private int clampUnits(int threads) {
+        return Math.max(1, Math.min(threads, capacity));
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.videoeditor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide progress of long-running media jobs (exports, subtitle burns, aspect ratio
+ * renders, filter jobs). Progress parsed from ffmpeg's {@code -progress} output lands here
+ * and is pushed to Server-Sent Events subscribers; services only write the terminal state
+ * of a job to the database. Finished entries are kept for a while so late subscribers and
+ * pollers still see the outcome.
+ */
+@Component
+public class ProgressRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressRegistry.class);
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    // Smallest change in percent worth pushing to subscribers
+    private static final double MIN_PROGRESS_DELTA = 0.1;
+
+    @Value("${app.progress.retention-ms:600000}")
+    private long retentionMillis;
+
+    @Value("${app.progress.sse-timeout-ms:1800000}")
+    private long sseTimeoutMillis;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public static class Snapshot {
+        private final String status;
+        private final double progress;
+        private final String message;
+        private final long updatedAt;
+
+        Snapshot(String status, double progress, String message, long updatedAt) {
+            this.status = status;
+            this.progress = progress;
+            this.message = message;
+            this.updatedAt = updatedAt;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public double getProgress() {
+            return progress;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public long getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public boolean isTerminal() {
+            return !RUNNING.equals(status);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("status", status);
+            map.put("progress", progress);
+            if (message != null) {
+                map.put("message", message);
+            }
+            return map;
+        }
+    }
+
+    private static class Entry {
+        private final Long ownerId;
+        private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+        private volatile Snapshot snapshot;
+
+        private Entry(Long ownerId, Snapshot snapshot) {
+            this.ownerId = ownerId;
+            this.snapshot = snapshot;
+        }
+    }
+
+    public static String key(String jobType, Object id) {
+        return jobType + ":" + id;
+    }
+
+    /**
+     * Registers a job as running at 0%. Subscribers that were already waiting on the key
+     * stay attached if they belong to the same user.
+     */
+    public void start(String key, Long ownerId) {
+        evictExpired();
+        Snapshot snapshot = new Snapshot(RUNNING, 0.0, null, System.currentTimeMillis());
+        Entry entry = entries.compute(key, (k, existing) -> {
+            Entry fresh = new Entry(ownerId, snapshot);
+            if (existing != null) {
+                if (existing.ownerId == null || existing.ownerId.equals(ownerId)) {
+                    fresh.emitters.addAll(existing.emitters);
+                } else {
+                    existing.emitters.forEach(SseEmitter::complete);
+                }
+            }
+            return fresh;
+        });
+        publish(entry);
+    }
+
+    /**
+     * Makes {@code alias} show the job registered under {@code key}, such as a project's latest
+     * export. Both keys then share one state and one set of subscribers; those already waiting
+     * on the alias move over if they belong to the same user.
+     */
+    public void alias(String alias, String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        Entry previous = entries.put(alias, entry);
+        if (previous == null || previous == entry) {
+            return;
+        }
+        for (SseEmitter emitter : previous.emitters) {
+            if (previous.ownerId == null || previous.ownerId.equals(entry.ownerId)) {
+                entry.emitters.add(emitter);
+                Snapshot snapshot = entry.snapshot;
+                if (snapshot != null) {
+                    send(entry, emitter, snapshot);
+                }
+            } else {
+                emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * Records progress in percent. Values never move backwards, and changes below
+     * {@link #MIN_PROGRESS_DELTA} are not pushed.
+     */
+    public void update(String key, double progress) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        Snapshot previous = entry.snapshot;
+        if (previous == null || previous.isTerminal()) {
+            return;
+        }
+        double clamped = Math.min(100.0, Math.max(previous.getProgress(), progress));
+        if (clamped - previous.getProgress() < MIN_PROGRESS_DELTA) {
+            return;
+        }
+        entry.snapshot = new Snapshot(RUNNING, clamped, null, System.currentTimeMillis());
+        publish(entry);
+    }
+
+    public void complete(String key) {
+        finish(key, COMPLETED, 100.0, null);
+    }
+
+    public void fail(String key, String message) {
+        finish(key, FAILED, currentProgress(key), message);
+    }
+
+    public void cancel(String key) {
+        finish(key, CANCELLED, currentProgress(key), null);
+    }
+
+    public Optional<Snapshot> get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? Optional.empty() : Optional.ofNullable(entry.snapshot);
+    }
+
+    /**
+     * True when the job is unknown here or was registered for the given user.
+     */
+    public boolean isVisibleTo(String key, Long userId) {
+        Entry entry = entries.get(key);
+        return entry == null || entry.ownerId == null || entry.ownerId.equals(userId);
+    }
+
+    /**
+     * Opens an event stream for the job. The current state is sent right away; the stream
+     * is completed once the job reaches a terminal state.
+     */
+    public SseEmitter subscribe(String key, Long ownerId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry(ownerId, null));
+        entry.emitters.add(emitter);
+        emitter.onCompletion(() -> entry.emitters.remove(emitter));
+        emitter.onTimeout(() -> entry.emitters.remove(emitter));
+        emitter.onError(error -> entry.emitters.remove(emitter));
+
+        Snapshot snapshot = entry.snapshot;
+        if (snapshot != null) {
+            send(entry, emitter, snapshot);
+        }
+        return emitter;
+    }
+
+    private void finish(String key, String status, double progress, String message) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        entry.snapshot = new Snapshot(status, progress, message, System.currentTimeMillis());
+        publish(entry);
+    }
+
+    private double currentProgress(String key) {
+        return get(key).map(Snapshot::getProgress).orElse(0.0);
+    }
+
+    private void publish(Entry entry) {
+        Snapshot snapshot = entry.snapshot;
+        for (SseEmitter emitter : entry.emitters) {
+            send(entry, emitter, snapshot);
+        }
+    }
+
+    private void send(Entry entry, SseEmitter emitter, Snapshot snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(snapshot.toMap()));
+            if (snapshot.isTerminal()) {
+                entry.emitters.remove(emitter);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            entry.emitters.remove(emitter);
+            logger.debug("Dropped progress subscriber: {}", e.getMessage());
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        entries.entrySet().removeIf(e -> {
+            Snapshot snapshot = e.getValue().snapshot;
+            if (!e.getValue().emitters.isEmpty()) {
+                return false;
+            }
+            return snapshot == null || (snapshot.isTerminal() && snapshot.getUpdatedAt() < cutoff);
+        });
+    }
+
+    /**
+     * Output time in seconds from one line of ffmpeg's {@code -progress} output, or -1 if
+     * the line carries none. Both out_time_us and the (also microsecond) out_time_ms work.
+     */
+    public static double parseOutTimeSeconds(String line) {
+        int separator = line.indexOf('=');
+        if (separator < 0) {
+            return -1;
+        }
+        String name = line.substring(0, separator);
+        if (!name.equals("out_time_us") && !name.equals("out_time_ms")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(line.substring(separator + 1).trim()) / 1_000_000.0;
+        } catch (NumberFormatException e) {
+            // N/A before the first frame is written
+            return -1;
+        }
+    }
+
+    /**
+     * Input duration in seconds from ffmpeg's "Duration: HH:MM:SS.xx" banner line, or -1
+     * for any other line. Useful when the caller does not know the length up front.
+     */
+    public static double parseInputDurationSeconds(String line) {
+        int start = line.indexOf("Duration: ");
+        if (start < 0) {
+            return -1;
+        }
+        start += "Duration: ".length();
+        int end = line.indexOf(',', start);
+        String[] parts = (end < 0 ? line.substring(start) : line.substring(start, end)).trim().split(":");
+        if (parts.length != 3) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(parts[0]) * 3600 + Integer.parseInt(parts[1]) * 60 + Double.parseDouble(parts[2]);
+        } catch (NumberFormatException e) {
+            // "Duration: N/A" for streams without a known length
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.entity.RenderBatchTask;
+import com.example.videoeditor.repository.RenderBatchTaskRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Database-backed queue of export batches for distributed rendering. With
+ * {@code app.render.distributed=true} the API node queues the batches of an export here
+ * instead of rendering them itself, waits for the render workers (profile
+ * {@code render-worker}) to finish them and concatenates the result. Batch files go to the
+ * export's scratch workspace, so {@code app.scratch.dir} must be storage every node sees
+ * under the same path.
+ */
+@Service
+public class RenderBatchQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderBatchQueue.class);
+    private static final int CLAIM_CANDIDATES = 8;
+
+    private final RenderBatchTaskRepository renderBatchTaskRepository;
+
+    @Value("${app.render.distributed:false}")
+    private boolean enabled;
+
+    @Value("${app.render.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.render.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.render.retry-backoff-ms:2000}")
+    private long retryBackoffMillis;
+
+    @Value("${app.render.poll-millis:1000}")
+    private long pollMillis;
+
+    public RenderBatchQueue(RenderBatchTaskRepository renderBatchTaskRepository) {
+        this.renderBatchTaskRepository = renderBatchTaskRepository;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getPollMillis() {
+        return pollMillis;
+    }
+
+    /** Attempts a batch window gets, locally or on the workers, before the export fails. */
+    public int getMaxAttempts() {
+        return Math.max(1, maxAttempts);
+    }
+
+    /** Exponential backoff after the given failed attempt, capped at a minute. */
+    public long retryDelayMillis(int failedAttempt) {
+        return Math.min(60_000, retryBackoffMillis << Math.min(16, Math.max(0, failedAttempt - 1)));
+    }
+
+    /** Workers renew their lease three times per lease period, so one missed heartbeat is harmless. */
+    public long getHeartbeatMillis() {
+        return Math.max(1000, leaseSeconds * 1000 / 3);
+    }
+
+    public void enqueue(List<RenderBatchTask> tasks) {
+        LocalDateTime now = LocalDateTime.now();
+        for (RenderBatchTask task : tasks) {
+            task.setStatus(RenderBatchTask.TaskStatus.PENDING);
+            task.setAttempts(0);
+            task.setProgress(0.0);
+            task.setCreatedAt(now);
+        }
+        renderBatchTaskRepository.saveAll(tasks);
+        logger.info("Queued {} batches of {} for render workers", tasks.size(), tasks.isEmpty() ? null : tasks.get(0).getJobKey());
+    }
+
+    /**
+     * Blocks until every queued batch of the job has been rendered, feeding worker progress
+     * into the tracker. Fails as soon as one batch has run out of attempts.
+     */
+    public void await(String jobKey, ExportProgressTracker progressTracker, RenderCancellation cancellation)
+            throws InterruptedException {
+        while (true) {
+            cancellation.throwIfCancelled();
+            List<RenderBatchTask> tasks = renderBatchTaskRepository.findByJobKeyOrderByBatchIndex(jobKey);
+            if (tasks.isEmpty()) {
+                throw new IllegalStateException("Render batches of " + jobKey + " disappeared from the queue");
+            }
+            boolean done = true;
+            for (RenderBatchTask task : tasks) {
+                switch (task.getStatus()) {
+                    case COMPLETED -> progressTracker.complete(task.getBatchIndex());
+                    case FAILED -> throw new RuntimeException("Batch " + task.getBatchIndex() + " of " + jobKey
+                            + " failed after " + task.getAttempts() + " attempts: " + task.getErrorMessage());
+                    default -> {
+                        progressTracker.update(task.getBatchIndex(), task.getProgress() != null ? task.getProgress() : 0.0);
+                        done = false;
+                    }
+                }
+            }
+            if (done) {
+                return;
+            }
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    /** Removes the job's tasks; a worker still rendering one loses its lease and stops. */
+    public void deleteJob(String jobKey) {
+        int deleted = renderBatchTaskRepository.deleteJob(jobKey);
+        if (deleted > 0) {
+            logger.debug("Removed {} render batch tasks of {}", deleted, jobKey);
+        }
+    }
+
+    public Optional<RenderBatchTask> claim(String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> candidates = renderBatchTaskRepository.findClaimable(RenderBatchTask.TaskStatus.PENDING,
+                RenderBatchTask.TaskStatus.CLAIMED, now, PageRequest.of(0, CLAIM_CANDIDATES));
+        for (Long id : candidates) {
+            // Another worker may take the same candidate first; the conditional update decides
+            if (renderBatchTaskRepository.claim(id, workerId, now.plusSeconds(leaseSeconds), now,
+                    RenderBatchTask.TaskStatus.PENDING, RenderBatchTask.TaskStatus.CLAIMED) == 1) {
+                return renderBatchTaskRepository.findById(id);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Renews the lease; false once the task was taken over, failed or deleted. */
+    public boolean heartbeat(RenderBatchTask task, String workerId, double progress) {
+        return renderBatchTaskRepository.heartbeat(task.getId(), workerId, LocalDateTime.now().plusSeconds(leaseSeconds),
+                progress, RenderBatchTask.TaskStatus.CLAIMED) == 1;
+    }
+
+    public boolean complete(RenderBatchTask task, String workerId) {
+        return renderBatchTaskRepository.release(task.getId(), workerId, RenderBatchTask.TaskStatus.COMPLETED, null, null,
+                LocalDateTime.now(), 1.0, RenderBatchTask.TaskStatus.CLAIMED) == 1;
+    }
+
+    /** Puts the task back for another attempt after a backoff, or fails it for good after the last one. */
+    public void fail(RenderBatchTask task, String workerId, String errorMessage) {
+        boolean retry = task.getAttempts() < getMaxAttempts();
+        LocalDateTime now = LocalDateTime.now();
+        renderBatchTaskRepository.release(task.getId(), workerId,
+                retry ? RenderBatchTask.TaskStatus.PENDING : RenderBatchTask.TaskStatus.FAILED,
+                retry ? now.plus(Duration.ofMillis(retryDelayMillis(task.getAttempts()))) : null,
+                truncate(errorMessage), retry ? null : now, 0.0, RenderBatchTask.TaskStatus.CLAIMED);
+        logger.warn("Batch {} of {} failed on {} (attempt {} of {}): {}", task.getBatchIndex(), task.getJobKey(),
+                workerId, task.getAttempts(), getMaxAttempts(), errorMessage);
+    }
+
+    private String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
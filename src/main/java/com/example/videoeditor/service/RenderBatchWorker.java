@@ -0,0 +1,148 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.entity.RenderBatchTask;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Render worker mode ({@code --spring.profiles.active=render-worker}). Each slot claims a
+ * batch from {@link RenderBatchQueue}, renders it with the same code the API node uses and
+ * reports completion. A heartbeat renews the lease while ffmpeg runs; losing the lease
+ * kills the ffmpeg process, since another worker may already be rendering the batch.
+ */
+@Component
+@Profile("render-worker")
+public class RenderBatchWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderBatchWorker.class);
+
+    private final RenderBatchQueue renderBatchQueue;
+    private final VideoEditingService videoEditingService;
+    private final RenderWorkerPool renderWorkerPool;
+
+    // 0 uses as many slots as the local render worker pool has workers
+    @Value("${app.render.worker.slots:0}")
+    private int slots;
+
+    private final String workerId = workerId();
+    private ExecutorService slotExecutor;
+    private ScheduledExecutorService heartbeats;
+
+    public RenderBatchWorker(RenderBatchQueue renderBatchQueue, VideoEditingService videoEditingService,
+                             RenderWorkerPool renderWorkerPool) {
+        this.renderBatchQueue = renderBatchQueue;
+        this.videoEditingService = videoEditingService;
+        this.renderWorkerPool = renderWorkerPool;
+    }
+
+    @PostConstruct
+    public void start() {
+        int slotCount = slots > 0 ? slots : renderWorkerPool.getPoolSize();
+        AtomicInteger counter = new AtomicInteger();
+        slotExecutor = Executors.newFixedThreadPool(slotCount, runnable -> {
+            Thread thread = new Thread(runnable, "render-batch-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "render-batch-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < slotCount; i++) {
+            slotExecutor.submit(this::pollQueue);
+        }
+        logger.info("Render worker {} started with {} slots", workerId, slotCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Claimed batches are left to expire and get picked up by another worker
+        if (slotExecutor != null) slotExecutor.shutdownNow();
+        if (heartbeats != null) heartbeats.shutdownNow();
+    }
+
+    private void pollQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Optional<RenderBatchTask> task = renderBatchQueue.claim(workerId);
+                if (task.isPresent()) {
+                    render(task.get());
+                } else {
+                    Thread.sleep(renderBatchQueue.getPollMillis());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Render worker slot failed to poll the batch queue", e);
+                try {
+                    Thread.sleep(renderBatchQueue.getPollMillis());
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private void render(RenderBatchTask task) throws InterruptedException {
+        logger.info("Rendering batch {} of {} ({} to {} s, attempt {})", task.getBatchIndex(), task.getJobKey(),
+                task.getBatchStart(), task.getBatchEnd(), task.getAttempts());
+        RenderCancellation cancellation = new RenderCancellation();
+        AtomicReference<Double> progress = new AtomicReference<>(0.0);
+        ScheduledFuture<?> heartbeat = heartbeats.scheduleAtFixedRate(() -> {
+            try {
+                if (!renderBatchQueue.heartbeat(task, workerId, progress.get())) {
+                    logger.warn("Lost the lease on batch {} of {}, stopping", task.getBatchIndex(), task.getJobKey());
+                    cancellation.cancel();
+                }
+            } catch (Exception e) {
+                // A database hiccup is not a lost lease; the next beat tries again
+                logger.warn("Heartbeat for batch {} of {} failed: {}", task.getBatchIndex(), task.getJobKey(), e.getMessage());
+            }
+        }, renderBatchQueue.getHeartbeatMillis(), renderBatchQueue.getHeartbeatMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            videoEditingService.renderQueuedBatch(task, progress::set, cancellation);
+            heartbeat.cancel(false);
+            if (!renderBatchQueue.complete(task, workerId)) {
+                logger.warn("Batch {} of {} finished after its lease was lost", task.getBatchIndex(), task.getJobKey());
+            }
+        } catch (CancellationException e) {
+            logger.info("Batch {} of {} was abandoned", task.getBatchIndex(), task.getJobKey());
+        } catch (InterruptedException e) {
+            cancellation.cancel();
+            throw e;
+        } catch (Exception e) {
+            renderBatchQueue.fail(task, workerId, e.getMessage());
+        } finally {
+            heartbeat.cancel(false);
+        }
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.videoeditor.service;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cancellation handle for one render. Every ffmpeg process started for the render
+ * registers here so that cancelling kills the processes that are already running,
+ * not just the batches that have not started yet.
+ */
+public class RenderCancellation {
+
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    public void register(Process process) {
+        processes.add(process);
+        if (cancelled) {
+            process.destroyForcibly();
+            throw new CancellationException("Render was cancelled");
+        }
+    }
+
+    public void unregister(Process process) {
+        processes.remove(process);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Process process : processes) {
+            process.destroyForcibly();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Render was cancelled");
+        }
+    }
+}
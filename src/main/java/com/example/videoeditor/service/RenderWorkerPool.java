@@ -0,0 +1,71 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of render workers shared by every export. Each worker drives one
+ * ffmpeg process, so the pool size is the number of cores divided by the thread
+ * budget handed to each process.
+ */
+@Component
+public class RenderWorkerPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(RenderWorkerPool.class);
+
+    @Value("${app.render.threads-per-process:4}")
+    private int threadsPerProcess;
+
+    @Value("${app.render.max-parallel-batches:0}")
+    private int maxParallelBatches;
+
+    private ExecutorService executor;
+    private int poolSize;
+
+    @PostConstruct
+    public void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        threadsPerProcess = Math.max(1, Math.min(threadsPerProcess, cores));
+        poolSize = maxParallelBatches > 0 ? maxParallelBatches : Math.max(1, cores / threadsPerProcess);
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "render-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(poolSize, threadFactory);
+        logger.info("Render worker pool started with {} workers, {} threads per ffmpeg process ({} cores)",
+                poolSize, threadsPerProcess, cores);
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    public int getThreadsPerProcess() {
+        return threadsPerProcess;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
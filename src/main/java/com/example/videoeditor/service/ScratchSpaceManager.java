@@ -0,0 +1,213 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Private scratch directories for exports and media jobs, so concurrent jobs never share
+ * intermediate files. Workspaces live under {@code app.scratch.dir}, which can point at a
+ * tmpfs or NVMe mount; with distributed rendering it has to be storage the render workers
+ * see under the same path. Each user may hold at most {@code app.scratch.user-quota-bytes}
+ * across their open workspaces. A workspace is deleted when it is closed; one left behind
+ * by a crashed process is reclaimed at startup and by an hourly sweep.
+ */
+@Component
+public class ScratchSpaceManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScratchSpaceManager.class);
+    private static final String OWNER_FILE = ".owner";
+
+    @Value("${app.scratch.dir:scratch}")
+    private String scratchDirPath;
+
+    // 0 disables the quota
+    @Value("${app.scratch.user-quota-bytes:21474836480}")
+    private long userQuotaBytes;
+
+    // Workspaces of other hosts, whose process we cannot check, are reclaimed after this long
+    @Value("${app.scratch.stale-after-hours:24}")
+    private long staleAfterHours;
+
+    private final String host = hostName();
+    private final long pid = ProcessHandle.current().pid();
+    // Tells this process apart from an earlier one that had the same pid, e.g. pid 1 in a container
+    private final String instanceId = UUID.randomUUID().toString();
+    private File scratchDir;
+
+    @PostConstruct
+    public void init() {
+        scratchDir = new File(scratchDirPath);
+        if (!scratchDir.exists() && !scratchDir.mkdirs()) {
+            logger.error("Failed to create scratch directory: {}", scratchDir.getAbsolutePath());
+        }
+        reclaim();
+    }
+
+    /**
+     * Creates a workspace for the job. {@code expectedBytes} is reserved against the user's
+     * quota until the workspace is closed, or its actual size if that is larger.
+     *
+     * @throws IllegalStateException if the reservation would take the user over quota
+     */
+    public synchronized Workspace open(String jobKey, Long userId, long expectedBytes) throws IOException {
+        if (userId != null && userQuotaBytes > 0) {
+            long used = usedBytes(userId);
+            if (used + expectedBytes > userQuotaBytes) {
+                throw new IllegalStateException("Not enough scratch space: user " + userId + " is using "
+                        + FileUtils.byteCountToDisplaySize(used) + " of " + FileUtils.byteCountToDisplaySize(userQuotaBytes)
+                        + " and " + jobKey + " needs about " + FileUtils.byteCountToDisplaySize(expectedBytes));
+            }
+        }
+        File dir = new File(scratchDir, jobKey.replaceAll("[^A-Za-z0-9_-]", "_") + "-"
+                + UUID.randomUUID().toString().substring(0, 8));
+        if (!dir.mkdirs()) {
+            throw new IOException("Failed to create scratch workspace: " + dir.getAbsolutePath());
+        }
+        Properties owner = new Properties();
+        owner.setProperty("host", host);
+        owner.setProperty("pid", String.valueOf(pid));
+        owner.setProperty("instance", instanceId);
+        owner.setProperty("jobKey", jobKey);
+        owner.setProperty("reservedBytes", String.valueOf(Math.max(0, expectedBytes)));
+        if (userId != null) {
+            owner.setProperty("userId", String.valueOf(userId));
+        }
+        try (Writer writer = new FileWriter(new File(dir, OWNER_FILE))) {
+            owner.store(writer, null);
+        }
+        logger.debug("Opened scratch workspace {} for {}", dir.getName(), jobKey);
+        return new Workspace(dir);
+    }
+
+    /** Scratch space charged to the user: per workspace, its reservation or its size, whichever is larger. */
+    public synchronized long usedBytes(Long userId) {
+        long used = 0;
+        for (File dir : workspaces()) {
+            Properties owner = readOwner(dir);
+            if (owner != null && String.valueOf(userId).equals(owner.getProperty("userId"))) {
+                used += Math.max(parseLong(owner.getProperty("reservedBytes")), FileUtils.sizeOfDirectory(dir));
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Deletes workspaces whose owning process on this host is gone, and any workspace
+     * untouched for longer than {@code app.scratch.stale-after-hours}.
+     */
+    @Scheduled(fixedDelay = 60 * 60 * 1000, initialDelay = 60 * 60 * 1000)
+    public synchronized void reclaim() {
+        long staleBefore = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(staleAfterHours);
+        int reclaimed = 0;
+        for (File dir : workspaces()) {
+            Properties owner = readOwner(dir);
+            boolean orphaned = owner != null && host.equals(owner.getProperty("host"))
+                    && !isAlive(parseLong(owner.getProperty("pid")), owner.getProperty("instance"));
+            if (orphaned || lastModified(dir) < staleBefore) {
+                FileUtils.deleteQuietly(dir);
+                reclaimed++;
+            }
+        }
+        if (reclaimed > 0) {
+            logger.info("Reclaimed {} abandoned scratch workspaces", reclaimed);
+        }
+    }
+
+    private File[] workspaces() {
+        File[] dirs = scratchDir.listFiles(File::isDirectory);
+        return dirs != null ? dirs : new File[0];
+    }
+
+    private Properties readOwner(File dir) {
+        File ownerFile = new File(dir, OWNER_FILE);
+        if (!ownerFile.exists()) {
+            return null;
+        }
+        Properties owner = new Properties();
+        try (Reader reader = new FileReader(ownerFile)) {
+            owner.load(reader);
+            return owner;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isAlive(long ownerPid, String ownerInstance) {
+        if (ownerPid == pid) {
+            return instanceId.equals(ownerInstance);
+        }
+        return ProcessHandle.of(ownerPid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    // Newest modification inside the workspace, so a long export still writing batches is not stale
+    private long lastModified(File dir) {
+        long newest = dir.lastModified();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                newest = Math.max(newest, file.lastModified());
+            }
+        }
+        return newest;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    /** A job's scratch directory; closing it deletes everything inside. */
+    public static class Workspace implements AutoCloseable {
+
+        private final File dir;
+
+        private Workspace(File dir) {
+            this.dir = dir;
+        }
+
+        public File getDir() {
+            return dir;
+        }
+
+        public File file(String name) {
+            return new File(dir, name);
+        }
+
+        @Override
+        public void close() {
+            try {
+                FileUtils.deleteDirectory(dir);
+            } catch (IOException e) {
+                logger.warn("Failed to delete scratch workspace {}: {}", dir.getAbsolutePath(), e.getMessage());
+            }
+        }
+    }
+}
@@ -36,6 +36,9 @@ public class StandaloneImageService {
   @Autowired
   private ObjectMapper objectMapper;
 
+  @Autowired
+  private ProcessScheduler processScheduler;
+
   public StandaloneImageService(JwtUtil jwtUtil, UserRepository userRepository) {
     this.jwtUtil = jwtUtil;
     this.userRepository = userRepository;
@@ -72,7 +75,7 @@ public class StandaloneImageService {
 
     ProcessBuilder pb = new ProcessBuilder(command);
     pb.redirectErrorStream(true);
-    Process process = pb.start();
+    Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PYTHON, user.getId());
 
     StringBuilder output = new StringBuilder();
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -2,6 +2,7 @@ package com.example.videoeditor.service;
 
 import com.example.videoeditor.dto.Keyframe;
 import com.example.videoeditor.dto.SubtitleDTO;
+import com.example.videoeditor.entity.MediaInfo;
 import com.example.videoeditor.entity.SubtitleMedia;
 import com.example.videoeditor.entity.User;
 import com.example.videoeditor.repository.SubtitleMediaRepository;
@@ -31,19 +32,26 @@ import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class SubtitleService {
 
   private static final Logger logger = LoggerFactory.getLogger(SubtitleService.class);
+  // Name of the Whisper output in the blob store
+  private static final String TRANSCRIPT_ARTIFACT = "subtitle-transcript.json";
 
   private final JwtUtil jwtUtil;
   private final SubtitleMediaRepository subtitleMediaRepository;
   private final ObjectMapper objectMapper;
   private final UserRepository userRepository; // Added dependency
+  private final FontService fontService;
+  private final ProgressRegistry progressRegistry;
+  private final ProcessScheduler processScheduler;
+  private final ProcessMetrics processMetrics;
+  private final ScratchSpaceManager scratchSpaceManager;
+  private final MediaProbeService mediaProbeService;
+  private final MediaBlobStore mediaBlobStore;
 
   @Value("${app.base-dir:D:\\Backend\\videoeditor_java}")
   private String baseDir;
@@ -61,11 +69,22 @@ public class SubtitleService {
       JwtUtil jwtUtil,
       SubtitleMediaRepository subtitleMediaRepository,
       ObjectMapper objectMapper,
-      UserRepository userRepository) {
+      UserRepository userRepository,
+      FontService fontService,
+      ProgressRegistry progressRegistry,
+      ProcessScheduler processScheduler, ProcessMetrics processMetrics,
+      ScratchSpaceManager scratchSpaceManager, MediaProbeService mediaProbeService, MediaBlobStore mediaBlobStore) {
     this.jwtUtil = jwtUtil;
     this.subtitleMediaRepository = subtitleMediaRepository;
     this.objectMapper = objectMapper;
     this.userRepository = userRepository;
+    this.fontService = fontService;
+    this.progressRegistry = progressRegistry;
+    this.processScheduler = processScheduler;
+  this.processMetrics = processMetrics;
+    this.scratchSpaceManager = scratchSpaceManager;
+    this.mediaProbeService = mediaProbeService;
+    this.mediaBlobStore = mediaBlobStore;
   }
 
   public SubtitleMedia uploadMedia(User user, MultipartFile mediaFile) throws IOException {
@@ -85,7 +104,7 @@ public class SubtitleService {
 
     String originalFileName = mediaFile.getOriginalFilename();
     File inputFile = new File(originalDir, originalFileName);
-    mediaFile.transferTo(inputFile);
+    mediaBlobStore.store(mediaFile, user, inputFile);
     logger.debug("Saved input media to: {}", inputFile.getAbsolutePath());
 
     if (inputFile.length() == 0) {
@@ -134,35 +153,55 @@ public class SubtitleService {
       throw new IOException("Input file is missing or empty");
     }
 
-    String audioFilePath = extractAudio(inputFile, mediaId);
-    File audioFile = new File(audioFilePath);
-
-    // Get audio duration
-    double audioDuration = getAudioDuration(audioFile);
-    if (audioDuration <= 0) {
-      logger.error("Audio file has invalid duration: {}", audioFilePath);
-      subtitleMedia.setStatus("FAILED");
-      subtitleMediaRepository.save(subtitleMedia);
-      Files.delete(audioFile.toPath());
-      throw new IOException("Audio file has invalid duration");
-    }
-
+    // Whisper output is kept with the uploaded content, so the same file is transcribed once
     List<Map<String, Object>> rawSubtitles;
-    try {
-      rawSubtitles = runWhisperScript(audioFile);
-    } catch (Exception e) {
-      logger.error("Failed to generate subtitles for mediaId {}: {}", mediaId, e.getMessage());
-      subtitleMedia.setStatus("FAILED");
-      subtitleMediaRepository.save(subtitleMedia);
-      Files.delete(audioFile.toPath());
-      throw e;
+    double audioDuration;
+    File cachedTranscript = mediaBlobStore.findDerived(inputFile, TRANSCRIPT_ARTIFACT);
+    if (cachedTranscript != null) {
+      logger.debug("Reusing transcription of {} for mediaId {}", inputFile.getName(), mediaId);
+      rawSubtitles = objectMapper.readValue(cachedTranscript, new TypeReference<List<Map<String, Object>>>() {
+      });
+      audioDuration = mediaProbeService.duration(inputFile);
+    } else {
+      String audioFilePath = extractAudio(inputFile, mediaId);
+      File audioFile = new File(audioFilePath);
+      try {
+        // Get audio duration
+        audioDuration = getAudioDuration(audioFile);
+        if (audioDuration <= 0) {
+          logger.error("Audio file has invalid duration: {}", audioFilePath);
+          subtitleMedia.setStatus("FAILED");
+          subtitleMediaRepository.save(subtitleMedia);
+          throw new IOException("Audio file has invalid duration");
+        }
+
+        try {
+          rawSubtitles = runWhisperScript(audioFile);
+        } catch (Exception e) {
+          logger.error("Failed to generate subtitles for mediaId {}: {}", mediaId, e.getMessage());
+          subtitleMedia.setStatus("FAILED");
+          subtitleMediaRepository.save(subtitleMedia);
+          throw e;
+        }
+      } finally {
+        if (audioFile.exists()) {
+          try {
+            Files.delete(audioFile.toPath());
+            logger.debug("Deleted temporary audio file: {}", audioFile.getAbsolutePath());
+          } catch (IOException e) {
+            logger.error("Failed to delete temporary audio file {}: {}", audioFile.getAbsolutePath(), e.getMessage());
+          }
+        }
+      }
+      if (!rawSubtitles.isEmpty()) {
+        mediaBlobStore.publishDerived(inputFile, TRANSCRIPT_ARTIFACT, objectMapper.writeValueAsBytes(rawSubtitles));
+      }
     }
 
     if (rawSubtitles.isEmpty()) {
       logger.warn("No subtitles generated for mediaId: {}", mediaId);
       subtitleMedia.setStatus("FAILED");
       subtitleMediaRepository.save(subtitleMedia);
-      Files.delete(audioFile.toPath());
       throw new IOException("No subtitles generated");
     }
 
@@ -206,15 +245,6 @@ public class SubtitleService {
     subtitleMedia.setStatus("SUCCESS");
     subtitleMediaRepository.save(subtitleMedia);
 
-    if (audioFile.exists()) {
-      try {
-        Files.delete(audioFile.toPath());
-        logger.debug("Deleted temporary audio file: {}", audioFile.getAbsolutePath());
-      } catch (IOException e) {
-        logger.error("Failed to delete temporary audio file {}: {}", audioFile.getAbsolutePath(), e.getMessage());
-      }
-    }
-
     logger.info("Successfully generated subtitles for user: {}, mediaId: {}", user.getId(), mediaId);
     return subtitleMedia;
   }
@@ -400,7 +430,7 @@ public class SubtitleService {
     logger.debug("Executing FFprobe command for audio duration: {}", String.join(" ", command));
     ProcessBuilder pb = new ProcessBuilder(command);
     pb.redirectErrorStream(true);
-    Process process = pb.start();
+    Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PROBE, null);
     StringBuilder output = new StringBuilder();
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
       String line;
@@ -462,7 +492,7 @@ public class SubtitleService {
     logger.debug("Executing FFmpeg command for audio extraction: {}", String.join(" ", command));
     ProcessBuilder pb = new ProcessBuilder(command);
     pb.redirectErrorStream(true);
-    Process process = pb.start();
+    Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.ENCODE, null);
 
     StringBuilder output = new StringBuilder();
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -496,7 +526,7 @@ public class SubtitleService {
     );
     ProcessBuilder probePb = new ProcessBuilder(probeCommand);
     probePb.redirectErrorStream(true);
-    Process probeProcess = probePb.start();
+    Process probeProcess = processScheduler.start(probePb, ProcessScheduler.ProcessClass.PROBE, null);
     StringBuilder probeOutput = new StringBuilder();
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(probeProcess.getInputStream()))) {
       String line;
@@ -542,7 +572,7 @@ public class SubtitleService {
     logger.debug("Executing Whisper command: {}", String.join(" ", command));
     ProcessBuilder pb = new ProcessBuilder(command);
     pb.redirectErrorStream(false); // Separate stdout and stderr
-    Process process = pb.start();
+    Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PYTHON, null);
 
     StringBuilder output = new StringBuilder();
     StringBuilder errorOutput = new StringBuilder();
@@ -589,43 +619,14 @@ public class SubtitleService {
   }
 
   private Map<String, Object> getVideoInfo(File inputFile) throws IOException, InterruptedException {
-    List<String> command = Arrays.asList(
-        ffmpegPath,
-        "-i", inputFile.getAbsolutePath(),
-        "-f", "null",
-        "-"
-    );
-
-    ProcessBuilder pb = new ProcessBuilder(command);
-    pb.redirectErrorStream(true);
-    Process process = pb.start();
-
-    StringBuilder output = new StringBuilder();
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        output.append(line).append("\n");
-      }
-    }
-
-    int exitCode = process.waitFor();
-    if (exitCode != 0) {
-      throw new IOException("FFmpeg failed to get video info: " + output.toString());
+    MediaInfo mediaInfo = mediaProbeService.probe(inputFile);
+    if (!mediaInfo.hasVideo() || mediaInfo.getFps() == null) {
+      throw new IOException("Could not read video info of " + inputFile.getName());
     }
-
     Map<String, Object> info = new HashMap<>();
-    // Parse width, height, and fps
-    String outputStr = output.toString();
-    Pattern resolutionPattern = Pattern.compile("Stream.*Video:.* (\\d+)x(\\d+).*?([0-9.]+) fps");
-    Matcher matcher = resolutionPattern.matcher(outputStr);
-    if (matcher.find()) {
-      info.put("width", Integer.parseInt(matcher.group(1)));
-      info.put("height", Integer.parseInt(matcher.group(2)));
-      info.put("fps", Float.parseFloat(matcher.group(3)));
-    } else {
-      throw new IOException("Could not parse video info from FFmpeg output");
-    }
-
+    info.put("width", mediaInfo.getWidth());
+    info.put("height", mediaInfo.getHeight());
+    info.put("fps", mediaInfo.getFps().floatValue());
     return info;
   }
 
@@ -661,7 +662,7 @@ public class SubtitleService {
       throw new IOException("Input file is missing or empty");
     }
 
-    // Validate input file with ffprobe
+    // Validate input file against its probed streams
     validateInputFile(inputFile);
 
     String processedDirPath = baseDir + File.separator + "subtitles" + File.separator + user.getId() + File.separator + "processed";
@@ -698,8 +699,10 @@ public class SubtitleService {
       throw new IOException("Invalid video duration");
     }
 
+    String progressKey = ProgressRegistry.key("subtitle", mediaId);
+    progressRegistry.start(progressKey, user.getId());
     try {
-      renderSubtitledVideo(inputFile, new File(outputFilePath), subtitles, canvasWidth, canvasHeight, fps, mediaId, totalDuration);
+      renderSubtitledVideo(inputFile, new File(outputFilePath), subtitles, canvasWidth, canvasHeight, fps, mediaId, totalDuration, user.getId());
 
       String processedPath = "subtitles/" + user.getId() + "/processed/" + outputFileName;
       String processedCdnUrl = "http://localhost:8080/" + processedPath;
@@ -710,6 +713,7 @@ public class SubtitleService {
       subtitleMedia.setStatus("SUCCESS");
       subtitleMedia.setProgress(100.0);
       subtitleMediaRepository.save(subtitleMedia);
+      progressRegistry.complete(progressKey);
 
       logger.info("Successfully processed subtitles for user: {}, mediaId: {}", user.getId(), mediaId);
       return subtitleMedia;
@@ -718,55 +722,23 @@ public class SubtitleService {
       subtitleMedia.setStatus("FAILED");
       subtitleMedia.setProgress(0.0);
       subtitleMediaRepository.save(subtitleMedia);
+      progressRegistry.fail(progressKey, e.getMessage());
       throw e;
     }
   }
 
   private void validateInputFile(File inputFile) throws IOException, InterruptedException {
-    List<String> command = Arrays.asList(
-        ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-        "-i", inputFile.getAbsolutePath(),
-        "-show_streams",
-        "-show_format",
-        "-print_format", "json",
-        "-v", "quiet"
-    );
-
-    ProcessBuilder pb = new ProcessBuilder(command);
-    pb.redirectErrorStream(true);
-    Process process = pb.start();
-    StringBuilder output = new StringBuilder();
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        output.append(line);
-      }
-    }
-    int exitCode = process.waitFor();
-    if (exitCode != 0) {
-      logger.error("FFprobe failed to validate input file {}: {}", inputFile.getAbsolutePath(), output.toString());
-      throw new IOException("FFprobe failed to validate input file: " + output.toString());
-    }
-
-    try {
-      Map<String, Object> result = objectMapper.readValue(output.toString(), new TypeReference<Map<String, Object>>() {
-      });
-      List<?> streams = (List<?>) result.getOrDefault("streams", Collections.emptyList());
-      if (streams.isEmpty()) {
-        logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
-        throw new IOException("No streams found in input file");
-      }
-    } catch (JsonProcessingException e) {
-      logger.error("Failed to parse FFprobe output for {}: {}", inputFile.getAbsolutePath(), output.toString());
-      throw new IOException("Failed to parse FFprobe output: " + output.toString());
+    if (mediaProbeService.probe(inputFile).getStreamCount() == 0) {
+      logger.error("No streams found in input file: {}", inputFile.getAbsolutePath());
+      throw new IOException("No streams found in input file");
     }
   }
 
-  private void renderSubtitledVideo(File inputFile, File outputFile, List<SubtitleDTO> subtitles, int canvasWidth, int canvasHeight, float fps, Long mediaId, double totalDuration) throws IOException, InterruptedException {
-    File tempDir = new File(baseDir, "subtitles/temp/" + mediaId);
-    if (!tempDir.exists() && !tempDir.mkdirs()) {
-      throw new IOException("Failed to create temp directory: " + tempDir.getAbsolutePath());
-    }
+  private void renderSubtitledVideo(File inputFile, File outputFile, List<SubtitleDTO> subtitles, int canvasWidth, int canvasHeight, float fps, Long mediaId, double totalDuration, Long userId) throws IOException, InterruptedException {
+    // Batches are roughly as large as the source video; reserve that against the user's scratch quota
+    ScratchSpaceManager.Workspace workspace = scratchSpaceManager.open(ProgressRegistry.key("subtitle", mediaId), userId,
+        inputFile.length() + inputFile.length() / 5);
+    File tempDir = workspace.getDir();
 
     double batchSize = 8.0;
     List<String> tempVideoFiles = new ArrayList<>();
@@ -785,27 +757,8 @@ public class SubtitleService {
 
       concatenateBatches(tempVideoFiles, outputFile.getAbsolutePath(), fps, tempDir);
     } finally {
-      for (File tempFile : tempTextFiles) {
-        if (tempFile.exists()) {
-          try {
-            Files.delete(tempFile.toPath());
-            logger.debug("Deleted temporary text PNG: {}", tempFile.getAbsolutePath());
-          } catch (IOException e) {
-            logger.error("Failed to delete temporary text PNG {}: {}", tempFile.getAbsolutePath(), e.getMessage());
-          }
-        }
-      }
-      for (String tempVideo : tempVideoFiles) {
-        File tempFile = new File(tempVideo);
-        if (tempFile.exists()) {
-          try {
-            Files.delete(tempFile.toPath());
-            logger.debug("Deleted temporary batch video: {}", tempFile.getAbsolutePath());
-          } catch (IOException e) {
-            logger.error("Failed to delete temporary batch video {}: {}", tempFile.getAbsolutePath(), e.getMessage());
-          }
-        }
-      }
+      // Subtitle PNGs, batch videos and the concat list all go with the workspace
+      workspace.close();
     }
   }
 
@@ -850,8 +803,8 @@ public class SubtitleService {
         continue;
       }
 
-      File tempDir = new File(baseDir, "subtitles/temp/" + mediaId); // already created in renderSubtitledVideo
-      String textPngPath = generateTextPng(subtitle, tempDir, canvasWidth, canvasHeight);
+      // Subtitle PNGs go to the render's workspace, next to the batch videos
+      String textPngPath = generateTextPng(subtitle, batchOutputDir, canvasWidth, canvasHeight);
       File textPngFile = new File(textPngPath);
       if (!textPngFile.exists() || textPngFile.length() == 0) {
         logger.warn("Subtitle PNG not created or empty for mediaId: {}, id: {}", mediaId, subtitle.getId());
@@ -1030,8 +983,8 @@ public class SubtitleService {
 
     List<String> updatedCommand = new ArrayList<>(command);
     if (!updatedCommand.contains("-progress")) {
-      updatedCommand.add("-progress");
-      updatedCommand.add("pipe:");
+      // -progress must come before the output path
+      updatedCommand.addAll(updatedCommand.size() - 1, List.of("-progress", "pipe:1"));
     }
 
     ProcessBuilder processBuilder = new ProcessBuilder(updatedCommand);
@@ -1044,37 +997,22 @@ public class SubtitleService {
     }
 
     logger.debug("Executing FFmpeg command: {}", String.join(" ", updatedCommand));
-    Process process = processBuilder.start();
+    String progressKey = ProgressRegistry.key("subtitle", mediaId);
+    Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, subtitleMedia.getUser().getId(), progressKey);
     StringBuilder output = new StringBuilder();
-    double lastProgress = -1.0;
 
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
       String line;
       while ((line = reader.readLine()) != null) {
         output.append(line).append("\n");
         logger.debug("FFmpeg: {}", line);
-        if (line.startsWith("out_time_ms=") && !line.equals("out_time_ms=N/A")) {
-          try {
-            long outTimeUs = Long.parseLong(line.replace("out_time_ms=", ""));
-            double currentBatchTime = outTimeUs / 1_000_000.0;
-
-            double batchProgress = Math.min(currentBatchTime / batchDuration, 1.0);
-            double batchContribution = batchDuration / totalDuration * 100.0;
-            double completedBatchesProgress = batchIndex * (batchDuration / totalDuration * 100.0);
-            double totalProgress = completedBatchesProgress + (batchProgress * batchContribution);
-            totalProgress = Math.min(totalProgress, 100.0);
-
-            int roundedProgress = (int) Math.round(totalProgress);
-            if (roundedProgress != (int) lastProgress && roundedProgress >= 0 && roundedProgress <= 100 && roundedProgress % 10 == 0) {
-              subtitleMedia.setProgress((double) roundedProgress);
-              subtitleMedia.setStatus("PROCESSING");
-              subtitleMediaRepository.save(subtitleMedia);
-              logger.info("Progress updated: {}% for mediaId: {}", roundedProgress, mediaId);
-              lastProgress = roundedProgress;
-            }
-          } catch (NumberFormatException e) {
-            logger.error("Failed to parse out_time_ms: {}", line);
-          }
+        processMetrics.observe(process, line);
+        double currentBatchTime = ProgressRegistry.parseOutTimeSeconds(line);
+        if (currentBatchTime >= 0) {
+          double batchProgress = Math.min(currentBatchTime / batchDuration, 1.0);
+          double batchContribution = batchDuration / totalDuration * 100.0;
+          double completedBatchesProgress = batchIndex * (batchDuration / totalDuration * 100.0);
+          progressRegistry.update(progressKey, Math.min(completedBatchesProgress + batchProgress * batchContribution, 100.0));
         }
       }
     }
@@ -1118,7 +1056,7 @@ public class SubtitleService {
     }
 
     logger.debug("Executing FFmpeg command: {}", String.join(" ", command));
-    Process process = processBuilder.start();
+    Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, null);
     StringBuilder output = new StringBuilder();
 
     try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -1182,12 +1120,9 @@ public class SubtitleService {
         parseColor(ts.getTextBorderColor(), null, "text border", ts.getId()) : null;
 
     double baseFontSize = 24.0 * maxScale * RESOLUTION_MULTIPLIER;
-    Font font;
-    try {
-      font = Font.createFont(Font.TRUETYPE_FONT, new File(getFontPathByFamily(ts.getFontFamily())))
-          .deriveFont((float) baseFontSize);
-    } catch (Exception e) {
-      logger.error("Failed to load font for subtitle {}: {}, using Arial", ts.getId(), ts.getFontFamily(), e);
+    Font font = fontService.getFont(ts.getFontFamily(), (float) baseFontSize);
+    if (font == null) {
+      logger.error("Failed to load font for subtitle {}: {}, using Arial", ts.getId(), ts.getFontFamily());
       font = new Font("Arial", Font.PLAIN, (int) baseFontSize);
     }
 
@@ -1196,27 +1131,15 @@ public class SubtitleService {
     double lineSpacing = ts.getLineSpacing() != null ? ts.getLineSpacing() : 1.2;
     double scaledLineSpacing = lineSpacing * baseFontSize;
 
-    BufferedImage tempImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-    Graphics2D g2d = tempImage.createGraphics();
-    g2d.setFont(font);
-    FontMetrics fm = g2d.getFontMetrics();
+    FontMetrics fm = fontService.getMetrics(font);
     String[] lines = ts.getText().split("\n");
     int lineHeight = (int) scaledLineSpacing;
     int totalTextHeight = lines.length > 1 ? (lines.length - 1) * lineHeight + fm.getAscent() + fm.getDescent() : fm.getAscent() + fm.getDescent();
     int maxTextWidth = 0;
     for (String line : lines) {
-      int lineWidth = 0;
-      for (int i = 0; i < line.length(); i++) {
-        lineWidth += fm.charWidth(line.charAt(i));
-        if (i < line.length() - 1) {
-          lineWidth += (int) scaledLetterSpacing;
-        }
-      }
-      maxTextWidth = Math.max(maxTextWidth, lineWidth);
+      maxTextWidth = Math.max(maxTextWidth, fontService.textWidth(font, line, (int) scaledLetterSpacing));
     }
     int textBlockHeight = totalTextHeight;
-    g2d.dispose();
-    tempImage.flush();
 
     int bgHeight = (int) ((ts.getBackgroundH() != null ? ts.getBackgroundH() : 0) * maxScale * RESOLUTION_MULTIPLIER);
     int bgWidth = (int) ((ts.getBackgroundW() != null ? ts.getBackgroundW() : 0) * maxScale * RESOLUTION_MULTIPLIER);
@@ -1252,7 +1175,7 @@ public class SubtitleService {
     totalHeight = (totalHeight % 2 != 0) ? totalHeight + 1 : totalHeight;
 
     BufferedImage image = new BufferedImage(totalWidth, totalHeight, BufferedImage.TYPE_INT_ARGB);
-    g2d = image.createGraphics();
+    Graphics2D g2d = image.createGraphics();
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
     g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
     g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
@@ -1375,260 +1298,8 @@ public class SubtitleService {
     }
   }
 
-  private String getFontPathByFamily(String fontFamily) {
-    final String FONTS_RESOURCE_PATH = "/fonts/";
-    final String TEMP_FONT_DIR = System.getProperty("java.io.tmpdir") + "/scenith-fonts/";
-
-    File tempDir = new File(TEMP_FONT_DIR);
-    if (!tempDir.exists() && !tempDir.mkdirs()) {
-      logger.error("Failed to create temporary font directory: {}", TEMP_FONT_DIR);
-      return "C:/Windows/Fonts/Arial.ttf";
-    }
-
-    String defaultFontPath = getFontFilePath("arial.ttf", FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-
-    if (fontFamily == null || fontFamily.trim().isEmpty()) {
-      logger.warn("Font family is null or empty. Using default font: arial.ttf");
-      return defaultFontPath;
-    }
-
-    Map<String, String> fontMap = new HashMap<>();
-    fontMap.put("Arial", "arial.ttf");
-    fontMap.put("Times New Roman", "times.ttf");
-    fontMap.put("Courier New", "cour.ttf");
-    fontMap.put("Calibri", "calibri.ttf");
-    fontMap.put("Verdana", "verdana.ttf");
-    fontMap.put("Georgia", "georgia.ttf");
-    fontMap.put("Comic Sans MS", "comic.ttf");
-    fontMap.put("Impact", "impact.ttf");
-    fontMap.put("Tahoma", "tahoma.ttf");
-
-    // Arial variants
-    fontMap.put("Arial Bold", "arialbd.ttf");
-    fontMap.put("Arial Italic", "ariali.ttf");
-    fontMap.put("Arial Bold Italic", "arialbi.ttf");
-    fontMap.put("Arial Black", "ariblk.ttf");
-
-    // Georgia variants
-    fontMap.put("Georgia Bold", "georgiab.ttf");
-    fontMap.put("Georgia Italic", "georgiai.ttf");
-    fontMap.put("Georgia Bold Italic", "georgiaz.ttf");
-
-    // Times New Roman variants
-    fontMap.put("Times New Roman Bold", "timesbd.ttf");
-    fontMap.put("Times New Roman Italic", "timesi.ttf");
-    fontMap.put("Times New Roman Bold Italic", "timesbi.ttf");
-
-    // Alumni Sans Pinstripe
-    fontMap.put("Alumni Sans Pinstripe", "AlumniSansPinstripe-Regular.ttf");
-
-    // Lexend Giga variants
-    fontMap.put("Lexend Giga", "LexendGiga-Regular.ttf");
-    fontMap.put("Lexend Giga Black", "LexendGiga-Black.ttf");
-    fontMap.put("Lexend Giga Bold", "LexendGiga-Bold.ttf");
-
-
-    // Montserrat Alternates variants
-    fontMap.put("Montserrat Alternates", "MontserratAlternates-ExtraLight.ttf");
-    fontMap.put("Montserrat Alternates Black", "MontserratAlternates-Black.ttf");
-    fontMap.put("Montserrat Alternates Medium Italic", "MontserratAlternates-MediumItalic.ttf");
-
-    // Noto Sans Mono variants
-    fontMap.put("Noto Sans Mono", "NotoSansMono-Regular.ttf");
-    fontMap.put("Noto Sans Mono Bold", "NotoSansMono-Bold.ttf");
-
-
-    // Poiret One
-    fontMap.put("Poiret One", "PoiretOne-Regular.ttf");
-
-    // Arimo variants
-    fontMap.put("Arimo", "Arimo-Regular.ttf");
-    fontMap.put("Arimo Bold", "Arimo-Bold.ttf");
-    fontMap.put("Arimo Bold Italic", "Arimo-BoldItalic.ttf");
-    fontMap.put("Arimo Italic", "Arimo-Italic.ttf");
-
-
-    // Carlito variants
-    fontMap.put("Carlito", "Carlito-Regular.ttf");
-    fontMap.put("Carlito Bold", "Carlito-Bold.ttf");
-    fontMap.put("Carlito Bold Italic", "Carlito-BoldItalic.ttf");
-    fontMap.put("Carlito Italic", "Carlito-Italic.ttf");
-
-    // Comic Neue variants
-    fontMap.put("Comic Neue", "ComicNeue-Regular.ttf");
-    fontMap.put("Comic Neue Bold", "ComicNeue-Bold.ttf");
-    fontMap.put("Comic Neue Bold Italic", "ComicNeue-BoldItalic.ttf");
-    fontMap.put("Comic Neue Italic", "ComicNeue-Italic.ttf");
-
-
-    // Courier Prime variants
-    fontMap.put("Courier Prime", "CourierPrime-Regular.ttf");
-    fontMap.put("Courier Prime Bold", "CourierPrime-Bold.ttf");
-    fontMap.put("Courier Prime Bold Italic", "CourierPrime-BoldItalic.ttf");
-    fontMap.put("Courier Prime Italic", "CourierPrime-Italic.ttf");
-
-    // Gelasio variants
-    fontMap.put("Gelasio", "Gelasio-Regular.ttf");
-    fontMap.put("Gelasio Bold", "Gelasio-Bold.ttf");
-    fontMap.put("Gelasio Bold Italic", "Gelasio-BoldItalic.ttf");
-    fontMap.put("Gelasio Italic", "Gelasio-Italic.ttf");
-
-
-    // Tinos variants
-    fontMap.put("Tinos", "Tinos-Regular.ttf");
-    fontMap.put("Tinos Bold", "Tinos-Bold.ttf");
-    fontMap.put("Tinos Bold Italic", "Tinos-BoldItalic.ttf");
-    fontMap.put("Tinos Italic", "Tinos-Italic.ttf");
-
-    // Amatic SC variants
-    fontMap.put("Amatic SC", "AmaticSC-Regular.ttf");
-    fontMap.put("Amatic SC Bold", "AmaticSC-Bold.ttf");
-
-// Barriecito
-    fontMap.put("Barriecito", "Barriecito-Regular.ttf");
-
-// Barrio
-    fontMap.put("Barrio", "Barrio-Regular.ttf");
-
-// Birthstone
-    fontMap.put("Birthstone", "Birthstone-Regular.ttf");
-
-// Bungee Hairline
-    fontMap.put("Bungee Hairline", "BungeeHairline-Regular.ttf");
-
-// Butcherman
-    fontMap.put("Butcherman", "Butcherman-Regular.ttf");
-
-// Doto variants
-    fontMap.put("Doto Black", "Doto-Black.ttf");
-    fontMap.put("Doto ExtraBold", "Doto-ExtraBold.ttf");
-    fontMap.put("Doto Rounded Bold", "Doto_Rounded-Bold.ttf");
-
-// Fascinate Inline
-    fontMap.put("Fascinate Inline", "FascinateInline-Regular.ttf");
-
-// Freckle Face
-    fontMap.put("Freckle Face", "FreckleFace-Regular.ttf");
-
-// Fredericka the Great
-    fontMap.put("Fredericka the Great", "FrederickatheGreat-Regular.ttf");
-
-// Imperial Script
-    fontMap.put("Imperial Script", "ImperialScript-Regular.ttf");
-
-// Kings
-    fontMap.put("Kings", "Kings-Regular.ttf");
-
-// Kirang Haerang
-    fontMap.put("Kirang Haerang", "KirangHaerang-Regular.ttf");
-
-// Lavishly Yours
-    fontMap.put("Lavishly Yours", "LavishlyYours-Regular.ttf");
-
-// Mountains of Christmas variants
-    fontMap.put("Mountains of Christmas", "MountainsofChristmas-Regular.ttf");
-    fontMap.put("Mountains of Christmas Bold", "MountainsofChristmas-Bold.ttf");
-
-// Rampart One
-    fontMap.put("Rampart One", "RampartOne-Regular.ttf");
-
-// Rubik Wet Paint
-    fontMap.put("Rubik Wet Paint", "RubikWetPaint-Regular.ttf");
-
-// Tangerine variants
-    fontMap.put("Tangerine", "Tangerine-Regular.ttf");
-    fontMap.put("Tangerine Bold", "Tangerine-Bold.ttf");
-
-// Yesteryear
-    fontMap.put("Yesteryear", "Yesteryear-Regular.ttf");
-
-    String processedFontFamily = fontFamily.trim();
-    if (fontMap.containsKey(processedFontFamily)) {
-      String fontFileName = fontMap.get(processedFontFamily);
-      String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-      logger.debug("Found font match for: {} -> {}", processedFontFamily, fontPath);
-      return fontPath;
-    }
-
-    for (Map.Entry<String, String> entry : fontMap.entrySet()) {
-      if (entry.getKey().equalsIgnoreCase(processedFontFamily)) {
-        String fontFileName = entry.getValue();
-        String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-        logger.debug("Found case-insensitive font match for: {} -> {}", processedFontFamily, fontPath);
-        return fontPath;
-      }
-    }
-
-    logger.warn("Font family '{}' not found. Using default: arial.ttf", fontFamily);
-    return defaultFontPath;
-  }
-
-  private String getFontFilePath(String fontFileName, String fontsResourcePath, String tempFontDir) {
-    try {
-      File tempFontFile = new File(tempFontDir + fontFileName);
-      if (tempFontFile.exists()) {
-        return tempFontFile.getAbsolutePath();
-      }
-
-      String resourcePath = fontsResourcePath + fontFileName;
-      InputStream fontStream = getClass().getResourceAsStream(resourcePath);
-      if (fontStream == null) {
-        logger.error("Font file not found in resources: {}", resourcePath);
-        return "C:/Windows/Fonts/Arial.ttf";
-      }
-
-      Path tempPath = tempFontFile.toPath();
-      Files.copy(fontStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
-      fontStream.close();
-
-      logger.debug("Extracted font to: {}", tempFontFile.getAbsolutePath());
-      return tempFontFile.getAbsolutePath();
-    } catch (IOException e) {
-      logger.error("Error accessing font file: {}. Error: {}", fontFileName, e.getMessage());
-      return "C:/Windows/Fonts/Arial.ttf";
-    }
-  }
-
   private double getVideoDuration(File videoFile) throws IOException, InterruptedException {
-    List<String> command = Arrays.asList(
-        ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-        "-i", videoFile.getAbsolutePath(),
-        "-show_entries", "format=duration",
-        "-v", "quiet",
-        "-of", "json"
-    );
-
-    logger.debug("Executing FFprobe command for video duration: {}", String.join(" ", command));
-    ProcessBuilder pb = new ProcessBuilder(command);
-    pb.redirectErrorStream(true);
-    Process process = pb.start();
-    StringBuilder output = new StringBuilder();
-    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        output.append(line);
-        logger.debug("FFprobe output: {}", line);
-      }
-    }
-    int exitCode = process.waitFor();
-    if (exitCode != 0) {
-      logger.error("FFprobe failed to get video duration for {}: {}", videoFile.getAbsolutePath(), output.toString());
-      throw new IOException("FFprobe failed to get video duration: " + output.toString());
-    }
-
-    try {
-      Map<String, Object> result = objectMapper.readValue(output.toString(), new TypeReference<Map<String, Object>>() {
-      });
-      Map<String, Object> format = (Map<String, Object>) result.get("format");
-      if (format == null || !format.containsKey("duration")) {
-        logger.error("No duration found in FFprobe output for {}: {}", videoFile.getAbsolutePath(), output.toString());
-        throw new IOException("No duration found in FFprobe output");
-      }
-      return Double.parseDouble(format.get("duration").toString());
-    } catch (JsonProcessingException e) {
-      logger.error("Failed to parse FFprobe output for {}: {}", videoFile.getAbsolutePath(), output.toString());
-      throw new IOException("Failed to parse FFprobe output: " + output.toString());
-    }
+    return mediaProbeService.duration(videoFile);
   }
 
 }
\ No newline at end of file
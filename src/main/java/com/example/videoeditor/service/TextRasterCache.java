@@ -0,0 +1,152 @@
+package com.example.videoeditor.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Disk cache of rasterized text overlays, keyed by a hash of the text style. The same
+ * PNG is shared by every batch and every export that shows the same text, so cached
+ * files are never deleted by the renderer; only LRU eviction removes them. A render
+ * pins the entries it uses until it closes its {@link Pins}, so eviction never takes a
+ * PNG out from under a batch command that has not run yet.
+ */
+@Component
+public class TextRasterCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextRasterCache.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${app.render.text-cache-dir:cache/text}")
+    private String cacheDirPath;
+
+    @Value("${app.render.text-cache-max-bytes:1073741824}")
+    private long maxCacheBytes;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Entry file name to the number of open Pins holding it; guarded by this
+    private final Map<String, Integer> pinCounts = new HashMap<>();
+    private File cacheDir;
+
+    public TextRasterCache() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Rasterizer {
+        BufferedImage rasterize() throws IOException;
+    }
+
+    /** The entries one render uses. Closing it makes them evictable again. */
+    public final class Pins implements AutoCloseable {
+        private final Set<String> names = new HashSet<>();
+        private boolean closed;
+
+        private Pins() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (TextRasterCache.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                for (String name : names) {
+                    pinCounts.computeIfPresent(name, (ignored, count) -> count > 1 ? count - 1 : null);
+                }
+                names.clear();
+            }
+        }
+    }
+
+    public Pins pin() {
+        return new Pins();
+    }
+
+    @PostConstruct
+    public void init() {
+        cacheDir = new File(cacheDirPath);
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            logger.error("Failed to create text raster cache directory: {}", cacheDir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the cached PNG for the key, rasterizing it first on a miss. Concurrent
+     * callers asking for the same key wait for a single rasterization. The entry stays
+     * pinned until {@code pins} is closed; with null pins it may be evicted at any time.
+     */
+    public File getOrRender(String key, Rasterizer rasterizer, Pins pins) throws IOException {
+        File cached = new File(cacheDir, "text_" + key + ".png");
+        // Pinned before the lookup: an entry evicted before this point is simply rendered again
+        if (pins != null) {
+            synchronized (this) {
+                if (pins.closed) {
+                    throw new IllegalStateException("Text raster pins already closed");
+                }
+                if (pins.names.add(cached.getName())) {
+                    pinCounts.merge(cached.getName(), 1, Integer::sum);
+                }
+            }
+        }
+        synchronized (locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)]) {
+            if (cached.exists() && cached.length() > 0) {
+                cached.setLastModified(System.currentTimeMillis());
+                return cached;
+            }
+            BufferedImage image = rasterizer.rasterize();
+            File staging = new File(cacheDir, "text_" + key + "." + System.nanoTime() + ".part");
+            try {
+                ImageIO.write(image, "PNG", staging);
+                Files.move(staging.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(staging.toPath());
+            }
+        }
+        evictIfNeeded(cached);
+        return cached;
+    }
+
+    private synchronized void evictIfNeeded(File justWritten) {
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(".png"));
+        if (entries == null) {
+            return;
+        }
+        long totalBytes = Arrays.stream(entries).mapToLong(File::length).sum();
+        if (totalBytes <= maxCacheBytes) {
+            return;
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalBytes <= maxCacheBytes) {
+                break;
+            }
+            if (entry.equals(justWritten) || pinCounts.containsKey(entry.getName())) {
+                continue;
+            }
+            long length = entry.length();
+            if (entry.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+}
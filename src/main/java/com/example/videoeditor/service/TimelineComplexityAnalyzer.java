@@ -0,0 +1,350 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.AudioSegment;
+import com.example.videoeditor.dto.ExportEstimate;
+import com.example.videoeditor.dto.Filter;
+import com.example.videoeditor.dto.ImageSegment;
+import com.example.videoeditor.dto.Keyframe;
+import com.example.videoeditor.dto.TextSegment;
+import com.example.videoeditor.dto.TimelineState;
+import com.example.videoeditor.dto.Transition;
+import com.example.videoeditor.dto.VideoSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Predicts what an export will cost before it is queued. Every batch window is scored in
+ * cost units, roughly one unit per megapixel-frame of compositing and encoding, from what
+ * renderBatch has to do in it: decode inputs, overlay layers, run filters, evaluate
+ * keyframe expressions, draw transitions and rasterize text. The timeline audio is mixed
+ * in one cheap pass alongside the batches and is not scored. Finished batches feed back
+ * their wall time, so the seconds per unit follow the real speed of this machine.
+ */
+@Component
+public class TimelineComplexityAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimelineComplexityAnalyzer.class);
+
+    // Relative weights per megapixel-frame; the canvas encode itself is 1
+    private static final double ENCODE_WEIGHT = 1.0;
+    private static final double LAYER_WEIGHT = 0.35;
+    private static final double VIDEO_DECODE_WEIGHT = 0.5;
+    private static final double FILTER_WEIGHT = 0.15;
+    private static final double KEYFRAME_WEIGHT = 0.05;
+    private static final double TRANSITION_WEIGHT = 0.3;
+    // Per megapixel of text rasterized in the JVM
+    private static final double TEXT_UNITS_PER_MEGAPIXEL = 1.0;
+    // The final concat only copies streams
+    private static final double CONCAT_SECONDS_PER_BATCH = 0.25;
+    private static final int MOST_EXPENSIVE_LIMIT = 5;
+
+    private final RenderWorkerPool renderWorkerPool;
+
+    @Value("${app.export.estimate.seconds-per-unit:0.05}")
+    private double defaultSecondsPerUnit;
+
+    @Value("${app.export.estimate.smoothing:0.1}")
+    private double smoothing;
+
+    private double secondsPerUnit;
+    private long samples;
+
+    public TimelineComplexityAnalyzer(RenderWorkerPool renderWorkerPool) {
+        this.renderWorkerPool = renderWorkerPool;
+    }
+
+    public ExportEstimate estimate(TimelineState timelineState, int canvasWidth, int canvasHeight, Float fps) {
+        // Same canvas and batch windows as renderFinalVideo
+        if (timelineState.getCanvasWidth() != null) canvasWidth = timelineState.getCanvasWidth();
+        if (timelineState.getCanvasHeight() != null) canvasHeight = timelineState.getCanvasHeight();
+        double frameRate = fps != null ? fps : 30;
+        double totalDuration = totalDuration(timelineState);
+        double secondsPerUnit = getSecondsPerUnit();
+
+        List<ExportEstimate.BatchEstimate> batches = new ArrayList<>();
+        double totalUnits = 0;
+        double batchSecondsSum = 0;
+        double longestBatchSeconds = 0;
+        int index = 0;
+        for (double start = 0; start < totalDuration; start += VideoEditingService.BATCH_SECONDS) {
+            ExportEstimate.BatchEstimate batch = analyzeBatch(timelineState, index++, start,
+                    Math.min(start + VideoEditingService.BATCH_SECONDS, totalDuration), canvasWidth, canvasHeight, frameRate);
+            batch.setEstimatedSeconds(batch.getCostUnits() * secondsPerUnit);
+            batches.add(batch);
+            totalUnits += batch.getCostUnits();
+            batchSecondsSum += batch.getEstimatedSeconds();
+            longestBatchSeconds = Math.max(longestBatchSeconds, batch.getEstimatedSeconds());
+        }
+
+        int parallelBatches = Math.max(1, Math.min(renderWorkerPool.getPoolSize(), batches.size()));
+        double wallSeconds = Math.max(batchSecondsSum / parallelBatches, longestBatchSeconds)
+                + batches.size() * CONCAT_SECONDS_PER_BATCH;
+
+        return ExportEstimate.builder()
+                .timelineSeconds(totalDuration)
+                .batchCount(batches.size())
+                .totalCostUnits(totalUnits)
+                .estimatedSeconds(wallSeconds)
+                .estimatedCpuSeconds(batchSecondsSum * renderWorkerPool.getThreadsPerProcess())
+                .parallelBatches(parallelBatches)
+                .secondsPerCostUnit(secondsPerUnit)
+                .calibrationSamples(getSamples())
+                .batches(batches)
+                .mostExpensiveSegments(mostExpensiveSegments(timelineState, totalDuration, canvasWidth, canvasHeight, frameRate))
+                .build();
+    }
+
+    /** Cost units of one batch window, the same figure {@link #recordBatch} is calibrated against. */
+    public double costUnits(TimelineState timelineState, double batchStart, double batchEnd, int canvasWidth, int canvasHeight, Float fps) {
+        return analyzeBatch(timelineState, 0, batchStart, batchEnd, canvasWidth, canvasHeight, fps != null ? fps : 30).getCostUnits();
+    }
+
+    /** Feeds the wall time of a rendered (not cache-restored) batch back into the calibration. */
+    public synchronized void recordBatch(double costUnits, long elapsedMillis) {
+        if (costUnits <= 0 || elapsedMillis <= 0) {
+            return;
+        }
+        double observed = elapsedMillis / 1000.0 / costUnits;
+        double current = samples == 0 ? defaultSecondsPerUnit : secondsPerUnit;
+        // Plain average over the first samples, then an exponential moving average
+        double weight = Math.max(smoothing, 1.0 / (samples + 1));
+        secondsPerUnit = current + weight * (observed - current);
+        samples++;
+        logger.debug("Batch of {} units took {} ms, now {} s per unit after {} samples",
+                String.format("%.1f", costUnits), elapsedMillis, String.format("%.4f", secondsPerUnit), samples);
+    }
+
+    public synchronized double getSecondsPerUnit() {
+        return samples == 0 ? defaultSecondsPerUnit : secondsPerUnit;
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    private ExportEstimate.BatchEstimate analyzeBatch(TimelineState timelineState, int index, double batchStart, double batchEnd,
+                                                      int canvasWidth, int canvasHeight, double frameRate) {
+        double megapixels = canvasWidth * (double) canvasHeight / 1_000_000;
+        double frames = (batchEnd - batchStart) * frameRate;
+
+        List<VideoSegment> videos = timelineState.getSegments().stream()
+                .filter(vs -> vs.getTimelineStartTime() < batchEnd && vs.getTimelineEndTime() > batchStart)
+                .collect(Collectors.toList());
+        List<ImageSegment> images = timelineState.getImageSegments().stream()
+                .filter(is -> is.getTimelineStartTime() < batchEnd && is.getTimelineEndTime() > batchStart)
+                .collect(Collectors.toList());
+        List<TextSegment> texts = timelineState.getTextSegments().stream()
+                .filter(ts -> ts.getTimelineStartTime() < batchEnd && ts.getTimelineEndTime() > batchStart)
+                .collect(Collectors.toList());
+        List<AudioSegment> audios = timelineState.getAudioSegments().stream()
+                .filter(as -> as.getTimelineStartTime() < batchEnd && as.getTimelineEndTime() > batchStart)
+                .collect(Collectors.toList());
+
+        Map<String, Long> filtersBySegment = filtersBySegment(timelineState);
+        double weightedFrames = 0;
+        int filterCount = 0;
+        int keyframedProperties = 0;
+        List<double[]> visibleRanges = new ArrayList<>();
+        for (VideoSegment vs : videos) {
+            double visibleFrames = overlap(vs.getTimelineStartTime(), vs.getTimelineEndTime(), batchStart, batchEnd) * frameRate;
+            int filters = filtersBySegment.getOrDefault(vs.getId(), 0L).intValue();
+            int animated = animatedProperties(vs.getKeyframes());
+            filterCount += filters;
+            keyframedProperties += animated;
+            weightedFrames += visibleFrames * (LAYER_WEIGHT + VIDEO_DECODE_WEIGHT + filters * FILTER_WEIGHT + animated * KEYFRAME_WEIGHT);
+            visibleRanges.add(new double[]{vs.getTimelineStartTime(), vs.getTimelineEndTime()});
+        }
+        for (ImageSegment is : images) {
+            double visibleFrames = overlap(is.getTimelineStartTime(), is.getTimelineEndTime(), batchStart, batchEnd) * frameRate;
+            int filters = filtersBySegment.getOrDefault(is.getId(), 0L).intValue();
+            int animated = animatedProperties(is.getKeyframes());
+            filterCount += filters;
+            keyframedProperties += animated;
+            weightedFrames += visibleFrames * (LAYER_WEIGHT + filters * FILTER_WEIGHT + animated * KEYFRAME_WEIGHT);
+            visibleRanges.add(new double[]{is.getTimelineStartTime(), is.getTimelineEndTime()});
+        }
+        long textRasterPixels = 0;
+        for (TextSegment ts : texts) {
+            double visibleFrames = overlap(ts.getTimelineStartTime(), ts.getTimelineEndTime(), batchStart, batchEnd) * frameRate;
+            int animated = animatedProperties(ts.getKeyframes());
+            keyframedProperties += animated;
+            weightedFrames += visibleFrames * (LAYER_WEIGHT + animated * KEYFRAME_WEIGHT);
+            visibleRanges.add(new double[]{ts.getTimelineStartTime(), ts.getTimelineEndTime()});
+            // The raster is drawn once and reused by later batches through the text raster cache
+            if (Math.max(ts.getTimelineStartTime(), 0) >= batchStart) {
+                textRasterPixels += textRasterPixels(ts, canvasWidth, canvasHeight);
+            }
+        }
+        for (AudioSegment as : audios) {
+            keyframedProperties += animatedProperties(as.getKeyframes());
+        }
+
+        List<Transition> transitions = timelineState.getTransitions().stream()
+                .filter(t -> t.getTimelineStartTime() < batchEnd && t.getTimelineStartTime() + t.getDuration() > batchStart)
+                .collect(Collectors.toList());
+        double transitionFrames = 0;
+        for (Transition t : transitions) {
+            transitionFrames += overlap(t.getTimelineStartTime(), t.getTimelineStartTime() + t.getDuration(), batchStart, batchEnd) * frameRate;
+        }
+
+        double costUnits = megapixels * (frames * ENCODE_WEIGHT + weightedFrames + transitionFrames * TRANSITION_WEIGHT)
+                + textRasterPixels / 1_000_000.0 * TEXT_UNITS_PER_MEGAPIXEL;
+
+        return ExportEstimate.BatchEstimate.builder()
+                .index(index)
+                .start(batchStart)
+                .end(batchEnd)
+                .videoInputs(videos.size())
+                .imageInputs(images.size())
+                .textInputs(texts.size())
+                .audioInputs(audios.size())
+                .overlayDepth(maxConcurrent(visibleRanges, batchStart, batchEnd))
+                .filterCount(filterCount)
+                .keyframedProperties(keyframedProperties)
+                .textRasterPixels(textRasterPixels)
+                .transitionCount(transitions.size())
+                .costUnits(costUnits)
+                .build();
+    }
+
+    private List<ExportEstimate.SegmentCost> mostExpensiveSegments(TimelineState timelineState, double totalDuration,
+                                                                   int canvasWidth, int canvasHeight, double frameRate) {
+        double megapixels = canvasWidth * (double) canvasHeight / 1_000_000;
+        Map<String, Long> filtersBySegment = filtersBySegment(timelineState);
+        Map<String, List<Transition>> transitionsBySegment = timelineState.getTransitions().stream()
+                .filter(t -> t.getSegmentId() != null)
+                .collect(Collectors.groupingBy(Transition::getSegmentId));
+        List<ExportEstimate.SegmentCost> costs = new ArrayList<>();
+
+        for (VideoSegment vs : timelineState.getSegments()) {
+            costs.add(segmentCost(vs.getId(), "video", vs.getTimelineStartTime(), vs.getTimelineEndTime(), totalDuration,
+                    megapixels, frameRate, LAYER_WEIGHT + VIDEO_DECODE_WEIGHT, filtersBySegment.getOrDefault(vs.getId(), 0L).intValue(),
+                    animatedProperties(vs.getKeyframes()), transitionsBySegment.getOrDefault(vs.getId(), List.of()), 0));
+        }
+        for (ImageSegment is : timelineState.getImageSegments()) {
+            costs.add(segmentCost(is.getId(), "image", is.getTimelineStartTime(), is.getTimelineEndTime(), totalDuration,
+                    megapixels, frameRate, LAYER_WEIGHT, filtersBySegment.getOrDefault(is.getId(), 0L).intValue(),
+                    animatedProperties(is.getKeyframes()), transitionsBySegment.getOrDefault(is.getId(), List.of()), 0));
+        }
+        for (TextSegment ts : timelineState.getTextSegments()) {
+            costs.add(segmentCost(ts.getId(), "text", ts.getTimelineStartTime(), ts.getTimelineEndTime(), totalDuration,
+                    megapixels, frameRate, LAYER_WEIGHT, 0, animatedProperties(ts.getKeyframes()),
+                    transitionsBySegment.getOrDefault(ts.getId(), List.of()), textRasterPixels(ts, canvasWidth, canvasHeight)));
+        }
+
+        return costs.stream()
+                .filter(cost -> cost.getCostUnits() > 0)
+                .sorted(Comparator.comparingDouble(ExportEstimate.SegmentCost::getCostUnits).reversed())
+                .limit(MOST_EXPENSIVE_LIMIT)
+                .collect(Collectors.toList());
+    }
+
+    private ExportEstimate.SegmentCost segmentCost(String id, String type, double start, double end, double totalDuration,
+                                                   double megapixels, double frameRate, double baseWeight, int filters,
+                                                   int animated, List<Transition> transitions, long textRasterPixels) {
+        double visibleSeconds = overlap(start, end, 0, totalDuration);
+        double frames = visibleSeconds * frameRate;
+        double transitionFrames = transitions.stream().mapToDouble(Transition::getDuration).sum() * frameRate;
+        double costUnits = megapixels * (frames * (baseWeight + filters * FILTER_WEIGHT + animated * KEYFRAME_WEIGHT)
+                + transitionFrames * TRANSITION_WEIGHT)
+                + textRasterPixels / 1_000_000.0 * TEXT_UNITS_PER_MEGAPIXEL;
+
+        List<String> reasons = new ArrayList<>();
+        reasons.add(String.format("%s layer on screen for %.1f s", type, visibleSeconds));
+        if (filters > 0) reasons.add(filters + (filters == 1 ? " filter" : " filters"));
+        if (animated > 0) reasons.add(animated + (animated == 1 ? " keyframed property" : " keyframed properties"));
+        if (!transitions.isEmpty()) reasons.add(transitions.size() + (transitions.size() == 1 ? " transition" : " transitions"));
+        if (textRasterPixels > 0) reasons.add(String.format("%.1f MP text raster", textRasterPixels / 1_000_000.0));
+
+        return ExportEstimate.SegmentCost.builder()
+                .segmentId(id)
+                .type(type)
+                .start(start)
+                .end(end)
+                .costUnits(costUnits)
+                .reasons(reasons)
+                .build();
+    }
+
+    /** Approximates the image rasterizeText draws, without loading the font. */
+    static long textRasterPixels(TextSegment ts, int canvasWidth, int canvasHeight) {
+        if (ts.getText() == null || ts.getText().isEmpty()) {
+            return 0;
+        }
+        double resolutionMultiplier = canvasWidth >= 3840 ? 1.5 : 2.0;
+        double defaultScale = ts.getScale() != null ? ts.getScale() : 1.0;
+        double maxScale = Math.max(defaultScale, KeyframeTrack.of(ts.getKeyframes().get("scale"), defaultScale).maxValue());
+        double fontSize = 24.0 * maxScale * resolutionMultiplier;
+        double lineSpacing = ts.getLineSpacing() != null ? ts.getLineSpacing() : 1.2;
+
+        String[] lines = ts.getText().split("\n");
+        int longestLine = 0;
+        for (String line : lines) {
+            longestLine = Math.max(longestLine, line.length());
+        }
+        // An average glyph is a little over half the font size wide
+        double width = longestLine * fontSize * 0.6
+                + (ts.getBackgroundW() != null ? ts.getBackgroundW() : 0) * maxScale * resolutionMultiplier;
+        double height = lines.length * fontSize * lineSpacing
+                + (ts.getBackgroundH() != null ? ts.getBackgroundH() : 0) * maxScale * resolutionMultiplier;
+        double maxDimension = Math.max(canvasWidth, canvasHeight) * resolutionMultiplier * 1.5;
+        return (long) (Math.min(width, maxDimension) * Math.min(height, maxDimension));
+    }
+
+    private static double totalDuration(TimelineState timelineState) {
+        double end = 0;
+        for (VideoSegment vs : timelineState.getSegments()) end = Math.max(end, vs.getTimelineEndTime());
+        for (ImageSegment is : timelineState.getImageSegments()) end = Math.max(end, is.getTimelineEndTime());
+        for (TextSegment ts : timelineState.getTextSegments()) end = Math.max(end, ts.getTimelineEndTime());
+        for (AudioSegment as : timelineState.getAudioSegments()) end = Math.max(end, as.getTimelineEndTime());
+        return end;
+    }
+
+    private static Map<String, Long> filtersBySegment(TimelineState timelineState) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Filter filter : timelineState.getFilters()) {
+            if (filter.getSegmentId() != null) {
+                counts.merge(filter.getSegmentId(), 1L, Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /** Properties with at least two keyframes, which become per-frame expressions. */
+    private static int animatedProperties(Map<String, List<Keyframe>> keyframes) {
+        if (keyframes == null) {
+            return 0;
+        }
+        return (int) keyframes.values().stream().filter(list -> list != null && list.size() > 1).count();
+    }
+
+    private static double overlap(double start, double end, double windowStart, double windowEnd) {
+        return Math.max(0, Math.min(end, windowEnd) - Math.max(start, windowStart));
+    }
+
+    private static int maxConcurrent(List<double[]> ranges, double windowStart, double windowEnd) {
+        // Sweep over start (+1) and end (-1) events inside the window; ends sort before starts at the same time
+        List<double[]> events = new ArrayList<>();
+        for (double[] range : ranges) {
+            events.add(new double[]{Math.max(range[0], windowStart), 1});
+            events.add(new double[]{Math.min(range[1], windowEnd), -1});
+        }
+        events.sort((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+        int depth = 0;
+        int maxDepth = 0;
+        for (double[] event : events) {
+            depth += (int) event[1];
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        return maxDepth;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.videoeditor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Stable content hashes for timelines and render inputs. Map entries are written in
+ * key order so the same timeline always produces the same hash.
+ */
+public final class TimelineHashing {
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+        .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private TimelineHashing() {
+    }
+
+    public static String canonicalJson(Object value) throws JsonProcessingException {
+        return CANONICAL_MAPPER.writeValueAsString(value);
+    }
+
+    public static String hash(Object... parts) throws JsonProcessingException {
+        MessageDigest digest = newDigest();
+        for (Object part : parts) {
+            String text = part instanceof String ? (String) part : canonicalJson(part);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -4,7 +4,9 @@ import com.example.videoeditor.developer.entity.GlobalElement;
 import com.example.videoeditor.developer.repository.GlobalElementRepository;
 import com.example.videoeditor.dto.*;
 import com.example.videoeditor.entity.Element;
+import com.example.videoeditor.entity.MediaInfo;
 import com.example.videoeditor.entity.Project;
+import com.example.videoeditor.entity.RenderBatchTask;
 import com.example.videoeditor.entity.User;
 import com.example.videoeditor.entity.UserTtsUsage;
 import com.example.videoeditor.repository.ProjectRepository;
@@ -40,8 +42,12 @@ import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -53,6 +59,21 @@ public class VideoEditingService {
     private final Map<String, EditSession> activeSessions;
     private final GlobalElementRepository globalElementRepository;
     private UserTtsUsageRepository userTtsUsageRepository;
+    private final RenderWorkerPool renderWorkerPool;
+    private final BatchCacheService batchCacheService;
+    private final InputSeekPlanner inputSeekPlanner;
+    private final FontService fontService;
+    private final TextRasterCache textRasterCache;
+    private final ProgressRegistry progressRegistry;
+    private final ProcessScheduler processScheduler;
+    private final ProcessMetrics processMetrics;
+    private final TimelineComplexityAnalyzer timelineComplexityAnalyzer;
+    private final RenderBatchQueue renderBatchQueue;
+    private final ScratchSpaceManager scratchSpaceManager;
+    private final ImageInputCache imageInputCache;
+    private final MediaIngestService mediaIngestService;
+    private final MediaBlobStore mediaBlobStore;
+    private final MediaProbeService mediaProbeService;
 
     private final String ffmpegPath = "C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffmpeg.exe";
     private final String baseDir = "D:\\Backend\\videoEditor-main"; // Base directory constant
@@ -63,16 +84,53 @@ public class VideoEditingService {
 
     private String globalElementsDirectory = "elements/";
 
+    // Part of every batch cache key; bump when renderBatch output changes for the same timeline
+    private static final String BATCH_RENDER_VERSION = "6";
+    // Part of every text raster cache key; bump when rasterizeText draws differently
+    private static final String TEXT_RASTER_VERSION = "1";
+    // Length of the windows renderFinalVideo splits the timeline into
+    static final double BATCH_SECONDS = 8.0;
+
     public VideoEditingService(
             ProjectRepository projectRepository,
             UserTtsUsageRepository userTtsUsageRepository,
-            ObjectMapper objectMapper, GlobalElementRepository globalElementRepository
+            ObjectMapper objectMapper, GlobalElementRepository globalElementRepository,
+            RenderWorkerPool renderWorkerPool,
+            BatchCacheService batchCacheService,
+            InputSeekPlanner inputSeekPlanner,
+            FontService fontService,
+            TextRasterCache textRasterCache,
+            ProgressRegistry progressRegistry,
+            ProcessScheduler processScheduler,
+            ProcessMetrics processMetrics,
+            TimelineComplexityAnalyzer timelineComplexityAnalyzer,
+            RenderBatchQueue renderBatchQueue,
+            ScratchSpaceManager scratchSpaceManager,
+            ImageInputCache imageInputCache,
+            MediaIngestService mediaIngestService,
+            MediaProbeService mediaProbeService,
+            MediaBlobStore mediaBlobStore
     ) {
         this.projectRepository = projectRepository;
         this.objectMapper = objectMapper;
         this.globalElementRepository = globalElementRepository;
         this.activeSessions = new ConcurrentHashMap<>();
         this.userTtsUsageRepository = userTtsUsageRepository;
+        this.renderWorkerPool = renderWorkerPool;
+        this.batchCacheService = batchCacheService;
+        this.inputSeekPlanner = inputSeekPlanner;
+        this.fontService = fontService;
+        this.textRasterCache = textRasterCache;
+        this.progressRegistry = progressRegistry;
+        this.processScheduler = processScheduler;
+        this.processMetrics = processMetrics;
+        this.timelineComplexityAnalyzer = timelineComplexityAnalyzer;
+        this.renderBatchQueue = renderBatchQueue;
+        this.scratchSpaceManager = scratchSpaceManager;
+        this.imageInputCache = imageInputCache;
+        this.mediaIngestService = mediaIngestService;
+        this.mediaProbeService = mediaProbeService;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     @Data
@@ -323,6 +381,7 @@ public class VideoEditingService {
             projectVideoDir.mkdirs();
         }
 
+        List<String> uploadedPaths = new ArrayList<>();
         for (int i = 0; i < videoFiles.length; i++) {
             MultipartFile videoFile = videoFiles[i];
             String originalFileName = videoFile.getOriginalFilename();
@@ -331,9 +390,10 @@ public class VideoEditingService {
                     : projectId + "_" + System.currentTimeMillis() + "_" + originalFileName;
 
             File destinationFile = new File(projectVideoDir, uniqueFileName);
-            videoFile.transferTo(destinationFile);
+            mediaBlobStore.store(videoFile, user, destinationFile);
 
             String relativePath = "videos/projects/" + projectId + "/" + uniqueFileName;
+            uploadedPaths.add(relativePath);
 
             try {
                 addVideo(project, relativePath, uniqueFileName);
@@ -343,7 +403,12 @@ public class VideoEditingService {
         }
 
         project.setLastModified(LocalDateTime.now());
-        return projectRepository.save(project);
+        Project savedProject = projectRepository.save(project);
+        // Probe, thumbnails, audio and waveform are prepared in the background
+        for (String uploadedPath : uploadedPaths) {
+            mediaIngestService.submitVideo(user.getId(), projectId, uploadedPath);
+        }
+        return savedProject;
     }
 
     // Updated addVideoToTimeline method
@@ -423,9 +488,8 @@ public class VideoEditingService {
         String videoFileName = new File(cleanedVideoPath).getName();
 
         if (createAudioSegment) {
-            String audioFileName = "extracted_" + videoFileName.replaceAll("[^a-zA-Z0-9.]", "_") + ".mp3";
-            File projectAudioDir = new File(baseDir, "audio/projects/" + session.getProjectId() + "/extracted");
-            File audioFile = new File(projectAudioDir, audioFileName);
+            File audioFile = new File(baseDir, MediaIngestService.extractedAudioPath(session.getProjectId(), videoFileName));
+            String audioFileName = audioFile.getName();
 
             List<Map<String, String>> extractedAudio = getExtractedAudio(project);
             Map<String, String> existingAudio = extractedAudio.stream()
@@ -556,101 +620,28 @@ public class VideoEditingService {
             throw new IOException("Video file is not readable: " + videoFile.getAbsolutePath());
         }
 
-        // Store audio in project-specific extracted folder
-        File audioDir = new File(baseDir, "audio/projects/" + projectId + "/extracted");
-        if (!audioDir.exists() && !audioDir.mkdirs()) {
-            throw new IOException("Failed to create audio directory: " + audioDir.getAbsolutePath());
-        }
-
-        String videoFileName = new File(videoPath).getName();
-        String baseFileName = videoFileName.substring(0, videoFileName.lastIndexOf('.'));
-        String cleanAudioFileName = "extracted_" + baseFileName.replaceAll("[^a-zA-Z0-9.]", "_") + ".mp3";
-        File audioFile = new File(audioDir, cleanAudioFileName);
-        String relativePath = "audio/projects/" + projectId + "/extracted/" + cleanAudioFileName;
-        String waveformJsonPath = null;
-
-        // Check if audio stream exists using ffprobe
-        List<String> probeCommand = new ArrayList<>();
-        probeCommand.add(ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"));
-        probeCommand.add("-v");
-        probeCommand.add("error");
-        probeCommand.add("-show_streams");
-        probeCommand.add("-select_streams");
-        probeCommand.add("a");
-        probeCommand.add("-of");
-        probeCommand.add("json");
-        probeCommand.add(videoFile.getAbsolutePath());
-
-        ProcessBuilder probeBuilder = new ProcessBuilder(probeCommand);
-        probeBuilder.redirectErrorStream(true);
-        Process probeProcess = probeBuilder.start();
-        StringBuilder probeOutput = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(probeProcess.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                probeOutput.append(line);
-            }
-        }
-        int probeExitCode = probeProcess.waitFor();
-        if (probeExitCode != 0) {
-            // Log the probe command output for debugging
-            System.err.println("ffprobe command failed: " + String.join(" ", probeCommand));
-            System.err.println("ffprobe output: " + probeOutput.toString());
-            throw new IOException("Failed to probe video for audio streams: " + videoPath + ", ffprobe exit code: " + probeExitCode);
-        }
-
-        // Parse ffprobe output
-        Map<String, Object> probeData;
-        try {
-            probeData = objectMapper.readValue(probeOutput.toString(), new TypeReference<Map<String, Object>>() {});
-        } catch (JsonProcessingException e) {
-            System.err.println("Failed to parse ffprobe output: " + probeOutput.toString());
-            throw new IOException("Invalid ffprobe output for video: " + videoPath, e);
-        }
-        List<Map<String, Object>> streams = (List<Map<String, Object>>) probeData.getOrDefault("streams", new ArrayList<>());
-        if (streams.isEmpty()) {
-            System.out.println("No audio stream found in video: " + videoPath);
-            // Return without extracting audio
-            Map<String, String> result = new HashMap<>();
-            result.put("audioPath", null);
-            result.put("waveformJsonPath", null);
-            return result;
-        }
-
-        // Proceed with audio extraction
-        List<String> command = new ArrayList<>();
-        command.add(ffmpegPath);
-        command.add("-i");
-        command.add(videoFile.getAbsolutePath());
-        command.add("-vn"); // No video
-        command.add("-acodec");
-        command.add("mp3");
-        command.add("-y");
-        command.add(audioFile.getAbsolutePath());
-
+        // Reuses what the ingest pipeline already extracted for this upload
+        String relativePath;
         try {
-            executeFFmpegCommand(command);
-        } catch (RuntimeException e) {
+            relativePath = mediaIngestService.ensureExtractedAudio(videoPath, projectId, null);
+        } catch (IOException e) {
             System.err.println("Audio extraction failed for video: " + videoPath);
             throw new IOException("Failed to extract audio from video: " + videoPath, e);
         }
-
-        // Generate and save waveform JSON if audio was extracted
-        if (audioFile.exists()) {
-            waveformJsonPath = generateAndSaveWaveformJson(relativePath, projectId);
-        } else {
-            System.out.println("Audio file was not created: " + audioFile.getAbsolutePath());
-            // Return without waveform if extraction failed
+        if (relativePath == null) {
+            System.out.println("No audio stream found in video: " + videoPath);
+            // Return without extracting audio
             Map<String, String> result = new HashMap<>();
             result.put("audioPath", null);
             result.put("waveformJsonPath", null);
             return result;
         }
+        String waveformJsonPath = mediaIngestService.ensureExtractedWaveformPeaks(videoPath, projectId, null);
 
         // Update project
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new RuntimeException("Project not found"));
-        addExtractedAudio(project, relativePath, cleanAudioFileName, videoPath, waveformJsonPath);
+        addExtractedAudio(project, relativePath, new File(relativePath).getName(), videoPath, waveformJsonPath);
         projectRepository.save(project);
 
         // Return audioPath and waveformJsonPath
@@ -662,27 +653,13 @@ public class VideoEditingService {
 
     public double getVideoDuration(String videoPath) throws IOException, InterruptedException {
         // Adjust path to include baseDir
-        String fullPath = new File(baseDir, videoPath).getAbsolutePath();
-        ProcessBuilder builder = new ProcessBuilder(
-                ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                fullPath
-        );
-
-        builder.redirectErrorStream(true);
-        Process process = builder.start();
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String duration = reader.readLine();
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0 || duration == null) {
-            throw new IOException("Failed to get video duration for path: " + fullPath);
+        File videoFile = new File(baseDir, videoPath);
+        MediaInfo info = mediaProbeService.probe(videoFile);
+        if (info.getDuration() == null) {
+            throw new IOException("Failed to get video duration for path: " + videoFile.getAbsolutePath());
         }
         // Round duration to three decimal places
-        return roundToThreeDecimals(Double.parseDouble(duration));
+        return roundToThreeDecimals(info.getDuration());
     }
 
     public void updateVideoSegment(
@@ -1496,7 +1473,7 @@ public class VideoEditingService {
 
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.ENCODE, null);
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
@@ -1540,7 +1517,7 @@ public class VideoEditingService {
         System.out.println("Executing command: " + String.join(" ", command));
 
         ProcessBuilder pb = new ProcessBuilder(command);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PYTHON, null);
 
         StringBuilder output = new StringBuilder();
         StringBuilder errorOutput = new StringBuilder();
@@ -1594,41 +1571,8 @@ public class VideoEditingService {
         return subtitles;
     }
 
-    // Helper method to get audio duration using FFmpeg
     private double getAudioDuration(File audioFile) throws IOException, InterruptedException {
-        List<String> command = new ArrayList<>();
-        command.add(ffmpegPath);
-        command.add("-i");
-        command.add(audioFile.getAbsolutePath());
-        command.add("-f");
-        command.add("null");
-        command.add("-");
-
-        ProcessBuilder pb = new ProcessBuilder(command);
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-        }
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new IOException("FFmpeg failed to get audio duration: " + output.toString());
-        }
-
-        // Parse duration from FFmpeg output (e.g., "Duration: 00:00:10.23")
-        Pattern pattern = Pattern.compile("Duration: (\\d{2}):(\\d{2}):(\\d{2}\\.\\d+)");
-        Matcher matcher = pattern.matcher(output.toString());
-        if (matcher.find()) {
-            int hours = Integer.parseInt(matcher.group(1));
-            int minutes = Integer.parseInt(matcher.group(2));
-            double seconds = Double.parseDouble(matcher.group(3));
-            return hours * 3600 + minutes * 60 + seconds;
-        }
-        throw new IOException("Could not parse audio duration from FFmpeg output");
+        return mediaProbeService.duration(audioFile);
     }
 
     // Find the topmost layer across all segment types
@@ -1667,12 +1611,13 @@ public class VideoEditingService {
                     : projectId + "_" + System.currentTimeMillis() + "_" + originalFileName;
 
             File destinationFile = new File(projectAudioDir, uniqueFileName);
-            audioFile.transferTo(destinationFile);
+            mediaBlobStore.store(audioFile, user, destinationFile);
 
             String relativePath = "audio/projects/" + projectId + "/" + uniqueFileName;
 
-            // Generate and save waveform JSON
-            String waveformJsonPath = generateAndSaveWaveformJson(relativePath, projectId);
+            // The waveform peaks are written to this path in the background
+            String waveformJsonPath = MediaIngestService.waveformPath(projectId, relativePath);
+            mediaIngestService.submitAudio(user.getId(), projectId, relativePath);
 
             try {
                 addAudio(project, relativePath, uniqueFileName, waveformJsonPath);
@@ -2012,8 +1957,8 @@ public class VideoEditingService {
 
       String audioPath = "audio/projects/" + projectId + "/" + audioFileName;
 
-      // Generate waveform JSON
-      String waveformJsonPath = generateAndSaveWaveformJson(audioPath, projectId);
+      // Generate waveform peaks
+      String waveformJsonPath = mediaIngestService.ensureWaveformPeaks(audioPath, projectId, null);
 
       // Add to project audioJson (same as uploadAudioToProject)
       addAudio(project, audioPath, audioFileName, waveformJsonPath);
@@ -2094,31 +2039,10 @@ public class VideoEditingService {
             throw new IOException("Audio file not found: " + audioFile.getAbsolutePath());
         }
 
-        ProcessBuilder builder = new ProcessBuilder(ffmpegPath, "-i", audioFile.getAbsolutePath());
-        builder.redirectErrorStream(true);
-        Process process = builder.start();
-
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-        }
-
-        int exitCode = process.waitFor();
-        String outputStr = output.toString();
-        int durationIndex = outputStr.indexOf("Duration:");
-        if (durationIndex >= 0) {
-            String durationStr = outputStr.substring(durationIndex + 10, outputStr.indexOf(",", durationIndex)).trim();
-            String[] parts = durationStr.split(":");
-            if (parts.length == 3) {
-                double hours = Double.parseDouble(parts[0]);
-                double minutes = Double.parseDouble(parts[1]);
-                double seconds = Double.parseDouble(parts[2]);
-                // MODIFIED: Round duration to three decimal places
-                return roundToThreeDecimals(hours * 3600 + minutes * 60 + seconds);
-            }
+        Double duration = mediaProbeService.probe(audioFile).getDuration();
+        if (duration != null) {
+            // MODIFIED: Round duration to three decimal places
+            return roundToThreeDecimals(duration);
         }
         return 300; // Default to 5 minutes
     }
@@ -2146,10 +2070,11 @@ public class VideoEditingService {
                     : projectId + "_" + System.currentTimeMillis() + "_" + originalFileName;
 
             File destinationFile = new File(projectImageDir, uniqueFileName);
-            imageFile.transferTo(destinationFile);
+            mediaBlobStore.store(imageFile, user, destinationFile);
 
             String relativePath = "images/projects/" + projectId + "/" + uniqueFileName;
             relativePaths.add(relativePath);
+            mediaIngestService.submitImage(user.getId(), projectId, relativePath);
 
             try {
                 addImage(project, relativePath, uniqueFileName);
@@ -2513,7 +2438,7 @@ public class VideoEditingService {
 
         ProcessBuilder pb = new ProcessBuilder(command);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PYTHON, user.getId());
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
@@ -2720,18 +2645,21 @@ public class VideoEditingService {
         // Update videos deletion to use project-specific directory
         File videoDir = new File(baseDir, "videos/projects/" + projectId);
         if (videoDir.exists()) {
+            mediaBlobStore.releaseUnder(videoDir);
             FileUtils.deleteDirectory(videoDir);
         }
 
         // Delete audio and waveform JSON
         File audioDir = new File(baseDir, "audio/projects/" + projectId);
         if (audioDir.exists()) {
+            mediaBlobStore.releaseUnder(audioDir);
             FileUtils.deleteDirectory(audioDir);
         }
 
         // Delete images
         File imageDir = new File(baseDir, "images/projects/" + projectId);
         if (imageDir.exists()) {
+            mediaBlobStore.releaseUnder(imageDir);
             FileUtils.deleteDirectory(imageDir);
         }
 
@@ -3036,204 +2964,75 @@ public class VideoEditingService {
             throw new IOException("Audio file not found at either path for project ID: " + projectId + ", filename: " + filename);
         }
 
-        ProcessBuilder builder = new ProcessBuilder(
-            ffmpegPath.replace("ffmpeg.exe", "ffprobe.exe"),
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                validPath
-        );
-
         System.out.println("Attempting to get duration for audio at path: " + validPath);
 
-        builder.redirectErrorStream(true);
-
-        Process process = builder.start();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String duration = reader.readLine();
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0 || duration == null) {
+        Double duration = mediaProbeService.probe(new File(validPath)).getDuration();
+        if (duration == null) {
             throw new IOException("Failed to get audio duration for file: " + filename);
         }
 
-        return Double.parseDouble(duration);
-    }
-
-    public String generateAndSaveWaveformJson(String audioPath, Long projectId) throws IOException, InterruptedException {
-        File audioFile = new File(baseDir, audioPath);
-        if (!audioFile.exists()) {
-            throw new IOException("Audio file not found: " + audioFile.getAbsolutePath());
-        }
-        if (audioFile.length() == 0) {
-//            log.warn("Audio file is empty: {}", audioFile.getAbsolutePath());
-            return null; // Return null to indicate no waveform generated
-        }
-
-        // Use FFmpeg to extract raw PCM data
-        File tempPcmFile = new File(baseDir, "temp/waveform_" + projectId + "_" + System.currentTimeMillis() + ".pcm");
-        File tempDir = new File(baseDir, "temp");
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-
-        List<String> command = new ArrayList<>();
-        command.add(ffmpegPath);
-        command.add("-i");
-        command.add(audioFile.getAbsolutePath());
-        command.add("-f");
-        command.add("s16le"); // 16-bit PCM
-        command.add("-ac");
-        command.add("1"); // Mono
-        command.add("-ar");
-        command.add("44100"); // Sample rate
-        command.add("-y");
-        command.add(tempPcmFile.getAbsolutePath());
-
-        try {
-            executeFFmpegCommand(command);
-        } catch (RuntimeException e) {
-//            log.error("Failed to generate PCM data for waveform: {}", audioPath, e);
-            throw new IOException("Failed to generate PCM data for waveform: " + audioPath, e);
-        }
-
-        // Verify PCM file
-        if (!tempPcmFile.exists() || tempPcmFile.length() < 2) {
-//            log.warn("PCM file is missing or too small: {}", tempPcmFile.getAbsolutePath());
-            tempPcmFile.delete();
-            return null; // Return null to indicate no waveform generated
-        }
-
-        // Read PCM data and compute amplitude peaks
-        List<Float> peaks = new ArrayList<>();
-        try (FileInputStream fis = new FileInputStream(tempPcmFile)) {
-            byte[] buffer = new byte[4096]; // Read 4KB at a time
-            int samplesPerPeak = 44100 / 100; // Aim for ~100 peaks per second
-            int sampleCount = 0;
-            float maxAmplitude = 0;
-            int bytesRead;
-
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                // Process only complete samples (2 bytes per sample)
-                for (int i = 0; i < bytesRead - 1; i += 2) { // Ensure we don't access past bytesRead
-                    short sample = (short) ((buffer[i] & 0xFF) | (buffer[i + 1] << 8));
-                    float amplitude = Math.abs(sample / 32768.0f); // Normalize to 0-1
-                    maxAmplitude = Math.max(maxAmplitude, amplitude);
-                    sampleCount++;
-
-                    if (sampleCount >= samplesPerPeak) {
-                        peaks.add(maxAmplitude);
-                        maxAmplitude = 0;
-                        sampleCount = 0;
-                    }
-                }
-            }
-            if (sampleCount > 0 && maxAmplitude > 0) {
-                peaks.add(maxAmplitude); // Add final peak if any samples were processed
-            }
-        } finally {
-            tempPcmFile.delete(); // Clean up
-        }
-
-        // Log the number of peaks generated
-//        log.info("Generated {} waveform peaks for audio: {}", peaks.size(), audioPath);
-
-        // If no peaks were generated, return null
-        if (peaks.isEmpty()) {
-//            log.warn("No waveform peaks generated for audio: {}", audioPath);
-            return null;
-        }
-
-        // Create JSON structure
-        Map<String, Object> waveformData = new HashMap<>();
-        waveformData.put("sampleRate", 100);
-        waveformData.put("peaks", peaks);
-
-        // Save to JSON file
-        File waveformDir = new File(baseDir, "audio/projects/" + projectId + "/waveforms");
-        if (!waveformDir.exists()) {
-            waveformDir.mkdirs();
-        }
-        String waveformFileName = "waveform_" + audioFile.getName().replaceAll("[^a-zA-Z0-9.]", "_") + ".json";
-        File waveformFile = new File(waveformDir, waveformFileName);
-        objectMapper.writeValue(waveformFile, waveformData);
-
-        // Return relative path
-        return "audio/projects/" + projectId + "/waveforms/" + waveformFileName;
+        return duration;
     }
 
-    private void executeFFmpegCommand(List<String> command, Long projectId, double batchStart, double batchDuration, double totalDuration, int batchIndex) throws IOException, InterruptedException {
-        Project project = projectRepository.findById(projectId)
-            .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
-
+    private void executeFFmpegCommand(List<String> command, ExportProgressTracker progressTracker, int batchIndex, double batchDuration,
+                                      Long ownerId, String jobKey, RenderCancellation cancellation) throws IOException, InterruptedException {
         List<String> updatedCommand = new ArrayList<>(command);
         if (!updatedCommand.contains("-progress")) {
-            updatedCommand.add("-progress");
-            updatedCommand.add("pipe:");
+            // -progress must come before the output path
+            updatedCommand.addAll(updatedCommand.size() - 1, List.of("-progress", "pipe:1"));
         }
 
         ProcessBuilder processBuilder = new ProcessBuilder(updatedCommand);
         processBuilder.redirectErrorStream(true);
 
         System.out.println("Executing FFmpeg command: " + String.join(" ", updatedCommand));
-        Process process = processBuilder.start();
-        double lastProgress = -1.0;
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, ownerId, jobKey);
+        cancellation.register(process);
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("FFmpeg: " + line);
-                if (line.startsWith("out_time_ms=") && !line.equals("out_time_ms=N/A")) {
-                    try {
-                        long outTimeUs = Long.parseLong(line.replace("out_time_ms=", ""));
-                        double currentBatchTime = outTimeUs / 1_000_000.0;
-
-                        double batchProgress = Math.min(currentBatchTime / batchDuration, 1.0);
-                        double batchContribution = batchDuration / totalDuration * 100.0;
-                        double completedBatchesProgress = batchIndex * (batchDuration / totalDuration * 100.0);
-                        double totalProgress = completedBatchesProgress + (batchProgress * batchContribution);
-                        totalProgress = Math.min(totalProgress, 100.0);
-
-                        int roundedProgress = (int) Math.round(totalProgress);
-                        if (roundedProgress != (int) lastProgress && roundedProgress >= 0 && roundedProgress <= 100 && roundedProgress % 10 == 0) {
-                            project.setProgress((double) roundedProgress);
-                            project.setLastModified(LocalDateTime.now());
-                            project.setStatus("PENDING");
-                            projectRepository.save(project);
-                            System.out.println("Progress updated: " + roundedProgress + "% for projectId: " + projectId);
-                            lastProgress = roundedProgress;
-                        }
-                    } catch (NumberFormatException e) {
-                        System.err.println("Failed to parse out_time_ms: " + line);
+        try {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    processMetrics.observe(process, line);
+                    double currentBatchTime = ProgressRegistry.parseOutTimeSeconds(line);
+                    if (currentBatchTime >= 0) {
+                        progressTracker.update(batchIndex, currentBatchTime / batchDuration);
+                    } else if (!isProgressField(line)) {
+                        System.out.println("FFmpeg: " + line);
                     }
                 }
             }
-        }
 
-        boolean completed = process.waitFor(10, TimeUnit.MINUTES);
-        if (!completed) {
-            process.destroyForcibly();
-            throw new RuntimeException("FFmpeg process timed out after 10 minutes");
+            boolean completed = process.waitFor(10, TimeUnit.MINUTES);
+            if (!completed) {
+                process.destroyForcibly();
+                throw new RuntimeException("FFmpeg process timed out after 10 minutes");
+            }
+        } finally {
+            cancellation.unregister(process);
         }
+        cancellation.throwIfCancelled();
 
         int exitCode = process.exitValue();
         if (exitCode != 0) {
-            project.setStatus("FAILED");
-            project.setProgress(0.0);
-            project.setLastModified(LocalDateTime.now());
-            projectRepository.save(project);
             throw new RuntimeException("FFmpeg process failed with exit code: " + exitCode);
         }
+        progressTracker.complete(batchIndex);
     }
 
-    public File exportProject(String sessionId) throws IOException, InterruptedException {
-        EditSession session = getSession(sessionId);
-        if (session == null) {
-            throw new RuntimeException("No active session found for sessionId: " + sessionId);
-        }
+    // -progress output is a block of key=value lines; those end up in metrics, not the log
+    private boolean isProgressField(String line) {
+        return line.indexOf('=') > 0 && line.indexOf(' ') < 0;
+    }
 
-        Project project = projectRepository.findById(session.getProjectId())
-            .orElseThrow(() -> new RuntimeException("Project not found: " + session.getProjectId()));
+    /**
+     * Renders the timeline of one export job. Concurrent jobs of the same project each get
+     * their own batch tasks and workspace, keyed by the job id.
+     */
+    public File exportProject(Long projectId, Long jobId, TimelineState timelineState, RenderCancellation cancellation)
+        throws IOException, InterruptedException {
+        Project project = projectRepository.findById(projectId)
+            .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
 
         String outputFileName = project.getName().replaceAll("[^a-zA-Z0-9]", "_") + "_"
             + System.currentTimeMillis() + ".mp4";
@@ -3249,33 +3048,51 @@ public class VideoEditingService {
         project.setLastModified(LocalDateTime.now());
         projectRepository.save(project);
 
+        // Running progress only lives in the registry; the project row gets the outcome. It is kept
+        // per job, and the project key follows the latest export for the legacy progress endpoint
+        String progressKey = ProgressRegistry.key("export-job", jobId);
+        progressRegistry.start(progressKey, project.getUser() != null ? project.getUser().getId() : null);
+        progressRegistry.alias(ProgressRegistry.key("export", projectId), progressKey);
+
         try {
-            String exportedVideoPath = renderFinalVideo(session.getTimelineState(), outputPath, project.getWidth(), project.getHeight(), project.getFps(), session.getProjectId());
+            String exportedVideoPath = renderFinalVideo(timelineState, outputPath, project.getWidth(), project.getHeight(), project.getFps(), projectId,
+                jobId, cancellation);
 
+            project = projectRepository.findById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
             project.setStatus("EXPORTED");
             project.setLastModified(LocalDateTime.now());
             project.setExportedVideoPath(exportedVideoPath);
             project.setProgress(100.0);
 
             try {
-                project.setTimelineState(objectMapper.writeValueAsString(session.getTimelineState()));
+                project.setTimelineState(objectMapper.writeValueAsString(timelineState));
             } catch (JsonProcessingException e) {
                 System.err.println("Error saving timeline state: " + e.getMessage());
             }
 
             projectRepository.save(project);
+            progressRegistry.complete(progressKey);
             System.out.println("Project successfully exported to: " + exportedVideoPath);
             return new File(exportedVideoPath);
         } catch (Exception e) {
-            project.setStatus("FAILED");
+            new File(outputPath).delete();
+            project = projectRepository.findById(projectId).orElse(project);
+            project.setStatus(cancellation.isCancelled() ? "CANCELLED" : "FAILED");
             project.setProgress(0.0);
             project.setLastModified(LocalDateTime.now());
             projectRepository.save(project);
+            if (cancellation.isCancelled()) {
+                progressRegistry.cancel(progressKey);
+            } else {
+                progressRegistry.fail(progressKey, e.getMessage());
+            }
             throw e;
         }
     }
 
-  public String renderFinalVideo(TimelineState timelineState, String outputPath, int canvasWidth, int canvasHeight, Float fps, Long projectId)
+  public String renderFinalVideo(TimelineState timelineState, String outputPath, int canvasWidth, int canvasHeight, Float fps, Long projectId,
+                                 Long jobId, RenderCancellation cancellation)
       throws IOException, InterruptedException {
     System.out.println("Rendering final video to: " + outputPath);
 
@@ -3283,10 +3100,6 @@ public class VideoEditingService {
     if (timelineState.getCanvasWidth() != null) canvasWidth = timelineState.getCanvasWidth();
     if (timelineState.getCanvasHeight() != null) canvasHeight = timelineState.getCanvasHeight();
 
-    // Create temporary directory for batch files
-    File tempDir = new File("temp");
-    if (!tempDir.exists()) tempDir.mkdirs();
-
     // Calculate total video duration
     double totalDuration = Math.max(
         timelineState.getSegments().stream().mapToDouble(VideoSegment::getTimelineEndTime).max().orElse(0.0),
@@ -3300,70 +3113,359 @@ public class VideoEditingService {
     );
     System.out.println("Total video duration: " + totalDuration + " seconds");
 
-    // Define batch size (e.g., 10 seconds)
-    double batchSize = 8.0; // Adjustable based on server capacity
+    double batchSize = BATCH_SECONDS;
     List<String> tempVideoFiles = new ArrayList<>();
-    List<File> tempTextFiles = new ArrayList<>();
 
+    List<double[]> batchWindows = new ArrayList<>();
+    for (double startTime = 0; startTime < totalDuration; startTime += batchSize) {
+      batchWindows.add(new double[]{startTime, Math.min(startTime + batchSize, totalDuration)});
+    }
+    double[] batchDurations = batchWindows.stream().mapToDouble(window -> window[1] - window[0]).toArray();
+    // Progress, queued batches and scratch files belong to this job, not the project, which may be exporting twice at once
+    String jobKey = ProgressRegistry.key("export-job", jobId);
+    // Batches are queued for CPU under the project owner, so one user's export cannot crowd out others
+    Long ownerId = projectRepository.findById(projectId)
+        .map(project -> project.getUser() != null ? project.getUser().getId() : null)
+        .orElse(null);
+    ExportProgressTracker progressTracker = new ExportProgressTracker(batchDurations, 0.1,
+        progress -> progressRegistry.update(jobKey, progress));
+
+    // Every parallel batch works on its own copy of the timeline, so nothing renderBatch touches is shared between threads
+    String timelineSnapshot = objectMapper.writeValueAsString(timelineState);
+    final int finalCanvasWidth = canvasWidth;
+    final int finalCanvasHeight = canvasHeight;
+    List<Future<?>> batchFutures = new ArrayList<>();
+    List<RenderBatchTask> queuedBatches = new ArrayList<>();
+    // The export's own directory for batch files and the audio track, shared with the render
+    // workers when rendering is distributed. Reserves the size of the batches against the owner's
+    // scratch quota: video bitrate plus the 320k audio track, with some headroom
+    long videoBitsPerSecond = canvasWidth >= 3840 ? 10_000_000L : 5_000_000L;
+    long expectedScratchBytes = (long) (totalDuration * (videoBitsPerSecond + 320_000L) / 8 * 1.2);
+    ScratchSpaceManager.Workspace workspace = scratchSpaceManager.open(jobKey, ownerId, expectedScratchBytes);
+    File audioFile = workspace.file("audio.m4a");
+    // Text rasters and prepared images of every batch stay pinned in the caches until the export is done
+    TextRasterCache.Pins textPins = textRasterCache.pin();
+    ImageInputCache.Pins imagePins = imageInputCache.pin();
     try {
-      // Process video in batches
-      for (double startTime = 0; startTime < totalDuration; startTime += batchSize) {
-        double endTime = Math.min(startTime + batchSize, totalDuration);
-        String tempOutput = new File(tempDir, "batch_" + startTime + ".mp4").getAbsolutePath();
+      // Render independent batches in parallel on the shared worker pool, or queue them for the
+      // render workers when rendering is distributed; tempVideoFiles keeps timeline order
+      for (int batchIndex = 0; batchIndex < batchWindows.size(); batchIndex++) {
+        double startTime = batchWindows.get(batchIndex)[0];
+        double endTime = batchWindows.get(batchIndex)[1];
+        String tempOutput = workspace.file("batch_" + batchIndex + ".mp4").getAbsolutePath();
         tempVideoFiles.add(tempOutput);
-        renderBatch(timelineState, tempOutput, canvasWidth, canvasHeight, fps, projectId, startTime, endTime, tempTextFiles);
+        final int index = batchIndex;
+        if (renderBatchQueue.isEnabled()) {
+          String batchKey = batchCacheKey(timelineState, finalCanvasWidth, finalCanvasHeight, fps, projectId, startTime, endTime);
+          if (batchCacheService.restore(batchKey, tempOutput)) {
+            System.out.println("Reusing cached batch from " + startTime + " to " + endTime + " seconds");
+            progressTracker.complete(index);
+          } else {
+            queuedBatches.add(RenderBatchTask.builder()
+                .jobKey(jobKey)
+                .batchIndex(index)
+                .batchStart(startTime)
+                .batchEnd(endTime)
+                .projectId(projectId)
+                .ownerId(ownerId)
+                .canvasWidth(finalCanvasWidth)
+                .canvasHeight(finalCanvasHeight)
+                .fps(fps)
+                .timelineState(timelineSnapshot)
+                .cacheKey(batchKey)
+                .outputPath(tempOutput)
+                .build());
+          }
+          continue;
+        }
+        batchFutures.add(renderWorkerPool.submit(() -> {
+          cancellation.throwIfCancelled();
+          TimelineState batchTimelineState = objectMapper.readValue(timelineSnapshot, TimelineState.class);
+          String batchKey = batchCacheKey(batchTimelineState, finalCanvasWidth, finalCanvasHeight, fps, projectId, startTime, endTime);
+          if (batchCacheService.restore(batchKey, tempOutput)) {
+            System.out.println("Reusing cached batch from " + startTime + " to " + endTime + " seconds");
+            progressTracker.complete(index);
+            return null;
+          }
+          long batchStartedAt = System.nanoTime();
+          renderBatchWithRetries(batchTimelineState, tempOutput, finalCanvasWidth, finalCanvasHeight, fps, projectId, ownerId,
+              startTime, endTime, progressTracker, index, jobKey, cancellation, textPins, imagePins);
+          // Calibrates the render-time estimates against how long this machine actually took
+          timelineComplexityAnalyzer.recordBatch(
+              timelineComplexityAnalyzer.costUnits(batchTimelineState, startTime, endTime, finalCanvasWidth, finalCanvasHeight, fps),
+              TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStartedAt));
+          // The cache entry is the batch's checkpoint: a retried or resumed export restores it instead of rendering
+          batchCacheService.store(batchKey, tempOutput);
+          return null;
+        }));
+      }
+      if (!queuedBatches.isEmpty()) {
+        renderBatchQueue.enqueue(queuedBatches);
+      }
+      // The soundtrack is mixed once for the whole timeline while the video-only batches render
+      String audioTrack;
+      try {
+        audioTrack = renderTimelineAudio(timelineState, audioFile.getAbsolutePath(), totalDuration, jobKey, cancellation);
+      } catch (Exception e) {
+        batchFutures.forEach(future -> future.cancel(true));
+        throw e;
+      }
+      awaitBatches(batchFutures);
+      if (!queuedBatches.isEmpty()) {
+        renderBatchQueue.await(jobKey, progressTracker, cancellation);
       }
 
       // Concatenate all batch files into the final video
-      concatenateBatches(tempVideoFiles, outputPath, fps != null ? fps : 30);
-
-      Project project = projectRepository.findById(projectId)
-          .orElseThrow(() -> new RuntimeException("Project not found: " + projectId));
-      project.setProgress(100.0);
-      project.setLastModified(LocalDateTime.now());
-      projectRepository.save(project);
+      cancellation.throwIfCancelled();
+      concatenateBatches(tempVideoFiles, audioTrack, outputPath, fps != null ? fps : 30, jobKey, cancellation);
 
     } finally {
-      // Clean up temporary text PNGs
-      for (File tempFile : tempTextFiles) {
-        if (tempFile.exists()) {
-          try {
-            tempFile.delete();
-            System.out.println("Deleted temporary text PNG: " + tempFile.getAbsolutePath());
-          } catch (Exception e) {
-            System.err.println("Failed to delete temporary text PNG " + tempFile.getAbsolutePath() + ": " + e.getMessage());
-          }
-        }
+      if (!queuedBatches.isEmpty()) {
+        renderBatchQueue.deleteJob(jobKey);
+      }
+      // Batch videos, the audio track and the concat list all go with the workspace
+      workspace.close();
+      textPins.close();
+      imagePins.close();
+    }
+
+    return outputPath;
+  }
+
+  /**
+   * Renders one batch claimed from the {@link RenderBatchQueue} on a render worker, exactly as
+   * renderFinalVideo would locally. Progress is reported as the rendered fraction of the batch.
+   */
+  public void renderQueuedBatch(RenderBatchTask task, DoubleConsumer progress, RenderCancellation cancellation)
+      throws IOException, InterruptedException {
+    TimelineState batchTimelineState = objectMapper.readValue(task.getTimelineState(), TimelineState.class);
+    double startTime = task.getBatchStart();
+    double endTime = task.getBatchEnd();
+    // Another worker may have rendered the same window for an earlier export meanwhile
+    if (task.getCacheKey() != null && batchCacheService.restore(task.getCacheKey(), task.getOutputPath())) {
+      return;
+    }
+    ExportProgressTracker progressTracker = new ExportProgressTracker(new double[]{endTime - startTime}, 1.0,
+        percent -> progress.accept(percent / 100.0));
+
+    long batchStartedAt = System.nanoTime();
+    try (TextRasterCache.Pins textPins = textRasterCache.pin(); ImageInputCache.Pins imagePins = imageInputCache.pin()) {
+      renderBatch(batchTimelineState, task.getOutputPath(), task.getCanvasWidth(), task.getCanvasHeight(), task.getFps(),
+          task.getProjectId(), task.getOwnerId(), startTime, endTime, progressTracker, 0, task.getJobKey(), cancellation,
+          textPins, imagePins);
+    }
+    timelineComplexityAnalyzer.recordBatch(
+        timelineComplexityAnalyzer.costUnits(batchTimelineState, startTime, endTime, task.getCanvasWidth(), task.getCanvasHeight(), task.getFps()),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStartedAt));
+    if (task.getCacheKey() != null) {
+      batchCacheService.store(task.getCacheKey(), task.getOutputPath());
+    }
+  }
+
+  /**
+   * Renders one window, retrying just that window with exponential backoff when ffmpeg fails
+   * or times out. Cancellation and invalid segment settings are not retried.
+   */
+  private void renderBatchWithRetries(TimelineState timelineState, String outputPath, int canvasWidth, int canvasHeight, Float fps,
+                                      Long projectId, Long ownerId, double batchStart, double batchEnd,
+                                      ExportProgressTracker progressTracker, int batchIndex, String jobKey,
+                                      RenderCancellation cancellation, TextRasterCache.Pins textPins,
+                                      ImageInputCache.Pins imagePins)
+      throws IOException, InterruptedException {
+    int maxAttempts = renderBatchQueue.getMaxAttempts();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        renderBatch(timelineState, outputPath, canvasWidth, canvasHeight, fps, projectId, ownerId, batchStart, batchEnd,
+            progressTracker, batchIndex, jobKey, cancellation, textPins, imagePins);
+        return;
+      } catch (CancellationException | IllegalArgumentException e) {
+        throw e;
+      } catch (IOException | RuntimeException e) {
+        if (attempt >= maxAttempts || cancellation.isCancelled()) {
+          throw e;
+        }
+        long delay = renderBatchQueue.retryDelayMillis(attempt);
+        System.err.println("Batch from " + batchStart + " to " + batchEnd + " seconds failed (attempt " + attempt + " of "
+            + maxAttempts + "), retrying in " + delay + " ms: " + e.getMessage());
+        Thread.sleep(delay);
+      }
+    }
+  }
+
+  private void awaitBatches(List<Future<?>> batchFutures) throws IOException, InterruptedException {
+    try {
+      for (Future<?> future : batchFutures) {
+        future.get();
       }
-      // Clean up temporary batch videos
-      for (String tempVideo : tempVideoFiles) {
-        File tempFile = new File(tempVideo);
-        if (tempFile.exists()) {
+    } catch (ExecutionException e) {
+      // Batches that have not started are dropped, but running ones are left to finish so
+      // their checkpoints are there when the export is resumed
+      batchFutures.forEach(future -> future.cancel(false));
+      for (Future<?> future : batchFutures) {
+        if (!future.isCancelled()) {
           try {
-            tempFile.delete();
-            System.out.println("Deleted temporary batch video: " + tempFile.getAbsolutePath());
-          } catch (Exception e) {
-            System.err.println("Failed to delete temporary batch video " + tempFile.getAbsolutePath() + ": " + e.getMessage());
+            future.get();
+          } catch (ExecutionException | CancellationException ignored) {
+            // The first failure is the one reported
           }
         }
       }
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof InterruptedException) throw (InterruptedException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new RuntimeException("Batch rendering failed", cause);
+    } catch (InterruptedException e) {
+      batchFutures.forEach(future -> future.cancel(true));
+      throw e;
     }
+  }
 
-    return outputPath;
+  /**
+   * Hashes everything a batch render depends on: the visual segments overlapping the window with
+   * their filters and transitions, the window itself, output settings and the source files on disk.
+   * Audio is rendered separately, so audio edits leave the batches cached.
+   * Bump BATCH_RENDER_VERSION whenever renderBatch changes the way it builds its output.
+   */
+  private String batchCacheKey(TimelineState timelineState, int canvasWidth, int canvasHeight, Float fps, Long projectId,
+                               double batchStart, double batchEnd) throws JsonProcessingException {
+    List<VideoSegment> videoSegments = timelineState.getSegments().stream()
+        .filter(vs -> vs.getTimelineStartTime() < batchEnd && vs.getTimelineEndTime() > batchStart)
+        .collect(Collectors.toList());
+    List<ImageSegment> imageSegments = timelineState.getImageSegments().stream()
+        .filter(is -> is.getTimelineStartTime() < batchEnd && is.getTimelineEndTime() > batchStart)
+        .collect(Collectors.toList());
+    List<TextSegment> textSegments = timelineState.getTextSegments().stream()
+        .filter(ts -> ts.getTimelineStartTime() < batchEnd && ts.getTimelineEndTime() > batchStart)
+        .collect(Collectors.toList());
+
+    Set<String> segmentIds = new HashSet<>();
+    videoSegments.forEach(vs -> segmentIds.add(vs.getId()));
+    imageSegments.forEach(is -> segmentIds.add(is.getId()));
+    textSegments.forEach(ts -> segmentIds.add(ts.getId()));
+    List<Filter> filters = timelineState.getFilters().stream()
+        .filter(f -> segmentIds.contains(f.getSegmentId()))
+        .collect(Collectors.toList());
+    List<Transition> transitions = timelineState.getTransitions().stream()
+        .filter(t -> segmentIds.contains(t.getSegmentId()))
+        .collect(Collectors.toList());
+
+    List<String> sourceFingerprints = new ArrayList<>();
+    videoSegments.forEach(vs -> sourceFingerprints.add(fileFingerprint(videoInputPath(projectId, vs.getSourceVideoPath()))));
+    imageSegments.forEach(is -> sourceFingerprints.add(fileFingerprint(baseDir + "\\" + is.getImagePath())));
+
+    return TimelineHashing.hash(BATCH_RENDER_VERSION, videoSegments, imageSegments, textSegments,
+        filters, transitions, String.format("%.6f-%.6f", batchStart, batchEnd), canvasWidth + "x" + canvasHeight,
+        String.valueOf(fps != null ? fps : 30), encoderArguments(canvasWidth), sourceFingerprints);
+  }
+
+  // Renders read the constant-frame-rate mezzanine of a source once ingest has written it
+  private String videoInputPath(Long projectId, String sourceVideoPath) {
+    String sourcePath = baseDir + "\\videos\\projects\\" + projectId + "\\" + sourceVideoPath;
+    File source = new File(sourcePath);
+    File mezzanine = MediaIngestService.mezzanineFile(source);
+    return mezzanine.isFile() && mediaIngestService.hasCurrentMezzanine(source) ? mezzanine.getPath() : sourcePath;
+  }
+
+  private String fileFingerprint(String path) {
+    File file = new File(path);
+    return path + "|" + file.length() + "|" + file.lastModified();
+  }
+
+  private List<String> encoderArguments(int canvasWidth) {
+    return Arrays.asList(
+        "-c:v", "libx264",
+        "-preset", "veryslow",
+        "-b:v", canvasWidth >= 3840 ? "10M" : "5M",
+        "-pix_fmt", "yuv420p",
+        "-color_range", "tv"
+    );
+  }
+
+  private List<String> audioEncoderArguments() {
+    return Arrays.asList(
+        "-c:a", "aac",
+        "-b:a", "320k",
+        "-ar", "48000"
+    );
   }
 
   private void renderBatch(TimelineState timelineState, String outputPath, int canvasWidth, int canvasHeight, Float fps,
-                           Long projectId, double batchStart, double batchEnd, List<File> tempTextFiles)
+                           Long projectId, Long ownerId, double batchStart, double batchEnd,
+                           ExportProgressTracker progressTracker, int batchIndex, String jobKey, RenderCancellation cancellation,
+                           TextRasterCache.Pins textPins, ImageInputCache.Pins imagePins)
       throws IOException, InterruptedException {
-    double batchDuration = batchEnd - batchStart;
     System.out.println("Rendering batch from " + batchStart + " to " + batchEnd + " seconds");
+    List<String> command = buildBatchCommand(timelineState, outputPath, canvasWidth, canvasHeight, fps, projectId, batchStart, batchEnd,
+        textPins, imagePins);
+    System.out.println("FFmpeg command for batch: " + String.join(" ", command));
+
+    executeFFmpegCommand(command, progressTracker, batchIndex, batchEnd - batchStart, ownerId, jobKey, cancellation);
+  }
+
+  /**
+   * The ffmpeg command for one batch window: inputs, the filter graph and encoder settings.
+   * Batches carry no audio; the soundtrack comes from buildAudioCommand and is muxed in on concat.
+   * Text overlays are rasterized and image inputs prepared (or taken from the caches) on the way,
+   * pinned to textPins and imagePins, which must stay open until the command has run; nothing is run here.
+   */
+  List<String> buildBatchCommand(TimelineState timelineState, String outputPath, int canvasWidth, int canvasHeight, Float fps,
+                                 Long projectId, double batchStart, double batchEnd, TextRasterCache.Pins textPins,
+                                 ImageInputCache.Pins imagePins) throws IOException {
+    List<String> command = buildCompositeCommand(timelineState, canvasWidth, canvasHeight, fps, projectId, batchStart, batchEnd, null,
+        textPins, imagePins);
+    command.addAll(encoderArguments(canvasWidth));
+    command.add("-threads");
+    command.add(String.valueOf(renderWorkerPool.getThreadsPerProcess()));
+    command.add("-t");
+    command.add(String.format("%.6f", batchEnd - batchStart));
+    command.add("-r");
+    command.add(String.valueOf(fps != null ? fps : 30));
+    command.add("-y");
+    command.add(outputPath);
+    return command;
+  }
+
+  /**
+   * The ffmpeg command for the single composited frame at frameTime, scaled down to previewWidth
+   * and written to stdout as a JPEG. It is the batch graph for a window one frame long.
+   */
+  List<String> buildFrameCommand(TimelineState timelineState, int canvasWidth, int canvasHeight, Float fps, Long projectId,
+                                 double frameTime, int previewWidth, TextRasterCache.Pins textPins,
+                                 ImageInputCache.Pins imagePins) throws IOException {
+    double frameDuration = 1.0 / (fps != null ? fps : 30);
+    List<String> command = buildCompositeCommand(timelineState, canvasWidth, canvasHeight, fps, projectId,
+        frameTime, frameTime + frameDuration, "scale=" + previewWidth + ":-2", textPins, imagePins);
+    command.addAll(1, Arrays.asList("-v", "error"));
+    command.addAll(Arrays.asList("-frames:v", "1", "-c:v", "mjpeg", "-q:v", "4", "-f", "image2pipe", "pipe:1"));
+    return command;
+  }
+
+  /** Cache key of the preview frame: the batch key of its one-frame window plus the preview size. */
+  String frameCacheKey(TimelineState timelineState, int canvasWidth, int canvasHeight, Float fps, Long projectId,
+                       double frameTime, int previewWidth) throws JsonProcessingException {
+    double frameDuration = 1.0 / (fps != null ? fps : 30);
+    return TimelineHashing.hash("frame", batchCacheKey(timelineState, canvasWidth, canvasHeight, fps, projectId,
+        frameTime, frameTime + frameDuration), previewWidth);
+  }
+
+  /**
+   * Inputs and filter graph for a window of the timeline, up to the mapped [vout] pad. An
+   * outputFilter is appended to the end of the graph; output options are left to the caller.
+   */
+  private List<String> buildCompositeCommand(TimelineState timelineState, int canvasWidth, int canvasHeight, Float fps,
+                                             Long projectId, double batchStart, double batchEnd, String outputFilter,
+                                             TextRasterCache.Pins textPins, ImageInputCache.Pins imagePins)
+      throws IOException {
+    double batchDuration = batchEnd - batchStart;
 
     List<String> command = new ArrayList<>();
     command.add(ffmpegPath);
+    command.add("-filter_complex_threads");
+    command.add(String.valueOf(renderWorkerPool.getThreadsPerProcess()));
 
     StringBuilder filterComplex = new StringBuilder();
     Map<String, String> videoInputIndices = new HashMap<>();
-    Map<String, String> audioInputIndices = new HashMap<>();
     Map<String, String> textInputIndices = new HashMap<>();
     int inputCount = 0;
 
@@ -3381,25 +3483,36 @@ public class VideoEditingService {
     List<TextSegment> relevantTextSegments = timelineState.getTextSegments().stream()
         .filter(ts -> ts.getTimelineStartTime() < batchEnd && ts.getTimelineEndTime() > batchStart)
         .collect(Collectors.toList());
-    List<AudioSegment> relevantAudioSegments = timelineState.getAudioSegments().stream()
-        .filter(as -> as.getTimelineStartTime() < batchEnd && as.getTimelineEndTime() > batchStart)
-        .collect(Collectors.toList());
 
     // Add inputs for relevant video segments
+    // Each input is opened at the keyframe before its range so only the batch window gets decoded
+    Map<String, InputSeekPlanner.SeekPlan> seekPlans = new HashMap<>();
     for (VideoSegment vs : relevantVideoSegments) {
+      String sourcePath = videoInputPath(projectId, vs.getSourceVideoPath());
+      double speed = vs.getSpeed() != null ? vs.getSpeed() : 1.0;
+      double sourceStart = vs.getStartTime() + (Math.max(vs.getTimelineStartTime(), batchStart) - vs.getTimelineStartTime()) * speed;
+      double sourceEnd = vs.getStartTime() + (Math.min(vs.getTimelineEndTime(), batchEnd) - vs.getTimelineStartTime()) * speed;
+      InputSeekPlanner.SeekPlan seekPlan = inputSeekPlanner.planVideo(sourcePath, sourceStart, sourceEnd);
+      seekPlans.put(vs.getId(), seekPlan);
+      command.addAll(seekPlan.inputArguments());
       command.add("-i");
-      command.add(baseDir + "\\videos\\projects\\" + projectId + "\\" + vs.getSourceVideoPath());
-      videoInputIndices.put(vs.getId(), String.valueOf(inputCount));
-      audioInputIndices.put(vs.getId(), String.valueOf(inputCount));
-      inputCount++;
+      command.add(sourcePath);
+      videoInputIndices.put(vs.getId(), String.valueOf(inputCount++));
     }
 
-    // Add inputs for relevant image segments
+    // Add inputs for relevant image segments, each scaled down to the largest size it is shown at
+    // and decoded once; the single frame is looped inside the graph
+    Map<String, ImageInputCache.PreparedImage> preparedImages = new HashMap<>();
     for (ImageSegment is : relevantImageSegments) {
-      command.add("-loop");
-      command.add("1");
+      boolean bakeCrop = canPrecropImage(timelineState, is);
+      ImageInputCache.PreparedImage prepared = imageInputCache.prepare(baseDir + "\\" + is.getImagePath(),
+          maxImageDisplayScale(timelineState, is),
+          bakeCrop && is.getCropL() != null ? is.getCropL() : 0.0, bakeCrop && is.getCropR() != null ? is.getCropR() : 0.0,
+          bakeCrop && is.getCropT() != null ? is.getCropT() : 0.0, bakeCrop && is.getCropB() != null ? is.getCropB() : 0.0,
+          imagePins);
+      preparedImages.put(is.getId(), prepared);
       command.add("-i");
-      command.add(baseDir + "\\" + is.getImagePath());
+      command.add(prepared.getPath());
       videoInputIndices.put(is.getId(), String.valueOf(inputCount++));
     }
 
@@ -3409,8 +3522,7 @@ public class VideoEditingService {
         System.err.println("Skipping text segment " + ts.getId() + ": empty text");
         continue;
       }
-      String textPngPath = generateTextPng(ts, new File("temp"), canvasWidth, canvasHeight);
-      tempTextFiles.add(new File(textPngPath));
+      String textPngPath = generateTextPng(ts, canvasWidth, canvasHeight, textPins);
       command.add("-loop");
       command.add("1");
       command.add("-i");
@@ -3418,13 +3530,6 @@ public class VideoEditingService {
       textInputIndices.put(ts.getId(), String.valueOf(inputCount++));
     }
 
-    // Add inputs for relevant audio segments
-    for (AudioSegment as : relevantAudioSegments) {
-      command.add("-i");
-      command.add(baseDir + "\\" + as.getAudioPath());
-      audioInputIndices.put(as.getId(), String.valueOf(inputCount++));
-    }
-
     // Sort segments by layer
     List<Object> allSegments = new ArrayList<>();
     allSegments.addAll(relevantVideoSegments);
@@ -3461,13 +3566,13 @@ public class VideoEditingService {
             double sourceStart = vs.getStartTime() + (timelineStart - vs.getTimelineStartTime()) * speed;
             double sourceEnd = vs.getStartTime() + (timelineEnd - vs.getTimelineStartTime()) * speed;
 
-            filterComplex.append("[").append(inputIdx).append(":v]");
-            filterComplex.append("trim=").append(String.format("%.6f", sourceStart)).append(":").append(String.format("%.6f", sourceEnd)).append(",");
+            InputSeekPlanner.SeekPlan seekPlan = seekPlans.get(vs.getId());
+            FilterChain chain = new FilterChain(inputIdx + ":v");
+            chain.add("trim", String.format("%.6f:%.6f", seekPlan.getTrimStart(), seekPlan.getTrimEnd()));
             // Adjust PTS to account for speed and position within batch
-            filterComplex.append("setpts=").append(String.format("%.6f", speedFactor)).append("*(PTS-STARTPTS),");
-            filterComplex.append("setpts=PTS-STARTPTS+").append(String.format("%.6f", segmentStart)).append("/TB,");
+            chain.add("setpts", String.format("%.6f*(PTS-STARTPTS)+%.6f/TB", speedFactor, segmentStart));
 
-        // Apply crop, filters, transitions, keyframes, etc. (unchanged from original)
+        // Apply crop, filters, transitions, keyframes, etc.
         double cropL = vs.getCropL() != null ? vs.getCropL() : 0.0;
         double cropR = vs.getCropR() != null ? vs.getCropR() : 0.0;
         double cropT = vs.getCropT() != null ? vs.getCropT() : 0.0;
@@ -3483,300 +3588,38 @@ public class VideoEditingService {
         List<Filter> segmentFilters = timelineState.getFilters().stream()
             .filter(f -> f.getSegmentId().equals(vs.getId()))
             .collect(Collectors.toList());
-        boolean hasVignette = false;
-        double vignetteValue = 0.0;
-
-        for (Filter filter : segmentFilters) {
-          if (filter == null || filter.getFilterName() == null || filter.getFilterName().trim().isEmpty()) {
-            System.err.println("Skipping invalid filter for segment " + vs.getId() + ": null or empty filter name");
-            continue;
-          }
-          String filterName = filter.getFilterName().toLowerCase().trim();
-          String filterValue = filter.getFilterValue() != null ? String.valueOf(filter.getFilterValue()) : "";
-          if (filterValue.isEmpty() && !Arrays.asList("grayscale", "sepia", "invert").contains(filterName)) {
-            System.err.println("Skipping filter " + filterName + " for segment " + vs.getId() + ": empty filter value");
-            continue;
-          }
-          try {
-            switch (filterName) {
-              case "brightness":
-                double brightness = Double.parseDouble(filterValue);
-                if (brightness >= -1 && brightness <= 1) {
-                  double cssBrightnessMultiplier = 1 + brightness;
-                  if (cssBrightnessMultiplier <= 0) {
-                    filterComplex.append("lutrgb=r=0:g=0:b=0,");
-                    break;
-                  }
-                  if (cssBrightnessMultiplier == 1.0) {
-                    break;
-                  }
-                  filterComplex.append("format=rgba,");
-                  String lut = String.format(
-                      "lutrgb=r='val*%f':g='val*%f':b='val*%f',",
-                      cssBrightnessMultiplier, cssBrightnessMultiplier, cssBrightnessMultiplier
-                  );
-                  filterComplex.append(lut);
-                  filterComplex.append("format=rgba,");
-                }
-                break;
-              case "contrast":
-                double contrast = Double.parseDouble(filterValue);
-                if (contrast >= 0 && contrast <= 2) {
-                  if (contrast == 1.0) {
-                    break;
-                  }
-                  filterComplex.append("format=rgba,");
-                  double offset = 128 * (1 - contrast);
-                  String lut = String.format(
-                      "lutrgb=r='clip(val*%f+%f,0,255)':g='clip(val*%f+%f,0,255)':b='clip(val*%f+%f,0,255)',",
-                      contrast, offset, contrast, offset, contrast, offset
-                  );
-                  filterComplex.append(lut);
-                  filterComplex.append("format=rgba,");
-                }
-                break;
-              case "saturation":
-                double saturation = Double.parseDouble(filterValue);
-                if (saturation >= 0 && saturation <= 2) {
-                  if (Math.abs(saturation - 1.0) < 0.01) {
-                    System.out.println("Skipping saturation filter for segment " + vs.getId() + ": value ≈ 1 (" + saturation + ")");
-                    break;
-                  }
-                  filterComplex.append("eq=saturation=").append(String.format("%.2f", saturation)).append(",");
-                }
-                break;
-              case "hue":
-                double hue = Double.parseDouble(filterValue);
-                if (hue >= -180 && hue <= 180) {
-                  if (hue == 0.0) {
-                    break;
-                  }
-                  filterComplex.append("hue=h=").append(String.format("%.1f", hue)).append(",");
-                }
-                break;
-              case "grayscale":
-                if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
-                  filterComplex.append("hue=s=0,");
-                }
-                break;
-              case "invert":
-                if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
-                  filterComplex.append("negate,");
-                }
-                break;
-              case "flip":
-                if (filterValue.equals("horizontal")) {
-                  filterComplex.append("hflip,");
-                } else if (filterValue.equals("vertical")) {
-                  filterComplex.append("vflip,");
-                } else if (filterValue.equals("both")) {
-                  filterComplex.append("hflip,vflip,");
-                }
-                break;
-              case "vignette":
-                double vignette = Double.parseDouble(filterValue);
-                if (vignette >= 0 && vignette <= 1 && vignette > 0.01) {
-                  hasVignette = true;
-                  vignetteValue = vignette;
-                }
-                break;
-              case "blur":
-                double blurValue = Double.parseDouble(filterValue);
-                if (blurValue >= 0 && blurValue <= 10) {
-                  if (blurValue > 0) {
-                    double radius = blurValue * 10.0;
-                    filterComplex.append("boxblur=").append(String.format("%.2f", radius)).append(",");
-                    System.out.println("Blur filter applied to video segment " + vs.getId() + ": blurValue=" + blurValue + ", radius=" + radius);
-                  }
-                }
-                break;
-            }
-          } catch (NumberFormatException e) {
-            System.err.println("Invalid filter value for " + filterName + " in segment " + vs.getId() + ": " + filterValue);
-          }
-        }
-
-        if (hasVignette) {
-          double intensity = vignetteValue;
-          double angle = intensity * (Math.PI / 2);
-          filterComplex.append("vignette=angle=").append(String.format("%.6f", angle)).append(":mode=forward,");
-        }
-
-        filterComplex.append("format=rgba,");
+        appendSegmentFilters(chain, segmentFilters, vs.getId(), 10.0);
+        chain.add(FilterNode.format("rgba"));
 
         List<Transition> relevantTransitions = timelineState.getTransitions().stream()
             .filter(t -> t.getSegmentId() != null && t.getSegmentId().equals(vs.getId()))
             .filter(t -> t.getLayer() == vs.getLayer())
             .collect(Collectors.toList());
 
-        Map<String, String> transitionOffsets = applyTransitionFilters(filterComplex, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        Map<String, String> transitionOffsets = applyTransitionFilters(chain, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        appendTransitionCrop(chain, transitionOffsets, timelineStart, timelineEnd, batchStart);
+        appendRotation(chain, vs.getRotation());
+        chain.add(FilterNode.format("rgba"));
+        appendOpacity(chain, vs.getOpacity());
+        appendCrop(chain, cropL, cropR, cropT, cropB);
 
-        boolean hasTransitionCrop = !transitionOffsets.get("cropWidth").equals("iw") || !transitionOffsets.get("cropHeight").equals("ih") ||
-            !transitionOffsets.get("cropX").equals("0") || !transitionOffsets.get("cropY").equals("0");
-        if (hasTransitionCrop) {
-          double transStart = timelineStart - batchStart;
-          double transEnd = Math.min(timelineStart + 1.0, timelineEnd) - batchStart;
-          filterComplex.append("crop=")
-              .append("w='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropWidth")).append(",iw)':")
-              .append("h='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropHeight")).append(",ih)':")
-              .append("x='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropX")).append(",0)':")
-              .append("y='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropY")).append(",0)'")
-              .append(",");
-        }
-
-        // Apply rotation
-        StringBuilder rotationExpr = new StringBuilder();
-        Double defaultRotation = vs.getRotation() != null ? vs.getRotation() : 0.0;
-        rotationExpr.append(String.format("%.6f", Math.toRadians(defaultRotation)));
-
-        if (!rotationExpr.toString().equals("0.000000")) {
-          filterComplex.append("rotate=a=").append(rotationExpr)
-              .append(":ow='hypot(iw,ih)'")
-              .append(":oh='hypot(iw,ih)'")
-              .append(":c=0x00000000,");
-        }
-
-        filterComplex.append("format=rgba,");
-
-        double opacity = vs.getOpacity() != null ? vs.getOpacity() : 1.0;
-        if (opacity < 1.0) {
-          filterComplex.append("lutrgb=a='val*").append(String.format("%.6f", opacity)).append("',");
-          filterComplex.append("format=rgba,");
-        }
-
-        if (cropL > 0 || cropR > 0 || cropT > 0 || cropB > 0) {
-          String cropWidth = String.format("iw*(1-%.6f-%.6f)", cropL / 100.0, cropR / 100.0);
-          String cropHeight = String.format("ih*(1-%.6f-%.6f)", cropT / 100.0, cropB / 100.0);
-          String cropX = String.format("iw*%.6f", cropL / 100.0);
-          String cropY = String.format("ih*%.6f", cropT / 100.0);
-
-          filterComplex.append("crop=").append(cropWidth).append(":")
-              .append(cropHeight).append(":")
-              .append(cropX).append(":")
-              .append(cropY).append(",");
-          filterComplex.append("format=rgba,");
-          filterComplex.append("pad=iw/(1-").append(String.format("%.6f", (cropL + cropR) / 100.0)).append("):")
-              .append("ih/(1-").append(String.format("%.6f", (cropT + cropB) / 100.0)).append("):")
-              .append("iw*").append(String.format("%.6f", cropL / (100.0 - cropL - cropR))).append(":")
-              .append("ih*").append(String.format("%.6f", cropT / (100.0 - cropT - cropB))).append(":")
-              .append("color=0x00000000,");
-        }
-
-          StringBuilder scaleExpr = new StringBuilder();
-          List<Keyframe> scaleKeyframes = vs.getKeyframes().getOrDefault("scale", new ArrayList<>());
           double defaultScale = vs.getScale() != null ? vs.getScale() : 1.0;
 
-          if (!scaleKeyframes.isEmpty()) {
-              Collections.sort(scaleKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              // Find the value at batchStart by interpolating keyframes
-              double startValue = defaultScale;
-              double segmentTime = batchStart - vs.getTimelineStartTime();
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == scaleKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue();
-              }
-              scaleExpr.append(String.format("%.6f", startValue));
-              // Add keyframes that affect the batch
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = vs.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = vs.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          scaleExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              scaleExpr.append(String.format("%.6f", defaultScale));
-          }
+          KeyframeTrack scaleTrack = KeyframeTrack.of(vs.getKeyframes().get("scale"), defaultScale);
+          StringBuilder scaleExpr = new StringBuilder(scaleTrack.toExpression(vs.getTimelineStartTime() - batchStart, batchDuration));
 
           String transitionScale = transitionOffsets.get("scale");
           if (!transitionScale.equals("1")) {
               scaleExpr.insert(0, "(").append(")*(").append(transitionScale).append(")");
           }
 
-          filterComplex.append("scale=w='iw*").append(scaleExpr).append("':h='ih*").append(scaleExpr).append("':eval=frame[scaled").append(outputLabel).append("];");
+          chain.add("scale", "w='iw*" + scaleExpr + "':h='ih*" + scaleExpr + "':eval=frame");
+          FilterGraphOptimizer.optimize(chain.output("scaled" + outputLabel)).appendTo(filterComplex);
 
-          StringBuilder xExpr = new StringBuilder();
-          List<Keyframe> posXKeyframes = vs.getKeyframes().getOrDefault("positionX", new ArrayList<>());
           Integer defaultPosX = vs.getPositionX();
           double baseX = defaultPosX != null ? defaultPosX : 0;
-
-          if (!posXKeyframes.isEmpty()) {
-              Collections.sort(posXKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseX;
-              double segmentTime = batchStart - vs.getTimelineStartTime();
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posXKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-              }
-              xExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = vs.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = vs.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          xExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              xExpr.append(String.format("%.6f", baseX));
-          }
+          KeyframeTrack xTrack = KeyframeTrack.of(vs.getKeyframes().get("positionX"), baseX);
+          StringBuilder xExpr = new StringBuilder(xTrack.toExpression(vs.getTimelineStartTime() - batchStart, batchDuration));
 
           String xTransitionOffset = transitionOffsets.get("x");
           if (!xTransitionOffset.equals("0")) {
@@ -3784,57 +3627,10 @@ public class VideoEditingService {
           }
           xExpr.insert(0, "(W/2)+(").append(")-(w/2)");
 
-          StringBuilder yExpr = new StringBuilder();
-          List<Keyframe> posYKeyframes = vs.getKeyframes().getOrDefault("positionY", new ArrayList<>());
           Integer defaultPosY = vs.getPositionY();
           double baseY = defaultPosY != null ? defaultPosY : 0;
-
-          if (!posYKeyframes.isEmpty()) {
-              Collections.sort(posYKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseY;
-              double segmentTime = batchStart - vs.getTimelineStartTime();
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posYKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-              }
-              yExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = vs.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = vs.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          yExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              yExpr.append(String.format("%.6f", baseY));
-          }
+          KeyframeTrack yTrack = KeyframeTrack.of(vs.getKeyframes().get("positionY"), baseY);
+          StringBuilder yExpr = new StringBuilder(yTrack.toExpression(vs.getTimelineStartTime() - batchStart, batchDuration));
 
           String yTransitionOffset = transitionOffsets.get("y");
           if (!yTransitionOffset.equals("0")) {
@@ -3856,9 +3652,12 @@ public class VideoEditingService {
         segmentStart = timelineStart - batchStart;
         segmentEnd = timelineEnd - batchStart;
 
-        filterComplex.append("[").append(inputIdx).append(":v]");
-        filterComplex.append("trim=0:").append(String.format("%.6f", segmentEnd - segmentStart)).append(",");
-        filterComplex.append("setpts=PTS-STARTPTS+").append(String.format("%.6f", segmentStart)).append("/TB,");
+        ImageInputCache.PreparedImage prepared = preparedImages.get(is.getId());
+        FilterChain chain = new FilterChain(inputIdx + ":v");
+        chain.add("loop", "loop=-1:size=1:start=0");
+        chain.add("setpts", "N/(" + (fps != null ? fps : 30) + "*TB)");
+        chain.add("trim", String.format("0:%.6f", segmentEnd - segmentStart));
+        chain.add("setpts", String.format("PTS-STARTPTS+%.6f/TB", segmentStart));
 
         double cropL = is.getCropL() != null ? is.getCropL() : 0.0;
         double cropR = is.getCropR() != null ? is.getCropR() : 0.0;
@@ -3875,173 +3674,15 @@ public class VideoEditingService {
         List<Filter> segmentFilters = timelineState.getFilters().stream()
             .filter(f -> f.getSegmentId().equals(is.getId()))
             .collect(Collectors.toList());
-        boolean hasVignette = false;
-        double vignetteValue = 0.0;
-
-        for (Filter filter : segmentFilters) {
-          if (filter == null || filter.getFilterName() == null || filter.getFilterName().trim().isEmpty()) {
-            System.err.println("Skipping invalid filter for segment " + is.getId() + ": null or empty filter name");
-            continue;
-          }
-          String filterName = filter.getFilterName().toLowerCase().trim();
-          String filterValue = filter.getFilterValue() != null ? String.valueOf(filter.getFilterValue()) : "";
-          if (filterValue.isEmpty() && !Arrays.asList("grayscale", "sepia", "invert").contains(filterName)) {
-            System.err.println("Skipping filter " + filterName + " for segment " + is.getId() + ": empty filter value");
-            continue;
-          }
-          try {
-            switch (filterName) {
-              case "brightness":
-                double brightness = Double.parseDouble(filterValue);
-                if (brightness >= -1 && brightness <= 1) {
-                  double cssBrightnessMultiplier = 1 + brightness;
-                  if (cssBrightnessMultiplier <= 0) {
-                    filterComplex.append("lutrgb=r=0:g=0:b=0,");
-                    break;
-                  }
-                  if (cssBrightnessMultiplier == 1.0) {
-                    break;
-                  }
-                  filterComplex.append("format=rgba,");
-                  String lut = String.format(
-                      "lutrgb=r='val*%f':g='val*%f':b='val*%f':a='val',",
-                      cssBrightnessMultiplier, cssBrightnessMultiplier, cssBrightnessMultiplier
-                  );
-                  filterComplex.append(lut);
-                  filterComplex.append("format=rgba,");
-                }
-                break;
-              case "contrast":
-                double contrast = Double.parseDouble(filterValue);
-                if (contrast >= 0 && contrast <= 2) {
-                  if (contrast == 1.0) {
-                    break;
-                  }
-                  filterComplex.append("format=rgba,");
-                  double offset = 128 * (1 - contrast);
-                  String lut = String.format(
-                      "lutrgb=r='clip(val*%f+%f,0,255)':g='clip(val*%f+%f,0,255)':b='clip(val*%f+%f,0,255)':a='val',",
-                      contrast, offset, contrast, offset, contrast, offset
-                  );
-                  filterComplex.append(lut);
-                  filterComplex.append("format=rgba,");
-                }
-                break;
-              case "saturation":
-                double saturation = Double.parseDouble(filterValue);
-                if (saturation >= 0 && saturation <= 2) {
-                  if (Math.abs(saturation - 1.0) < 0.01) {
-                    System.out.println("Skipping saturation filterCuba filter for segment " + is.getId() + ": value ≈ 1 (" + saturation + ")");
-                    break;
-                  }
-                  filterComplex.append("eq=saturation=").append(String.format("%.2f", saturation)).append(",");
-                }
-                break;
-              case "hue":
-                double hue = Double.parseDouble(filterValue);
-                if (hue >= -180 && hue <= 180) {
-                  if (hue == 0.0) {
-                    break;
-                  }
-                  filterComplex.append("hue=h=").append(String.format("%.1f", hue)).append(",");
-                }
-                break;
-              case "grayscale":
-                if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
-                  filterComplex.append("hue=s=0,");
-                }
-                break;
-              case "invert":
-                if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
-                  filterComplex.append("negate,");
-                }
-                break;
-              case "vignette":
-                double vignette = Double.parseDouble(filterValue);
-                if (vignette >= 0 && vignette <= 1 && vignette > 0.01) {
-                  hasVignette = true;
-                  vignetteValue = vignette;
-                }
-                break;
-              case "blur":
-                double blurValue = Double.parseDouble(filterValue);
-                if (blurValue >= 0 && blurValue <= 1) {
-                  if (blurValue > 0) {
-                    double radius = blurValue * 10.0;
-                    filterComplex.append("boxblur=").append(String.format("%.2f", radius)).append(",");
-                  }
-                }
-                break;
-              case "rotate":
-              case "flip":
-                break;
-              default:
-                System.err.println("Unsupported filter: " + filterName + " for segment " + is.getId());
-                break;
-            }
-          } catch (NumberFormatException e) {
-            System.err.println("Invalid filter value for " + filterName + " in segment " + is.getId() + ": " + filterValue);
-          }
-        }
-
-        if (hasVignette) {
-          double intensity = vignetteValue;
-          double angle = intensity * (Math.PI / 2);
-          filterComplex.append("vignette=angle=").append(String.format("%.6f", angle)).append(":mode=forward,");
-        }
-
-        filterComplex.append("format=rgba,");
-
-        Filter flipFilter = segmentFilters.stream()
-            .filter(f -> "flip".equalsIgnoreCase(f.getFilterName()))
-            .findFirst()
-            .orElse(null);
-        if (flipFilter != null) {
-          String flipValue = flipFilter.getFilterValue();
-          if (flipValue.equals("horizontal")) {
-            filterComplex.append("hflip,");
-          } else if (flipValue.equals("vertical")) {
-            filterComplex.append("vflip,");
-          } else if (flipValue.equals("both")) {
-            filterComplex.append("hflip,vflip,");
-          }
-        }
-
-        StringBuilder rotationExpr = new StringBuilder();
-        Double defaultRotation = is.getRotation() != null ? is.getRotation() : 0.0;
-        rotationExpr.append(String.format("%.6f", Math.toRadians(defaultRotation)));
-
-        if (!rotationExpr.toString().equals("0.000000")) {
-          filterComplex.append("rotate=a=").append(rotationExpr)
-              .append(":ow='hypot(iw,ih)'")
-              .append(":oh='hypot(iw,ih)'")
-              .append(":c=0x00000000,");
-        }
-
-        filterComplex.append("format=rgba,");
-
-        double opacity = is.getOpacity() != null ? is.getOpacity() : 1.0;
-        if (opacity < 1.0) {
-          filterComplex.append("lutrgb=a='val*").append(String.format("%.6f", opacity)).append("',");
-          filterComplex.append("format=rgba,");
-        }
-
-        if (cropL > 0 || cropR > 0 || cropT > 0 || cropB > 0) {
-          String cropWidth = String.format("iw*(1-%.6f-%.6f)", cropL / 100.0, cropR / 100.0);
-          String cropHeight = String.format("ih*(1-%.6f-%.6f)", cropT / 100.0, cropB / 100.0);
-          String cropX = String.format("iw*%.6f", cropL / 100.0);
-          String cropY = String.format("ih*%.6f", cropT / 100.0);
-
-          filterComplex.append("crop=").append(cropWidth).append(":")
-              .append(cropHeight).append(":")
-              .append(cropX).append(":")
-              .append(cropY).append(",");
-          filterComplex.append("format=rgba,");
-          filterComplex.append("pad=iw/(1-").append(String.format("%.6f", (cropL + cropR) / 100.0)).append("):")
-              .append("ih/(1-").append(String.format("%.6f", (cropT + cropB) / 100.0)).append("):")
-              .append("iw*").append(String.format("%.6f", cropL / (100.0 - cropL - cropR))).append(":")
-              .append("ih*").append(String.format("%.6f", cropT / (100.0 - cropT - cropB))).append(":")
-              .append("color=0x00000000,");
+        appendSegmentFilters(chain, segmentFilters, is.getId(), 1.0);
+        chain.add(FilterNode.format("rgba"));
+        appendRotation(chain, is.getRotation());
+        chain.add(FilterNode.format("rgba"));
+        appendOpacity(chain, is.getOpacity());
+        if (prepared.isCropped()) {
+          appendCropPadding(chain, cropL, cropR, cropT, cropB);
+        } else {
+          appendCrop(chain, cropL, cropR, cropT, cropB);
         }
 
         List<Transition> relevantTransitions = timelineState.getTransitions().stream()
@@ -4049,134 +3690,31 @@ public class VideoEditingService {
             .filter(t -> t.getLayer() == is.getLayer())
             .collect(Collectors.toList());
 
-        Map<String, String> transitionOffsets = applyTransitionFilters(filterComplex, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        Map<String, String> transitionOffsets = applyTransitionFilters(chain, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        appendTransitionCrop(chain, transitionOffsets, timelineStart, timelineEnd, batchStart);
 
-        boolean hasTransitionCrop = !transitionOffsets.get("cropWidth").equals("iw") || !transitionOffsets.get("cropHeight").equals("ih") ||
-            !transitionOffsets.get("cropX").equals("0") || !transitionOffsets.get("cropY").equals("0");
-        if (hasTransitionCrop) {
-          double transStart = timelineStart - batchStart;
-          double transEnd = Math.min(timelineStart + 1.0, timelineEnd) - batchStart;
-          filterComplex.append("crop=")
-              .append("w='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropWidth")).append(",iw)':")
-              .append("h='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropHeight")).append(",ih)':")
-              .append("x='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropX")).append(",0)':")
-              .append("y='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropY")).append(",0)'")
-              .append(",");
-        }
-
-          StringBuilder scaleExpr = new StringBuilder();
-          List<Keyframe> scaleKeyframes = is.getKeyframes().getOrDefault("scale", new ArrayList<>());
           double defaultScale = is.getScale() != null ? is.getScale() : 1.0;
 
-          if (!scaleKeyframes.isEmpty()) {
-              Collections.sort(scaleKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = defaultScale;
-              double segmentTime = batchStart - is.getTimelineStartTime();
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == scaleKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue();
-              }
-              scaleExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = is.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = is.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          scaleExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              scaleExpr.append(String.format("%.6f", defaultScale));
-          }
+          KeyframeTrack scaleTrack = KeyframeTrack.of(is.getKeyframes().get("scale"), defaultScale);
+          StringBuilder scaleExpr = new StringBuilder(scaleTrack.toExpression(is.getTimelineStartTime() - batchStart, batchDuration));
 
           String transitionScale = transitionOffsets.get("scale");
           if (!transitionScale.equals("1")) {
               scaleExpr.insert(0, "(").append(")*(").append(transitionScale).append(")");
           }
 
-          filterComplex.append("scale=w='iw*").append(scaleExpr).append("':h='ih*").append(scaleExpr).append("':eval=frame[scaled").append(outputLabel).append("];");
+          // A prepared image is smaller than the original; scale it as if it were not
+          if (prepared.getScaleCompensation() != 1.0) {
+              scaleExpr.insert(0, "(").append(")*").append(String.format("%.6f", prepared.getScaleCompensation()));
+          }
+
+          chain.add("scale", "w='iw*" + scaleExpr + "':h='ih*" + scaleExpr + "':eval=frame");
+          FilterGraphOptimizer.optimize(chain.output("scaled" + outputLabel)).appendTo(filterComplex);
 
-          StringBuilder xExpr = new StringBuilder();
-          List<Keyframe> posXKeyframes = is.getKeyframes().getOrDefault("positionX", new ArrayList<>());
           Integer defaultPosX = is.getPositionX();
           double baseX = defaultPosX != null ? defaultPosX : 0;
-
-          if (!posXKeyframes.isEmpty()) {
-              Collections.sort(posXKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseX;
-              double segmentTime = batchStart - is.getTimelineStartTime();
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posXKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-              }
-              xExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = is.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = is.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          xExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              xExpr.append(String.format("%.6f", baseX));
-          }
+          KeyframeTrack xTrack = KeyframeTrack.of(is.getKeyframes().get("positionX"), baseX);
+          StringBuilder xExpr = new StringBuilder(xTrack.toExpression(is.getTimelineStartTime() - batchStart, batchDuration));
 
           String xTransitionOffset = transitionOffsets.get("x");
           if (!xTransitionOffset.equals("0")) {
@@ -4184,57 +3722,10 @@ public class VideoEditingService {
           }
           xExpr.insert(0, "(W/2)+(").append(")-(w/2)");
 
-          StringBuilder yExpr = new StringBuilder();
-          List<Keyframe> posYKeyframes = is.getKeyframes().getOrDefault("positionY", new ArrayList<>());
           Integer defaultPosY = is.getPositionY();
           double baseY = defaultPosY != null ? defaultPosY : 0;
-
-          if (!posYKeyframes.isEmpty()) {
-              Collections.sort(posYKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseY;
-              double segmentTime = batchStart - is.getTimelineStartTime();
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posYKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-              }
-              yExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = is.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = is.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          yExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              yExpr.append(String.format("%.6f", baseY));
-          }
+          KeyframeTrack yTrack = KeyframeTrack.of(is.getKeyframes().get("positionY"), baseY);
+          StringBuilder yExpr = new StringBuilder(yTrack.toExpression(is.getTimelineStartTime() - batchStart, batchDuration));
 
           String yTransitionOffset = transitionOffsets.get("y");
           if (!yTransitionOffset.equals("0")) {
@@ -4260,174 +3751,44 @@ public class VideoEditingService {
         segmentStart = timelineStart - batchStart;
         segmentEnd = timelineEnd - batchStart;
 
+        // Transitions are applied after setpts so their expressions see batch time
+        FilterChain chain = new FilterChain(inputIdx + ":v");
+        chain.add("trim", String.format("0:%.6f", segmentEnd - segmentStart));
+        chain.add("setpts", String.format("PTS-STARTPTS+%.6f/TB", segmentStart));
+
         List<Transition> relevantTransitions = timelineState.getTransitions().stream()
             .filter(t -> t.getSegmentId() != null && t.getSegmentId().equals(ts.getId()))
             .filter(t -> t.getLayer() == ts.getLayer())
             .collect(Collectors.toList());
 
-        Map<String, String> transitionOffsets = applyTransitionFilters(filterComplex, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        Map<String, String> transitionOffsets = applyTransitionFilters(chain, relevantTransitions, timelineStart, timelineEnd, canvasWidth, canvasHeight, batchStart, batchDuration);
+        appendTransitionCrop(chain, transitionOffsets, timelineStart, timelineEnd, batchStart);
+        appendRotation(chain, ts.getRotation());
+        chain.add(FilterNode.format("rgba"));
+        appendOpacity(chain, ts.getOpacity());
 
-        filterComplex.append("[").append(inputIdx).append(":v]");
-        filterComplex.append("trim=0:").append(String.format("%.6f", segmentEnd - segmentStart)).append(",");
-        filterComplex.append("setpts=PTS-STARTPTS+").append(String.format("%.6f", segmentStart)).append("/TB,");
-
-        boolean hasCrop = !transitionOffsets.get("cropWidth").equals("iw") || !transitionOffsets.get("cropHeight").equals("ih") ||
-            !transitionOffsets.get("cropX").equals("0") || !transitionOffsets.get("cropY").equals("0");
-        if (hasCrop) {
-          double transStart = timelineStart - batchStart;
-          double transEnd = Math.min(timelineStart + 1.0, timelineEnd) - batchStart;
-          filterComplex.append("crop=")
-              .append("w='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropWidth")).append(",iw)':")
-              .append("h='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropHeight")).append(",ih)':")
-              .append("x='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropX")).append(",0)':")
-              .append("y='if(between(t,").append(String.format("%.6f", transStart)).append(",")
-              .append(String.format("%.6f", transEnd)).append("),").append(transitionOffsets.get("cropY")).append(",0)'")
-              .append(",");
-        }
-
-        StringBuilder rotationExpr = new StringBuilder();
-        Double defaultRotation = ts.getRotation() != null ? ts.getRotation() : 0.0;
-        rotationExpr.append(String.format("%.6f", Math.toRadians(defaultRotation)));
-
-        if (!rotationExpr.toString().equals("0.000000")) {
-          filterComplex.append("rotate=").append(rotationExpr)
-              .append(":ow='hypot(iw,ih)'")
-              .append(":oh='hypot(iw,ih)'")
-              .append(":c=0x00000000,");
-        }
-
-        filterComplex.append("format=rgba,");
-
-        double opacity = ts.getOpacity() != null ? ts.getOpacity() : 1.0;
-        if (opacity < 1.0) {
-          filterComplex.append("lutrgb=a='val*").append(String.format("%.6f", opacity)).append("',");
-          filterComplex.append("format=rgba,");
-        }
-
-          StringBuilder scaleExpr = new StringBuilder();
-          List<Keyframe> scaleKeyframes = ts.getKeyframes().getOrDefault("scale", new ArrayList<>());
           double defaultScale = ts.getScale() != null ? ts.getScale() : 1.0;
           double resolutionMultiplier = canvasWidth >= 3840 ? 1.5 : 2.0;
           double baseScale = 1.0 / resolutionMultiplier;
-          double maxScale = defaultScale;
-
-          if (!scaleKeyframes.isEmpty()) {
-              maxScale = Math.max(
-                  defaultScale,
-                  scaleKeyframes.stream()
-                      .mapToDouble(kf -> ((Number) kf.getValue()).doubleValue())
-                      .max()
-                      .orElse(defaultScale)
-              );
-              Collections.sort(scaleKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = defaultScale / maxScale;
-              double segmentTime = batchStart - ts.getTimelineStartTime();
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue() / maxScale;
-                  double kfValue = ((Number) kf.getValue()).doubleValue() / maxScale;
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue() / maxScale;
-                      break;
-                  } else if (j == scaleKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) scaleKeyframes.get(0).getValue()).doubleValue() / maxScale;
-              }
-              scaleExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < scaleKeyframes.size(); j++) {
-                  Keyframe prevKf = scaleKeyframes.get(j - 1);
-                  Keyframe kf = scaleKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue() / maxScale;
-                  double kfValue = ((Number) kf.getValue()).doubleValue() / maxScale;
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = ts.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = ts.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          scaleExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              scaleExpr.append(String.format("%.6f", defaultScale / maxScale));
-          }
+          // The PNG is rasterized at the largest scale the segment reaches, so scale relative to that
+          KeyframeTrack scaleTrack = KeyframeTrack.of(ts.getKeyframes().get("scale"), defaultScale);
+          double maxScale = Math.max(defaultScale, scaleTrack.maxValue());
+          StringBuilder scaleExpr = new StringBuilder(scaleTrack.scaled(1.0 / maxScale)
+              .toExpression(ts.getTimelineStartTime() - batchStart, batchDuration));
 
           String transitionScale = transitionOffsets.get("scale");
           if (!transitionScale.equals("1")) {
               scaleExpr.insert(0, "(").append(")*(").append(transitionScale).append(")");
           }
 
-          filterComplex.append("scale=w='iw*").append(baseScale).append("*").append(scaleExpr)
-              .append("':h='ih*").append(baseScale).append("*").append(scaleExpr)
-              .append("':flags=lanczos:force_original_aspect_ratio=decrease:eval=frame[scaled").append(outputLabel).append("];");
+          chain.add("scale", "w='iw*" + baseScale + "*" + scaleExpr + "':h='ih*" + baseScale + "*" + scaleExpr
+              + "':flags=lanczos:force_original_aspect_ratio=decrease:eval=frame");
+          FilterGraphOptimizer.optimize(chain.output("scaled" + outputLabel)).appendTo(filterComplex);
 
-          StringBuilder xExpr = new StringBuilder();
-          List<Keyframe> posXKeyframes = ts.getKeyframes().getOrDefault("positionX", new ArrayList<>());
           Integer defaultPosX = ts.getPositionX();
           double baseX = defaultPosX != null ? defaultPosX : 0;
-
-          if (!posXKeyframes.isEmpty()) {
-              Collections.sort(posXKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseX;
-              double segmentTime = batchStart - ts.getTimelineStartTime();
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posXKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posXKeyframes.get(0).getValue()).doubleValue();
-              }
-              xExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posXKeyframes.size(); j++) {
-                  Keyframe prevKf = posXKeyframes.get(j - 1);
-                  Keyframe kf = posXKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = ts.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = ts.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          xExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              xExpr.append(String.format("%.6f", baseX));
-          }
+          KeyframeTrack xTrack = KeyframeTrack.of(ts.getKeyframes().get("positionX"), baseX);
+          StringBuilder xExpr = new StringBuilder(xTrack.toExpression(ts.getTimelineStartTime() - batchStart, batchDuration));
 
           String xTransitionOffset = transitionOffsets.get("x");
           if (!xTransitionOffset.equals("0")) {
@@ -4435,57 +3796,10 @@ public class VideoEditingService {
           }
           xExpr.insert(0, "(W/2)+(").append(")-(w/2)");
 
-          StringBuilder yExpr = new StringBuilder();
-          List<Keyframe> posYKeyframes = ts.getKeyframes().getOrDefault("positionY", new ArrayList<>());
           Integer defaultPosY = ts.getPositionY();
           double baseY = defaultPosY != null ? defaultPosY : 0;
-
-          if (!posYKeyframes.isEmpty()) {
-              Collections.sort(posYKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              double startValue = baseY;
-              double segmentTime = batchStart - ts.getTimelineStartTime();
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (segmentTime >= prevTime && segmentTime <= kfTime && kfTime > prevTime) {
-                      double progress = (segmentTime - prevTime) / (kfTime - prevTime);
-                      startValue = prevValue + (kfValue - prevValue) * Math.min(1, Math.max(0, progress));
-                      break;
-                  } else if (segmentTime < prevTime) {
-                      startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-                      break;
-                  } else if (j == posYKeyframes.size() - 1 && segmentTime > kfTime) {
-                      startValue = kfValue;
-                  }
-              }
-              if (segmentTime < 0) {
-                  startValue = ((Number) posYKeyframes.get(0).getValue()).doubleValue();
-              }
-              yExpr.append(String.format("%.6f", startValue));
-              for (int j = 1; j < posYKeyframes.size(); j++) {
-                  Keyframe prevKf = posYKeyframes.get(j - 1);
-                  Keyframe kf = posYKeyframes.get(j);
-                  double prevTime = prevKf.getTime();
-                  double kfTime = kf.getTime();
-                  double prevValue = ((Number) prevKf.getValue()).doubleValue();
-                  double kfValue = ((Number) kf.getValue()).doubleValue();
-                  if (kfTime > prevTime) {
-                      double timelinePrevTime = ts.getTimelineStartTime() + prevTime - batchStart;
-                      double timelineKfTime = ts.getTimelineStartTime() + kfTime - batchStart;
-                      if (timelineKfTime >= 0 && timelinePrevTime <= batchDuration) {
-                          yExpr.insert(0, "lerp(").append(",").append(String.format("%.6f", kfValue))
-                              .append(",min(1,max(0,(t-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append(")/(")
-                              .append(String.format("%.6f", timelineKfTime)).append("-").append(String.format("%.6f", Math.max(0, timelinePrevTime))).append("))))");
-                      }
-                  }
-              }
-          } else {
-              yExpr.append(String.format("%.6f", baseY));
-          }
+          KeyframeTrack yTrack = KeyframeTrack.of(ts.getKeyframes().get("positionY"), baseY);
+          StringBuilder yExpr = new StringBuilder(yTrack.toExpression(ts.getTimelineStartTime() - batchStart, batchDuration));
 
           String yTransitionOffset = transitionOffsets.get("y");
           if (!yTransitionOffset.equals("0")) {
@@ -4501,182 +3815,140 @@ public class VideoEditingService {
       }
     }
 
+    filterComplex.append("[").append(lastOutput).append("]setpts=PTS-STARTPTS");
+    if (outputFilter != null) {
+      filterComplex.append(",").append(outputFilter);
+    }
+    filterComplex.append("[vout]");
+
+    command.add("-filter_complex");
+    command.add(filterComplex.toString());
+
+    command.add("-map");
+    command.add("[vout]");
+    command.add("-an");
+    return command;
+  }
+
+  /**
+   * Mixes every audio segment of the timeline into one AAC track in a single ffmpeg run, so each
+   * source is decoded once and there are no encoder priming gaps at batch boundaries. The mix is
+   * cached like a batch. Returns the track's path, or null when the timeline has no audio.
+   */
+  private String renderTimelineAudio(TimelineState timelineState, String outputPath, double totalDuration, String jobKey,
+                                     RenderCancellation cancellation) throws IOException, InterruptedException {
+    List<String> command = buildAudioCommand(timelineState, outputPath, totalDuration);
+    if (command == null) {
+      return null;
+    }
+    List<String> sourceFingerprints = timelineState.getAudioSegments().stream()
+        .map(as -> fileFingerprint(baseDir + "\\" + as.getAudioPath()))
+        .collect(Collectors.toList());
+    String audioKey = TimelineHashing.hash(BATCH_RENDER_VERSION, "audio", timelineState.getAudioSegments(),
+        String.format("%.6f", totalDuration), audioEncoderArguments(), sourceFingerprints);
+    if (batchCacheService.restore(audioKey, outputPath)) {
+      System.out.println("Reusing cached timeline audio");
+      return outputPath;
+    }
+
+    System.out.println("FFmpeg command for timeline audio: " + String.join(" ", command));
+    executeFFmpegCommand(command, cancellation, jobKey);
+    batchCacheService.store(audioKey, outputPath);
+    return outputPath;
+  }
+
+  /**
+   * The ffmpeg command that mixes the whole timeline's audio: each segment trimmed, delayed to its
+   * timeline position and given its volume keyframes, then summed and padded to the video length.
+   * Audio embedded in video clips reaches the timeline as extracted AudioSegments, so it is mixed here too.
+   * Returns null when there is nothing to mix.
+   */
+  List<String> buildAudioCommand(TimelineState timelineState, String outputPath, double totalDuration) {
+    List<String> command = new ArrayList<>();
+    command.add(ffmpegPath);
+
+    StringBuilder filterComplex = new StringBuilder();
     List<String> audioOutputs = new ArrayList<>();
-    int audioCount = 0;
+    int inputCount = 0;
 
-      for (AudioSegment as : relevantAudioSegments) {
-          String inputIdx = audioInputIndices.get(as.getId());
-          if (inputIdx == null) {
-              System.err.println("No input index found for audio segment " + as.getId());
-              continue;
-          }
-          String audioOutput = "aa" + audioCount++;
-
-          double timelineStart = Math.max(as.getTimelineStartTime(), batchStart);
-          double timelineEnd = Math.min(as.getTimelineEndTime(), batchEnd);
-          double segmentStart = timelineStart - batchStart;
-          double segmentDuration = timelineEnd - timelineStart;
-          double sourceStart = as.getStartTime() + (timelineStart - as.getTimelineStartTime());
-          double sourceEnd = as.getStartTime() + (timelineEnd - as.getTimelineStartTime());
-
-          if (sourceStart < 0 || sourceEnd <= sourceStart || segmentStart < 0 || segmentDuration <= 0) {
-              System.err.println("Invalid timing for audio segment " + as.getId() + ": sourceStart=" + sourceStart + ", sourceEnd=" + sourceEnd + ", segmentStart=" + segmentStart);
-              continue;
-          }
+    for (AudioSegment as : timelineState.getAudioSegments()) {
+      double timelineStart = Math.max(as.getTimelineStartTime(), 0);
+      double timelineEnd = Math.min(as.getTimelineEndTime(), totalDuration);
+      double sourceStart = as.getStartTime() + (timelineStart - as.getTimelineStartTime());
+      double sourceEnd = as.getStartTime() + (timelineEnd - as.getTimelineStartTime());
 
-          filterComplex.append("[").append(inputIdx).append(":a]");
-          filterComplex.append("atrim=").append(String.format("%.6f", sourceStart)).append(":").append(String.format("%.6f", sourceEnd)).append(",");
-          // Apply delay to align audio with timelineStartTime within the batch
-          filterComplex.append("adelay=").append(String.format("%.0f", segmentStart * 1000)).append("|").append(String.format("%.0f", segmentStart * 1000)).append(",");
-          filterComplex.append("asetpts=PTS-STARTPTS");
-
-          List<Keyframe> volumeKeyframes = as.getKeyframes().getOrDefault("volume", new ArrayList<>());
-          double defaultVolume = as.getVolume() != null ? as.getVolume() : 1.0;
-
-          if (!volumeKeyframes.isEmpty()) {
-              Collections.sort(volumeKeyframes, Comparator.comparingDouble(Keyframe::getTime));
-              List<Keyframe> validKeyframes = volumeKeyframes.stream()
-                  .filter(kf -> {
-                      double time = kf.getTime();
-                      double value = ((Number) kf.getValue()).doubleValue();
-                      return time >= 0 && time <= segmentDuration && value >= 0 && value <= 15;
-                  })
-                  .collect(Collectors.toList());
-
-              if (!validKeyframes.isEmpty()) {
-                  StringBuilder volumeExpr = new StringBuilder("volume=");
-                  double lastValue = ((Number) validKeyframes.get(validKeyframes.size() - 1).getValue()).doubleValue();
-                  double lastTime = validKeyframes.get(validKeyframes.size() - 1).getTime();
-
-                  volumeExpr.append("'");
-                  int conditionCount = 0;
-                  for (int j = 0; j < validKeyframes.size(); j++) {
-                      double startTime, endTime, startValue, endValue;
-
-                      Keyframe currentKf = validKeyframes.get(j);
-                      startTime = currentKf.getTime();
-                      startValue = ((Number) currentKf.getValue()).doubleValue();
-
-                      if (j < validKeyframes.size() - 1) {
-                          Keyframe nextKf = validKeyframes.get(j + 1);
-                          endTime = nextKf.getTime();
-                          endValue = ((Number) nextKf.getValue()).doubleValue();
-                      } else {
-                          endTime = segmentDuration;
-                          endValue = startValue;
-                      }
-
-                      if (startTime < endTime) {
-                          double adjustedStartTime = startTime + segmentStart;
-                          double adjustedEndTime = endTime + segmentStart;
-                          if (adjustedStartTime < batchDuration && adjustedEndTime > 0) {
-                              adjustedStartTime = Math.max(0, adjustedStartTime);
-                              adjustedEndTime = Math.min(batchDuration, adjustedEndTime);
-                              String condition = String.format("between(t,%.6f,%.6f)", adjustedStartTime, adjustedEndTime);
-                              String valueExpr;
-                              if (Math.abs(startValue - endValue) < 0.000001) {
-                                  valueExpr = String.format("%.6f", startValue);
-                              } else {
-                                  String progress = String.format("(t-%.6f)/(%.6f-%.6f)", adjustedStartTime, adjustedEndTime, adjustedStartTime);
-                                  valueExpr = String.format("%.6f+(%.6f-%.6f)*min(1,max(0,%s))", startValue, endValue, startValue, progress);
-                              }
-                              volumeExpr.append(String.format("if(%s,%s,", condition, valueExpr));
-                              conditionCount++;
-                          }
-                      }
-                  }
-
-                  volumeExpr.append(String.format("%.6f", lastValue));
-                  for (int j = 0; j < conditionCount; j++) {
-                      volumeExpr.append(")");
-                  }
-
-                  volumeExpr.append("'");
-                  volumeExpr.append(":eval=frame");
-                  filterComplex.append(",").append(volumeExpr);
-              } else {
-                  filterComplex.append(",").append("volume=").append(String.format("%.6f", defaultVolume));
-              }
-          } else {
-              filterComplex.append(",").append("volume=").append(String.format("%.6f", defaultVolume));
-          }
+      if (sourceStart < 0 || sourceEnd <= sourceStart || timelineEnd <= timelineStart) {
+        System.err.println("Invalid timing for audio segment " + as.getId() + ": sourceStart=" + sourceStart + ", sourceEnd=" + sourceEnd + ", timelineStart=" + timelineStart);
+        continue;
+      }
 
-          filterComplex.append("[").append(audioOutput).append("];");
-          audioOutputs.add(audioOutput);
+      InputSeekPlanner.SeekPlan seekPlan = inputSeekPlanner.planAudio(sourceStart, sourceEnd);
+      command.addAll(seekPlan.inputArguments());
+      command.add("-i");
+      command.add(baseDir + "\\" + as.getAudioPath());
+      String audioOutput = "aa" + audioOutputs.size();
+
+      filterComplex.append("[").append(inputCount++).append(":a]");
+      filterComplex.append("atrim=").append(String.format("%.6f", seekPlan.getTrimStart())).append(":").append(String.format("%.6f", seekPlan.getTrimEnd())).append(",");
+      // Apply delay to align audio with its timeline start
+      filterComplex.append("adelay=").append(String.format("%.0f", timelineStart * 1000)).append(":all=1,");
+      filterComplex.append("asetpts=PTS-STARTPTS");
+
+      double defaultVolume = as.getVolume() != null ? as.getVolume() : 1.0;
+      List<Keyframe> volumeKeyframes = as.getKeyframes().getOrDefault("volume", new ArrayList<>()).stream()
+          .filter(kf -> kf.getValue() instanceof Number)
+          .filter(kf -> {
+              double value = ((Number) kf.getValue()).doubleValue();
+              return kf.getTime() >= 0 && value >= 0 && value <= 15;
+          })
+          .collect(Collectors.toList());
+      KeyframeTrack volumeTrack = KeyframeTrack.of(volumeKeyframes, defaultVolume);
+      // After adelay and asetpts, t is timeline time
+      String volumeExpr = volumeTrack.toExpression(as.getTimelineStartTime(), totalDuration);
+      if (volumeTrack.isAnimated()) {
+          filterComplex.append(",volume='").append(volumeExpr).append("':eval=frame");
+      } else {
+          filterComplex.append(",volume=").append(volumeExpr);
       }
 
-    if (!audioOutputs.isEmpty()) {
-      filterComplex.append("[").append(String.join("][", audioOutputs)).append("]");
-      filterComplex.append("amix=inputs=").append(audioOutputs.size()).append(":duration=longest:dropout_transition=0:normalize=0[aout];");
+      filterComplex.append("[").append(audioOutput).append("];");
+      audioOutputs.add(audioOutput);
     }
 
-    filterComplex.append("[").append(lastOutput).append("]setpts=PTS-STARTPTS[vout]");
+    if (audioOutputs.isEmpty()) {
+      return null;
+    }
+    filterComplex.append("[").append(String.join("][", audioOutputs)).append("]");
+    filterComplex.append("amix=inputs=").append(audioOutputs.size()).append(":duration=longest:dropout_transition=0:normalize=0,");
+    // Silence after the last segment keeps the track as long as the video
+    filterComplex.append("apad[aout]");
 
     command.add("-filter_complex");
     command.add(filterComplex.toString());
-
     command.add("-map");
-    command.add("[vout]");
-    if (!audioOutputs.isEmpty()) {
-      command.add("-map");
-      command.add("[aout]");
-    } else {
-      command.add("-an");
-    }
-
-    command.add("-c:v");
-    command.add("libx264");
-    command.add("-preset");
-    command.add("veryslow");
-    command.add("-b:v");
-    command.add(canvasWidth >= 3840 ? "10M" : "5M");
-    command.add("-pix_fmt");
-    command.add("yuv420p");
-    command.add("-color_range");
-    command.add("tv");
-    command.add("-c:a");
-    command.add("aac");
-    command.add("-b:a");
-    command.add("320k");
-    command.add("-ar");
-    command.add("48000");
+    command.add("[aout]");
+    command.add("-vn");
+    command.addAll(audioEncoderArguments());
     command.add("-t");
-    command.add(String.format("%.6f", batchDuration));
-    command.add("-r");
-    command.add(String.valueOf(fps != null ? fps : 30));
+    command.add(String.format("%.6f", totalDuration));
     command.add("-y");
     command.add(outputPath);
-
-    System.out.println("FFmpeg command for batch: " + String.join(" ", command));
-
-    double totalDuration = Math.max(
-        timelineState.getSegments().stream().mapToDouble(VideoSegment::getTimelineEndTime).max().orElse(0.0),
-        Math.max(
-            timelineState.getImageSegments().stream().mapToDouble(ImageSegment::getTimelineEndTime).max().orElse(0.0),
-            Math.max(
-                timelineState.getTextSegments().stream().mapToDouble(TextSegment::getTimelineEndTime).max().orElse(0.0),
-                timelineState.getAudioSegments().stream().mapToDouble(AudioSegment::getTimelineEndTime).max().orElse(0.0)
-            )
-        )
-    );
-    int totalBatches = (int) Math.ceil(totalDuration / 8.0);
-    int batchIndex = (int) (batchStart / 8.0);
-    executeFFmpegCommand(command, projectId, batchStart, batchDuration, totalDuration, batchIndex);
+    return command;
   }
 
-  private void concatenateBatches(List<String> tempVideoFiles, String outputPath, float fps)
-      throws IOException, InterruptedException {
+  private void concatenateBatches(List<String> tempVideoFiles, String audioTrack, String outputPath, float fps, String jobKey,
+                                  RenderCancellation cancellation) throws IOException, InterruptedException {
     if (tempVideoFiles.isEmpty()) {
       throw new IllegalStateException("No batch files to concatenate");
     }
-    if (tempVideoFiles.size() == 1) {
+    if (tempVideoFiles.size() == 1 && audioTrack == null) {
       // If only one batch, rename it to the output path
       Files.move(Paths.get(tempVideoFiles.get(0)), Paths.get(outputPath), StandardCopyOption.REPLACE_EXISTING);
       return;
     }
 
     // Create a text file listing the batch files
-    File concatListFile = new File("temp", "concat_list.txt");
+    File concatListFile = new File(new File(tempVideoFiles.get(0)).getParentFile(), "concat_list.txt");
     try (PrintWriter writer = new PrintWriter(concatListFile, "UTF-8")) {
       for (String tempFile : tempVideoFiles) {
         writer.println("file '" + tempFile.replace("\\", "\\\\") + "'");
@@ -4691,6 +3963,15 @@ public class VideoEditingService {
     command.add("0");
     command.add("-i");
     command.add(concatListFile.getAbsolutePath());
+    if (audioTrack != null) {
+      // The single timeline audio track is attached here; batches are video-only
+      command.add("-i");
+      command.add(audioTrack);
+      command.add("-map");
+      command.add("0:v");
+      command.add("-map");
+      command.add("1:a");
+    }
     command.add("-c");
     command.add("copy");
     command.add("-r");
@@ -4700,7 +3981,7 @@ public class VideoEditingService {
 
     System.out.println("FFmpeg concatenation command: " + String.join(" ", command));
     try {
-      executeFFmpegCommand(command);
+      executeFFmpegCommand(command, cancellation, jobKey);
     } finally {
       if (concatListFile.exists()) {
         try {
@@ -4713,26 +3994,30 @@ public class VideoEditingService {
     }
   }
 
-    private String generateTextPng(TextSegment ts, File tempDir, int canvasWidth, int canvasHeight) throws IOException {
+    String generateTextPng(TextSegment ts, int canvasWidth, int canvasHeight, TextRasterCache.Pins textPins) throws IOException {
+        // Determine maximum scale from keyframes or default scale
+        double defaultScale = ts.getScale() != null ? ts.getScale() : 1.0;
+        final double rasterScale = Math.max(defaultScale,
+                KeyframeTrack.of(ts.getKeyframes().get("scale"), defaultScale).maxValue());
+        String fontPath = fontService.getFontPath(ts.getFontFamily());
+
+        // Everything that changes the pixels goes into the key; position, opacity and timing are applied by ffmpeg
+        String styleKey = TimelineHashing.hash(TEXT_RASTER_VERSION, Arrays.asList(
+                ts.getText(), fontPath, ts.getFontColor(), ts.getBackgroundColor(), ts.getBackgroundOpacity(),
+                ts.getBackgroundBorderColor(), ts.getBackgroundBorderWidth(), ts.getBackgroundBorderRadius(),
+                ts.getBackgroundH(), ts.getBackgroundW(), ts.getTextBorderColor(), ts.getTextBorderWidth(),
+                ts.getTextBorderOpacity(), ts.getLetterSpacing(), ts.getLineSpacing(), ts.getAlignment(),
+                rasterScale, canvasWidth, canvasHeight));
+        return textRasterCache.getOrRender(styleKey, () -> rasterizeText(ts, rasterScale, canvasWidth, canvasHeight), textPins)
+                .getAbsolutePath();
+    }
+
+    BufferedImage rasterizeText(TextSegment ts, double maxScale, int canvasWidth, int canvasHeight) {
         // Resolution multiplier for high-quality text (1.5 for 4K, 2.0 for 1080p)
         final double RESOLUTION_MULTIPLIER = canvasWidth >= 3840 ? 1.5 : 2.0;
         // Scaling factor for border width to match frontend's typical scaleFactor
         final double BORDER_SCALE_FACTOR = canvasWidth >= 3840 ? 1.5 : 2.0;
 
-        // Determine maximum scale from keyframes or default scale
-        double defaultScale = ts.getScale() != null ? ts.getScale() : 1.0;
-        List<Keyframe> scaleKeyframes = ts.getKeyframes().getOrDefault("scale", new ArrayList<>());
-        double maxScale = defaultScale;
-        if (!scaleKeyframes.isEmpty()) {
-            maxScale = Math.max(
-                    defaultScale,
-                    scaleKeyframes.stream()
-                            .mapToDouble(kf -> ((Number) kf.getValue()).doubleValue())
-                            .max()
-                            .orElse(defaultScale)
-            );
-        }
-
         // Parse colors
         Color fontColor = parseColor(ts.getFontColor(), Color.WHITE, "font", ts.getId());
         Color bgColor = ts.getBackgroundColor() != null && !ts.getBackgroundColor().equals("transparent") ?
@@ -4744,11 +4029,8 @@ public class VideoEditingService {
 
         // Load font with fixed base size of 24, scaled by maxScale and resolution multiplier
         double baseFontSize = 24.0 * maxScale * RESOLUTION_MULTIPLIER;
-        Font font;
-        try {
-            font = Font.createFont(Font.TRUETYPE_FONT, new File(getFontPathByFamily(ts.getFontFamily())))
-                    .deriveFont((float) baseFontSize);
-        } catch (Exception e) {
+        Font font = fontService.getFont(ts.getFontFamily(), (float) baseFontSize);
+        if (font == null) {
             System.err.println("Failed to load font for text segment " + ts.getId() + ": " + ts.getFontFamily() + ", using Arial");
             font = new Font("Arial", Font.PLAIN, (int) baseFontSize);
         }
@@ -4760,29 +4042,16 @@ public class VideoEditingService {
         double scaledLineSpacing = lineSpacing * baseFontSize; // Line spacing as multiplier of font size
 
         // Measure text with letter spacing
-        BufferedImage tempImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2d = tempImage.createGraphics();
-        g2d.setFont(font);
-        FontMetrics fm = g2d.getFontMetrics();
+        FontMetrics fm = fontService.getMetrics(font);
         String[] lines = ts.getText().split("\n");
         int lineHeight = (int) scaledLineSpacing; // Use scaledLineSpacing for line height
         int totalTextHeight = lines.length > 1 ? (lines.length - 1) * lineHeight + fm.getAscent() + fm.getDescent() : fm.getAscent() + fm.getDescent();
         int maxTextWidth = 0;
         for (String line : lines) {
-            // Calculate width with letter spacing
-            int lineWidth = 0;
-            for (int i = 0; i < line.length(); i++) {
-                lineWidth += fm.charWidth(line.charAt(i));
-                if (i < line.length() - 1) {
-                    lineWidth += (int) scaledLetterSpacing;
-                }
-            }
-            maxTextWidth = Math.max(maxTextWidth, lineWidth);
+            maxTextWidth = Math.max(maxTextWidth, fontService.textWidth(font, line, (int) scaledLetterSpacing));
         }
         // Calculate text block height for centering
         int textBlockHeight = totalTextHeight;
-        g2d.dispose();
-        tempImage.flush();
 
         // Apply background dimensions and borders (aligned with frontend logic, using maxScale)
         int bgHeight = (int) ((ts.getBackgroundH() != null ? ts.getBackgroundH() : 0) * maxScale * RESOLUTION_MULTIPLIER);
@@ -4820,7 +4089,7 @@ public class VideoEditingService {
 
         // Create high-resolution image
         BufferedImage image = new BufferedImage(totalWidth, totalHeight, BufferedImage.TYPE_INT_ARGB);
-        g2d = image.createGraphics();
+        Graphics2D g2d = image.createGraphics();
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
         g2d.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
@@ -4938,10 +4207,7 @@ public class VideoEditingService {
 
         g2d.dispose();
 
-        // Save the high-resolution PNG
-        String tempPngPath = new File(tempDir, "text_" + ts.getId() + ".png").getAbsolutePath();
-        ImageIO.write(image, "PNG", new File(tempPngPath));
-        return tempPngPath;
+        return image;
     }
 
     // Helper method to parse colors
@@ -4954,7 +4220,172 @@ public class VideoEditingService {
         }
     }
 
-    private Map<String, String> applyTransitionFilters(StringBuilder filterComplex, List<Transition> transitions,
+    /**
+     * Adds the user's color and effect filters for one segment. Color adjustments are kept
+     * symbolic so the optimizer can fold them; maxBlur is the accepted blur range for the segment type.
+     */
+    private void appendSegmentFilters(FilterChain chain, List<Filter> segmentFilters, String segmentId, double maxBlur) {
+        boolean hasVignette = false;
+        double vignetteValue = 0.0;
+
+        for (Filter filter : segmentFilters) {
+            if (filter == null || filter.getFilterName() == null || filter.getFilterName().trim().isEmpty()) {
+                System.err.println("Skipping invalid filter for segment " + segmentId + ": null or empty filter name");
+                continue;
+            }
+            String filterName = filter.getFilterName().toLowerCase().trim();
+            String filterValue = filter.getFilterValue() != null ? String.valueOf(filter.getFilterValue()) : "";
+            if (filterValue.isEmpty() && !Arrays.asList("grayscale", "sepia", "invert").contains(filterName)) {
+                System.err.println("Skipping filter " + filterName + " for segment " + segmentId + ": empty filter value");
+                continue;
+            }
+            try {
+                switch (filterName) {
+                    case "brightness":
+                        double brightness = Double.parseDouble(filterValue);
+                        if (brightness >= -1 && brightness <= 1) {
+                            chain.add(FilterNode.brightness(1 + brightness));
+                        }
+                        break;
+                    case "contrast":
+                        double contrast = Double.parseDouble(filterValue);
+                        if (contrast >= 0 && contrast <= 2) {
+                            chain.add(FilterNode.contrast(contrast));
+                        }
+                        break;
+                    case "saturation":
+                        double saturation = Double.parseDouble(filterValue);
+                        if (saturation >= 0 && saturation <= 2 && Math.abs(saturation - 1.0) >= 0.01) {
+                            chain.add(FilterNode.saturation(saturation));
+                        }
+                        break;
+                    case "hue":
+                        double hue = Double.parseDouble(filterValue);
+                        if (hue >= -180 && hue <= 180) {
+                            chain.add(FilterNode.hueShift(hue));
+                        }
+                        break;
+                    case "grayscale":
+                        if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
+                            chain.add(FilterNode.saturation(0));
+                        }
+                        break;
+                    case "invert":
+                        if (!filterValue.isEmpty() && Double.parseDouble(filterValue) > 0) {
+                            chain.add("negate");
+                        }
+                        break;
+                    case "flip":
+                        if (filterValue.equals("horizontal")) {
+                            chain.add("hflip");
+                        } else if (filterValue.equals("vertical")) {
+                            chain.add("vflip");
+                        } else if (filterValue.equals("both")) {
+                            chain.add("hflip").add("vflip");
+                        }
+                        break;
+                    case "vignette":
+                        double vignette = Double.parseDouble(filterValue);
+                        if (vignette > 0.01 && vignette <= 1) {
+                            hasVignette = true;
+                            vignetteValue = vignette;
+                        }
+                        break;
+                    case "blur":
+                        double blurValue = Double.parseDouble(filterValue);
+                        if (blurValue > 0 && blurValue <= maxBlur) {
+                            chain.add("boxblur", String.format("%.2f", blurValue * 10.0));
+                        }
+                        break;
+                    case "rotate":
+                        break;
+                    default:
+                        System.err.println("Unsupported filter: " + filterName + " for segment " + segmentId);
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid filter value for " + filterName + " in segment " + segmentId + ": " + filterValue);
+            }
+        }
+
+        if (hasVignette) {
+            double angle = vignetteValue * (Math.PI / 2);
+            chain.add("vignette", "angle=" + String.format("%.6f", angle) + ":mode=forward");
+        }
+    }
+
+    private void appendTransitionCrop(FilterChain chain, Map<String, String> transitionOffsets,
+                                      double timelineStart, double timelineEnd, double batchStart) {
+        boolean hasTransitionCrop = !transitionOffsets.get("cropWidth").equals("iw") || !transitionOffsets.get("cropHeight").equals("ih") ||
+            !transitionOffsets.get("cropX").equals("0") || !transitionOffsets.get("cropY").equals("0");
+        if (!hasTransitionCrop) {
+            return;
+        }
+        String window = String.format("between(t,%.6f,%.6f)", timelineStart - batchStart, Math.min(timelineStart + 1.0, timelineEnd) - batchStart);
+        chain.add("crop",
+            "w='if(" + window + "," + transitionOffsets.get("cropWidth") + ",iw)':" +
+            "h='if(" + window + "," + transitionOffsets.get("cropHeight") + ",ih)':" +
+            "x='if(" + window + "," + transitionOffsets.get("cropX") + ",0)':" +
+            "y='if(" + window + "," + transitionOffsets.get("cropY") + ",0)'");
+    }
+
+    private void appendRotation(FilterChain chain, Double rotation) {
+        String angle = String.format("%.6f", Math.toRadians(rotation != null ? rotation : 0.0));
+        if (!angle.equals("0.000000") && !angle.equals("-0.000000")) {
+            chain.add("rotate", "a=" + angle + ":ow='hypot(iw,ih)':oh='hypot(iw,ih)':c=0x00000000");
+        }
+    }
+
+    private void appendOpacity(FilterChain chain, Double opacity) {
+        double value = opacity != null ? opacity : 1.0;
+        if (value < 1.0) {
+            chain.add("lutrgb", "a='val*" + String.format("%.6f", value) + "'");
+        }
+    }
+
+    // Largest scale an image segment is drawn at: its keyframed scale, times the 2x peak of a zoom or rotate transition
+    private double maxImageDisplayScale(TimelineState timelineState, ImageSegment is) {
+        double defaultScale = is.getScale() != null ? is.getScale() : 1.0;
+        double maxScale = Math.max(defaultScale, KeyframeTrack.of(is.getKeyframes().get("scale"), defaultScale).maxValue());
+        boolean zoomed = timelineState.getTransitions().stream()
+            .filter(t -> is.getId().equals(t.getSegmentId()))
+            .anyMatch(t -> "Zoom".equals(t.getType()) || "Rotate".equals(t.getType()));
+        return maxScale * (zoomed ? 2.1 : 1.0);
+    }
+
+    // The crop can only move ahead of the segment's filters and rotation when it commutes with them
+    private boolean canPrecropImage(TimelineState timelineState, ImageSegment is) {
+        double cropL = is.getCropL() != null ? is.getCropL() : 0.0;
+        double cropR = is.getCropR() != null ? is.getCropR() : 0.0;
+        double cropT = is.getCropT() != null ? is.getCropT() : 0.0;
+        double cropB = is.getCropB() != null ? is.getCropB() : 0.0;
+        if (cropL < 0 || cropR < 0 || cropT < 0 || cropB < 0 || cropL + cropR >= 100 || cropT + cropB >= 100) {
+            return false;
+        }
+        boolean rotated = is.getRotation() != null && Math.abs(is.getRotation()) > 1e-6;
+        return !rotated && timelineState.getFilters().stream().noneMatch(f -> is.getId().equals(f.getSegmentId()));
+    }
+
+    private void appendCrop(FilterChain chain, double cropL, double cropR, double cropT, double cropB) {
+        if (cropL <= 0 && cropR <= 0 && cropT <= 0 && cropB <= 0) {
+            return;
+        }
+        chain.add("crop", String.format("iw*(1-%.6f-%.6f):ih*(1-%.6f-%.6f):iw*%.6f:ih*%.6f",
+            cropL / 100.0, cropR / 100.0, cropT / 100.0, cropB / 100.0, cropL / 100.0, cropT / 100.0));
+        appendCropPadding(chain, cropL, cropR, cropT, cropB);
+    }
+
+    // Pads a cropped frame back to the uncropped size with transparency so position and scale stay anchored
+    private void appendCropPadding(FilterChain chain, double cropL, double cropR, double cropT, double cropB) {
+        if (cropL <= 0 && cropR <= 0 && cropT <= 0 && cropB <= 0) {
+            return;
+        }
+        chain.add(FilterNode.format("rgba"));
+        chain.add("pad", String.format("iw/(1-%.6f):ih/(1-%.6f):iw*%.6f:ih*%.6f:color=0x00000000",
+            (cropL + cropR) / 100.0, (cropT + cropB) / 100.0, cropL / (100.0 - cropL - cropR), cropT / (100.0 - cropT - cropB)));
+    }
+
+    private Map<String, String> applyTransitionFilters(FilterChain chain, List<Transition> transitions,
                                                        double segmentStartTime, double segmentEndTime, int canvasWidth, int canvasHeight,
                                                        double batchStart, double batchDuration) {
         Map<String, String> transitionOffsets = new HashMap<>();
@@ -5142,9 +4573,8 @@ public class VideoEditingService {
                     double opacityStart = isStartTransition ? 0.0 : 1.0;
                     double opacityEnd = isStartTransition ? 1.0 : 0.0;
                     String opacityExpr = String.format("%.6f+(%.6f-%.6f)*%s", opacityStart, opacityEnd, opacityStart, progressExpr);
-                    filterComplex.append("format=rgba,");
-                    filterComplex.append("lutrgb=a='val*").append(String.format("if(between(t,%.6f,%.6f),%s,1)", batchTransStart, batchTransEnd, opacityExpr)).append("',");
-                    filterComplex.append("format=rgba,");
+                    chain.add(FilterNode.format("rgba"));
+                    chain.add("lutrgb", "a='val*" + String.format("if(between(t,%.6f,%.6f),%s,1)", batchTransStart, batchTransEnd, opacityExpr) + "'");
                     System.out.println("Fade transition " + transition.getId() + ": opacity=" + opacityExpr +
                         ", applied between t=" + batchTransStart + " and t=" + batchTransEnd);
                     break;
@@ -5174,22 +4604,37 @@ public class VideoEditingService {
     }
 
     private void executeFFmpegCommand(List<String> command) throws IOException, InterruptedException {
+        executeFFmpegCommand(command, new RenderCancellation());
+    }
+
+    private void executeFFmpegCommand(List<String> command, RenderCancellation cancellation) throws IOException, InterruptedException {
+        executeFFmpegCommand(command, cancellation, null);
+    }
+
+    private void executeFFmpegCommand(List<String> command, RenderCancellation cancellation, String jobKey) throws IOException, InterruptedException {
         ProcessBuilder processBuilder = new ProcessBuilder(command);
         processBuilder.redirectErrorStream(true);
 
-        Process process = processBuilder.start();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("FFmpeg: " + line);
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, null, jobKey);
+        cancellation.register(process);
+        try {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    processMetrics.observe(process, line);
+                    System.out.println("FFmpeg: " + line);
+                }
             }
-        }
 
-        boolean completed = process.waitFor(5, TimeUnit.MINUTES);
-        if (!completed) {
-            process.destroyForcibly();
-            throw new RuntimeException("FFmpeg process timed out after 5 minutes");
+            boolean completed = process.waitFor(5, TimeUnit.MINUTES);
+            if (!completed) {
+                process.destroyForcibly();
+                throw new RuntimeException("FFmpeg process timed out after 5 minutes");
+            }
+        } finally {
+            cancellation.unregister(process);
         }
+        cancellation.throwIfCancelled();
 
         int exitCode = process.exitValue();
         if (exitCode != 0) {
@@ -5197,240 +4642,6 @@ public class VideoEditingService {
         }
     }
 
-    /**
-     * Gets the system font path for a given font family name.
-     * @param fontFamily The font family name
-     * @return The full path to the font file
-     */
-    private String getFontPathByFamily(String fontFamily) {
-        final String FONTS_RESOURCE_PATH = "/fonts/";
-        final String TEMP_FONT_DIR = System.getProperty("java.io.tmpdir") + "/scenith-fonts/";
-
-        // Create temp directory for fonts if it doesn't exist
-        File tempDir = new File(TEMP_FONT_DIR);
-        if (!tempDir.exists()) {
-            tempDir.mkdirs();
-        }
-
-        // Default font path (fallback)
-        String defaultFontPath = getFontFilePath("arial.ttf", FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-
-        if (fontFamily == null || fontFamily.trim().isEmpty()) {
-            System.out.println("Font family is null or empty. Using default font: arial.ttf");
-            return defaultFontPath;
-        }
-
-        Map<String, String> fontMap = new HashMap<>();
-        fontMap.put("Arial", "arial.ttf");
-        fontMap.put("Times New Roman", "times.ttf");
-        fontMap.put("Courier New", "cour.ttf");
-        fontMap.put("Calibri", "calibri.ttf");
-        fontMap.put("Verdana", "verdana.ttf");
-        fontMap.put("Georgia", "georgia.ttf");
-        fontMap.put("Comic Sans MS", "comic.ttf");
-        fontMap.put("Impact", "impact.ttf");
-        fontMap.put("Tahoma", "tahoma.ttf");
-
-        // Arial variants
-        fontMap.put("Arial Bold", "arialbd.ttf");
-        fontMap.put("Arial Italic", "ariali.ttf");
-        fontMap.put("Arial Bold Italic", "arialbi.ttf");
-        fontMap.put("Arial Black", "ariblk.ttf");
-
-        // Georgia variants
-        fontMap.put("Georgia Bold", "georgiab.ttf");
-        fontMap.put("Georgia Italic", "georgiai.ttf");
-        fontMap.put("Georgia Bold Italic", "georgiaz.ttf");
-
-        // Times New Roman variants
-        fontMap.put("Times New Roman Bold", "timesbd.ttf");
-        fontMap.put("Times New Roman Italic", "timesi.ttf");
-        fontMap.put("Times New Roman Bold Italic", "timesbi.ttf");
-
-        // Alumni Sans Pinstripe
-        fontMap.put("Alumni Sans Pinstripe", "AlumniSansPinstripe-Regular.ttf");
-
-        // Lexend Giga variants
-        fontMap.put("Lexend Giga", "LexendGiga-Regular.ttf");
-        fontMap.put("Lexend Giga Black", "LexendGiga-Black.ttf");
-        fontMap.put("Lexend Giga Bold", "LexendGiga-Bold.ttf");
-
-
-        // Montserrat Alternates variants
-        fontMap.put("Montserrat Alternates", "MontserratAlternates-ExtraLight.ttf");
-        fontMap.put("Montserrat Alternates Black", "MontserratAlternates-Black.ttf");
-        fontMap.put("Montserrat Alternates Medium Italic", "MontserratAlternates-MediumItalic.ttf");
-
-        // Noto Sans Mono variants
-        fontMap.put("Noto Sans Mono", "NotoSansMono-Regular.ttf");
-        fontMap.put("Noto Sans Mono Bold", "NotoSansMono-Bold.ttf");
-
-
-        // Poiret One
-        fontMap.put("Poiret One", "PoiretOne-Regular.ttf");
-
-        // Arimo variants
-        fontMap.put("Arimo", "Arimo-Regular.ttf");
-        fontMap.put("Arimo Bold", "Arimo-Bold.ttf");
-        fontMap.put("Arimo Bold Italic", "Arimo-BoldItalic.ttf");
-        fontMap.put("Arimo Italic", "Arimo-Italic.ttf");
-
-
-        // Carlito variants
-        fontMap.put("Carlito", "Carlito-Regular.ttf");
-        fontMap.put("Carlito Bold", "Carlito-Bold.ttf");
-        fontMap.put("Carlito Bold Italic", "Carlito-BoldItalic.ttf");
-        fontMap.put("Carlito Italic", "Carlito-Italic.ttf");
-
-        // Comic Neue variants
-        fontMap.put("Comic Neue", "ComicNeue-Regular.ttf");
-        fontMap.put("Comic Neue Bold", "ComicNeue-Bold.ttf");
-        fontMap.put("Comic Neue Bold Italic", "ComicNeue-BoldItalic.ttf");
-        fontMap.put("Comic Neue Italic", "ComicNeue-Italic.ttf");
-
-
-        // Courier Prime variants
-        fontMap.put("Courier Prime", "CourierPrime-Regular.ttf");
-        fontMap.put("Courier Prime Bold", "CourierPrime-Bold.ttf");
-        fontMap.put("Courier Prime Bold Italic", "CourierPrime-BoldItalic.ttf");
-        fontMap.put("Courier Prime Italic", "CourierPrime-Italic.ttf");
-
-        // Gelasio variants
-        fontMap.put("Gelasio", "Gelasio-Regular.ttf");
-        fontMap.put("Gelasio Bold", "Gelasio-Bold.ttf");
-        fontMap.put("Gelasio Bold Italic", "Gelasio-BoldItalic.ttf");
-        fontMap.put("Gelasio Italic", "Gelasio-Italic.ttf");
-
-
-        // Tinos variants
-        fontMap.put("Tinos", "Tinos-Regular.ttf");
-        fontMap.put("Tinos Bold", "Tinos-Bold.ttf");
-        fontMap.put("Tinos Bold Italic", "Tinos-BoldItalic.ttf");
-        fontMap.put("Tinos Italic", "Tinos-Italic.ttf");
-
-        // Amatic SC variants
-        fontMap.put("Amatic SC", "AmaticSC-Regular.ttf");
-        fontMap.put("Amatic SC Bold", "AmaticSC-Bold.ttf");
-
-// Barriecito
-        fontMap.put("Barriecito", "Barriecito-Regular.ttf");
-
-// Barrio
-        fontMap.put("Barrio", "Barrio-Regular.ttf");
-
-// Birthstone
-        fontMap.put("Birthstone", "Birthstone-Regular.ttf");
-
-// Bungee Hairline
-        fontMap.put("Bungee Hairline", "BungeeHairline-Regular.ttf");
-
-// Butcherman
-        fontMap.put("Butcherman", "Butcherman-Regular.ttf");
-
-// Doto variants
-        fontMap.put("Doto Black", "Doto-Black.ttf");
-        fontMap.put("Doto ExtraBold", "Doto-ExtraBold.ttf");
-        fontMap.put("Doto Rounded Bold", "Doto_Rounded-Bold.ttf");
-
-// Fascinate Inline
-        fontMap.put("Fascinate Inline", "FascinateInline-Regular.ttf");
-
-// Freckle Face
-        fontMap.put("Freckle Face", "FreckleFace-Regular.ttf");
-
-// Fredericka the Great
-        fontMap.put("Fredericka the Great", "FrederickatheGreat-Regular.ttf");
-
-// Imperial Script
-        fontMap.put("Imperial Script", "ImperialScript-Regular.ttf");
-
-// Kings
-        fontMap.put("Kings", "Kings-Regular.ttf");
-
-// Kirang Haerang
-        fontMap.put("Kirang Haerang", "KirangHaerang-Regular.ttf");
-
-// Lavishly Yours
-        fontMap.put("Lavishly Yours", "LavishlyYours-Regular.ttf");
-
-// Mountains of Christmas variants
-        fontMap.put("Mountains of Christmas", "MountainsofChristmas-Regular.ttf");
-        fontMap.put("Mountains of Christmas Bold", "MountainsofChristmas-Bold.ttf");
-
-// Rampart One
-        fontMap.put("Rampart One", "RampartOne-Regular.ttf");
-
-// Rubik Wet Paint
-        fontMap.put("Rubik Wet Paint", "RubikWetPaint-Regular.ttf");
-
-// Tangerine variants
-        fontMap.put("Tangerine", "Tangerine-Regular.ttf");
-        fontMap.put("Tangerine Bold", "Tangerine-Bold.ttf");
-
-// Yesteryear
-        fontMap.put("Yesteryear", "Yesteryear-Regular.ttf");
-
-        // Process the font family name
-        String processedFontFamily = fontFamily.trim();
-
-        // Try direct match
-        if (fontMap.containsKey(processedFontFamily)) {
-            String fontFileName = fontMap.get(processedFontFamily);
-            String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-            System.out.println("Found exact font match for: " + processedFontFamily + " -> " + fontPath);
-            return fontPath;
-        }
-
-        // Try case-insensitive match
-        for (Map.Entry<String, String> entry : fontMap.entrySet()) {
-            if (entry.getKey().equalsIgnoreCase(processedFontFamily)) {
-                String fontFileName = entry.getValue();
-                String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-                System.out.println("Found case-insensitive font match for: " + processedFontFamily + " -> " + fontPath);
-                return fontPath;
-            }
-        }
-
-        // Fallback to default font
-        System.out.println("Warning: Font family '" + fontFamily + "' not found in font map. Using default: arial.ttf");
-        return defaultFontPath;
-    }
-
-    private String getFontFilePath(String fontFileName, String fontsResourcePath, String tempFontDir) {
-        try {
-            // Check if font is already extracted in temp directory
-            File tempFontFile = new File(tempFontDir + fontFileName);
-            if (tempFontFile.exists()) {
-                return tempFontFile.getAbsolutePath();
-            }
-
-            // Load font from classpath
-            String resourcePath = fontsResourcePath + fontFileName;
-            InputStream fontStream = getClass().getResourceAsStream(resourcePath);
-            if (fontStream == null) {
-                System.err.println("Font file not found in resources: " + resourcePath);
-                throw new IOException("Font file not found: " + fontFileName);
-            }
-
-            // Copy font to temp directory
-            Path tempPath = tempFontFile.toPath();
-            Files.copy(fontStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
-            fontStream.close();
-
-            System.out.println("Extracted font to: " + tempFontFile.getAbsolutePath());
-            return tempFontFile.getAbsolutePath();
-        } catch (IOException e) {
-            System.err.println("Error accessing font file: " + fontFileName + ". Error: " + e.getMessage());
-            // Fallback to a default font in temp directory or system font
-            File defaultFont = new File(tempFontDir + "arial.ttf");
-            if (defaultFont.exists()) {
-                return defaultFont.getAbsolutePath();
-            }
-            // Last resort: return a system font path
-            return "C:/Windows/Fonts/Arial.ttf";
-        }
-    }
-
     public void applyFilter(String sessionId, String segmentId, String filterName, String filterValue) {
         EditSession session = getSession(sessionId);
         TimelineState timelineState = session.getTimelineState();
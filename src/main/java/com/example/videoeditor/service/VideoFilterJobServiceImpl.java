@@ -30,6 +30,9 @@ public class VideoFilterJobServiceImpl implements VideoFilterJobService {
     private final VideoFilterJobRepository repository;
     private final VideoFilterUploadService uploadService;
     private final PresetConfig presetConfig;
+    private final ProgressRegistry progressRegistry;
+    private final ProcessScheduler processScheduler;
+    private final ProcessMetrics processMetrics;
 
     @Value("${video-editor.base-path}")
     private String BASE_PATH;
@@ -106,6 +109,8 @@ public class VideoFilterJobServiceImpl implements VideoFilterJobService {
         job.setProgressPercentage(0);
         repository.save(job);
 
+        String progressKey = ProgressRegistry.key("video-filter", jobId);
+        progressRegistry.start(progressKey, user.getId());
         try {
             // Prepare output path
             Path outputDir = Paths.get(BASE_PATH, String.valueOf(user.getId()), "filtered");
@@ -124,12 +129,14 @@ public class VideoFilterJobServiceImpl implements VideoFilterJobService {
             job.setStatus(VideoFilterJob.ProcessingStatus.COMPLETED);
             job.setProgressPercentage(100);
             repository.save(job);
+            progressRegistry.complete(progressKey);
 
         } catch (Exception e) {
             // Update job on failure
             job.setStatus(VideoFilterJob.ProcessingStatus.FAILED);
             job.setProgressPercentage(0);
             repository.save(job);
+            progressRegistry.fail(progressKey, e.getMessage());
             throw new RuntimeException("Processing failed: " + e.getMessage(), e);
         }
     }
@@ -296,16 +303,28 @@ public class VideoFilterJobServiceImpl implements VideoFilterJobService {
     }
 
     private void executeFFmpegCommand(List<String> command, VideoFilterJob job) throws IOException, InterruptedException {
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        List<String> updatedCommand = new ArrayList<>(command);
+        // -progress must come before the output path
+        updatedCommand.addAll(updatedCommand.size() - 1, List.of("-progress", "pipe:1"));
+        ProcessBuilder processBuilder = new ProcessBuilder(updatedCommand);
         processBuilder.redirectErrorStream(true); // Combine stdout and stderr
-        Process process = processBuilder.start();
+        String progressKey = ProgressRegistry.key("video-filter", job.getId());
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, job.getUser().getId(), progressKey);
 
-        // Optionally capture output for logging or progress tracking
+        double totalDuration = -1;
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
             String line;
             while ((line = reader.readLine()) != null) {
-                // You can parse FFmpeg output for progress if needed
                 System.out.println(line);
+                processMetrics.observe(process, line);
+                if (totalDuration <= 0) {
+                    totalDuration = ProgressRegistry.parseInputDurationSeconds(line);
+                    continue;
+                }
+                double currentTime = ProgressRegistry.parseOutTimeSeconds(line);
+                if (currentTime >= 0) {
+                    progressRegistry.update(progressKey, Math.min(currentTime / totalDuration * 100.0, 100.0));
+                }
             }
         }
 
@@ -6,10 +6,8 @@ import com.example.videoeditor.repository.VideoRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,10 +15,12 @@ import java.util.List;
 @Service
 public class VideoService {
     private final VideoRepository videoRepository;
+    private final MediaProbeService mediaProbeService;
     private final String uploadDir = "videos/";
 
-    public VideoService(VideoRepository videoRepository) {
+    public VideoService(VideoRepository videoRepository, MediaProbeService mediaProbeService) {
         this.videoRepository = videoRepository;
+        this.mediaProbeService = mediaProbeService;
         new File(uploadDir).mkdirs();
     }
 
@@ -34,6 +34,7 @@ public class VideoService {
             String filename = file.getOriginalFilename();
             String filePath = uploadDir + filename;
             file.transferTo(Paths.get(filePath));
+            mediaProbeService.ingest(new File(filePath));
 
             Video video = new Video();
             video.setTitle(title);
@@ -54,31 +55,16 @@ public class VideoService {
         String baseDir = System.getProperty("user.dir");
         String fullPath = Paths.get(baseDir, videoPath).toString();
 
-        ProcessBuilder builder = new ProcessBuilder(
-                "C:\\Users\\raj.p\\Downloads\\ffmpeg-2025-02-17-git-b92577405b-full_build\\bin\\ffprobe.exe",
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                fullPath
-        );
-
         System.out.println("Attempting to get duration for video at path: " + fullPath);
         File videoFile = new File(fullPath);
         if (!videoFile.exists()) {
             throw new IOException("Video file not found at path: " + fullPath);
         }
 
-
-        builder.redirectErrorStream(true);
-
-        Process process = builder.start();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String duration = reader.readLine();
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0 || duration == null) {
+        Double duration = mediaProbeService.probe(videoFile).getDuration();
+        if (duration == null) {
             throw new IOException("Failed to get video duration");
         }
-        return Double.parseDouble(duration);
+        return duration;
     }
 }
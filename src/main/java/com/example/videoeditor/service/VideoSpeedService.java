@@ -31,6 +31,8 @@ public class VideoSpeedService {
 
     private final VideoSpeedRepository videoSpeedRepository;
     private final ObjectMapper objectMapper;
+    private final ProcessScheduler processScheduler;
+    private final MediaBlobStore mediaBlobStore;
 
     @Value("${video-editor.base-path-speed}")
     private String basePath;
@@ -62,7 +64,7 @@ public class VideoSpeedService {
         String filePath = uploadDir.resolve(originalFileName).toString();
 
         // Save file to local storage
-        videoFile.transferTo(new File(filePath));
+        mediaBlobStore.store(videoFile, user, new File(filePath));
 
         // Create VideoSpeed entity
         VideoSpeed video = new VideoSpeed();
@@ -149,7 +151,7 @@ public class VideoSpeedService {
             // Execute FFmpeg process
             ProcessBuilder processBuilder = new ProcessBuilder(ffmpegCommand.split("\\s+"));
             processBuilder.redirectErrorStream(true); // Merge stdout and stderr
-            Process process = processBuilder.start();
+            Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.ENCODE, video.getUser().getId());
 
             // Consume FFmpeg output to prevent hanging
             StringBuilder ffmpegOutput = new StringBuilder();
@@ -0,0 +1,252 @@
+package com.example.videoeditor.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Min/max peaks of an audio track at several zoom levels. Level 0 holds one bucket per
+ * {@code samplesPerBucket} samples; every further level merges pairs of buckets of the one
+ * before, until the coarsest fits a whole timeline on screen. Peaks are stored as signed
+ * 8-bit amplitudes, two bytes per bucket, so an hour of audio takes about 1.4 MB across
+ * all levels and a client reads only the level and time range it draws.
+ *
+ * <p>File layout, big-endian: magic {@code WVPK}, format version (short), sample rate (int),
+ * samples per level-0 bucket (int), sample count (long), level count (short), the bucket
+ * count of every level (int each), then the interleaved min/max bytes of each level in order.
+ */
+public final class WaveformPyramid {
+
+    private static final int MAGIC = 0x5756504B;
+    private static final int FORMAT_VERSION = 1;
+    // Levels are added until the coarsest has at most this many buckets
+    private static final int MIN_TOP_BUCKETS = 512;
+    private static final int MAX_LEVELS = 16;
+    // Upper bound for one slice; wider ranges should ask for a coarser level
+    private static final int MAX_SLICE_BUCKETS = 1 << 16;
+
+    private final int sampleRate;
+    private final int samplesPerBucket;
+    private final long sampleCount;
+    private final byte[][] levels;
+
+    private WaveformPyramid(int sampleRate, int samplesPerBucket, long sampleCount, byte[][] levels) {
+        this.sampleRate = sampleRate;
+        this.samplesPerBucket = samplesPerBucket;
+        this.sampleCount = sampleCount;
+        this.levels = levels;
+    }
+
+    /**
+     * Builds the pyramid from 16-bit little-endian mono PCM as it arrives, e.g. from ffmpeg's
+     * stdout, without holding the samples. A trailing odd byte is ignored.
+     */
+    public static WaveformPyramid fromPcm(InputStream pcm, int sampleRate, int samplesPerBucket) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        byte[] base = new byte[8192];
+        int buckets = 0;
+        long samples = 0;
+        int inBucket = 0;
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        int read;
+        // readNBytes fills the even-sized buffer, so only the last read can split a sample
+        while ((read = pcm.readNBytes(buffer, 0, buffer.length)) > 0) {
+            for (int i = 0; i + 1 < read; i += 2) {
+                int sample = (short) ((buffer[i] & 0xFF) | (buffer[i + 1] << 8));
+                if (sample < min) min = sample;
+                if (sample > max) max = sample;
+                if (++inBucket == samplesPerBucket) {
+                    if (2 * buckets + 2 > base.length) {
+                        base = Arrays.copyOf(base, base.length * 2);
+                    }
+                    base[2 * buckets] = (byte) (min >> 8);
+                    base[2 * buckets + 1] = (byte) (max >> 8);
+                    buckets++;
+                    inBucket = 0;
+                    min = Short.MAX_VALUE;
+                    max = Short.MIN_VALUE;
+                }
+            }
+            samples += read / 2;
+        }
+        if (inBucket > 0) {
+            base = Arrays.copyOf(base, Math.max(base.length, 2 * buckets + 2));
+            base[2 * buckets] = (byte) (min >> 8);
+            base[2 * buckets + 1] = (byte) (max >> 8);
+            buckets++;
+        }
+
+        List<byte[]> levels = new ArrayList<>();
+        byte[] level = Arrays.copyOf(base, 2 * buckets);
+        levels.add(level);
+        while (level.length / 2 > MIN_TOP_BUCKETS && levels.size() < MAX_LEVELS) {
+            level = mergePairs(level);
+            levels.add(level);
+        }
+        return new WaveformPyramid(sampleRate, samplesPerBucket, samples, levels.toArray(new byte[0][]));
+    }
+
+    private static byte[] mergePairs(byte[] level) {
+        int count = level.length / 2;
+        byte[] merged = new byte[(count + 1) / 2 * 2];
+        for (int bucket = 0; bucket < count; bucket += 2) {
+            byte min = level[2 * bucket];
+            byte max = level[2 * bucket + 1];
+            if (bucket + 1 < count) {
+                min = (byte) Math.min(min, level[2 * bucket + 2]);
+                max = (byte) Math.max(max, level[2 * bucket + 3]);
+            }
+            merged[bucket] = min;
+            merged[bucket + 1] = max;
+        }
+        return merged;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(sampleRate);
+            out.writeInt(samplesPerBucket);
+            out.writeLong(sampleCount);
+            out.writeShort(levels.length);
+            for (byte[] level : levels) {
+                out.writeInt(level.length / 2);
+            }
+            for (byte[] level : levels) {
+                out.write(level);
+            }
+        }
+    }
+
+    /** The header of a pyramid file: enough to pick a level and locate any bucket in it. */
+    public static class Header {
+        private final int sampleRate;
+        private final int samplesPerBucket;
+        private final long sampleCount;
+        private final int[] bucketCounts;
+
+        private Header(int sampleRate, int samplesPerBucket, long sampleCount, int[] bucketCounts) {
+            this.sampleRate = sampleRate;
+            this.samplesPerBucket = samplesPerBucket;
+            this.sampleCount = sampleCount;
+            this.bucketCounts = bucketCounts;
+        }
+
+        public double getDuration() {
+            return (double) sampleCount / sampleRate;
+        }
+
+        public int getLevelCount() {
+            return bucketCounts.length;
+        }
+
+        public int getBucketCount(int level) {
+            return bucketCounts[level];
+        }
+
+        public double getBucketSeconds(int level) {
+            return (double) samplesPerBucket * (1L << level) / sampleRate;
+        }
+
+        private long dataOffset(int level) {
+            long offset = 24L + 4L * bucketCounts.length;
+            for (int i = 0; i < level; i++) {
+                offset += 2L * bucketCounts[i];
+            }
+            return offset;
+        }
+    }
+
+    /** Buckets of one level covering a time range; {@code peaks} interleaves min and max. */
+    public static class Slice {
+        private final int firstBucket;
+        private final double bucketSeconds;
+        private final byte[] peaks;
+
+        private Slice(int firstBucket, double bucketSeconds, byte[] peaks) {
+            this.firstBucket = firstBucket;
+            this.bucketSeconds = bucketSeconds;
+            this.peaks = peaks;
+        }
+
+        public double getStartTime() {
+            return firstBucket * bucketSeconds;
+        }
+
+        public double getBucketSeconds() {
+            return bucketSeconds;
+        }
+
+        public byte[] getPeaks() {
+            return peaks;
+        }
+    }
+
+    public static Header readHeader(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return readHeader(in);
+        }
+    }
+
+    private static Header readHeader(RandomAccessFile in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a waveform peaks file");
+        }
+        int version = in.readShort();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported waveform peaks version " + version);
+        }
+        int sampleRate = in.readInt();
+        int samplesPerBucket = in.readInt();
+        long sampleCount = in.readLong();
+        int[] bucketCounts = new int[in.readShort()];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = in.readInt();
+        }
+        return new Header(sampleRate, samplesPerBucket, sampleCount, bucketCounts);
+    }
+
+    /**
+     * Reads the buckets of {@code level} overlapping {@code [start, end)} seconds, without
+     * touching the rest of the file.
+     *
+     * @throws IllegalArgumentException for an unknown level or a range too wide for it
+     */
+    public static Slice readSlice(File file, int level, double start, double end) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            Header header = readHeader(in);
+            if (level < 0 || level >= header.getLevelCount()) {
+                throw new IllegalArgumentException("Level must be between 0 and " + (header.getLevelCount() - 1));
+            }
+            double bucketSeconds = header.getBucketSeconds(level);
+            int buckets = header.getBucketCount(level);
+            int first = (int) Math.max(0, Math.min(buckets, Math.floor(start / bucketSeconds)));
+            int last = (int) Math.max(first, Math.min(buckets, Math.ceil(end / bucketSeconds)));
+            if (last - first > MAX_SLICE_BUCKETS) {
+                throw new IllegalArgumentException("Range spans " + (last - first) + " buckets at level " + level
+                        + "; use a coarser level");
+            }
+            byte[] peaks = new byte[2 * (last - first)];
+            in.seek(header.dataOffset(level) + 2L * first);
+            in.readFully(peaks);
+            return new Slice(first, bucketSeconds, peaks);
+        }
+    }
+}
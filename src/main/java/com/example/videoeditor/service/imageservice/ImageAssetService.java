@@ -3,6 +3,7 @@ package com.example.videoeditor.service.imageservice;
 import com.example.videoeditor.entity.imageentity.ImageAsset;
 import com.example.videoeditor.entity.User;
 import com.example.videoeditor.repository.imagerepository.ImageAssetRepository;
+import com.example.videoeditor.service.MediaBlobStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -25,9 +26,11 @@ public class ImageAssetService {
     private String baseDir;
 
     private final ImageAssetRepository imageAssetRepository;
+    private final MediaBlobStore mediaBlobStore;
 
-    public ImageAssetService(ImageAssetRepository imageAssetRepository) {
+    public ImageAssetService(ImageAssetRepository imageAssetRepository, MediaBlobStore mediaBlobStore) {
         this.imageAssetRepository = imageAssetRepository;
+        this.mediaBlobStore = mediaBlobStore;
     }
 
     /**
@@ -61,7 +64,7 @@ public class ImageAssetService {
         // Generate unique filename
         String uniqueFilename = UUID.randomUUID().toString() + extension;
         File assetFile = new File(assetDir, uniqueFilename);
-        file.transferTo(assetFile);
+        mediaBlobStore.store(file, user, assetFile);
 
         // Get image dimensions
         BufferedImage image = ImageIO.read(assetFile);
@@ -124,6 +127,7 @@ public class ImageAssetService {
         String fullPath = baseDir + File.separator + asset.getFilePath();
         File file = new File(fullPath);
         if (file.exists()) {
+            mediaBlobStore.release(file);
             file.delete();
         }
 
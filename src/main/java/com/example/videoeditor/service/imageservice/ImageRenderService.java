@@ -1,6 +1,8 @@
 package com.example.videoeditor.service.imageservice;
 
 import com.example.videoeditor.dto.imagedto.*;
+import com.example.videoeditor.service.FontService;
+import com.example.videoeditor.service.ProcessScheduler;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,9 +33,13 @@ public class ImageRenderService {
     private String imageMagickPath;
 
     private final ObjectMapper objectMapper;
+    private final FontService fontService;
+    private final ProcessScheduler processScheduler;
 
-    public ImageRenderService(ObjectMapper objectMapper) {
+    public ImageRenderService(ObjectMapper objectMapper, FontService fontService, ProcessScheduler processScheduler) {
         this.objectMapper = objectMapper;
+        this.fontService = fontService;
+        this.processScheduler = processScheduler;
     }
 
     /**
@@ -64,9 +70,7 @@ public class ImageRenderService {
             throw new IOException("Failed to create output directory");
         }
         
-        // Sort layers by zIndex
-        List<LayerDTO> sortedLayers = new ArrayList<>(design.getLayers());
-        sortedLayers.sort(Comparator.comparingInt(l -> l.getZIndex() != null ? l.getZIndex() : 0));
+        List<LayerDTO> sortedLayers = sortedLayers(design);
         
         // Step 1: Create base canvas
         String baseCanvasPath = tempDirPath + File.separator + "base_canvas.png";
@@ -99,6 +103,15 @@ public class ImageRenderService {
         return relativePath;
     }
 
+    /**
+     * Layers in paint order (by zIndex)
+     */
+    static List<LayerDTO> sortedLayers(DesignDTO design) {
+        List<LayerDTO> sortedLayers = new ArrayList<>(design.getLayers());
+        sortedLayers.sort(Comparator.comparingInt(l -> l.getZIndex() != null ? l.getZIndex() : 0));
+        return sortedLayers;
+    }
+
     /**
      * Create base canvas with background color
      */
@@ -359,7 +372,7 @@ public class ImageRenderService {
         cmd.add("none");
 
         // Font settings
-        String fontPath = resolveFontPath(
+        String fontPath = fontService.getFontPath(
                 layer.getFontFamily(),
                 layer.getFontWeight(),
                 layer.getFontStyle());
@@ -613,7 +626,7 @@ public class ImageRenderService {
         executeImageMagickCommand(baseCmd, "Create base for multi-color text");
 
         // Get font properties
-        String fontPath = resolveFontPath(
+        String fontPath = fontService.getFontPath(
                 layer.getFontFamily(),
                 layer.getFontWeight(),
                 layer.getFontStyle());
@@ -822,7 +835,7 @@ public class ImageRenderService {
 
         ProcessBuilder pb = new ProcessBuilder(identifyCmd);
         pb.redirectErrorStream(true);
-        Process process = pb.start();
+        Process process = processScheduler.start(pb, ProcessScheduler.ProcessClass.PROBE, null);
 
         StringBuilder output = new StringBuilder();
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -1347,231 +1360,6 @@ public class ImageRenderService {
         command.add("merge");
     }
 
-    private String resolveFontPath(String fontFamily, String fontWeight, String fontStyle) {
-        // 1. build a key that contains weight & style
-        String key = fontFamily;
-        if ("bold".equalsIgnoreCase(fontWeight)) key += " Bold";
-        if ("italic".equalsIgnoreCase(fontStyle)) key += " Italic";
-        if ("bold".equalsIgnoreCase(fontWeight) && "italic".equalsIgnoreCase(fontStyle)) key += " Bold Italic";
-
-        // 2. reuse the huge map you already have (getFontPathByFamily)
-        return getFontPathByFamily(key);      // <-- call your existing method
-    }
-
-    private String getFontPathByFamily(String fontFamily) {
-        final String FONTS_RESOURCE_PATH = "/fonts/";
-        final String TEMP_FONT_DIR = System.getProperty("java.io.tmpdir") + "/scenith-fonts/";
-
-        File tempDir = new File(TEMP_FONT_DIR);
-        if (!tempDir.exists() && !tempDir.mkdirs()) {
-            logger.error("Failed to create temporary font directory: {}", TEMP_FONT_DIR);
-            return "C:/Windows/Fonts/Arial.ttf";
-        }
-
-        String defaultFontPath = getFontFilePath("arial.ttf", FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-
-        if (fontFamily == null || fontFamily.trim().isEmpty()) {
-            logger.warn("Font family is null or empty. Using default font: arial.ttf");
-            return defaultFontPath;
-        }
-
-        Map<String, String> fontMap = new HashMap<>();
-        fontMap.put("Arial", "arial.ttf");
-        fontMap.put("Times New Roman", "times.ttf");
-        fontMap.put("Courier New", "cour.ttf");
-        fontMap.put("Calibri", "calibri.ttf");
-        fontMap.put("Verdana", "verdana.ttf");
-        fontMap.put("Georgia", "georgia.ttf");
-        fontMap.put("Comic Sans MS", "comic.ttf");
-        fontMap.put("Impact", "impact.ttf");
-        fontMap.put("Tahoma", "tahoma.ttf");
-
-        // Arial variants
-        fontMap.put("Arial Bold", "arialbd.ttf");
-        fontMap.put("Arial Italic", "ariali.ttf");
-        fontMap.put("Arial Bold Italic", "arialbi.ttf");
-        fontMap.put("Arial Black", "ariblk.ttf");
-
-        // Georgia variants
-        fontMap.put("Georgia Bold", "georgiab.ttf");
-        fontMap.put("Georgia Italic", "georgiai.ttf");
-        fontMap.put("Georgia Bold Italic", "georgiaz.ttf");
-
-        // Times New Roman variants
-        fontMap.put("Times New Roman Bold", "timesbd.ttf");
-        fontMap.put("Times New Roman Italic", "timesi.ttf");
-        fontMap.put("Times New Roman Bold Italic", "timesbi.ttf");
-
-        // Alumni Sans Pinstripe
-        fontMap.put("Alumni Sans Pinstripe", "AlumniSansPinstripe-Regular.ttf");
-
-        // Lexend Giga variants
-        fontMap.put("Lexend Giga", "LexendGiga-Regular.ttf");
-        fontMap.put("Lexend Giga Black", "LexendGiga-Black.ttf");
-        fontMap.put("Lexend Giga Bold", "LexendGiga-Bold.ttf");
-
-
-        // Montserrat Alternates variants
-        fontMap.put("Montserrat Alternates", "MontserratAlternates-ExtraLight.ttf");
-        fontMap.put("Montserrat Alternates Black", "MontserratAlternates-Black.ttf");
-        fontMap.put("Montserrat Alternates Medium Italic", "MontserratAlternates-MediumItalic.ttf");
-
-        // Noto Sans Mono variants
-        fontMap.put("Noto Sans Mono", "NotoSansMono-Regular.ttf");
-        fontMap.put("Noto Sans Mono Bold", "NotoSansMono-Bold.ttf");
-
-
-        // Poiret One
-        fontMap.put("Poiret One", "PoiretOne-Regular.ttf");
-
-        // Arimo variants
-        fontMap.put("Arimo", "Arimo-Regular.ttf");
-        fontMap.put("Arimo Bold", "Arimo-Bold.ttf");
-        fontMap.put("Arimo Bold Italic", "Arimo-BoldItalic.ttf");
-        fontMap.put("Arimo Italic", "Arimo-Italic.ttf");
-
-
-        // Carlito variants
-        fontMap.put("Carlito", "Carlito-Regular.ttf");
-        fontMap.put("Carlito Bold", "Carlito-Bold.ttf");
-        fontMap.put("Carlito Bold Italic", "Carlito-BoldItalic.ttf");
-        fontMap.put("Carlito Italic", "Carlito-Italic.ttf");
-
-        // Comic Neue variants
-        fontMap.put("Comic Neue", "ComicNeue-Regular.ttf");
-        fontMap.put("Comic Neue Bold", "ComicNeue-Bold.ttf");
-        fontMap.put("Comic Neue Bold Italic", "ComicNeue-BoldItalic.ttf");
-        fontMap.put("Comic Neue Italic", "ComicNeue-Italic.ttf");
-
-
-        // Courier Prime variants
-        fontMap.put("Courier Prime", "CourierPrime-Regular.ttf");
-        fontMap.put("Courier Prime Bold", "CourierPrime-Bold.ttf");
-        fontMap.put("Courier Prime Bold Italic", "CourierPrime-BoldItalic.ttf");
-        fontMap.put("Courier Prime Italic", "CourierPrime-Italic.ttf");
-
-        // Gelasio variants
-        fontMap.put("Gelasio", "Gelasio-Regular.ttf");
-        fontMap.put("Gelasio Bold", "Gelasio-Bold.ttf");
-        fontMap.put("Gelasio Bold Italic", "Gelasio-BoldItalic.ttf");
-        fontMap.put("Gelasio Italic", "Gelasio-Italic.ttf");
-
-
-        // Tinos variants
-        fontMap.put("Tinos", "Tinos-Regular.ttf");
-        fontMap.put("Tinos Bold", "Tinos-Bold.ttf");
-        fontMap.put("Tinos Bold Italic", "Tinos-BoldItalic.ttf");
-        fontMap.put("Tinos Italic", "Tinos-Italic.ttf");
-
-        // Amatic SC variants
-        fontMap.put("Amatic SC", "AmaticSC-Regular.ttf");
-        fontMap.put("Amatic SC Bold", "AmaticSC-Bold.ttf");
-
-// Barriecito
-        fontMap.put("Barriecito", "Barriecito-Regular.ttf");
-
-// Barrio
-        fontMap.put("Barrio", "Barrio-Regular.ttf");
-
-// Birthstone
-        fontMap.put("Birthstone", "Birthstone-Regular.ttf");
-
-// Bungee Hairline
-        fontMap.put("Bungee Hairline", "BungeeHairline-Regular.ttf");
-
-// Butcherman
-        fontMap.put("Butcherman", "Butcherman-Regular.ttf");
-
-// Doto variants
-        fontMap.put("Doto Black", "Doto-Black.ttf");
-        fontMap.put("Doto ExtraBold", "Doto-ExtraBold.ttf");
-        fontMap.put("Doto Rounded Bold", "Doto_Rounded-Bold.ttf");
-
-// Fascinate Inline
-        fontMap.put("Fascinate Inline", "FascinateInline-Regular.ttf");
-
-// Freckle Face
-        fontMap.put("Freckle Face", "FreckleFace-Regular.ttf");
-
-// Fredericka the Great
-        fontMap.put("Fredericka the Great", "FrederickatheGreat-Regular.ttf");
-
-// Imperial Script
-        fontMap.put("Imperial Script", "ImperialScript-Regular.ttf");
-
-// Kings
-        fontMap.put("Kings", "Kings-Regular.ttf");
-
-// Kirang Haerang
-        fontMap.put("Kirang Haerang", "KirangHaerang-Regular.ttf");
-
-// Lavishly Yours
-        fontMap.put("Lavishly Yours", "LavishlyYours-Regular.ttf");
-
-// Mountains of Christmas variants
-        fontMap.put("Mountains of Christmas", "MountainsofChristmas-Regular.ttf");
-        fontMap.put("Mountains of Christmas Bold", "MountainsofChristmas-Bold.ttf");
-
-// Rampart One
-        fontMap.put("Rampart One", "RampartOne-Regular.ttf");
-
-// Rubik Wet Paint
-        fontMap.put("Rubik Wet Paint", "RubikWetPaint-Regular.ttf");
-
-// Tangerine variants
-        fontMap.put("Tangerine", "Tangerine-Regular.ttf");
-        fontMap.put("Tangerine Bold", "Tangerine-Bold.ttf");
-
-// Yesteryear
-        fontMap.put("Yesteryear", "Yesteryear-Regular.ttf");
-
-        String processedFontFamily = fontFamily.trim();
-        if (fontMap.containsKey(processedFontFamily)) {
-            String fontFileName = fontMap.get(processedFontFamily);
-            String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-            logger.debug("Found font match for: {} -> {}", processedFontFamily, fontPath);
-            return fontPath;
-        }
-
-        for (Map.Entry<String, String> entry : fontMap.entrySet()) {
-            if (entry.getKey().equalsIgnoreCase(processedFontFamily)) {
-                String fontFileName = entry.getValue();
-                String fontPath = getFontFilePath(fontFileName, FONTS_RESOURCE_PATH, TEMP_FONT_DIR);
-                logger.debug("Found case-insensitive font match for: {} -> {}", processedFontFamily, fontPath);
-                return fontPath;
-            }
-        }
-
-        logger.warn("Font family '{}' not found. Using default: arial.ttf", fontFamily);
-        return defaultFontPath;
-    }
-
-    private String getFontFilePath(String fontFileName, String fontsResourcePath, String tempFontDir) {
-        try {
-            File tempFontFile = new File(tempFontDir + fontFileName);
-            if (tempFontFile.exists()) {
-                return tempFontFile.getAbsolutePath();
-            }
-
-            String resourcePath = fontsResourcePath + fontFileName;
-            InputStream fontStream = getClass().getResourceAsStream(resourcePath);
-            if (fontStream == null) {
-                logger.error("Font file not found in resources: {}", resourcePath);
-                return "C:/Windows/Fonts/Arial.ttf";
-            }
-
-            Path tempPath = tempFontFile.toPath();
-            Files.copy(fontStream, tempPath, StandardCopyOption.REPLACE_EXISTING);
-            fontStream.close();
-
-            logger.debug("Extracted font to: {}", tempFontFile.getAbsolutePath());
-            return tempFontFile.getAbsolutePath();
-        } catch (IOException e) {
-            logger.error("Error accessing font file: {}. Error: {}", fontFileName, e.getMessage());
-            return "C:/Windows/Fonts/Arial.ttf";
-        }
-    }
-
     /**
      * Export final image in specified format
      */
@@ -1640,7 +1428,7 @@ public class ImageRenderService {
         ProcessBuilder processBuilder = new ProcessBuilder(finalCommand);
         processBuilder.redirectErrorStream(true);
 
-        Process process = processBuilder.start();
+        Process process = processScheduler.start(processBuilder, ProcessScheduler.ProcessClass.IMAGE, null);
         StringBuilder output = new StringBuilder();
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
@@ -0,0 +1,72 @@
+package com.example.videoeditor.config;
+
+import com.example.videoeditor.service.ProcessMetrics;
+import com.example.videoeditor.service.ProcessScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProcessAdmissionConfigTest {
+
+    /** Exposes the interceptors the config registers. */
+    private static class Registry extends InterceptorRegistry {
+        HandlerInterceptor single() {
+            List<Object> interceptors = getInterceptors();
+            assertEquals(1, interceptors.size());
+            return (HandlerInterceptor) interceptors.get(0);
+        }
+    }
+
+    private static HandlerInterceptor interceptor(int maxQueueDepth) {
+        ProcessScheduler scheduler = new ProcessScheduler(new ProcessMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(scheduler, "configuredUnits", 4);
+        ReflectionTestUtils.setField(scheduler, "encodeThreads", 2);
+        ReflectionTestUtils.setField(scheduler, "maxQueueDepth", maxQueueDepth);
+        scheduler.init();
+
+        ProcessAdmissionConfig config = new ProcessAdmissionConfig(scheduler);
+        ReflectionTestUtils.setField(config, "admissionPaths", List.of("/projects/*/export"));
+        Registry registry = new Registry();
+        config.addInterceptors(registry);
+        return registry.single();
+    }
+
+    @Test
+    void admitsWhileTheQueueHasRoom() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor(32).preHandle(new MockHttpServletRequest("POST", "/projects/1/export"), response, new Object()));
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Retry-After"));
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenOverloaded() throws Exception {
+        // A depth of zero makes the empty queue already full
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor(0).preHandle(new MockHttpServletRequest("POST", "/projects/1/export"), response, new Object()));
+        assertEquals(429, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("retry in 1 seconds"), response.getContentAsString());
+    }
+
+    @Test
+    void otherMethodsAreNeverTurnedAway() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor(0).preHandle(new MockHttpServletRequest("DELETE", "/projects/1/export"), response, new Object()));
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.videoeditor.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaUrlSignerTest {
+
+    private static final String PATH = "/projects/7/videos/clip.mp4";
+    private static final long TTL = 3600;
+
+    private static MediaUrlSigner signer(String secret, String jwtSecret) {
+        MediaUrlSigner signer = new MediaUrlSigner();
+        ReflectionTestUtils.setField(signer, "secret", secret);
+        ReflectionTestUtils.setField(signer, "jwtSecret", jwtSecret);
+        ReflectionTestUtils.setField(signer, "ttlSeconds", TTL);
+        signer.init();
+        return signer;
+    }
+
+    private static long expiresOf(String url) {
+        return Long.parseLong(url.replaceAll(".*[?&]exp=([0-9]+).*", "$1"));
+    }
+
+    private static String signatureOf(String url) {
+        return url.replaceAll(".*[?&]sig=([^&]+).*", "$1");
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    @Test
+    void signedUrlVerifies() {
+        MediaUrlSigner signer = signer("media-secret", "jwt-secret");
+
+        String url = signer.sign(PATH);
+
+        assertTrue(url.startsWith(PATH + "?exp="), url);
+        assertTrue(signer.verify(PATH, expiresOf(url), signatureOf(url)));
+        // The leading slash is not part of what is signed
+        assertTrue(signer.verify(PATH.substring(1), expiresOf(url), signatureOf(url)));
+    }
+
+    @Test
+    void expiryIsRoundedUpToAWholeWindow() {
+        MediaUrlSigner signer = signer("media-secret", "jwt-secret");
+
+        String url = signer.sign(PATH);
+        long expires = expiresOf(url);
+
+        assertEquals(0, expires % TTL);
+        assertTrue(expires > now() + TTL && expires <= now() + 2 * TTL, String.valueOf(expires));
+        assertEquals(url, signer.sign(PATH));
+        long secondsLeft = signer.secondsLeft(expires);
+        assertTrue(secondsLeft > TTL && secondsLeft <= 2 * TTL, String.valueOf(secondsLeft));
+    }
+
+    @Test
+    void tamperedUrlsAreRejected() {
+        MediaUrlSigner signer = signer("media-secret", "jwt-secret");
+        String url = signer.sign(PATH);
+        long expires = expiresOf(url);
+        String signature = signatureOf(url);
+
+        assertFalse(signer.verify("/projects/8/videos/clip.mp4", expires, signature));
+        assertFalse(signer.verify(PATH, expires + TTL, signature));
+        assertFalse(signer.verify(PATH, expires, signature.substring(1) + "A"));
+        assertFalse(signer.verify(PATH, expires, null));
+        assertFalse(signer.verify(PATH, null, signature));
+    }
+
+    @Test
+    void expiredSignaturesAreRejected() {
+        MediaUrlSigner signer = signer("media-secret", "jwt-secret");
+        long expired = now() - 1;
+        String signature = ReflectionTestUtils.invokeMethod(signer, "signature", "projects/7/videos/clip.mp4", expired);
+
+        assertFalse(signer.verify(PATH, expired, signature));
+        assertEquals(0, signer.secondsLeft(expired));
+        assertEquals(0, signer.secondsLeft(null));
+    }
+
+    @Test
+    void signaturesDependOnTheSecret() {
+        String url = signer("media-secret", "jwt-secret").sign(PATH);
+
+        assertFalse(signer("other-secret", "jwt-secret").verify(PATH, expiresOf(url), signatureOf(url)));
+    }
+
+    @Test
+    void fallsBackToAKeyDerivedFromTheJwtSecret() throws Exception {
+        MediaUrlSigner fallback = signer("", "shared-secret");
+        String url = fallback.sign(PATH);
+
+        assertTrue(signer("shared-secret", "unused").verify(PATH, expiresOf(url), signatureOf(url)));
+
+        // Not a plain HMAC under the JWT secret, so it cannot double as a JWT signature
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("shared-secret".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String raw = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                mac.doFinal(("projects/7/videos/clip.mp4\n" + expiresOf(url)).getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(raw, signatureOf(url));
+    }
+
+    @Test
+    void refusesToStartWithoutASecret() {
+        assertThrows(IllegalStateException.class, () -> signer(" ", ""));
+    }
+}
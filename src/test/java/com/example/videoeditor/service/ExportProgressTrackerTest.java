@@ -0,0 +1,78 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportProgressTrackerTest {
+
+    private final List<Double> reported = new ArrayList<>();
+
+    @Test
+    void weightsBatchesByDuration() {
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{30, 10}, 1, reported::add);
+
+        tracker.complete(1);
+        assertEquals(25.0, tracker.getProgress(), 1e-9);
+
+        tracker.update(0, 0.5);
+        assertEquals(62.5, tracker.getProgress(), 1e-9);
+    }
+
+    @Test
+    void notifiesOnlyAfterAFullStep() {
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{100}, 5, reported::add);
+
+        tracker.update(0, 0.05);
+        tracker.update(0, 0.07);
+        tracker.update(0, 0.09);
+        tracker.update(0, 0.10);
+
+        assertEquals(List.of(5.0, 10.0), reported);
+    }
+
+    @Test
+    void ignoresProgressGoingBackwards() {
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{10, 10}, 1, reported::add);
+
+        tracker.update(0, 0.8);
+        tracker.update(0, 0.2);
+
+        assertEquals(40.0, tracker.getProgress(), 1e-9);
+        assertEquals(List.of(40.0), reported);
+    }
+
+    @Test
+    void clampsFractionsAndIgnoresUnknownBatches() {
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{10, 10}, 1, reported::add);
+
+        tracker.update(-1, 1.0);
+        tracker.update(2, 1.0);
+        assertEquals(0.0, tracker.getProgress(), 1e-9);
+        assertTrue(reported.isEmpty());
+
+        tracker.update(0, 3.0);
+        tracker.update(1, -3.0);
+        assertEquals(50.0, tracker.getProgress(), 1e-9);
+    }
+
+    @Test
+    void reportsCompletionExactlyOnce() {
+        // A step that never divides evenly still has to end on 100
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{1, 1, 1}, 40, reported::add);
+
+        tracker.complete(0);
+        tracker.complete(1);
+        tracker.complete(2);
+        tracker.complete(2);
+
+        assertEquals(100.0, tracker.getProgress(), 1e-9);
+        assertEquals(100.0, reported.get(reported.size() - 1), 1e-9);
+        assertEquals(1, reported.stream().filter(p -> p >= 100.0).count());
+        assertEquals(3, tracker.getBatchCount());
+    }
+}
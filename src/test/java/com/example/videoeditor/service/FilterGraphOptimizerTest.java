@@ -0,0 +1,110 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterGraphOptimizerTest {
+
+    private static String serialize(FilterChain chain) {
+        StringBuilder filterComplex = new StringBuilder();
+        FilterGraphOptimizer.optimize(chain).appendTo(filterComplex);
+        return filterComplex.toString();
+    }
+
+    @Test
+    void brightnessContrastSaturationLowerToOneEq() {
+        FilterChain chain = new FilterChain("0:v")
+                .add(FilterNode.brightness(1.2))
+                .add(FilterNode.contrast(0.9))
+                .add(FilterNode.saturation(1.5))
+                .output("v0");
+
+        // gain 1.08, offset 12.8 -> eq brightness (12.8 + 127.5 * 0.08) / 255
+        assertEquals("[0:v]eq=contrast=1.080000:brightness=0.090196:saturation=1.620000[v0];", serialize(chain));
+    }
+
+    @Test
+    void chromaOnlyAdjustmentsLowerToHue() {
+        assertEquals("[0:v]hue=s=0.5000;", serialize(new FilterChain("0:v").add(FilterNode.saturation(0.5))));
+        assertEquals("[0:v]hue=h=30.0:s=0.5000;",
+                serialize(new FilterChain("0:v").add(FilterNode.hueShift(30)).add(FilterNode.saturation(0.5))));
+    }
+
+    @Test
+    void hueIsAppliedAfterEq() {
+        FilterChain chain = new FilterChain("0:v").add(FilterNode.brightness(0.5)).add(FilterNode.hueShift(90));
+
+        assertEquals("[0:v]eq=contrast=0.500000:brightness=-0.250000:saturation=0.500000,hue=h=90.0;", serialize(chain));
+    }
+
+    @Test
+    void outOfRangeAdjustmentsFallBackToLutyuv() {
+        List<FilterNode> lowered = FilterNode.brightness(10).lower();
+
+        assertEquals(1, lowered.size());
+        assertEquals("lutyuv", lowered.get(0).getName());
+        assertTrue(lowered.get(0).getArgs().startsWith("y='clip(val*10.000000+0.000000,0,255)'"),
+                lowered.get(0).getArgs());
+    }
+
+    @Test
+    void cancellingAdjustmentsFoldThroughFlipsAndDisappear() {
+        FilterChain chain = new FilterChain("0:v")
+                .add(FilterNode.brightness(1.25))
+                .add("hflip")
+                .add(FilterNode.brightness(0.8))
+                .add(FilterNode.hueShift(360));
+
+        assertEquals("[0:v]hflip;", serialize(chain));
+    }
+
+    @Test
+    void adjustmentsDoNotFoldAcrossOtherFilters() {
+        FilterChain chain = new FilterChain("0:v")
+                .add(FilterNode.saturation(2))
+                .add("boxblur", "5")
+                .add(FilterNode.saturation(0.5));
+
+        assertEquals("[0:v]hue=s=2.0000,boxblur=5,hue=s=0.5000;", serialize(chain));
+    }
+
+    @Test
+    void identityChainSerializesAsNull() {
+        FilterChain chain = new FilterChain("0:v").add(FilterNode.brightness(1)).add(FilterNode.contrast(1)).output("v0");
+
+        assertEquals("[0:v]null[v0];", serialize(chain));
+    }
+
+    @Test
+    void rgbaConversionSinksPastYuvFilters() {
+        FilterChain chain = new FilterChain("0:v")
+                .add(FilterNode.format("rgba"))
+                .add("hflip")
+                .add("boxblur", "5")
+                .add("rotate", "0.5");
+
+        assertEquals("[0:v]hflip,boxblur=5,format=rgba,rotate=0.5;", serialize(chain));
+    }
+
+    @Test
+    void trailingRgbaConversionIsDropped() {
+        FilterChain chain = new FilterChain("0:v").add(FilterNode.format("rgba")).add("scale", "640:360");
+
+        assertEquals("[0:v]scale=640:360;", serialize(chain));
+    }
+
+    @Test
+    void repeatedFormatIsDroppedOnlyWhileTheFormatIsKept() {
+        List<FilterNode> kept = FilterGraphOptimizer.dropRedundantFormats(List.of(
+                FilterNode.format("rgba"), FilterNode.of("crop", "100:100"), FilterNode.format("rgba")));
+        assertEquals(2, kept.size());
+
+        List<FilterNode> reset = FilterGraphOptimizer.dropRedundantFormats(List.of(
+                FilterNode.format("rgba"), FilterNode.of("boxblur", "5"), FilterNode.format("rgba")));
+        assertEquals(3, reset.size());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InputSeekPlannerTest {
+
+    private static final double[] KEYFRAMES = {0.0, 2.0, 4.0, 6.0};
+
+    @Test
+    void seeksToPrecedingKeyframe() {
+        InputSeekPlanner.SeekPlan plan = InputSeekPlanner.plan(5.0, 7.5, KEYFRAMES);
+
+        assertEquals(4.0, plan.getSeekTime(), 1e-9);
+        assertEquals(1.0, plan.getTrimStart(), 1e-9);
+        assertEquals(3.5, plan.getTrimEnd(), 1e-9);
+        assertEquals(4.0, plan.getInputDuration(), 1e-9);
+    }
+
+    @Test
+    void seeksExactlyOntoAKeyframe() {
+        InputSeekPlanner.SeekPlan plan = InputSeekPlanner.plan(4.0, 5.0, KEYFRAMES);
+
+        assertEquals(4.0, plan.getSeekTime(), 1e-9);
+        assertEquals(0.0, plan.getTrimStart(), 1e-9);
+        assertEquals(1.0, plan.getTrimEnd(), 1e-9);
+    }
+
+    @Test
+    void startBeforeFirstKeyframeSeeksToZero() {
+        InputSeekPlanner.SeekPlan plan = InputSeekPlanner.plan(0.5, 1.5, new double[]{1.0, 3.0});
+
+        assertEquals(0.0, plan.getSeekTime(), 1e-9);
+        assertEquals(0.5, plan.getTrimStart(), 1e-9);
+        assertEquals(1.5, plan.getTrimEnd(), 1e-9);
+    }
+
+    @Test
+    void withoutKeyframesSeeksToTheStart() {
+        InputSeekPlanner.SeekPlan plan = InputSeekPlanner.plan(3.25, 5.0, null);
+
+        assertEquals(3.25, plan.getSeekTime(), 1e-9);
+        assertEquals(0.0, plan.getTrimStart(), 1e-9);
+        assertEquals(1.75, plan.getTrimEnd(), 1e-9);
+        assertEquals(2.25, plan.getInputDuration(), 1e-9);
+    }
+
+    @Test
+    void negativeStartAndInvertedRangeAreClamped() {
+        InputSeekPlanner.SeekPlan plan = InputSeekPlanner.plan(-1.0, 3.0, KEYFRAMES);
+        assertEquals(0.0, plan.getSeekTime(), 1e-9);
+        assertEquals(0.0, plan.getTrimStart(), 1e-9);
+        assertEquals(3.0, plan.getTrimEnd(), 1e-9);
+
+        InputSeekPlanner.SeekPlan empty = InputSeekPlanner.plan(5.0, 4.5, KEYFRAMES);
+        assertEquals(1.0, empty.getTrimStart(), 1e-9);
+        assertEquals(1.0, empty.getTrimEnd(), 1e-9);
+    }
+
+    @Test
+    void inputArgumentsOmitSeekAtZero() {
+        assertEquals(List.of("-t", "2.500000"), InputSeekPlanner.plan(0.0, 2.0, null).inputArguments());
+        assertEquals(List.of("-ss", "2.000000", "-t", "2.000000"),
+                InputSeekPlanner.plan(2.5, 3.5, KEYFRAMES).inputArguments());
+    }
+}
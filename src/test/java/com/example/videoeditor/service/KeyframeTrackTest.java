@@ -0,0 +1,107 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.dto.Keyframe;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyframeTrackTest {
+
+    private static Keyframe keyframe(double time, Object value, String easing) {
+        return new Keyframe(time, value, easing);
+    }
+
+    private static KeyframeTrack ramp(String easing) {
+        return KeyframeTrack.of(List.of(keyframe(0, 0, easing), keyframe(2, 10, "linear")), 1);
+    }
+
+    @Test
+    void valuesAreInterpolatedAndHeldOutsideTheKeyframes() {
+        KeyframeTrack track = ramp("linear");
+
+        assertEquals(0.0, track.valueAt(-1), 1e-9);
+        assertEquals(5.0, track.valueAt(1), 1e-9);
+        assertEquals(10.0, track.valueAt(3), 1e-9);
+        assertEquals(2.5, ramp("ease-in").valueAt(1), 1e-9);
+        assertEquals(0.0, ramp("hold").valueAt(1.99), 1e-9);
+    }
+
+    @Test
+    void keyframesAreSortedWithoutTouchingTheInput() {
+        List<Keyframe> keyframes = new ArrayList<>(List.of(
+                keyframe(2, 10, "linear"), keyframe(0, 0, "linear"), keyframe(1, "auto", "linear")));
+
+        KeyframeTrack track = KeyframeTrack.of(keyframes, 0);
+
+        assertEquals(2.0, keyframes.get(0).getTime(), 1e-9);
+        assertEquals(5.0, track.valueAt(1), 1e-9);
+    }
+
+    @Test
+    void laterKeyframeWinsOnTheSameTime() {
+        KeyframeTrack track = KeyframeTrack.of(List.of(keyframe(1, 3, "linear"), keyframe(1, 7, "linear")), 0);
+
+        assertEquals(7.0, track.valueAt(1), 1e-9);
+        assertEquals("7.000000", track.toExpression(0, 5));
+    }
+
+    @Test
+    void unanimatedTrackUsesTheFallback() {
+        KeyframeTrack track = KeyframeTrack.of(null, 3);
+
+        assertFalse(track.isAnimated());
+        assertEquals(3.0, track.maxValue(), 1e-9);
+        assertEquals("3.000000", track.toExpression(0, 5));
+    }
+
+    @Test
+    void scaledMultipliesValuesAndFallback() {
+        KeyframeTrack track = KeyframeTrack.of(List.of(keyframe(0, 4, "linear"), keyframe(1, -2, "linear")), 1);
+        KeyframeTrack scaled = track.scaled(1.5);
+
+        assertTrue(scaled.isAnimated());
+        assertEquals(4.0, track.maxValue(), 1e-9);
+        assertEquals(6.0, scaled.maxValue(), 1e-9);
+        assertEquals(-3.0, scaled.valueAt(1), 1e-9);
+        assertEquals(4.5, KeyframeTrack.of(List.of(), 3).scaled(1.5).maxValue(), 1e-9);
+    }
+
+    @Test
+    void rampStartingWithTheWindowIsASingleLerp() {
+        assertEquals("lerp(0.000000,10.000000,clip((t+0.000000)/2.000000,0,1))", ramp("linear").toExpression(0, 10));
+    }
+
+    @Test
+    void rampStartingInsideTheWindowWaitsForItsStart() {
+        assertEquals("if(lt(t,1.000000),0.000000,lerp(0.000000,10.000000,clip((t-1.000000)/2.000000,0,1)))",
+                ramp("linear").toExpression(1, 10));
+        assertEquals("if(lt(t,1.000000),0.000000,lerp(0.000000,10.000000,"
+                        + "clip((t-1.000000)/2.000000,0,1)*clip((t-1.000000)/2.000000,0,1)))",
+                ramp("ease-in").toExpression(1, 10));
+    }
+
+    @Test
+    void holdSwitchesValueAtTheNextKeyframe() {
+        assertEquals("if(lt(t,2.000000),0.000000,10.000000)", ramp("hold").toExpression(0, 10));
+    }
+
+    @Test
+    void intervalsOutsideTheWindowAreLeftOut() {
+        KeyframeTrack track = KeyframeTrack.of(List.of(
+                keyframe(0, 0, "linear"), keyframe(2, 10, "linear"),
+                keyframe(10, 10, "linear"), keyframe(12, 0, "linear")), 0);
+
+        // Window [0, 5): only the first ramp matters
+        assertEquals("lerp(0.000000,10.000000,clip((t+0.000000)/2.000000,0,1))", track.toExpression(0, 5));
+        // Window starting 4s into the segment: the property holds 10 until the last ramp
+        assertEquals("if(lt(t,6.000000),10.000000,lerp(10.000000,0.000000,clip((t-6.000000)/2.000000,0,1)))",
+                track.toExpression(-4, 10));
+        // Window after the last keyframe
+        assertEquals("0.000000", track.toExpression(-20, 5));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.videoeditor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs real {@code sleep} processes under a scheduler with four CPU units, so every
+ * ENCODE process (two threads) holds half of the machine.
+ */
+class ProcessSchedulerTest {
+
+    private ProcessScheduler scheduler;
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+    private final List<Process> processes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ProcessScheduler(new ProcessMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(scheduler, "configuredUnits", 4);
+        ReflectionTestUtils.setField(scheduler, "encodeThreads", 2);
+        ReflectionTestUtils.setField(scheduler, "imageThreads", 2);
+        ReflectionTestUtils.setField(scheduler, "pythonThreads", 4);
+        ReflectionTestUtils.setField(scheduler, "maxProbes", 2);
+        ReflectionTestUtils.setField(scheduler, "maxQueueDepth", 2);
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        waiters.shutdownNow();
+        waiters.awaitTermination(5, TimeUnit.SECONDS);
+        processes.forEach(Process::destroyForcibly);
+    }
+
+    private Process startSleep(Long userId) throws IOException {
+        Process process = scheduler.start(new ProcessBuilder("sleep", "30"), ProcessScheduler.ProcessClass.ENCODE, userId);
+        synchronized (processes) {
+            processes.add(process);
+        }
+        return process;
+    }
+
+    private Future<Process> startSleepInBackground(Long userId) {
+        return waiters.submit(() -> startSleep(userId));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void encodeProcessesHoldTheirThreadAllotment() throws Exception {
+        Process process = startSleep(1L);
+        assertEquals(2, scheduler.getUnitsInUse());
+
+        process.destroy();
+        await(() -> scheduler.getUnitsInUse() == 0);
+    }
+
+    @Test
+    void waitsForFreeUnitsAndStartsWhenAProcessExits() throws Exception {
+        Process first = startSleep(1L);
+        startSleep(1L);
+
+        Future<Process> queued = startSleepInBackground(1L);
+        await(() -> scheduler.getQueueDepth() == 1);
+        assertFalse(queued.isDone());
+
+        first.destroy();
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(4, scheduler.getUnitsInUse());
+    }
+
+    @Test
+    void userWithFewestRunningUnitsGoesFirst() throws Exception {
+        Process first = startSleep(1L);
+        startSleep(1L);
+
+        Future<Process> sameUser = startSleepInBackground(1L);
+        await(() -> scheduler.getQueueDepth() == 1);
+        Future<Process> otherUser = startSleepInBackground(2L);
+        await(() -> scheduler.getQueueDepth() == 2);
+
+        first.destroy();
+        otherUser.get(5, TimeUnit.SECONDS);
+        assertFalse(sameUser.isDone());
+        assertEquals(1, scheduler.getQueueDepth());
+    }
+
+    @Test
+    void fullQueueIsReportedAsOverloaded() throws Exception {
+        startSleep(1L);
+        startSleep(1L);
+        assertFalse(scheduler.isOverloaded());
+
+        startSleepInBackground(1L);
+        startSleepInBackground(2L);
+        await(() -> scheduler.getQueueDepth() == 2);
+
+        assertTrue(scheduler.isOverloaded());
+        // Two queued jobs at the 5s floor, two encodes in parallel
+        assertEquals(5, scheduler.estimateRetryAfterSeconds());
+    }
+
+    @Test
+    void failedLaunchReleasesItsUnits() {
+        ProcessBuilder builder = new ProcessBuilder("/nonexistent/ffmpeg", "-i", "in.mp4", "out.mp4");
+
+        assertThrows(IOException.class, () -> scheduler.start(builder, ProcessScheduler.ProcessClass.ENCODE, 1L));
+
+        assertEquals(0, scheduler.getUnitsInUse());
+        assertEquals(List.of("/nonexistent/ffmpeg", "-benchmark", "-i", "in.mp4", "-threads", "2", "out.mp4"),
+                builder.command());
+    }
+}
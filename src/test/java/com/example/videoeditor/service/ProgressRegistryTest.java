@@ -0,0 +1,42 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgressRegistryTest {
+
+    private final ProgressRegistry progressRegistry = new ProgressRegistry();
+
+    private double progress(String key) {
+        return progressRegistry.get(key).orElseThrow().getProgress();
+    }
+
+    @Test
+    void concurrentExportsOfOneProjectKeepTheirOwnProgress() {
+        String projectKey = ProgressRegistry.key("export", 7);
+        progressRegistry.start("export-job:1", 3L);
+        progressRegistry.alias(projectKey, "export-job:1");
+        progressRegistry.start("export-job:2", 3L);
+        progressRegistry.alias(projectKey, "export-job:2");
+
+        progressRegistry.update("export-job:1", 40);
+        progressRegistry.update("export-job:2", 10);
+        progressRegistry.complete("export-job:1");
+
+        assertEquals(100.0, progress("export-job:1"), 1e-9);
+        assertEquals(10.0, progress("export-job:2"), 1e-9);
+        // The project key follows the export started last
+        assertEquals(10.0, progress(projectKey), 1e-9);
+        assertFalse(progressRegistry.get(projectKey).orElseThrow().isTerminal());
+    }
+
+    @Test
+    void aliasOfAnUnknownJobIsIgnored() {
+        progressRegistry.alias("export:7", "export-job:9");
+
+        assertTrue(progressRegistry.get("export:7").isEmpty());
+    }
+}
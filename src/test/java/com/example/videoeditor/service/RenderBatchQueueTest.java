@@ -0,0 +1,172 @@
+package com.example.videoeditor.service;
+
+import com.example.videoeditor.entity.RenderBatchTask;
+import com.example.videoeditor.repository.RenderBatchTaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the queue against the real repository queries on the embedded database. Every call
+ * commits on its own, as on the API node and the workers, so the conditional updates are
+ * not hidden behind a shared persistence context.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RenderBatchQueueTest {
+
+    private static final String JOB = "export-job:1";
+    private static final String OTHER_JOB = "export-job:2";
+
+    @Autowired
+    private RenderBatchTaskRepository renderBatchTaskRepository;
+
+    private RenderBatchQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new RenderBatchQueue(renderBatchTaskRepository);
+        ReflectionTestUtils.setField(queue, "leaseSeconds", 60L);
+        ReflectionTestUtils.setField(queue, "maxAttempts", 3);
+        ReflectionTestUtils.setField(queue, "retryBackoffMillis", 2000L);
+        ReflectionTestUtils.setField(queue, "pollMillis", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        renderBatchTaskRepository.deleteAll();
+    }
+
+    private static RenderBatchTask task(String jobKey, int batchIndex) {
+        return RenderBatchTask.builder()
+                .jobKey(jobKey)
+                .batchIndex(batchIndex)
+                .batchStart(batchIndex * 10.0)
+                .batchEnd(batchIndex * 10.0 + 10.0)
+                .projectId(7L)
+                .canvasWidth(1920)
+                .canvasHeight(1080)
+                .outputPath("/scratch/" + jobKey + "/batch_" + batchIndex + ".mp4")
+                .build();
+    }
+
+    private void expireLease(Long taskId) {
+        RenderBatchTask task = renderBatchTaskRepository.findById(taskId).orElseThrow();
+        task.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        renderBatchTaskRepository.save(task);
+    }
+
+    @Test
+    void onlyOneWorkerWinsTheClaim() {
+        queue.enqueue(List.of(task(JOB, 0)));
+        Long id = renderBatchTaskRepository.findByJobKeyOrderByBatchIndex(JOB).get(0).getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        assertEquals(1, renderBatchTaskRepository.claim(id, "worker-a", now.plusSeconds(60), now,
+                RenderBatchTask.TaskStatus.PENDING, RenderBatchTask.TaskStatus.CLAIMED));
+        assertEquals(0, renderBatchTaskRepository.claim(id, "worker-b", now.plusSeconds(60), now,
+                RenderBatchTask.TaskStatus.PENDING, RenderBatchTask.TaskStatus.CLAIMED));
+
+        RenderBatchTask claimed = renderBatchTaskRepository.findById(id).orElseThrow();
+        assertEquals(RenderBatchTask.TaskStatus.CLAIMED, claimed.getStatus());
+        assertEquals("worker-a", claimed.getWorkerId());
+        assertEquals(1, claimed.getAttempts());
+        assertTrue(queue.claim("worker-b").isEmpty());
+    }
+
+    @Test
+    void claimTakesEachPendingTaskOnce() {
+        queue.enqueue(List.of(task(JOB, 0), task(JOB, 1)));
+
+        RenderBatchTask first = queue.claim("worker-a").orElseThrow();
+        RenderBatchTask second = queue.claim("worker-b").orElseThrow();
+
+        assertEquals(0, first.getBatchIndex());
+        assertEquals(1, second.getBatchIndex());
+        assertTrue(queue.claim("worker-c").isEmpty());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverAndTheOldHolderLosesIt() {
+        queue.enqueue(List.of(task(JOB, 0)));
+        RenderBatchTask lost = queue.claim("worker-a").orElseThrow();
+        assertTrue(queue.heartbeat(lost, "worker-a", 0.5));
+        assertTrue(queue.claim("worker-b").isEmpty());
+
+        expireLease(lost.getId());
+        RenderBatchTask taken = queue.claim("worker-b").orElseThrow();
+
+        assertEquals("worker-b", taken.getWorkerId());
+        assertEquals(2, taken.getAttempts());
+        assertFalse(queue.heartbeat(lost, "worker-a", 0.9));
+        assertFalse(queue.complete(lost, "worker-a"));
+        assertTrue(queue.complete(taken, "worker-b"));
+    }
+
+    @Test
+    void failedTaskWaitsForItsBackoffAndFailsForGoodAfterTheLastAttempt() {
+        ReflectionTestUtils.setField(queue, "maxAttempts", 2);
+        queue.enqueue(List.of(task(JOB, 0)));
+
+        queue.fail(queue.claim("worker-a").orElseThrow(), "worker-a", "ffmpeg exited with 1");
+        assertTrue(queue.claim("worker-a").isEmpty());
+
+        expireLease(renderBatchTaskRepository.findByJobKeyOrderByBatchIndex(JOB).get(0).getId());
+        RenderBatchTask retry = queue.claim("worker-b").orElseThrow();
+        queue.fail(retry, "worker-b", "ffmpeg exited with 1");
+
+        RenderBatchTask failed = renderBatchTaskRepository.findById(retry.getId()).orElseThrow();
+        assertEquals(RenderBatchTask.TaskStatus.FAILED, failed.getStatus());
+        assertEquals("ffmpeg exited with 1", failed.getErrorMessage());
+    }
+
+    @Test
+    void deleteJobLeavesOtherExportsOfTheProjectAlone() throws InterruptedException {
+        // Claims go in id order, so each worker gets the batch queued just before
+        queue.enqueue(List.of(task(OTHER_JOB, 0)));
+        RenderBatchTask otherTask = queue.claim("worker-b").orElseThrow();
+        queue.enqueue(List.of(task(JOB, 0), task(JOB, 1)));
+        RenderBatchTask deletedTask = queue.claim("worker-a").orElseThrow();
+        assertEquals(JOB, deletedTask.getJobKey());
+
+        queue.deleteJob(JOB);
+
+        assertTrue(renderBatchTaskRepository.findByJobKeyOrderByBatchIndex(JOB).isEmpty());
+        assertFalse(queue.heartbeat(deletedTask, "worker-a", 0.5));
+        assertTrue(queue.heartbeat(otherTask, "worker-b", 0.5));
+        assertTrue(queue.complete(otherTask, "worker-b"));
+
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{10}, 1, p -> { });
+        queue.await(OTHER_JOB, tracker, new RenderCancellation());
+        assertEquals(100.0, tracker.getProgress(), 1e-9);
+        assertThrows(IllegalStateException.class,
+                () -> queue.await(JOB, new ExportProgressTracker(new double[]{10, 10}, 1, p -> { }), new RenderCancellation()));
+    }
+
+    @Test
+    void awaitOnlyCountsTheBatchesOfItsOwnJob() throws InterruptedException {
+        queue.enqueue(List.of(task(JOB, 0)));
+        RenderBatchTask own = queue.claim("worker-a").orElseThrow();
+        assertTrue(queue.complete(own, "worker-a"));
+        queue.enqueue(List.of(task(OTHER_JOB, 0), task(OTHER_JOB, 1)));
+
+        // The other export's batches are still pending, which must not hold this one up
+        ExportProgressTracker tracker = new ExportProgressTracker(new double[]{10}, 1, p -> { });
+        queue.await(JOB, tracker, new RenderCancellation());
+
+        assertEquals(100.0, tracker.getProgress(), 1e-9);
+    }
+}
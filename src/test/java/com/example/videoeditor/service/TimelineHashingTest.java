@@ -0,0 +1,58 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimelineHashingTest {
+
+    @Test
+    void hashIsIndependentOfMapInsertionOrder() throws Exception {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("opacity", 0.5);
+        first.put("filters", Map.of("brightness", 1.2, "contrast", 0.9));
+        first.put("layer", 2);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("layer", 2);
+        second.put("filters", new HashMap<>(Map.of("contrast", 0.9, "brightness", 1.2)));
+        second.put("opacity", 0.5);
+
+        assertEquals(TimelineHashing.canonicalJson(first), TimelineHashing.canonicalJson(second));
+        assertEquals(TimelineHashing.hash("batch", first), TimelineHashing.hash("batch", second));
+    }
+
+    @Test
+    void hashIsStableAcrossCalls() throws Exception {
+        List<Object> parts = List.of(Map.of("start", 0.0, "end", 8.0), 1920, 1080);
+
+        String hash = TimelineHashing.hash("v1", parts);
+
+        assertEquals(hash, TimelineHashing.hash("v1", List.copyOf(parts)));
+        assertTrue(hash.matches("[0-9a-f]{64}"), hash);
+    }
+
+    @Test
+    void partsAreSeparated() throws Exception {
+        assertNotEquals(TimelineHashing.hash("ab", "c"), TimelineHashing.hash("a", "bc"));
+        assertNotEquals(TimelineHashing.hash("abc"), TimelineHashing.hash("abc", ""));
+    }
+
+    @Test
+    void changedValuesChangeTheHash() throws Exception {
+        assertNotEquals(TimelineHashing.hash(Map.of("opacity", 0.5)), TimelineHashing.hash(Map.of("opacity", 0.6)));
+        assertNotEquals(TimelineHashing.hash("batch", 1920, 1080), TimelineHashing.hash("batch", 1080, 1920));
+    }
+
+    @Test
+    void stringsAreHashedRawAndOtherPartsAsJson() throws Exception {
+        assertEquals(TimelineHashing.hash("[1,2]"), TimelineHashing.hash(List.of(1, 2)));
+        assertNotEquals(TimelineHashing.hash("x"), TimelineHashing.hash(TimelineHashing.canonicalJson("x")));
+    }
+}
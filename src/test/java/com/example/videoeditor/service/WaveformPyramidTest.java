@@ -0,0 +1,133 @@
+package com.example.videoeditor.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WaveformPyramidTest {
+
+    // Power-of-two sizes keep bucket boundaries exact in seconds: 16 / 1024 = 1/64 s
+    private static final int SAMPLE_RATE = 1024;
+    private static final int SAMPLES_PER_BUCKET = 16;
+    private static final int BUCKETS = 2000;
+
+    @TempDir
+    Path tempDir;
+
+    private File peaksFile;
+
+    /**
+     * 16-bit little-endian PCM where level-0 bucket b swings between -a and +a, with
+     * a = (b % 100) * 256, so its peaks are exactly -(b % 100) and b % 100.
+     */
+    private static byte[] pcm(int buckets, int samplesPerBucket) {
+        byte[] pcm = new byte[buckets * samplesPerBucket * 2];
+        for (int i = 0; i < buckets * samplesPerBucket; i++) {
+            int amplitude = (i / samplesPerBucket % 100) * 256;
+            int sample = i % 2 == 0 ? -amplitude : amplitude;
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        peaksFile = tempDir.resolve("peaks.bin").toFile();
+        WaveformPyramid.fromPcm(new ByteArrayInputStream(pcm(BUCKETS, SAMPLES_PER_BUCKET)), SAMPLE_RATE, SAMPLES_PER_BUCKET)
+                .write(peaksFile);
+    }
+
+    @Test
+    void headerDescribesEveryLevel() throws IOException {
+        WaveformPyramid.Header header = WaveformPyramid.readHeader(peaksFile);
+
+        // Halved until at most 512 buckets remain: 2000, 1000, 500
+        assertEquals(3, header.getLevelCount());
+        assertEquals(2000, header.getBucketCount(0));
+        assertEquals(1000, header.getBucketCount(1));
+        assertEquals(500, header.getBucketCount(2));
+        assertEquals(31.25, header.getDuration(), 1e-9);
+        assertEquals(1.0 / 64, header.getBucketSeconds(0), 1e-12);
+        assertEquals(4.0 / 64, header.getBucketSeconds(2), 1e-12);
+    }
+
+    @Test
+    void sliceReadsOnlyTheRequestedBuckets() throws IOException {
+        WaveformPyramid.Slice slice = WaveformPyramid.readSlice(peaksFile, 0, 1.0, 1.0 + 3.0 / 64);
+
+        assertEquals(1.0, slice.getStartTime(), 1e-12);
+        assertArrayEquals(new byte[]{-64, 64, -65, 65, -66, 66}, slice.getPeaks());
+    }
+
+    @Test
+    void partialBucketsAtTheEdgesAreIncluded() throws IOException {
+        WaveformPyramid.Slice slice = WaveformPyramid.readSlice(peaksFile, 0, 1.5 / 64, 3.5 / 64);
+
+        assertEquals(1.0 / 64, slice.getStartTime(), 1e-12);
+        assertArrayEquals(new byte[]{-1, 1, -2, 2, -3, 3}, slice.getPeaks());
+    }
+
+    @Test
+    void coarserLevelsKeepTheExtremesOfMergedBuckets() throws IOException {
+        WaveformPyramid.Slice level1 = WaveformPyramid.readSlice(peaksFile, 1, 0, 4.0 / 64);
+        assertEquals(2.0 / 64, level1.getBucketSeconds(), 1e-12);
+        assertArrayEquals(new byte[]{-1, 1, -3, 3}, level1.getPeaks());
+
+        WaveformPyramid.Slice level2 = WaveformPyramid.readSlice(peaksFile, 2, 0, 8.0 / 64);
+        assertArrayEquals(new byte[]{-3, 3, -7, 7}, level2.getPeaks());
+    }
+
+    @Test
+    void rangeIsClampedToTheTrack() throws IOException {
+        WaveformPyramid.Slice tail = WaveformPyramid.readSlice(peaksFile, 2, 30, 100);
+        assertEquals(30.0, tail.getStartTime(), 1e-12);
+        assertEquals(2 * 20, tail.getPeaks().length);
+
+        assertEquals(0, WaveformPyramid.readSlice(peaksFile, 0, 40, 50).getPeaks().length);
+        assertEquals(2 * 2, WaveformPyramid.readSlice(peaksFile, 0, -1, 2.0 / 64).getPeaks().length);
+    }
+
+    @Test
+    void trailingPartialBucketAndOddByteAreHandled() throws IOException {
+        byte[] samples = pcm(2, 16);
+        byte[] pcm = new byte[2 * 20 + 1];
+        System.arraycopy(samples, 0, pcm, 0, pcm.length);
+
+        WaveformPyramid pyramid = WaveformPyramid.fromPcm(new ByteArrayInputStream(pcm), SAMPLE_RATE, 16);
+        pyramid.write(peaksFile);
+
+        assertEquals(20, pyramid.getSampleCount());
+        assertEquals(1, pyramid.getLevelCount());
+        assertArrayEquals(new byte[]{0, 0, -1, 1}, WaveformPyramid.readSlice(peaksFile, 0, 0, 1).getPeaks());
+    }
+
+    @Test
+    void unknownLevelsAndOversizedRangesAreRejected() throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> WaveformPyramid.readSlice(peaksFile, 3, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> WaveformPyramid.readSlice(peaksFile, -1, 0, 1));
+
+        File dense = tempDir.resolve("dense.bin").toFile();
+        WaveformPyramid.fromPcm(new ByteArrayInputStream(pcm(70_000, 1)), SAMPLE_RATE, 1).write(dense);
+        assertThrows(IllegalArgumentException.class, () -> WaveformPyramid.readSlice(dense, 0, 0, 100));
+        assertEquals(2 * 1024, WaveformPyramid.readSlice(dense, 0, 0, 1).getPeaks().length);
+    }
+
+    @Test
+    void otherFilesAreNotReadAsPeaks() throws IOException {
+        File other = tempDir.resolve("other.bin").toFile();
+        Files.write(other.toPath(), new byte[64]);
+
+        assertThrows(IOException.class, () -> WaveformPyramid.readHeader(other));
+    }
+}